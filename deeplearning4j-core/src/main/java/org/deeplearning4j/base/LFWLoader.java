@@ -1,30 +1,32 @@
 package org.deeplearning4j.base;
 
 import java.io.File;
+import java.io.FileFilter;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.filefilter.DirectoryFileFilter;
+import org.apache.commons.io.filefilter.FileFileFilter;
+import org.deeplearning4j.datasets.binary.BinaryDataSetFile;
+import org.deeplearning4j.datasets.image.ImageBatchLoader;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
 import org.nd4j.linalg.factory.Nd4j;
-import org.nd4j.linalg.util.ArrayUtil;
-import org.nd4j.linalg.util.FeatureUtil;
 import org.deeplearning4j.util.ArchiveUtils;
-import org.deeplearning4j.util.ImageLoader;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Loads LFW faces data applyTransformToDestination. You can customize the size of the images as well
+ * Loads LFW faces data applyTransformToDestination. You can customize the size of the images as well.
+ * Images are loaded as normalized grayscale by an {@link ImageBatchLoader}, decoding in parallel,
+ * and can be cached in the binary data set format with {@link #getCache()}
  * @author Adam Gibson
  *
  */
@@ -38,9 +40,11 @@ public class LFWLoader {
     private static Logger log = LoggerFactory.getLogger(LFWLoader.class);
     private int numNames;
     private int numPixelColumns;
-    private ImageLoader loader = new ImageLoader(28,28);
+    private ImageBatchLoader loader;
+    private int imageWidth,imageHeight;
     private List<String> images = new ArrayList<String>();
     private List<String> outcomes = new ArrayList<String>();
+    private Map<String,Integer> outcomeIndices = new HashMap<>();
 
 
 
@@ -50,7 +54,9 @@ public class LFWLoader {
 
 
     public LFWLoader(int imageWidth,int imageHeight) {
-        loader = new ImageLoader(imageWidth,imageHeight);
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        loader = new ImageBatchLoader(imageWidth,imageHeight);
     }
 
     public void getIfNotExists() throws Exception {
@@ -75,34 +81,62 @@ public class LFWLoader {
 
         File firstImage = null;
         try {
-            firstImage = lfwDir.listFiles()[0].listFiles()[0];
+            firstImage = lfwDir.listFiles((FileFilter) DirectoryFileFilter.DIRECTORY)[0].listFiles()[0];
+            loader.load(Collections.singletonList(firstImage));
 
         }catch(Exception e) {
             FileUtils.deleteDirectory(lfwDir);
             log.warn("Error opening first image; probably corrupt download...trying again",e);
             getIfNotExists();
+            return;
 
         }
 
 
         //number of input neurons
-        numPixelColumns = ArrayUtil.flatten(loader.fromFile(firstImage)).length;
+        numPixelColumns = loader.columns();
 
-        //each subdir is a person
-        numNames = lfwDir.getAbsoluteFile().listFiles().length;
+        //each subdir is a person; the archive and caches sit next to them
+        File[] dirs = lfwDir.getAbsoluteFile().listFiles((FileFilter) DirectoryFileFilter.DIRECTORY);
+        numNames = dirs.length;
 
-        @SuppressWarnings("unchecked")
-        Collection<File> allImages = FileUtils.listFiles(lfwDir, org.apache.commons.io.filefilter.FileFileFilter.FILE, org.apache.commons.io.filefilter.DirectoryFileFilter.DIRECTORY);
-        for(File f : allImages) {
-            images.add(f.getAbsolutePath());
-        }
-        for(File dir : lfwDir.getAbsoluteFile().listFiles())
+        for(File dir : dirs) {
+            outcomeIndices.put(dir.getAbsolutePath(),outcomes.size());
             outcomes.add(dir.getAbsolutePath());
+            @SuppressWarnings("unchecked")
+            Collection<File> allImages = FileUtils.listFiles(dir, FileFileFilter.FILE, DirectoryFileFilter.DIRECTORY);
+            for(File f : allImages) {
+                images.add(f.getAbsolutePath());
+            }
+        }
 
     }
 
+    /**
+     * The binary data set cache of all of the images at the size of this loader,
+     * written the first time with the images decoded in parallel
+     * @return the cache, in the same order as {@link #getDataFor(int)}
+     * @throws IOException
+     */
+    public BinaryDataSetFile getCache() throws IOException {
+        File cache = new File(lfwDir,"lfw-" + imageWidth + "x" + imageHeight + ".bin");
+        if(!cache.exists()) {
+            log.info("Writing LFW cache " + cache);
+            File tmp = new File(lfwDir,cache.getName() + ".tmp");
+            loader.write(files(0,images.size()),labels(0,images.size()),numNames,tmp);
+            if(!tmp.renameTo(cache))
+                throw new IOException("Unable to move " + tmp + " to " + cache);
+        }
+        return new BinaryDataSetFile(cache);
+    }
+
 
 
+    /**
+     * Merges data sets of one image each in to one data set
+     * @param images the images to merge
+     * @return a data set with a row per image
+     */
     public DataSet convertListPairs(List<DataSet> images) {
         INDArray inputs = Nd4j.create(images.size(), numPixelColumns);
         INDArray outputs = Nd4j.create(images.size(),numNames);
@@ -117,12 +151,20 @@ public class LFWLoader {
 
 
     public DataSet getDataFor(int i) {
-        File image = new File(images.get(i));
-        int outcome = outcomes.indexOf(image.getParentFile().getAbsolutePath());
+        return getDataFor(i,1);
+    }
+
+    /**
+     * Loads a range of images, decoding them in parallel
+     * @param from the index of the first image
+     * @param num the number of images
+     * @return the images with their labels
+     */
+    public DataSet getDataFor(int from,int num) {
         try {
-            return new DataSet(loader.asRowVector(image), FeatureUtil.toOutcomeVector(outcome, outcomes.size()));
-        } catch (Exception e) {
-            throw new IllegalStateException("Unable to getFromOrigin data for image " + i + " for path " + images.get(i));
+            return loader.load(files(from,num),labels(from,num),numNames);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load images " + from + " to " + (from + num),e);
         }
     }
 
@@ -134,7 +176,7 @@ public class LFWLoader {
      */
     public List<DataSet> getFeatureMatrix(int num) throws Exception {
         List<DataSet> ret = new ArrayList<>(num);
-        File[] files = lfwDir.listFiles();
+        File[] files = lfwDir.listFiles((FileFilter) DirectoryFileFilter.DIRECTORY);
         int label = 0;
         for(File file : files) {
             ret.addAll(getImages(label,file));
@@ -147,19 +189,17 @@ public class LFWLoader {
     }
 
     public DataSet getAllImagesAsMatrix() throws Exception {
-        List<DataSet> images = getImagesAsList();
-        return convertListPairs(images);
+        return getDataFor(0,images.size());
     }
 
 
     public DataSet getAllImagesAsMatrix(int numRows) throws Exception {
-        List<DataSet> images = getImagesAsList().subList(0, numRows);
-        return convertListPairs(images);
+        return getDataFor(0,numRows);
     }
 
     public List<DataSet> getImagesAsList() throws Exception {
         List<DataSet> list = new ArrayList<>();
-        File[] dirs = lfwDir.listFiles();
+        File[] dirs = lfwDir.listFiles((FileFilter) DirectoryFileFilter.DIRECTORY);
         for(int i = 0; i < dirs.length; i++) {
             list.addAll(getImages(i,dirs[i]));
         }
@@ -167,18 +207,33 @@ public class LFWLoader {
     }
 
     public List<DataSet> getImages(int label,File file) throws Exception {
-        File[] images = file.listFiles();
+        List<File> images = Arrays.asList(file.listFiles());
+        int[] labels = new int[images.size()];
+        Arrays.fill(labels,label);
+        DataSet all = loader.load(images,labels,numNames);
         List<DataSet> ret = new ArrayList<>();
-        for(File f : images)
-            ret.add(fromImageFile(label,f));
+        for(int i = 0; i < images.size(); i++)
+            ret.add(new DataSet(all.getFeatureMatrix().getRow(i),all.getLabels().getRow(i)));
         return ret;
     }
 
 
     public DataSet fromImageFile(int label,File image) throws Exception {
-        INDArray outcome = FeatureUtil.toOutcomeVector(label, numNames);
-        INDArray image2 = ArrayUtil.toNDArray(loader.flattenedImageFromFile(image));
-        return new DataSet(image2,outcome);
+        return loader.load(Collections.singletonList(image),new int[]{label},numNames);
+    }
+
+    private List<File> files(int from,int num) {
+        List<File> ret = new ArrayList<>(num);
+        for(int i = from; i < from + num; i++)
+            ret.add(new File(images.get(i)));
+        return ret;
+    }
+
+    private int[] labels(int from,int num) {
+        int[] ret = new int[num];
+        for(int i = 0; i < num; i++)
+            ret[i] = outcomeIndices.get(new File(images.get(from + i)).getParentFile().getAbsolutePath());
+        return ret;
     }
 
 
@@ -0,0 +1,468 @@
+package org.deeplearning4j.clustering.rptree;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.util.SerializationUtils;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Approximate nearest neighbors by cosine similarity using a forest
+ * of random projection trees (similar to annoy).
+ *
+ * Each tree recursively splits the rows with a hyperplane through the origin
+ * normal to the difference of 2 randomly chosen rows until at most leaf size rows remain.
+ * A query walks all of the trees at once, always expanding the node
+ * closest to the query's side of its hyperplane, until search k
+ * candidates have been collected. The candidates are then ranked exactly.
+ *
+ * Larger values of search k trade latency for recall,
+ * more trees trade memory and build time for recall.
+ *
+ * For binary codes (such as from semantic hashing) map the bits to -1/1 first:
+ * the cosine similarity of such vectors ranks them the same as hamming distance.
+ *
+ * @author Adam Gibson
+ */
+public class RPForest implements Serializable {
+
+    private static final long serialVersionUID = 2956352532405614542L;
+    //below this depth nodes are split at random, which bounds the depth by about log2 of the rows
+    private static final int MAX_DEPTH = 64;
+
+    private int numRows;
+    private int numColumns;
+    private int numTrees;
+    private int leafSize;
+    private int defaultSearchK;
+    //row major normalized rows
+    private float[] data;
+    private int[] roots;
+    //per node: the left and right child, for leaves -(start + 1) in to items and the number of items
+    private int[] children;
+    //per node: the offset of the hyperplane in to planes, -1 for leaves
+    private int[] planeOffsets;
+    private float[] planes;
+    private int[] items;
+    private transient int numNodes;
+    private transient int numPlanes;
+    private transient int numItems;
+
+    private RPForest() {}
+
+    /**
+     * The k most similar rows to the given vector
+     * using the default search k
+     * @param query the query vector
+     * @param k the number of rows to return
+     * @return the row indices and cosine similarities in decreasing order of similarity
+     */
+    public List<Pair<Integer,Double>> query(double[] query,int k) {
+        return query(query,k,defaultSearchK > 0 ? defaultSearchK : numTrees * k);
+    }
+
+    /**
+     * The k most similar rows to the given vector
+     * @param query the query vector
+     * @param k the number of rows to return
+     * @param searchK the number of candidates to collect from the trees
+     * @return the row indices and cosine similarities in decreasing order of similarity
+     */
+    public List<Pair<Integer,Double>> query(double[] query,int k,int searchK) {
+        if(k < 1)
+            throw new IllegalArgumentException("k must be at least 1");
+        if(query.length != numColumns)
+            throw new IllegalArgumentException("Query must be of length " + numColumns);
+        double[] q = query.clone();
+        normalize(q);
+
+        int[] candidates = new int[Math.max(16,searchK + leafSize)];
+        int numCandidates = 0;
+        PriorityQueue<Node> queue = new PriorityQueue<>();
+        for(int root : roots)
+            queue.add(new Node(root,Double.POSITIVE_INFINITY));
+
+        while(numCandidates < searchK && !queue.isEmpty()) {
+            Node top = queue.poll();
+            int node = top.node;
+            if(planeOffsets[node] < 0) {
+                int start = -children[2 * node] - 1;
+                int count = children[2 * node + 1];
+                if(numCandidates + count > candidates.length)
+                    candidates = Arrays.copyOf(candidates,Math.max(candidates.length * 2,numCandidates + count));
+                System.arraycopy(items,start,candidates,numCandidates,count);
+                numCandidates += count;
+            }
+            else {
+                double margin = dot(planes,planeOffsets[node],q);
+                queue.add(new Node(children[2 * node + 1],Math.min(top.priority,margin)));
+                queue.add(new Node(children[2 * node],Math.min(top.priority,-margin)));
+            }
+        }
+
+        //rank the unique candidates exactly
+        Arrays.sort(candidates,0,numCandidates);
+        int size = 0;
+        int[] best = new int[k];
+        double[] bestScores = new double[k];
+        for(int i = 0; i < numCandidates; i++) {
+            int row = candidates[i];
+            if(i > 0 && candidates[i - 1] == row)
+                continue;
+            double score = dot(data,row * numColumns,q);
+            //insertion in to the sorted top k
+            if(size < k || score > bestScores[size - 1]) {
+                int j = size < k ? size++ : size - 1;
+                while(j > 0 && bestScores[j - 1] < score) {
+                    best[j] = best[j - 1];
+                    bestScores[j] = bestScores[j - 1];
+                    j--;
+                }
+                best[j] = row;
+                bestScores[j] = score;
+            }
+        }
+
+        List<Pair<Integer,Double>> ret = new ArrayList<>(size);
+        for(int i = 0; i < size; i++)
+            ret.add(new Pair<>(best[i],bestScores[i]));
+        return ret;
+    }
+
+    /**
+     * The fraction of the exact top k results found by the approximate ones
+     * @param exact the exact results
+     * @param approximate the approximate results
+     * @return the recall, between 0 and 1
+     */
+    public static double recall(int[] exact,int[] approximate) {
+        if(exact.length == 0)
+            return 1.0;
+        int found = 0;
+        for(int e : exact)
+            for(int a : approximate)
+                if(a == e) {
+                    found++;
+                    break;
+                }
+        return found / (double) exact.length;
+    }
+
+    /**
+     * Saves the forest, including its copy of the data, to the given file
+     * @param file the file to save to
+     */
+    public void save(File file) {
+        SerializationUtils.saveObject(this,file);
+    }
+
+    /**
+     * Loads a forest written by {@link #save(java.io.File)}
+     * @param file the file to read
+     * @return the loaded forest
+     */
+    public static RPForest load(File file) {
+        return SerializationUtils.readObject(file);
+    }
+
+    public int numRows() {
+        return numRows;
+    }
+
+    public int numColumns() {
+        return numColumns;
+    }
+
+    public int numTrees() {
+        return numTrees;
+    }
+
+    public int getDefaultSearchK() {
+        return defaultSearchK;
+    }
+
+    public void setDefaultSearchK(int defaultSearchK) {
+        this.defaultSearchK = defaultSearchK;
+    }
+
+    private static double dot(float[] arr,int offset,double[] q) {
+        double ret = 0.0;
+        for(int j = 0; j < q.length; j++)
+            ret += arr[offset + j] * q[j];
+        return ret;
+    }
+
+    private static void normalize(double[] v) {
+        double norm = 0.0;
+        for(double d : v)
+            norm += d * d;
+        norm = Math.sqrt(norm);
+        if(norm > 0)
+            for(int j = 0; j < v.length; j++)
+                v[j] /= norm;
+    }
+
+
+    private int build(int[] rows,int from,int to,int depth,Random random,double[] plane) {
+        int node = newNode();
+        int count = to - from;
+        if(count <= leafSize) {
+            ensureItems(count);
+            System.arraycopy(rows,from,items,numItems,count);
+            children[2 * node] = -(numItems + 1);
+            children[2 * node + 1] = count;
+            planeOffsets[node] = -1;
+            numItems += count;
+            return node;
+        }
+
+        //hyperplane normal to the difference of 2 random rows
+        int a = rows[from + random.nextInt(count)];
+        int b = rows[from + random.nextInt(count)];
+        for(int j = 0; j < numColumns; j++)
+            plane[j] = data[a * numColumns + j] - data[b * numColumns + j];
+
+        int mid = depth < MAX_DEPTH ? partition(rows,from,to,plane) : from;
+        //identical rows, an unlucky plane or a tree that got too deep: split at random
+        if(mid == from || mid == to) {
+            for(int i = to - 1; i > from; i--) {
+                int swap = from + random.nextInt(i - from + 1);
+                int tmp = rows[i];
+                rows[i] = rows[swap];
+                rows[swap] = tmp;
+            }
+            Arrays.fill(plane,0.0);
+            mid = from + count / 2;
+        }
+
+        int planeOffset = numPlanes;
+        ensurePlanes();
+        for(int j = 0; j < numColumns; j++)
+            planes[planeOffset + j] = (float) plane[j];
+        numPlanes += numColumns;
+        planeOffsets[node] = planeOffset;
+
+        int left = build(rows,from,mid,depth + 1,random,plane);
+        int right = build(rows,mid,to,depth + 1,random,plane);
+        children[2 * node] = left;
+        children[2 * node + 1] = right;
+        return node;
+    }
+
+    //moves rows on the negative side of the plane to the front, returns the first row on the positive side
+    private int partition(int[] rows,int from,int to,double[] plane) {
+        int i = from;
+        int j = to - 1;
+        while(i <= j) {
+            double margin = 0.0;
+            int offset = rows[i] * numColumns;
+            for(int c = 0; c < numColumns; c++)
+                margin += data[offset + c] * plane[c];
+            if(margin <= 0)
+                i++;
+            else {
+                int tmp = rows[i];
+                rows[i] = rows[j];
+                rows[j] = tmp;
+                j--;
+            }
+        }
+        return i;
+    }
+
+    private int newNode() {
+        if(numNodes == planeOffsets.length) {
+            planeOffsets = Arrays.copyOf(planeOffsets,planeOffsets.length * 2);
+            children = Arrays.copyOf(children,children.length * 2);
+        }
+        return numNodes++;
+    }
+
+    private void ensurePlanes() {
+        if(numPlanes + numColumns > planes.length)
+            planes = Arrays.copyOf(planes,Math.max(planes.length * 2,numPlanes + numColumns));
+    }
+
+    private void ensureItems(int count) {
+        if(numItems + count > items.length)
+            items = Arrays.copyOf(items,Math.max(items.length * 2,numItems + count));
+    }
+
+    private void trim() {
+        planeOffsets = Arrays.copyOf(planeOffsets,numNodes);
+        children = Arrays.copyOf(children,numNodes * 2);
+        planes = Arrays.copyOf(planes,numPlanes);
+        items = Arrays.copyOf(items,numItems);
+    }
+
+
+    private static class Node implements Comparable<Node> {
+        private int node;
+        private double priority;
+
+        private Node(int node, double priority) {
+            this.node = node;
+            this.priority = priority;
+        }
+
+        //highest priority first
+        @Override
+        public int compareTo(Node o) {
+            return Double.compare(o.priority,priority);
+        }
+    }
+
+
+    public static class Builder {
+        private int numTrees = 10;
+        private int leafSize = 32;
+        private int searchK = -1;
+        private long seed = 123;
+
+        /**
+         * The number of trees: more trees give better recall for the same search k
+         * at the cost of memory
+         * @param numTrees the number of trees
+         * @return the builder
+         */
+        public Builder numTrees(int numTrees) {
+            this.numTrees = numTrees;
+            return this;
+        }
+
+        /**
+         * The maximum number of rows in a leaf
+         * @param leafSize the leaf size
+         * @return the builder
+         */
+        public Builder leafSize(int leafSize) {
+            this.leafSize = leafSize;
+            return this;
+        }
+
+        /**
+         * The default number of candidates to collect per query,
+         * the default is the number of trees times k
+         * @param searchK the number of candidates
+         * @return the builder
+         */
+        public Builder searchK(int searchK) {
+            this.searchK = searchK;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Builds the forest over the rows of the given matrix
+         * @param data the matrix to index
+         * @return the forest
+         */
+        public RPForest build(INDArray data) {
+            int rows = data.rows();
+            int columns = data.columns();
+            float[] rowMajor = new float[length(rows,columns)];
+            if(data.ordering() == 'f' && data.offset() == 0 && data.data().dataType().equals(DataBuffer.DOUBLE)) {
+                double[] arr = data.data().asDouble();
+                for(int i = 0; i < rows; i++)
+                    for(int j = 0; j < columns; j++)
+                        rowMajor[i * columns + j] = (float) arr[j * rows + i];
+            }
+            else {
+                for(int i = 0; i < rows; i++)
+                    for(int j = 0; j < columns; j++)
+                        rowMajor[i * columns + j] = (float) data.getDouble(i,j);
+            }
+            return build(rowMajor,rows,columns);
+        }
+
+        /**
+         * Builds the forest over binary codes: a code is a row of 0/1 values.
+         * The bits are mapped to -1/1 so that cosine similarity ranks
+         * codes by hamming distance
+         * @param codes the codes to index
+         * @return the forest
+         */
+        public RPForest buildFromCodes(INDArray codes) {
+            int rows = codes.rows();
+            int columns = codes.columns();
+            float[] rowMajor = new float[length(rows,columns)];
+            for(int i = 0; i < rows; i++)
+                for(int j = 0; j < columns; j++)
+                    rowMajor[i * columns + j] = codes.getDouble(i,j) > 0.5 ? 1 : -1;
+            return build(rowMajor,rows,columns);
+        }
+
+        /**
+         * Builds the forest over a row major matrix.
+         * The rows are normalized in place
+         * @param rowMajor the row major data
+         * @param rows the number of rows
+         * @param columns the number of columns
+         * @return the forest
+         */
+        public RPForest build(float[] rowMajor,int rows,int columns) {
+            if(numTrees < 1 || leafSize < 1)
+                throw new IllegalArgumentException("Number of trees and leaf size must be positive");
+            if(rowMajor.length != length(rows,columns))
+                throw new IllegalArgumentException("Data must be of length rows * columns");
+
+            RPForest ret = new RPForest();
+            ret.numRows = rows;
+            ret.numColumns = columns;
+            ret.numTrees = numTrees;
+            ret.leafSize = leafSize;
+            ret.defaultSearchK = searchK;
+            ret.data = rowMajor;
+            for(int i = 0; i < rows; i++) {
+                double norm = 0.0;
+                for(int j = 0; j < columns; j++)
+                    norm += rowMajor[i * columns + j] * rowMajor[i * columns + j];
+                norm = Math.sqrt(norm);
+                if(norm > 0)
+                    for(int j = 0; j < columns; j++)
+                        rowMajor[i * columns + j] /= norm;
+            }
+
+            //leaves are about half full and there are about as many internal nodes as leaves
+            int estimatedNodes = Math.max(16,4 * numTrees * (rows / leafSize + 1));
+            int estimatedPlanes = estimatedNodes / 2;
+            ret.children = new int[estimatedNodes * 2];
+            ret.planeOffsets = new int[estimatedNodes];
+            ret.planes = new float[Math.max(1,estimatedPlanes) * columns];
+            ret.items = new int[Math.max(16,numTrees * rows)];
+            ret.roots = new int[numTrees];
+
+            Random random = new Random(seed);
+            int[] indices = new int[rows];
+            double[] plane = new double[columns];
+            for(int t = 0; t < numTrees; t++) {
+                for(int i = 0; i < rows; i++)
+                    indices[i] = i;
+                ret.roots[t] = ret.build(indices,0,rows,0,random,plane);
+            }
+
+            ret.trim();
+            return ret;
+        }
+
+        /* the number of elements of a rows x columns matrix, which must fit in an array */
+        private static int length(int rows,int columns) {
+            long length = (long) rows * columns;
+            if(rows < 0 || columns < 0 || length > Integer.MAX_VALUE)
+                throw new IllegalArgumentException("Unable to index " + rows + " x " + columns + " elements in one array");
+            return (int) length;
+        }
+    }
+
+}
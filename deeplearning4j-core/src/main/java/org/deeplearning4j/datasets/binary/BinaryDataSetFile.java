@@ -0,0 +1,233 @@
+package org.deeplearning4j.datasets.binary;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A memory mapped data set written by {@link BinaryDataSetWriter}.
+ *
+ * Any range of examples is read with one pass over the mapped region of each block,
+ * so reading a mini batch takes the same time wherever it is in the file
+ * and repeated epochs are served from the page cache:
+ * <pre>
+ *     BinaryDataSetFile file = new BinaryDataSetFile(new File("train.bin"));
+ *     DataSet batch = file.getBatch(42,100);
+ * </pre>
+ * Instances may be read from several threads at once.
+ *
+ * @author Adam Gibson
+ */
+public class BinaryDataSetFile implements Closeable {
+
+    private RandomAccessFile file;
+    private BinaryDataSetFormat.Encoding featureEncoding;
+    private BinaryDataSetFormat.Encoding labelEncoding;
+    private int numExamples;
+    private int featureColumns;
+    private int labelColumns;
+    private double featureMin,featureMax,labelMin,labelMax;
+    private long featureOffset;
+    private long labelOffset;
+    //the blocks when they can be mapped at once
+    private ByteBuffer featureBlock;
+    private ByteBuffer labelBlock;
+
+    /**
+     * Opens and memory maps a data set
+     * @param file the file to read
+     * @throws IOException if the file is not in the binary data set format or can't be read
+     */
+    public BinaryDataSetFile(File file) throws IOException {
+        this.file = new RandomAccessFile(file,"r");
+        try {
+            if(this.file.length() < BinaryDataSetFormat.HEADER_SIZE)
+                throw new IOException(file + " is not a binary data set");
+            ByteBuffer header = map(0,BinaryDataSetFormat.HEADER_SIZE);
+            byte[] magic = new byte[BinaryDataSetFormat.MAGIC.length];
+            header.get(magic);
+            if(!Arrays.equals(magic,BinaryDataSetFormat.MAGIC))
+                throw new IOException(file + " is not a binary data set");
+            int version = header.getInt();
+            if(version > BinaryDataSetFormat.VERSION)
+                throw new IOException("Unable to read version " + version + " of the binary data set format, the latest supported is " + BinaryDataSetFormat.VERSION);
+            featureEncoding = encoding(header.get());
+            labelEncoding = encoding(header.get());
+            header.getShort();
+            numExamples = header.getInt();
+            featureColumns = header.getInt();
+            labelColumns = header.getInt();
+            featureMin = header.getDouble();
+            featureMax = header.getDouble();
+            labelMin = header.getDouble();
+            labelMax = header.getDouble();
+
+            long featureBytes = (long) numExamples * featureColumns * featureEncoding.size();
+            long labelBytes = (long) numExamples * labelColumns * labelEncoding.size();
+            featureOffset = BinaryDataSetFormat.HEADER_SIZE;
+            labelOffset = featureOffset + featureBytes;
+            if(this.file.length() < labelOffset + labelBytes)
+                throw new IOException(file + " is truncated: expected " + (labelOffset + labelBytes) + " bytes");
+            if(featureBytes <= Integer.MAX_VALUE)
+                featureBlock = map(featureOffset,featureBytes);
+            if(labelBytes <= Integer.MAX_VALUE)
+                labelBlock = map(labelOffset,labelBytes);
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads a whole data set saved with {@link BinaryDataSetWriter#save(DataSet, File)}
+     * @param file the file to read
+     * @return the data set
+     * @throws IOException
+     */
+    public static DataSet load(File file) throws IOException {
+        BinaryDataSetFile data = new BinaryDataSetFile(file);
+        try {
+            return data.get(0,data.numExamples());
+        }
+        finally {
+            data.close();
+        }
+    }
+
+    /**
+     * Whether the file starts with the binary data set header
+     * @param file the file to check
+     * @return true if the file is a binary data set, false for anything else
+     * such as a java serialized data set
+     * @throws IOException
+     */
+    public static boolean isDataSet(File file) throws IOException {
+        DataInputStream dis = new DataInputStream(new FileInputStream(file));
+        try {
+            byte[] magic = new byte[BinaryDataSetFormat.MAGIC.length];
+            dis.readFully(magic);
+            return Arrays.equals(magic,BinaryDataSetFormat.MAGIC);
+        } catch (EOFException e) {
+            return false;
+        }
+        finally {
+            dis.close();
+        }
+    }
+
+    /**
+     * The number of examples
+     * @return the number of examples
+     */
+    public int numExamples() {
+        return numExamples;
+    }
+
+    /**
+     * The number of features of each example
+     * @return the number of feature columns
+     */
+    public int featureColumns() {
+        return featureColumns;
+    }
+
+    /**
+     * The number of labels of each example
+     * @return the number of label columns
+     */
+    public int labelColumns() {
+        return labelColumns;
+    }
+
+    /**
+     * How the features are stored
+     * @return the feature encoding
+     */
+    public BinaryDataSetFormat.Encoding getFeatureEncoding() {
+        return featureEncoding;
+    }
+
+    /**
+     * How the labels are stored
+     * @return the label encoding
+     */
+    public BinaryDataSetFormat.Encoding getLabelEncoding() {
+        return labelEncoding;
+    }
+
+    /**
+     * Reads a range of examples
+     * @param from the index of the first example
+     * @param num the number of examples
+     * @return the examples
+     * @throws IOException
+     */
+    public DataSet get(int from,int num) throws IOException {
+        if(from < 0 || num < 0 || (long) from + num > numExamples)
+            throw new IllegalArgumentException("Examples " + from + " to " + ((long) from + num) + " are out of range 0 to " + numExamples);
+        INDArray in = read(featureBlock,featureOffset,featureEncoding,featureColumns,featureMin,featureMax,from,num);
+        INDArray out = read(labelBlock,labelOffset,labelEncoding,labelColumns,labelMin,labelMax,from,num);
+        return new DataSet(in,out);
+    }
+
+    /**
+     * Reads a mini batch. The last batch may be smaller than the others
+     * @param batch the index of the batch
+     * @param batchSize the number of examples of each batch
+     * @return the examples of the batch
+     * @throws IOException
+     */
+    public DataSet getBatch(int batch,int batchSize) throws IOException {
+        int from = batch * batchSize;
+        return get(from,Math.min(batchSize,numExamples - from));
+    }
+
+    @Override
+    public void close() throws IOException {
+        featureBlock = null;
+        labelBlock = null;
+        file.close();
+    }
+
+    //one pass over the examples, writing the column major matrix directly
+    private INDArray read(ByteBuffer block,long offset,BinaryDataSetFormat.Encoding encoding,int columns,double min,double max,int from,int num) throws IOException {
+        long start = (long) from * columns * encoding.size();
+        long length = (long) num * columns * encoding.size();
+        if(length > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Unable to read " + num + " examples at once: " + length + " bytes");
+        ByteBuffer buf;
+        if(block != null) {
+            buf = block.duplicate();
+            buf.position((int) start);
+            buf.limit((int) (start + length));
+            buf = buf.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        else
+            buf = map(offset + start,length);
+
+        double[] ret = new double[num * columns];
+        int k = 0;
+        for(int i = 0; i < num; i++)
+            for(int j = 0; j < columns; j++,k++)
+                ret[j * num + i] = BinaryDataSetFormat.get(buf,encoding,k,min,max);
+        return Nd4j.create(ret,new int[]{num,columns});
+    }
+
+    private ByteBuffer map(long position,long length) throws IOException {
+        return file.getChannel().map(FileChannel.MapMode.READ_ONLY,position,length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private BinaryDataSetFormat.Encoding encoding(byte ordinal) throws IOException {
+        BinaryDataSetFormat.Encoding[] values = BinaryDataSetFormat.Encoding.values();
+        if(ordinal < 0 || ordinal >= values.length)
+            throw new IOException("Unknown encoding " + ordinal);
+        return values[ordinal];
+    }
+
+}
@@ -0,0 +1,151 @@
+package org.deeplearning4j.datasets.binary;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The binary data set format read by {@link BinaryDataSetFile} and written by {@link BinaryDataSetWriter}.
+ *
+ * A data set is laid out as a fixed size header followed by two contiguous blocks:
+ * <pre>
+ *     magic "DL4D", int version
+ *     byte feature encoding, byte label encoding, 2 bytes padding
+ *     int examples, int feature columns, int label columns
+ *     double feature min, double feature max, double label min, double label max
+ *     padding to {@link #HEADER_SIZE} bytes
+ *     features: examples x feature columns, one example after the other
+ *     labels:   examples x label columns, one example after the other
+ * </pre>
+ * All numbers are little endian. Since every example takes the same number of bytes,
+ * any range of examples (such as a mini batch) is one contiguous region of each block.
+ *
+ * The values of each block are stored as doubles, floats, half precision floats
+ * or unsigned bytes quantized over the block's min to max range, see {@link Encoding}.
+ *
+ * @author Adam Gibson
+ */
+public class BinaryDataSetFormat {
+
+    public final static byte[] MAGIC = {'D','L','4','D'};
+    public final static int VERSION = 1;
+    public final static int HEADER_SIZE = 64;
+
+    /**
+     * How the values of a block are stored
+     */
+    public enum Encoding {
+        /** 8 bytes, exact */
+        DOUBLE(8),
+        /** 4 bytes */
+        FLOAT(4),
+        /** 2 bytes, IEEE 754 half precision: about 3 significant digits */
+        HALF(2),
+        /** 1 byte, 256 levels over the min to max range of the block, exact for 0/1 labels and pixels */
+        UBYTE(1);
+
+        private int size;
+
+        Encoding(int size) {
+            this.size = size;
+        }
+
+        /**
+         * The number of bytes of a value
+         * @return the size of a value in bytes
+         */
+        public int size() {
+            return size;
+        }
+    }
+
+    private BinaryDataSetFormat() {}
+
+    //writes a value at the current position of the buffer
+    static void put(ByteBuffer buf,Encoding encoding,double value,double min,double max) {
+        switch(encoding) {
+            case DOUBLE:
+                buf.putDouble(value);
+                break;
+            case FLOAT:
+                buf.putFloat((float) value);
+                break;
+            case HALF:
+                buf.putShort(toHalf((float) value));
+                break;
+            default:
+                double scaled = max > min ? (value - min) / (max - min) * 255 : 0;
+                buf.put((byte) Math.max(0,Math.min(255,Math.round(scaled))));
+        }
+    }
+
+    //reads the i th value of the buffer
+    static double get(ByteBuffer buf,Encoding encoding,int i,double min,double max) {
+        switch(encoding) {
+            case DOUBLE:
+                return buf.getDouble(i * 8);
+            case FLOAT:
+                return buf.getFloat(i * 4);
+            case HALF:
+                return toFloat(buf.getShort(i * 2));
+            default:
+                return min + (buf.get(i) & 0xFF) * (max - min) / 255;
+        }
+    }
+
+    /**
+     * The half precision float closest to the given float, rounding to nearest.
+     * Values too large for half precision become infinite
+     * @param f the float to convert
+     * @return the bits of the half precision float
+     */
+    public static short toHalf(float f) {
+        int bits = Float.floatToIntBits(f);
+        int sign = (bits >>> 16) & 0x8000;
+        int abs = bits & 0x7fffffff;
+        //NaN
+        if(abs > 0x7f800000)
+            return (short) (sign | 0x7e00);
+        //rounded to nearest by adding half of the dropped bits
+        int rounded = abs + 0x1000;
+        //too large, infinite
+        if(rounded >= 0x47800000)
+            return (short) (sign | 0x7c00);
+        //normal
+        if(rounded >= 0x38800000)
+            return (short) (sign | (rounded - 0x38000000) >>> 13);
+        //too small, zero
+        if(rounded < 0x33000000)
+            return (short) sign;
+        //subnormal
+        int exponent = abs >>> 23;
+        return (short) (sign | ((abs & 0x7fffff | 0x800000) + (0x800000 >>> (exponent - 102)) >>> (126 - exponent)));
+    }
+
+    /**
+     * The float value of a half precision float
+     * @param half the bits of the half precision float
+     * @return the value as a float
+     */
+    public static float toFloat(short half) {
+        int bits = half & 0xffff;
+        int sign = (bits & 0x8000) << 16;
+        int mantissa = bits & 0x03ff;
+        int exponent = bits & 0x7c00;
+        //infinite or NaN
+        if(exponent == 0x7c00)
+            exponent = 0x3fc00;
+        //normal
+        else if(exponent != 0)
+            exponent += 0x1c000;
+        //subnormal, normalized
+        else if(mantissa != 0) {
+            exponent = 0x1c400;
+            do {
+                mantissa <<= 1;
+                exponent -= 0x400;
+            } while((mantissa & 0x400) == 0);
+            mantissa &= 0x3ff;
+        }
+        return Float.intBitsToFloat(sign | (exponent | mantissa) << 13);
+    }
+
+}
@@ -0,0 +1,255 @@
+package org.deeplearning4j.datasets.binary;
+
+import org.deeplearning4j.datasets.iterator.DataSetIterator;
+import org.deeplearning4j.util.FlatArrayUtil;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes data sets in the binary data set format (see {@link BinaryDataSetFormat}),
+ * appending the examples of each data set passed in. Only a write buffer is held in memory,
+ * so a whole iterator can be converted regardless of its size:
+ * <pre>
+ *     BinaryDataSetWriter.write(iter,file,Encoding.UBYTE,Encoding.UBYTE);
+ *     DataSetIterator cached = new BinaryDataSetIterator(file,100);
+ * </pre>
+ * The labels are buffered in a temporary file next to the output until the writer is closed.
+ *
+ * Unsigned byte encoding quantizes over a fixed range, set with {@link #setFeatureRange(double, double)}
+ * and {@link #setLabelRange(double, double)} before the first write. The default range of 0 to 1
+ * suits binarized or normalized features and one hot labels.
+ *
+ * @author Adam Gibson
+ */
+public class BinaryDataSetWriter implements Closeable {
+
+    //size of the write buffers
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private File file;
+    private RandomAccessFile features;
+    private File labelFile;
+    private RandomAccessFile labels;
+    private ByteBuffer featureBuffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private ByteBuffer labelBuffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private BinaryDataSetFormat.Encoding featureEncoding;
+    private BinaryDataSetFormat.Encoding labelEncoding;
+    private double featureMin = 0,featureMax = 1;
+    private double labelMin = 0,labelMax = 1;
+    private int numExamples = 0;
+    private int featureColumns = -1;
+    private int labelColumns = -1;
+    private boolean closed = false;
+
+    /**
+     * Writes data sets to the given file without loss of precision
+     * @param file the file to write to
+     * @throws IOException
+     */
+    public BinaryDataSetWriter(File file) throws IOException {
+        this(file,BinaryDataSetFormat.Encoding.DOUBLE,BinaryDataSetFormat.Encoding.DOUBLE);
+    }
+
+    /**
+     * Writes data sets to the given file
+     * @param file the file to write to
+     * @param featureEncoding how to store the features
+     * @param labelEncoding how to store the labels
+     * @throws IOException
+     */
+    public BinaryDataSetWriter(File file,BinaryDataSetFormat.Encoding featureEncoding,BinaryDataSetFormat.Encoding labelEncoding) throws IOException {
+        this.file = file;
+        this.featureEncoding = featureEncoding;
+        this.labelEncoding = labelEncoding;
+        features = new RandomAccessFile(file,"rw");
+        features.setLength(0);
+        features.seek(BinaryDataSetFormat.HEADER_SIZE);
+        File dir = file.getAbsoluteFile().getParentFile();
+        labelFile = File.createTempFile(file.getName(),".labels",dir);
+        labels = new RandomAccessFile(labelFile,"rw");
+    }
+
+    /**
+     * Converts the rest of an iterator
+     * @param iter the iterator to convert
+     * @param file the file to write to
+     * @param featureEncoding how to store the features
+     * @param labelEncoding how to store the labels
+     * @return the number of examples written
+     * @throws IOException
+     */
+    public static int write(DataSetIterator iter,File file,BinaryDataSetFormat.Encoding featureEncoding,BinaryDataSetFormat.Encoding labelEncoding) throws IOException {
+        BinaryDataSetWriter writer = new BinaryDataSetWriter(file,featureEncoding,labelEncoding);
+        try {
+            while(iter.hasNext())
+                writer.write(iter.next());
+        }
+        finally {
+            writer.close();
+        }
+        return writer.numExamples();
+    }
+
+    /**
+     * Saves a data set without loss of precision
+     * @param data the data set to save
+     * @param file the file to write to
+     * @throws IOException
+     */
+    public static void save(DataSet data,File file) throws IOException {
+        BinaryDataSetWriter writer = new BinaryDataSetWriter(file);
+        try {
+            writer.write(data);
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * The range the features are quantized over with unsigned byte encoding,
+     * values outside of it are clamped
+     * @param min the value stored as 0
+     * @param max the value stored as 255
+     */
+    public void setFeatureRange(double min,double max) {
+        checkNotStarted();
+        this.featureMin = min;
+        this.featureMax = max;
+    }
+
+    /**
+     * The range the labels are quantized over with unsigned byte encoding,
+     * values outside of it are clamped
+     * @param min the value stored as 0
+     * @param max the value stored as 255
+     */
+    public void setLabelRange(double min,double max) {
+        checkNotStarted();
+        this.labelMin = min;
+        this.labelMax = max;
+    }
+
+    /**
+     * Appends the examples of a data set. All data sets must have the same number of columns
+     * and must have labels, the format has no unlabelled data sets
+     * @param data the data set to append
+     * @throws IOException
+     */
+    public void write(DataSet data) throws IOException {
+        if(closed)
+            throw new IllegalStateException("The writer was already closed");
+        INDArray in = data.getFeatureMatrix();
+        INDArray out = data.getLabels();
+        if(in == null)
+            throw new IllegalArgumentException("Unable to write a data set without features");
+        if(out == null)
+            throw new IllegalArgumentException("Unable to write a data set without labels");
+        if(featureColumns < 0) {
+            featureColumns = in.columns();
+            labelColumns = out.columns();
+        }
+        else if(in.columns() != featureColumns || out.columns() != labelColumns)
+            throw new IllegalArgumentException("Expected " + featureColumns + " feature and " + labelColumns + " label columns but got " + in.columns() + " and " + out.columns());
+        if(in.rows() != out.rows())
+            throw new IllegalArgumentException("Features have " + in.rows() + " rows but labels have " + out.rows());
+
+        put(in,features,featureBuffer,featureEncoding,featureMin,featureMax);
+        put(out,labels,labelBuffer,labelEncoding,labelMin,labelMax);
+        numExamples += in.rows();
+    }
+
+    /**
+     * The number of examples written so far
+     * @return the number of examples written
+     */
+    public int numExamples() {
+        return numExamples;
+    }
+
+    /**
+     * Appends the labels after the features, writes the header and closes the file
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed)
+            return;
+        closed = true;
+        try {
+            flush(features,featureBuffer);
+            flush(labels,labelBuffer);
+            FileChannel from = labels.getChannel();
+            FileChannel to = features.getChannel();
+            long position = 0,size = from.size();
+            while(position < size)
+                position += from.transferTo(position,size - position,to);
+
+            ByteBuffer header = ByteBuffer.allocate(BinaryDataSetFormat.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.put(BinaryDataSetFormat.MAGIC);
+            header.putInt(BinaryDataSetFormat.VERSION);
+            header.put((byte) featureEncoding.ordinal());
+            header.put((byte) labelEncoding.ordinal());
+            header.putShort((short) 0);
+            header.putInt(numExamples);
+            header.putInt(Math.max(featureColumns,0));
+            header.putInt(Math.max(labelColumns,0));
+            header.putDouble(featureMin);
+            header.putDouble(featureMax);
+            header.putDouble(labelMin);
+            header.putDouble(labelMax);
+            header.clear();
+            to.position(0);
+            while(header.hasRemaining())
+                to.write(header);
+        }
+        finally {
+            labels.close();
+            labelFile.delete();
+            features.close();
+        }
+    }
+
+    private void checkNotStarted() {
+        if(featureColumns >= 0)
+            throw new IllegalStateException("The range must be set before writing to " + file);
+    }
+
+    //row by row, so each example is contiguous
+    private void put(INDArray arr,RandomAccessFile out,ByteBuffer buffer,BinaryDataSetFormat.Encoding encoding,double min,double max) throws IOException {
+        int rows = arr.rows(),columns = arr.columns();
+        int size = encoding.size();
+        if(FlatArrayUtil.isContiguous(arr)) {
+            double[] data = arr.data().asDouble();
+            int offset = arr.offset();
+            for(int i = 0; i < rows; i++)
+                for(int j = 0; j < columns; j++) {
+                    if(buffer.remaining() < size)
+                        flush(out,buffer);
+                    BinaryDataSetFormat.put(buffer,encoding,data[offset + j * rows + i],min,max);
+                }
+        }
+        else {
+            for(int i = 0; i < rows; i++)
+                for(int j = 0; j < columns; j++) {
+                    if(buffer.remaining() < size)
+                        flush(out,buffer);
+                    BinaryDataSetFormat.put(buffer,encoding,arr.getDouble(i,j),min,max);
+                }
+        }
+    }
+
+    private void flush(RandomAccessFile out,ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        FileChannel channel = out.getChannel();
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+}
@@ -1,14 +1,16 @@
 package org.deeplearning4j.datasets.fetchers;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 
 import org.deeplearning4j.base.LFWLoader;
+import org.deeplearning4j.datasets.binary.BinaryDataSetFile;
 import org.nd4j.linalg.dataset.DataSet;
 
 
 /**
- * Data fetcher for the LFW faces dataset
+ * Data fetcher for the LFW faces dataset.
+ * Each batch is decoded in parallel, or read from the binary cache
+ * of the whole dataset (see {@link LFWLoader#getCache()}) when it is used
  * @author Adam Gibson
  *
  */
@@ -19,21 +21,36 @@ public class LFWDataFetcher extends BaseDataFetcher {
 	 */
 	private static final long serialVersionUID = -7473748140401804666L;
 	private LFWLoader loader;
+	private transient BinaryDataSetFile cache;
 	public final static int NUM_IMAGES = 13233;
 
 
-	public LFWDataFetcher(int imageWidth,int imageHeight) {
+	/**
+	 * @param imageWidth the width to resize images to
+	 * @param imageHeight the height to resize images to
+	 * @param useCache whether to read the images from the binary cache,
+	 *                 writing it first if it doesn't exist yet
+	 */
+	public LFWDataFetcher(int imageWidth,int imageHeight,boolean useCache) {
 		try {
 			loader = new LFWLoader(imageWidth,imageHeight);
 			loader.getIfNotExists();
 			inputColumns = loader.getNumPixelColumns();
 			numOutcomes = loader.getNumNames();
 			totalExamples = NUM_IMAGES;
+			if(useCache) {
+				cache = loader.getCache();
+				totalExamples = cache.numExamples();
+			}
 		} catch (Exception e) {
 			throw new IllegalStateException("Unable to fetch images",e);
 		}
 	}
 
+	public LFWDataFetcher(int imageWidth,int imageHeight) {
+		this(imageWidth,imageHeight,false);
+	}
+
 
 	public LFWDataFetcher() {
 		this(200,200);
@@ -47,18 +64,14 @@ public class LFWDataFetcher extends BaseDataFetcher {
 		if(!hasMore())
 			throw new IllegalStateException("Unable to getFromOrigin more; there are no more images");
 
-
-
 		//we need to ensure that we don't overshoot the number of examples total
-		List<DataSet> toConvert = new ArrayList<>();
-
-		for(int i = 0; i < numExamples; i++,cursor++) {
-			if(!hasMore())
-				break;
-			toConvert.add(loader.getDataFor(cursor));
+		int num = Math.min(numExamples,totalExamples - cursor);
+		try {
+			curr = cache != null ? cache.get(cursor,num) : loader.getDataFor(cursor,num);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
 		}
-
-		initializeCurrFromList(toConvert);
+		cursor += num;
 	}
 
 
@@ -2,18 +2,18 @@ package org.deeplearning4j.datasets.fetchers;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 import org.deeplearning4j.base.MnistFetcher;
-import org.deeplearning4j.datasets.mnist.MnistManager;
+import org.deeplearning4j.datasets.mnist.IdxFile;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.dataset.DataSet;
-import org.nd4j.linalg.util.ArrayUtil;
+import org.nd4j.linalg.factory.Nd4j;
 
 
 /**
- * Data fetcher for the MNIST dataset
+ * Data fetcher for the MNIST dataset.
+ * The image and label files are memory mapped, each batch is read with
+ * one pass over its bytes (see {@link IdxFile})
  * @author Adam Gibson
  *
  */
@@ -23,7 +23,8 @@ public class MnistDataFetcher extends BaseDataFetcher {
      *
      */
     private static final long serialVersionUID = -3218754671561789818L;
-    private transient MnistManager man;
+    private transient IdxFile images;
+    private transient IdxFile labels;
     public final static int NUM_EXAMPLES = 60000;
     private String tempRoot = System.getProperty("user.home");
     private String rootMnist = tempRoot + File.separator + "MNIST" + File.separator;
@@ -38,20 +39,11 @@ public class MnistDataFetcher extends BaseDataFetcher {
     public MnistDataFetcher(boolean binarize) throws IOException {
         if(!new File(rootMnist).exists())
             new MnistFetcher().downloadAndUntar();
-        man = new MnistManager(rootMnist+ MnistFetcher.trainingFilesFilename_unzipped,rootMnist + MnistFetcher.trainingFileLabelsFilename_unzipped);
+        open();
         numOutcomes = 10;
         this.binarize = binarize;
-        totalExamples = NUM_EXAMPLES;
-        //1 based cursor
-        cursor = 1;
-        man.setCurrent(cursor);
-        int[][] image;
-        try {
-            image = man.readImage();
-        } catch (IOException e) {
-            throw new IllegalStateException("Unable to read image");
-        }
-        inputColumns = ArrayUtil.flatten(image).length;
+        totalExamples = images.getCount();
+        inputColumns = images.getEntryLength();
 
 
     }
@@ -65,70 +57,27 @@ public class MnistDataFetcher extends BaseDataFetcher {
         if(!hasMore())
             throw new IllegalStateException("Unable to getFromOrigin more; there are no more images");
 
-
-
         //we need to ensure that we don't overshoot the number of examples total
-        List<DataSet> toConvert = new ArrayList<>();
-
-        for(int i = 0; i < numExamples; i++,cursor++) {
-            if(!hasMore())
-                break;
-            if(man == null) {
-                try {
-                    man = new MnistManager(rootMnist + MnistFetcher.trainingFilesFilename_unzipped,rootMnist + MnistFetcher.trainingFileLabelsFilename_unzipped);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-            man.setCurrent(cursor);
+        int num = Math.min(numExamples,totalExamples - cursor);
+        try {
+            if(images == null)
+                open();
             //note data normalization
-            try {
-                INDArray in = ArrayUtil.toNDArray(ArrayUtil.flatten(man.readImage()));
-                if(binarize)
-                    for(int d = 0; d < in.length(); d++) {
-                        if(binarize) {
-                            if(in.getDouble(d) > 30) {
-                                in.putScalar(d,1);
-                            }
-                            else
-                                in.putScalar(d,0);
-
-                        }
-
-
-                    }
-                 else
-                      in.divi(255);
-
-
-                INDArray out = createOutputVector(man.readLabel());
-                boolean found = false;
-                for(int col = 0; col < out.length(); col++) {
-                    if(out.getDouble(col) > 0) {
-                        found = true;
-                        break;
-                    }
-                }
-                if(!found)
-                    throw new IllegalStateException("Found a matrix without an outcome");
-
-                toConvert.add(new DataSet(in,out));
-            } catch (IOException e) {
-                throw new IllegalStateException("Unable to read image");
-
-            }
+            INDArray in = binarize ? images.readBinarized(cursor,num,30) : images.read(cursor,num,1 / 255.0);
+            int[] outcomes = labels.readInts(cursor,num);
+            double[] out = new double[num * numOutcomes];
+            for(int i = 0; i < num; i++)
+                out[outcomes[i] * num + i] = 1;
+            curr = new DataSet(in,Nd4j.create(out,new int[]{num,numOutcomes}));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read images",e);
         }
-
-
-        initializeCurrFromList(toConvert);
-
-
-
+        cursor += num;
     }
 
-    @Override
-    public void reset() {
-        cursor = 1;
+    private void open() throws IOException {
+        images = new IdxFile(rootMnist + MnistFetcher.trainingFilesFilename_unzipped);
+        labels = new IdxFile(rootMnist + MnistFetcher.trainingFileLabelsFilename_unzipped);
     }
 
     @Override
@@ -0,0 +1,345 @@
+package org.deeplearning4j.datasets.fetchers;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * CSV (or TSV) record based data fetcher for files larger than memory.
+ *
+ * Unlike {@link CSVDataFetcher}, which parses the whole file up front, the file is
+ * read as it is iterated: each fetch reads the lines of one batch and parses them
+ * straight in to the feature and label matrices of the batch. Large batches are
+ * parsed in chunks on several threads. Only one batch is in memory at a time.
+ *
+ * The label column is one hot encoded. Unless the labels are given, they are found
+ * (and the examples counted) with a first pass over the file that only looks at
+ * the label column; they are then sorted so the encoding doesn't depend on the order
+ * of the file. With the labels given there is no first pass, and the number of
+ * examples is unknown ({@link #totalExamples()} is Integer.MAX_VALUE) until the end
+ * of the file is reached.
+ *
+ * As with {@link CSVDataFetcher}, rows with a different number of columns than the first
+ * are skipped, so a batch may have fewer examples than asked for.
+ * {@link #close()} the fetcher when done with it to close the file and stop the parsing threads.
+ *
+ * @author Adam Gibson
+ */
+public class StreamingCSVDataFetcher extends BaseDataFetcher implements Closeable {
+
+    private static final long serialVersionUID = 4316279186441738925L;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    //size of the read buffer
+    private static final int BUFFER_SIZE = 1 << 20;
+    //smallest number of rows worth parsing on another thread
+    private static final int MIN_ROWS_PER_TASK = 64;
+
+    private File file;
+    private int labelColumn;
+    private int skipLines;
+    private char separator;
+    private int numThreads;
+    private List<String> labels;
+    private Map<String,Integer> labelIndices = new HashMap<>();
+    private transient BufferedReader reader;
+    //the next line, read ahead by hasMore
+    private transient String nextLine;
+    private transient ExecutorService parsers;
+
+    /**
+     * Constructs a comma separated fetcher, finding the labels with a first pass over the file
+     * @param f the file to read from
+     * @param labelColumn the index of the column (0 based)
+     * @param skipLines the number of lines to skip, such as a header
+     * @throws IOException
+     */
+    public StreamingCSVDataFetcher(File f,int labelColumn,int skipLines) throws IOException {
+        this(f,labelColumn,skipLines,',');
+    }
+
+    /**
+     * Constructs a fetcher, finding the labels with a first pass over the file
+     * @param f the file to read from
+     * @param labelColumn the index of the column (0 based)
+     * @param skipLines the number of lines to skip, such as a header
+     * @param separator the column separator, such as ',' or '\t'
+     * @throws IOException
+     */
+    public StreamingCSVDataFetcher(File f,int labelColumn,int skipLines,char separator) throws IOException {
+        this(f,labelColumn,skipLines,separator,null,Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a fetcher
+     * @param f the file to read from
+     * @param labelColumn the index of the column (0 based)
+     * @param skipLines the number of lines to skip, such as a header
+     * @param separator the column separator, such as ',' or '\t'
+     * @param labels the labels in the order of their one hot encoding,
+     *               null to find them with a first pass over the file
+     * @param numThreads the number of threads parsing each batch
+     * @throws IOException
+     */
+    public StreamingCSVDataFetcher(File f,int labelColumn,int skipLines,char separator,List<String> labels,int numThreads) throws IOException {
+        if(numThreads < 1)
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        this.file = f;
+        this.labelColumn = labelColumn;
+        this.skipLines = skipLines;
+        this.separator = separator;
+        this.numThreads = numThreads;
+        cursor = 0;
+
+        if(!hasMore())
+            throw new IllegalArgumentException("No examples in " + f);
+        int columns = count(nextLine);
+        if(labelColumn < 0 || labelColumn >= columns)
+            throw new IllegalArgumentException("Label column " + labelColumn + " is out of range, " + f + " has " + columns + " columns");
+        inputColumns = columns - 1;
+
+        if(labels == null)
+            scan();
+        else {
+            this.labels = new ArrayList<>(labels);
+            totalExamples = Integer.MAX_VALUE;
+        }
+        for(int i = 0; i < this.labels.size(); i++)
+            labelIndices.put(this.labels.get(i),i);
+        numOutcomes = this.labels.size();
+    }
+
+    /**
+     * The labels in the order of their one hot encoding
+     * @return the labels
+     */
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    @Override
+    public boolean hasMore() {
+        if(nextLine != null)
+            return true;
+        try {
+            if(reader == null)
+                open();
+            String line;
+            while((line = reader.readLine()) != null) {
+                if(!line.trim().isEmpty()) {
+                    nextLine = line;
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads and parses the next batch
+     * @param numExamples the number of examples to fetch
+     */
+    @Override
+    public void fetch(int numExamples) {
+        List<String> lines = new ArrayList<>(numExamples);
+        while(lines.size() < numExamples && hasMore()) {
+            lines.add(nextLine);
+            nextLine = null;
+        }
+        if(lines.isEmpty())
+            throw new IllegalStateException("Unable to fetch more; there are no more examples");
+
+        final int rows = lines.size();
+        final double[] features = new double[rows * inputColumns];
+        final double[] outcomes = new double[rows * numOutcomes];
+        boolean[] valid = new boolean[rows];
+        parse(lines,features,outcomes,valid);
+
+        int numValid = 0;
+        for(boolean v : valid)
+            if(v)
+                numValid++;
+        INDArray in = Nd4j.create(features,new int[]{rows,inputColumns});
+        INDArray out = Nd4j.create(outcomes,new int[]{rows,numOutcomes});
+        if(numValid < rows) {
+            INDArray validIn = Nd4j.create(numValid,inputColumns);
+            INDArray validOut = Nd4j.create(numValid,numOutcomes);
+            for(int i = 0,j = 0; i < rows; i++) {
+                if(valid[i]) {
+                    validIn.putRow(j,in.getRow(i));
+                    validOut.putRow(j,out.getRow(i));
+                    j++;
+                }
+            }
+            in = validIn;
+            out = validOut;
+        }
+
+        curr = new DataSet(in,out);
+        cursor += numValid;
+    }
+
+    @Override
+    public void reset() {
+        cursor = 0;
+        nextLine = null;
+        closeReader();
+    }
+
+    /**
+     * Closes the file and stops the parsing threads.
+     * Iterating again reopens the file from the start
+     */
+    @Override
+    public void close() {
+        closeReader();
+        nextLine = null;
+        if(parsers != null) {
+            parsers.shutdown();
+            parsers = null;
+        }
+    }
+
+    private void closeReader() {
+        if(reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            reader = null;
+        }
+    }
+
+    private void open() throws IOException {
+        reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),UTF8),BUFFER_SIZE);
+        for(int i = 0; i < skipLines; i++)
+            if(reader.readLine() == null)
+                break;
+    }
+
+    //finds the labels and counts the examples without parsing the features
+    private void scan() throws IOException {
+        Set<String> found = new TreeSet<>();
+        int count = 0;
+        BufferedReader scanner = new BufferedReader(new InputStreamReader(new FileInputStream(file),UTF8),BUFFER_SIZE);
+        try {
+            String line;
+            for(int i = 0; i < skipLines; i++)
+                scanner.readLine();
+            while((line = scanner.readLine()) != null) {
+                if(line.trim().isEmpty() || count(line) != inputColumns + 1)
+                    continue;
+                found.add(field(line,labelColumn));
+                count++;
+            }
+        }
+        finally {
+            scanner.close();
+        }
+        labels = new ArrayList<>(found);
+        totalExamples = count;
+    }
+
+    //parses the lines in chunks, in parallel when there are enough of them
+    private void parse(final List<String> lines,final double[] features,final double[] outcomes,final boolean[] valid) {
+        final int rows = lines.size();
+        int tasks = Math.min(numThreads,rows / MIN_ROWS_PER_TASK);
+        if(tasks <= 1) {
+            parse(lines,0,rows,features,outcomes,valid);
+            return;
+        }
+
+        if(parsers == null)
+            parsers = Executors.newFixedThreadPool(numThreads,new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r,"StreamingCSVDataFetcher-parser");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+        List<Future<?>> futures = new ArrayList<>(tasks);
+        int chunk = (rows + tasks - 1) / tasks;
+        for(int start = 0; start < rows; start += chunk) {
+            final int from = start;
+            final int to = Math.min(rows,start + chunk);
+            futures.add(parsers.submit(new Runnable() {
+                @Override
+                public void run() {
+                    parse(lines,from,to,features,outcomes,valid);
+                }
+            }));
+        }
+        try {
+            for(Future<?> f : futures)
+                f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    //writes rows from (inclusive) to to (exclusive) in to the column major batch matrices
+    private void parse(List<String> lines,int from,int to,double[] features,double[] outcomes,boolean[] valid) {
+        int rows = lines.size();
+        for(int row = from; row < to; row++) {
+            String line = lines.get(row);
+            if(count(line) != inputColumns + 1)
+                continue;
+            int column = 0,feature = 0,start = 0;
+            for(int i = 0; i <= line.length(); i++) {
+                if(i < line.length() && line.charAt(i) != separator)
+                    continue;
+                if(column == labelColumn) {
+                    String label = unquote(line.substring(start,i));
+                    Integer index = labelIndices.get(label);
+                    if(index == null)
+                        throw new IllegalStateException("Unknown label " + label + " in " + file);
+                    outcomes[index * rows + row] = 1;
+                }
+                else
+                    features[feature++ * rows + row] = Double.parseDouble(line.substring(start,i).trim());
+                column++;
+                start = i + 1;
+            }
+            valid[row] = true;
+        }
+    }
+
+    //the number of columns of a line
+    private int count(String line) {
+        int ret = 1;
+        for(int i = 0; i < line.length(); i++)
+            if(line.charAt(i) == separator)
+                ret++;
+        return ret;
+    }
+
+    private String field(String line,int column) {
+        int start = 0;
+        for(int i = 0; i < column; i++)
+            start = line.indexOf(separator,start) + 1;
+        int end = line.indexOf(separator,start);
+        return unquote(line.substring(start,end < 0 ? line.length() : end));
+    }
+
+    private String unquote(String field) {
+        field = field.trim();
+        if(field.length() >= 2 && field.charAt(0) == '"' && field.charAt(field.length() - 1) == '"')
+            return field.substring(1,field.length() - 1);
+        return field;
+    }
+
+}
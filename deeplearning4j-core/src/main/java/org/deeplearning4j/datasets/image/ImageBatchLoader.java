@@ -0,0 +1,225 @@
+package org.deeplearning4j.datasets.image;
+
+import org.deeplearning4j.datasets.binary.BinaryDataSetFormat;
+import org.deeplearning4j.datasets.binary.BinaryDataSetWriter;
+import org.deeplearning4j.util.ImageLoader;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Loads images in to batch matrices, one row per image, decoding them on a pool of threads.
+ *
+ * Each image is decoded, converted to grayscale and resized (see {@link ImageLoader#asGrayPixels(File)})
+ * by a worker, which copies the pixels straight in to the rows of the batch it was given.
+ * Pixels are normalized to 0 to 1 unless {@link #normalize(boolean)} is turned off.
+ *
+ * Since decoding is the expensive part, a set of images can be written once
+ * to a binary data set (see {@link #write(List, int[], int, File)}) and read back from
+ * there on later runs:
+ * <pre>
+ *     ImageBatchLoader loader = new ImageBatchLoader(28,28);
+ *     loader.write(images,labels,numLabels,cache);
+ *     DataSetIterator iter = new BinaryDataSetIterator(cache,100);
+ * </pre>
+ *
+ * @author Adam Gibson
+ */
+public class ImageBatchLoader implements Closeable {
+
+    //smallest number of images worth decoding on another thread
+    private static final int MIN_IMAGES_PER_TASK = 4;
+    //number of images decoded at a time when writing
+    private static final int WRITE_BATCH_SIZE = 1000;
+
+    private ImageLoader loader;
+    private int width;
+    private int height;
+    private int numThreads;
+    private boolean normalize = true;
+    private ExecutorService decoders;
+
+    /**
+     * Loads images of the given size, decoding on a thread per processor
+     * @param width the width to resize images to
+     * @param height the height to resize images to
+     */
+    public ImageBatchLoader(int width,int height) {
+        this(width,height,Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Loads images of the given size
+     * @param width the width to resize images to
+     * @param height the height to resize images to
+     * @param numThreads the number of threads decoding images
+     */
+    public ImageBatchLoader(int width,int height,int numThreads) {
+        if(width < 1 || height < 1)
+            throw new IllegalArgumentException("Width and height must be positive");
+        if(numThreads < 1)
+            throw new IllegalArgumentException("Number of threads must be at least 1");
+        this.width = width;
+        this.height = height;
+        this.numThreads = numThreads;
+        this.loader = new ImageLoader(width,height);
+    }
+
+    /**
+     * Whether to divide the pixels by 255, true by default
+     * @param normalize whether to normalize the pixels to 0 to 1
+     * @return builder pattern
+     */
+    public ImageBatchLoader normalize(boolean normalize) {
+        this.normalize = normalize;
+        return this;
+    }
+
+    /**
+     * The number of pixels of each image
+     * @return the number of columns of a batch
+     */
+    public int columns() {
+        return width * height;
+    }
+
+    /**
+     * Loads images as a matrix
+     * @param images the images to load
+     * @return a matrix with a row per image
+     * @throws IOException if an image can't be read
+     */
+    public INDArray load(List<File> images) throws IOException {
+        int rows = images.size();
+        double[] data = new double[rows * columns()];
+        decode(images,data);
+        return Nd4j.create(data,new int[]{rows,columns()});
+    }
+
+    /**
+     * Loads labelled images as a data set
+     * @param images the images to load
+     * @param labels the label of each image
+     * @param numLabels the total number of labels
+     * @return the images with their one hot encoded labels
+     * @throws IOException if an image can't be read
+     */
+    public DataSet load(List<File> images,int[] labels,int numLabels) throws IOException {
+        if(labels.length != images.size())
+            throw new IllegalArgumentException("Got " + labels.length + " labels for " + images.size() + " images");
+        int rows = images.size();
+        double[] outcomes = new double[rows * numLabels];
+        for(int i = 0; i < rows; i++) {
+            if(labels[i] < 0 || labels[i] >= numLabels)
+                throw new IllegalArgumentException("Label " + labels[i] + " is out of range 0 to " + numLabels);
+            outcomes[labels[i] * rows + i] = 1;
+        }
+        return new DataSet(load(images),Nd4j.create(outcomes,new int[]{rows,numLabels}));
+    }
+
+    /**
+     * Writes labelled images to a binary data set, a batch at a time.
+     * Pixels are stored as unsigned bytes, which is lossless for 8 bit images
+     * @param images the images to write
+     * @param labels the label of each image
+     * @param numLabels the total number of labels
+     * @param file the file to write to
+     * @return the number of images written
+     * @throws IOException if an image can't be read or the file can't be written
+     */
+    public int write(List<File> images,int[] labels,int numLabels,File file) throws IOException {
+        if(labels.length != images.size())
+            throw new IllegalArgumentException("Got " + labels.length + " labels for " + images.size() + " images");
+        BinaryDataSetWriter writer = new BinaryDataSetWriter(file,BinaryDataSetFormat.Encoding.UBYTE,BinaryDataSetFormat.Encoding.UBYTE);
+        try {
+            writer.setFeatureRange(0,normalize ? 1 : 255);
+            for(int from = 0; from < images.size(); from += WRITE_BATCH_SIZE) {
+                int to = Math.min(images.size(),from + WRITE_BATCH_SIZE);
+                int[] batchLabels = new int[to - from];
+                System.arraycopy(labels,from,batchLabels,0,batchLabels.length);
+                writer.write(load(images.subList(from,to),batchLabels,numLabels));
+            }
+        }
+        finally {
+            writer.close();
+        }
+        return writer.numExamples();
+    }
+
+    /**
+     * Stops the decoding threads
+     */
+    @Override
+    public void close() {
+        if(decoders != null) {
+            decoders.shutdownNow();
+            decoders = null;
+        }
+    }
+
+    //decodes the images in chunks, in parallel when there are enough of them
+    private void decode(final List<File> images,final double[] data) throws IOException {
+        final int rows = images.size();
+        int tasks = Math.min(numThreads,rows / MIN_IMAGES_PER_TASK);
+        if(tasks <= 1) {
+            decode(images,0,rows,data);
+            return;
+        }
+
+        if(decoders == null)
+            decoders = Executors.newFixedThreadPool(numThreads,new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r,"ImageBatchLoader-decoder");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+        List<Future<?>> futures = new ArrayList<>(tasks);
+        int chunk = (rows + tasks - 1) / tasks;
+        for(int start = 0; start < rows; start += chunk) {
+            final int from = start;
+            final int to = Math.min(rows,start + chunk);
+            futures.add(decoders.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    decode(images,from,to,data);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for(Future<?> f : futures)
+                f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if(e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    //writes images from (inclusive) to to (exclusive) in to the column major batch matrix
+    private void decode(List<File> images,int from,int to,double[] data) throws IOException {
+        int rows = images.size();
+        double scale = normalize ? 1 / 255.0 : 1;
+        for(int row = from; row < to; row++) {
+            byte[] pixels = loader.asGrayPixels(images.get(row));
+            for(int j = 0; j < pixels.length; j++)
+                data[j * rows + row] = (pixels[j] & 0xFF) * scale;
+        }
+    }
+
+}
@@ -0,0 +1,385 @@
+package org.deeplearning4j.datasets.iterator;
+
+import org.nd4j.linalg.dataset.DataSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.*;
+
+/**
+ * Fetches the data sets of another iterator on a background thread,
+ * so loading and pre processing overlap with training on the calling thread.
+ *
+ * Up to queueSize data sets are fetched ahead of the consumer in to a bounded queue.
+ * The pre processor (if any) runs on the fetching thread, or on a pool of
+ * preProcessorThreads threads when pre processing is the expensive part;
+ * the data sets are returned in the order of the wrapped iterator either way.
+ *
+ * Fetching starts on the first call to {@link #hasNext()} or {@link #next()}.
+ * {@link #reset()} stops the fetching thread, discards the data sets fetched ahead
+ * and resets the wrapped iterator. An exception thrown by the wrapped iterator or
+ * the pre processor is thrown by the {@link #next()} returning the data set it was
+ * thrown for, after which there are no more data sets until the iterator is reset.
+ *
+ * {@link #next(int)} with the wrapped iterator's batch size returns the next data set fetched ahead.
+ * Other sizes stop fetching and serve the examples fetched ahead first, then the rest
+ * from the wrapped iterator on the calling thread; fetching resumes once those are used up.
+ *
+ * The wrapped iterator must not be used directly while this one is.
+ *
+ * @author Adam Gibson
+ */
+public class AsyncDataSetIterator implements DataSetIterator {
+
+    private static final long serialVersionUID = -4434396513567218436L;
+    private static Logger log = LoggerFactory.getLogger(AsyncDataSetIterator.class);
+    public final static int DEFAULT_QUEUE_SIZE = 4;
+    //marks the end of the wrapped iterator in the queue
+    private static final Future<DataSet> END = new FutureTask<>(new Callable<DataSet>() {
+        @Override
+        public DataSet call() {
+            return null;
+        }
+    });
+
+    private DataSetIterator iter;
+    private int queueSize;
+    private int preProcessorThreads;
+    private volatile DataSetPreProcessor preProcessor;
+    private transient BlockingQueue<Future<DataSet>> queue;
+    private transient Thread fetcher;
+    private transient volatile boolean stopped;
+    private transient ExecutorService preProcessorPool;
+    //the head of the queue, taken by hasNext
+    private transient Future<DataSet> next;
+    //the data set the fetcher was stopped while queueing
+    private transient Future<DataSet> unqueued;
+    //the examples fetched ahead when fetching was stopped by next(int), served first
+    private transient LinkedList<DataSet> drained;
+
+    /**
+     * Fetches up to {@link #DEFAULT_QUEUE_SIZE} data sets ahead
+     * @param iter the iterator to fetch from
+     */
+    public AsyncDataSetIterator(DataSetIterator iter) {
+        this(iter,DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * @param iter the iterator to fetch from
+     * @param queueSize the maximum number of data sets fetched ahead
+     */
+    public AsyncDataSetIterator(DataSetIterator iter,int queueSize) {
+        this(iter,queueSize,0);
+    }
+
+    /**
+     * @param iter the iterator to fetch from
+     * @param queueSize the maximum number of data sets fetched ahead
+     * @param preProcessorThreads the number of threads running the pre processor,
+     *                            0 to run it on the fetching thread
+     */
+    public AsyncDataSetIterator(DataSetIterator iter,int queueSize,int preProcessorThreads) {
+        if(iter == null)
+            throw new IllegalArgumentException("No iterator specified");
+        if(queueSize < 1)
+            throw new IllegalArgumentException("Queue size must be at least 1");
+        if(preProcessorThreads < 0)
+            throw new IllegalArgumentException("The number of pre processor threads can't be negative");
+        this.iter = iter;
+        this.queueSize = queueSize;
+        this.preProcessorThreads = preProcessorThreads;
+    }
+
+    /**
+     * The next num examples. With the wrapped iterator's batch size this is the next
+     * data set fetched ahead, otherwise fetching is stopped and the examples fetched ahead
+     * are returned before the wrapped iterator's
+     * @param num the number of examples to return
+     * @return the next num examples, fewer at the end of the wrapped iterator
+     */
+    @Override
+    public synchronized DataSet next(int num) {
+        if(num == batch() && (drained == null || drained.isEmpty()))
+            return next();
+        if(num < 1)
+            throw new IllegalArgumentException("Number of examples must be at least 1");
+
+        drain();
+        List<DataSet> ret = new ArrayList<>(num);
+        while(ret.size() < num && !drained.isEmpty())
+            ret.add(drained.removeFirst());
+        if(ret.size() < num && iter.hasNext()) {
+            DataSet rest = iter.next(num - ret.size());
+            DataSetPreProcessor preProcessor = this.preProcessor;
+            if(preProcessor != null)
+                preProcessor.preProcess(rest);
+            ret.addAll(rest.asList());
+        }
+
+        if(ret.isEmpty())
+            throw new NoSuchElementException();
+        return ret.size() == 1 ? ret.get(0) : DataSet.merge(ret);
+    }
+
+    @Override
+    public int totalExamples() {
+        return iter.totalExamples();
+    }
+
+    @Override
+    public int inputColumns() {
+        return iter.inputColumns();
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return iter.totalOutcomes();
+    }
+
+    /**
+     * Stops fetching, discards the data sets fetched ahead and resets the wrapped iterator
+     */
+    @Override
+    public synchronized void reset() {
+        stop();
+        drained = null;
+        iter.reset();
+    }
+
+    @Override
+    public int batch() {
+        return iter.batch();
+    }
+
+    /**
+     * The cursor of the wrapped iterator, which is ahead of this one by the data sets fetched ahead
+     * @return the cursor of the wrapped iterator
+     */
+    @Override
+    public int cursor() {
+        return iter.cursor();
+    }
+
+    @Override
+    public int numExamples() {
+        return iter.numExamples();
+    }
+
+    /**
+     * Set a pre processor, applied to the data sets fetched after it is set
+     * @param preProcessor a pre processor to set
+     */
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        if(drained != null && !drained.isEmpty())
+            return true;
+        if(next == null) {
+            if(fetcher == null)
+                start();
+            try {
+                next = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+        return next != END;
+    }
+
+    @Override
+    public synchronized DataSet next() {
+        //realign with the wrapped iterator's batches
+        if(drained != null && !drained.isEmpty())
+            return next(batch());
+        if(!hasNext())
+            throw new NoSuchElementException();
+        Future<DataSet> ret = next;
+        next = null;
+        return get(ret);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops fetching and the pre processor threads.
+     * Iterating again (after a {@link #reset()}) restarts them
+     */
+    public synchronized void shutdown() {
+        stop();
+        if(preProcessorPool != null) {
+            preProcessorPool.shutdown();
+            preProcessorPool = null;
+        }
+    }
+
+    /* the data set of a future from the queue, rethrowing the exception it was fetched with */
+    private DataSet get(Future<DataSet> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            //no more data sets until reset
+            stop();
+            next = END;
+            //the exception thrown by the wrapped iterator or pre processor, with its own stack trace
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if(cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /* stops fetching, moving the examples fetched ahead to drained in order */
+    private void drain() {
+        if(drained == null)
+            drained = new LinkedList<>();
+        stopFetcher(false);
+        List<Future<DataSet>> ahead = new ArrayList<>();
+        if(next != null)
+            ahead.add(next);
+        if(queue != null)
+            queue.drainTo(ahead);
+        if(unqueued != null)
+            ahead.add(unqueued);
+        next = null;
+        unqueued = null;
+
+        for(Future<DataSet> f : ahead) {
+            if(f == END)
+                break;
+            drained.addAll(get(f).asList());
+        }
+    }
+
+    private void start() {
+        if(preProcessorThreads > 0 && preProcessorPool == null)
+            preProcessorPool = Executors.newFixedThreadPool(preProcessorThreads,new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r,"AsyncDataSetIterator-preprocessor");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+        stopped = false;
+        queue = new ArrayBlockingQueue<>(queueSize);
+        fetcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                fetch();
+            }
+        },"AsyncDataSetIterator");
+        fetcher.setDaemon(true);
+        fetcher.start();
+    }
+
+    private void stop() {
+        stopFetcher(true);
+        if(queue != null) {
+            for(Future<DataSet> f : queue)
+                f.cancel(false);
+            queue.clear();
+        }
+        next = null;
+        unqueued = null;
+    }
+
+    /* waits for the fetcher to stop, discarding the queue so it doesn't block on it if asked to */
+    private void stopFetcher(boolean discard) {
+        if(fetcher != null) {
+            stopped = true;
+            //the fetcher may be blocked on a full queue, which it gives up on once stopped
+            while(fetcher.isAlive()) {
+                if(discard)
+                    queue.clear();
+                try {
+                    fetcher.join(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+            }
+            fetcher = null;
+        }
+    }
+
+    private void fetch() {
+        try {
+            while(!stopped && iter.hasNext()) {
+                DataSet data = iter.next();
+                Future<DataSet> f = preProcess(data);
+                if(!put(f)) {
+                    //kept for a drain, a stop discards it
+                    unqueued = f;
+                    return;
+                }
+            }
+        } catch (final Throwable t) {
+            log.warn("Exception fetching the next data set",t);
+            put(failed(t));
+        }
+        put(END);
+    }
+
+    private Future<DataSet> preProcess(final DataSet data) {
+        final DataSetPreProcessor preProcessor = this.preProcessor;
+        FutureTask<DataSet> ret = new FutureTask<>(new Callable<DataSet>() {
+            @Override
+            public DataSet call() {
+                if(preProcessor != null)
+                    preProcessor.preProcess(data);
+                return data;
+            }
+        });
+        if(preProcessor != null && preProcessorPool != null)
+            preProcessorPool.execute(ret);
+        else
+            ret.run();
+        return ret;
+    }
+
+    private Future<DataSet> failed(final Throwable t) {
+        FutureTask<DataSet> ret = new FutureTask<>(new Callable<DataSet>() {
+            @Override
+            public DataSet call() throws Exception {
+                if(t instanceof Exception)
+                    throw (Exception) t;
+                throw (Error) t;
+            }
+        });
+        ret.run();
+        return ret;
+    }
+
+    //blocks while the queue is full, false if fetching was stopped in the mean time
+    private boolean put(Future<DataSet> f) {
+        try {
+            while(!stopped) {
+                if(queue.offer(f,100,TimeUnit.MILLISECONDS))
+                    return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+}
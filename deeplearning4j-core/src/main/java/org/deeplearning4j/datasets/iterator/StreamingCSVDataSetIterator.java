@@ -0,0 +1,70 @@
+package org.deeplearning4j.datasets.iterator;
+
+import org.deeplearning4j.datasets.fetchers.StreamingCSVDataFetcher;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * StreamingCSVDataSetIterator
+ * CSV reader for dataset files larger than memory,
+ * see {@link StreamingCSVDataFetcher}
+ * @author Adam Gibson
+ */
+public class StreamingCSVDataSetIterator extends BaseDatasetIterator implements Closeable {
+
+    /**
+     *
+     * @param batch the mini batch size
+     * @param numExamples the number of examples, -1 for all of them
+     * @param f the file to read from
+     * @param labelColumn the index (0 based) of the label
+     * @param skipLines the number of lines to skip
+     * @throws IOException
+     */
+    public StreamingCSVDataSetIterator(int batch, int numExamples,File f,int labelColumn,int skipLines) throws IOException {
+        super(batch, numExamples, new StreamingCSVDataFetcher(f,labelColumn,skipLines));
+    }
+
+    /**
+     *
+     * @param batch the mini batch size
+     * @param numExamples the number of examples, -1 for all of them
+     * @param f the file to read from
+     * @param labelColumn the index (0 based) of the label
+     * @param skipLines the number of lines to skip
+     * @param separator the column separator, such as ',' or '\t'
+     * @throws IOException
+     */
+    public StreamingCSVDataSetIterator(int batch, int numExamples,File f,int labelColumn,int skipLines,char separator) throws IOException {
+        super(batch, numExamples, new StreamingCSVDataFetcher(f,labelColumn,skipLines,separator));
+    }
+
+    /**
+     *
+     * @param batch the mini batch size
+     * @param numExamples the number of examples, -1 for all of them
+     * @param f the file to read from
+     * @param labelColumn the index (0 based) of the label
+     * @param skipLines the number of lines to skip
+     * @param separator the column separator, such as ',' or '\t'
+     * @param labels the labels in the order of their one hot encoding,
+     *               saving a first pass over the file to find them
+     * @param numThreads the number of threads parsing each batch
+     * @throws IOException
+     */
+    public StreamingCSVDataSetIterator(int batch, int numExamples,File f,int labelColumn,int skipLines,char separator,List<String> labels,int numThreads) throws IOException {
+        super(batch, numExamples, new StreamingCSVDataFetcher(f,labelColumn,skipLines,separator,labels,numThreads));
+    }
+
+    /**
+     * Closes the file and stops the parsing threads
+     */
+    @Override
+    public void close() {
+        ((StreamingCSVDataFetcher) fetcher).close();
+    }
+
+}
@@ -0,0 +1,146 @@
+package org.deeplearning4j.datasets.iterator.impl;
+
+import org.deeplearning4j.datasets.binary.BinaryDataSetFile;
+import org.deeplearning4j.datasets.iterator.DataSetIterator;
+import org.deeplearning4j.datasets.iterator.DataSetPreProcessor;
+import org.nd4j.linalg.dataset.DataSet;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over a data set in the binary data set format,
+ * see {@link org.deeplearning4j.datasets.binary.BinaryDataSetWriter}
+ * for converting any other iterator.
+ * Each batch is read straight from the memory mapped file,
+ * which stays open until {@link #close()}.
+ * @author Adam Gibson
+ */
+public class BinaryDataSetIterator implements DataSetIterator,Closeable {
+
+    private static final long serialVersionUID = 2830941564628403162L;
+    private File path;
+    private transient BinaryDataSetFile file;
+    private int batch;
+    private int cursor = 0;
+    private DataSetPreProcessor preProcessor;
+
+    /**
+     * @param path the file written by {@link org.deeplearning4j.datasets.binary.BinaryDataSetWriter}
+     * @param batch the mini batch size
+     * @throws IOException
+     */
+    public BinaryDataSetIterator(File path,int batch) throws IOException {
+        this.path = path;
+        this.batch = batch;
+        file = new BinaryDataSetFile(path);
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        return cursor < file().numExamples();
+    }
+
+    @Override
+    public synchronized DataSet next() {
+        return next(batch);
+    }
+
+    @Override
+    public synchronized DataSet next(int num) {
+        if(!hasNext())
+            throw new NoSuchElementException();
+        int n = Math.min(num,file().numExamples() - cursor);
+        DataSet d;
+        try {
+            d = file().get(cursor,n);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        cursor += n;
+        if(preProcessor != null)
+            preProcessor.preProcess(d);
+        return d;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int totalExamples() {
+        return file().numExamples();
+    }
+
+    @Override
+    public int inputColumns() {
+        return file().featureColumns();
+    }
+
+    @Override
+    public int totalOutcomes() {
+        return file().labelColumns();
+    }
+
+    @Override
+    public synchronized void reset() {
+        cursor = 0;
+    }
+
+    @Override
+    public int batch() {
+        return batch;
+    }
+
+    @Override
+    public synchronized int cursor() {
+        return cursor;
+    }
+
+    @Override
+    public int numExamples() {
+        return file().numExamples();
+    }
+
+    /**
+     * Set a pre processor
+     *
+     * @param preProcessor a pre processor to set
+     */
+    @Override
+    public void setPreProcessor(DataSetPreProcessor preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    /**
+     * Closes the underlying file. Using the iterator after closing it opens the file again
+     * @throws IOException
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if(file != null) {
+            file.close();
+            file = null;
+        }
+    }
+
+    /**
+     * The underlying file, for random access to any batch
+     * @return the memory mapped data set
+     */
+    public synchronized BinaryDataSetFile file() {
+        //reopened after deserialization or closing
+        if(file == null) {
+            try {
+                file = new BinaryDataSetFile(path);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return file;
+    }
+
+}
@@ -19,4 +19,12 @@ public class LFWDataSetIterator extends BaseDatasetIterator {
 		super(batch, numExamples,new LFWDataFetcher(imageWidth,imageHeight));
 	}
 
+	/**
+	 * @param useCache whether to read the images from the binary cache of the dataset,
+	 *                 which is written the first time
+	 */
+	public LFWDataSetIterator(int batch,int numExamples,int imageHeight,int imageWidth,boolean useCache) {
+		super(batch, numExamples,new LFWDataFetcher(imageWidth,imageHeight,useCache));
+	}
+
 }
@@ -0,0 +1,290 @@
+package org.deeplearning4j.datasets.mnist;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A file in the IDX format used by MNIST: a tensor of unsigned bytes, bytes,
+ * shorts, ints, floats or doubles. The first dimension indexes the entries
+ * (images or labels), the remaining ones are the shape of an entry.
+ *
+ * The file is memory mapped, and a range of entries is read in to a matrix
+ * (one entry per row) or tensor with one pass over the mapped bytes,
+ * optionally scaling or binarizing the values on the way.
+ *
+ * Usage:
+ * <pre>
+ *     IdxFile images = new IdxFile("train-images-idx3-ubyte");
+ *     INDArray batch = images.readBinarized(0,100,30);
+ * </pre>
+ *
+ * @author Adam Gibson
+ */
+public class IdxFile implements Closeable {
+
+    public final static byte UBYTE = 0x08;
+    public final static byte BYTE = 0x09;
+    public final static byte SHORT = 0x0B;
+    public final static byte INT = 0x0C;
+    public final static byte FLOAT = 0x0D;
+    public final static byte DOUBLE = 0x0E;
+
+    private RandomAccessFile file;
+    private byte dataType;
+    private int[] shape;
+    private int entryLength = 1;
+    private int elementSize;
+    private long dataOffset;
+    //the whole data section when it can be mapped at once
+    private ByteBuffer data;
+
+    /**
+     * Opens and memory maps an IDX file
+     * @param path the path of the file
+     * @throws IOException if the file is not in the IDX format or can't be read
+     */
+    public IdxFile(String path) throws IOException {
+        this(new File(path));
+    }
+
+    /**
+     * Opens and memory maps an IDX file
+     * @param file the file
+     * @throws IOException if the file is not in the IDX format or can't be read
+     */
+    public IdxFile(File file) throws IOException {
+        this.file = new RandomAccessFile(file,"r");
+        try {
+            if(this.file.readUnsignedByte() != 0 || this.file.readUnsignedByte() != 0)
+                throw new IOException(file + " is not an IDX file");
+            dataType = this.file.readByte();
+            elementSize = elementSize(dataType);
+            int rank = this.file.readUnsignedByte();
+            if(rank < 1)
+                throw new IOException(file + " has no dimensions");
+            shape = new int[rank];
+            for(int i = 0; i < rank; i++) {
+                shape[i] = this.file.readInt();
+                if(i > 0)
+                    entryLength *= shape[i];
+            }
+            dataOffset = 4 + 4 * rank;
+            long dataLength = (long) shape[0] * entryLength * elementSize;
+            if(this.file.length() < dataOffset + dataLength)
+                throw new IOException(file + " is truncated: expected " + dataLength + " bytes of data");
+            if(dataLength <= Integer.MAX_VALUE)
+                data = map(dataOffset,dataLength);
+        } catch (IOException e) {
+            this.file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The type of the elements, one of {@link #UBYTE}, {@link #BYTE}, {@link #SHORT},
+     * {@link #INT}, {@link #FLOAT} or {@link #DOUBLE}
+     * @return the element type
+     */
+    public byte getDataType() {
+        return dataType;
+    }
+
+    /**
+     * The shape of the tensor stored in the file
+     * @return the shape, starting with the number of entries
+     */
+    public int[] getShape() {
+        return Arrays.copyOf(shape,shape.length);
+    }
+
+    /**
+     * The number of entries
+     * @return the size of the first dimension
+     */
+    public int getCount() {
+        return shape[0];
+    }
+
+    /**
+     * The number of elements of each entry, such as the pixels of an image
+     * @return the number of elements per entry
+     */
+    public int getEntryLength() {
+        return entryLength;
+    }
+
+    /**
+     * Reads a range of entries as the rows of a matrix
+     * @param from the index of the first entry
+     * @param num the number of entries
+     * @return a num x entry length matrix
+     * @throws IOException
+     */
+    public INDArray read(int from,int num) throws IOException {
+        return read(from,num,1,Double.NaN);
+    }
+
+    /**
+     * Reads a range of entries as the rows of a matrix, multiplying every value by the scale
+     * (for example 1 / 255 to normalize pixels)
+     * @param from the index of the first entry
+     * @param num the number of entries
+     * @param scale the factor to multiply the values by
+     * @return a num x entry length matrix
+     * @throws IOException
+     */
+    public INDArray read(int from,int num,double scale) throws IOException {
+        return read(from,num,scale,Double.NaN);
+    }
+
+    /**
+     * Reads a range of entries as the rows of a matrix of ones where the values
+     * are greater than the threshold and zeros elsewhere
+     * @param from the index of the first entry
+     * @param num the number of entries
+     * @param threshold the largest value mapped to zero
+     * @return a num x entry length binary matrix
+     * @throws IOException
+     */
+    public INDArray readBinarized(int from,int num,double threshold) throws IOException {
+        return read(from,num,1,threshold);
+    }
+
+    /**
+     * Reads a range of entries as a tensor of their own shape
+     * @param from the index of the first entry
+     * @param num the number of entries
+     * @return a tensor of shape num followed by the shape of an entry
+     * @throws IOException
+     */
+    public INDArray readTensor(int from,int num) throws IOException {
+        ByteBuffer buf = region(from,num);
+        int[] shape = getShape();
+        shape[0] = num;
+        //the file is row major, arrays are column major
+        int rank = shape.length;
+        int[] stride = new int[rank];
+        stride[0] = 1;
+        for(int d = 1; d < rank; d++)
+            stride[d] = stride[d - 1] * shape[d - 1];
+
+        double[] ret = new double[num * entryLength];
+        int[] coords = new int[rank];
+        int index = 0;
+        for(int i = 0; i < ret.length; i++) {
+            ret[index] = value(buf,i);
+            for(int d = rank - 1; d >= 0; d--) {
+                coords[d]++;
+                index += stride[d];
+                if(coords[d] < shape[d])
+                    break;
+                index -= stride[d] * shape[d];
+                coords[d] = 0;
+            }
+        }
+        return Nd4j.create(ret,shape);
+    }
+
+    /**
+     * Reads the values of a range of entries as ints, such as labels
+     * @param from the index of the first entry
+     * @param num the number of entries
+     * @return the num x entry length values in the order of the file
+     * @throws IOException
+     */
+    public int[] readInts(int from,int num) throws IOException {
+        ByteBuffer buf = region(from,num);
+        int[] ret = new int[num * entryLength];
+        for(int i = 0; i < ret.length; i++)
+            ret[i] = (int) value(buf,i);
+        return ret;
+    }
+
+    @Override
+    public void close() throws IOException {
+        data = null;
+        file.close();
+    }
+
+    //one pass over the mapped entries, writing the column major matrix directly
+    private INDArray read(int from,int num,double scale,double threshold) throws IOException {
+        ByteBuffer buf = region(from,num);
+        boolean binarize = !Double.isNaN(threshold);
+        double[] ret = new double[num * entryLength];
+        int k = 0;
+        for(int i = 0; i < num; i++) {
+            for(int j = 0; j < entryLength; j++,k++) {
+                double value = value(buf,k);
+                if(binarize)
+                    ret[j * num + i] = value > threshold ? 1 : 0;
+                else
+                    ret[j * num + i] = value * scale;
+            }
+        }
+        return Nd4j.create(ret,new int[]{num,entryLength});
+    }
+
+    //the bytes of the given entries, indexed from 0
+    private ByteBuffer region(int from,int num) throws IOException {
+        if(from < 0 || num < 0 || (long) from + num > shape[0])
+            throw new IllegalArgumentException("Entries " + from + " to " + ((long) from + num) + " are out of range 0 to " + shape[0]);
+        long start = (long) from * entryLength * elementSize;
+        long length = (long) num * entryLength * elementSize;
+        if(length > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Unable to read " + num + " entries at once: " + length + " bytes");
+        if(data == null)
+            return map(dataOffset + start,length);
+        ByteBuffer ret = data.duplicate();
+        ret.position((int) start);
+        ret.limit((int) (start + length));
+        return ret.slice().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    private ByteBuffer map(long position,long length) throws IOException {
+        return file.getChannel().map(FileChannel.MapMode.READ_ONLY,position,length).order(ByteOrder.BIG_ENDIAN);
+    }
+
+    private double value(ByteBuffer buf,int i) {
+        switch(dataType) {
+            case UBYTE:
+                return buf.get(i) & 0xFF;
+            case BYTE:
+                return buf.get(i);
+            case SHORT:
+                return buf.getShort(i * 2);
+            case INT:
+                return buf.getInt(i * 4);
+            case FLOAT:
+                return buf.getFloat(i * 4);
+            default:
+                return buf.getDouble(i * 8);
+        }
+    }
+
+    private static int elementSize(byte dataType) throws IOException {
+        switch(dataType) {
+            case UBYTE:
+            case BYTE:
+                return 1;
+            case SHORT:
+                return 2;
+            case INT:
+            case FLOAT:
+                return 4;
+            case DOUBLE:
+                return 8;
+            default:
+                throw new IOException("Unknown IDX data type " + dataType);
+        }
+    }
+
+}
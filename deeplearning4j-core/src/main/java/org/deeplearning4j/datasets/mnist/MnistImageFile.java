@@ -41,9 +41,13 @@ public class MnistImageFile extends MnistDbFile {
      */
     public int[][] readImage() throws IOException {
         int[][] dat = new int[getRows()][getCols()];
+        //one read for the whole image rather than one per pixel
+        byte[] pixels = new byte[getEntryLength()];
+        readFully(pixels);
+        int k = 0;
         for (int i = 0; i < getCols(); i++) {
             for (int j = 0; j < getRows(); j++) {
-                dat[i][j] = readUnsignedByte();
+                dat[i][j] = pixels[k++] & 0xFF;
             }
         }
         return dat;
@@ -16,6 +16,9 @@ import org.deeplearning4j.models.featuredetectors.rbm.RBM;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -34,6 +37,10 @@ public class DBN extends BaseMultiLayerNetwork {
     private static final long serialVersionUID = -9068772752220902983L;
     private static Logger log = LoggerFactory.getLogger(DBN.class);
     private boolean useRBMPropUpAsActivations = true;
+    //materialize the output of each pretrained layer once rather than recomputing it for every later layer
+    private boolean cacheLayerActivations = false;
+    //bytes of cached activations to keep in memory before spilling to disk
+    private long maxCachedActivationBytes = 512L * 1024 * 1024;
 
     public DBN() {}
 
@@ -63,7 +70,7 @@ public class DBN extends BaseMultiLayerNetwork {
     public void pretrain(DataSetIterator iter, Object[] otherParams) {
         int passes = otherParams.length > 3 ? (Integer) otherParams[3] : 1;
         for(int i = 0; i < passes; i++)
-            pretrain(input, defaultConfiguration.getK(),defaultConfiguration.getLr(),defaultConfiguration.getNumIterations());
+            pretrain(iter, defaultConfiguration.getK(),defaultConfiguration.getLr(),defaultConfiguration.getNumIterations());
 
 
     }
@@ -86,7 +93,10 @@ public class DBN extends BaseMultiLayerNetwork {
      * @param epochs the number of epochs to iterate
      */
     public void pretrain(DataSetIterator iter,int k,float learningRate,int epochs) {
-
+        if(cacheLayerActivations) {
+            pretrainCached(iter,k,learningRate,epochs);
+            return;
+        }
 
         INDArray layerInput;
 
@@ -123,7 +133,7 @@ public class DBN extends BaseMultiLayerNetwork {
                 while (iter.hasNext()) {
                     DataSet next = iter.next();
                     layerInput = next.getFeatureMatrix();
-                    for(int j = 1; j <= i; j++)
+                    for(int j = 0; j < i; j++)
                         layerInput = activationFromPrevLayer(j,layerInput);
 
 
@@ -152,6 +162,135 @@ public class DBN extends BaseMultiLayerNetwork {
     }
 
 
+    /**
+     * Greedy layer wise pretraining where the output of each trained layer
+     * is computed once and cached (in memory or spilled to disk)
+     * as the input of the next layer, rather than running every batch
+     * through all of the earlier layers again.
+     * @param iter the input to iterate on
+     * @param k the k to use for running the RBM contrastive divergence.
+     * @param learningRate the learning rate to use
+     * @param epochs the number of epochs to iterate
+     */
+    protected void pretrainCached(final DataSetIterator iter,int k,float learningRate,int epochs) {
+        Iterable<INDArray> features = new Iterable<INDArray>() {
+            @Override
+            public Iterator<INDArray> iterator() {
+                iter.reset();
+                return new Iterator<INDArray>() {
+                    @Override
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+
+                    @Override
+                    public INDArray next() {
+                        return iter.next().getFeatureMatrix();
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+
+        ActivationCache cache = null;
+        try {
+            for(int i = 0; i < getnLayers(); i++) {
+                Iterable<INDArray> layerInputs = i == 0 ? features : cache;
+                Iterator<INDArray> inputs = layerInputs.iterator();
+                try {
+                    while(inputs.hasNext()) {
+                        INDArray layerInput = inputs.next();
+                        if(i == 0) {
+                            if(this.getInput() == null || this.getNeuralNets() == null || this.getNeuralNets()[0] == null) {
+                                setInput(layerInput);
+                                initializeLayers(layerInput);
+                            }
+                            else
+                                setInput(layerInput);
+                        }
+
+                        log.info("Training on layer " + (i + 1));
+                        pretrainLayer(i,layerInput,k,learningRate,epochs);
+                    }
+                }
+                finally {
+                    close(inputs);
+                }
+
+                if(i < getnLayers() - 1) {
+                    ActivationCache next = new ActivationCache(maxCachedActivationBytes);
+                    inputs = layerInputs.iterator();
+                    try {
+                        while(inputs.hasNext())
+                            next.add(activationFromPrevLayer(i,inputs.next()));
+                    }
+                    catch(RuntimeException e) {
+                        next.close();
+                        throw e;
+                    }
+                    finally {
+                        close(inputs);
+                    }
+                    if(cache != null)
+                        cache.close();
+                    cache = next;
+                }
+            }
+        }
+        finally {
+            if(cache != null)
+                cache.close();
+        }
+
+        iter.reset();
+    }
+
+    /* closes an iterator over spilled activations, which holds the spill file open */
+    private void close(Iterator<INDArray> inputs) {
+        if(inputs instanceof Closeable) {
+            try {
+                ((Closeable) inputs).close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /* trains the given layer on one batch of its input */
+    private void pretrainLayer(int i,INDArray layerInput,int k,float learningRate,int epochs) {
+        //override learning rate where present
+        float realLearningRate = layerWiseConfigurations.get(i).getLr();
+        if(isForceNumEpochs()) {
+            for(int epoch = 0; epoch < epochs; epoch++) {
+                log.info("Error on epoch " + epoch + " for layer " + (i + 1) + " is " + getNeuralNets()[i].score());
+                getNeuralNets()[i].iterate(layerInput, new Object[]{k, learningRate});
+                getNeuralNets()[i].iterationDone(epoch);
+            }
+        }
+        else
+            getNeuralNets()[i].fit(layerInput, new Object[]{k, realLearningRate, epochs});
+    }
+
+    public boolean isCacheLayerActivations() {
+        return cacheLayerActivations;
+    }
+
+    public void setCacheLayerActivations(boolean cacheLayerActivations) {
+        this.cacheLayerActivations = cacheLayerActivations;
+    }
+
+    public long getMaxCachedActivationBytes() {
+        return maxCachedActivationBytes;
+    }
+
+    public void setMaxCachedActivationBytes(long maxCachedActivationBytes) {
+        this.maxCachedActivationBytes = maxCachedActivationBytes;
+    }
+
     /**
      * This unsupervised learning method runs
      * contrastive divergence on each RBM layer in the network.
@@ -246,6 +385,8 @@ public class DBN extends BaseMultiLayerNetwork {
 
     public static class Builder extends BaseMultiLayerNetwork.Builder<DBN> {
         private boolean useRBMPropUpAsActivation = false;
+        private boolean cacheLayerActivations = false;
+        private long maxCachedActivationBytes = 512L * 1024 * 1024;
 
         public Builder() {
             this.clazz = DBN.class;
@@ -311,6 +452,28 @@ public class DBN extends BaseMultiLayerNetwork {
             return this;
         }
 
+        /**
+         * Pretrain each layer on the cached output of the previous layer
+         * rather than recomputing it from the input for every batch
+         * @param cacheLayerActivations whether to cache layer activations during pretraining
+         * @return builder pattern
+         */
+        public Builder cacheLayerActivations(boolean cacheLayerActivations) {
+            this.cacheLayerActivations = cacheLayerActivations;
+            return this;
+        }
+
+        /**
+         * The number of bytes of cached activations to keep in memory,
+         * beyond which they are spilled to a local file
+         * @param maxCachedActivationBytes the maximum number of bytes to keep in memory
+         * @return builder pattern
+         */
+        public Builder maxCachedActivationBytes(long maxCachedActivationBytes) {
+            this.maxCachedActivationBytes = maxCachedActivationBytes;
+            return this;
+        }
+
         /**
          * Disables back propagation
          * @return
@@ -380,6 +543,8 @@ public class DBN extends BaseMultiLayerNetwork {
         public DBN build() {
             DBN ret = super.build();
             ret.useRBMPropUpAsActivations = useRBMPropUpAsActivation;
+            ret.cacheLayerActivations = cacheLayerActivations;
+            ret.maxCachedActivationBytes = maxCachedActivationBytes;
             ret.initializeLayers(Nd4j.zeros(1, ret.defaultConfiguration.getnIn()));
             return ret;
         }
@@ -310,6 +310,29 @@ public class SemanticHashing extends BaseMultiLayerNetwork {
         this.encoder = encoder;
     }
 
+    /**
+     * The activations of the code layer (the end of the encoder)
+     * for the given input
+     * @param input the input to encode
+     * @return the codes, one row per example
+     */
+    public INDArray encode(INDArray input) {
+        int codeLayer = (getNeuralNets().length - 1) / 2;
+        return feedForward(input).get(codeLayer + 1);
+    }
+
+    /**
+     * Binary codes for the given input: the code layer
+     * activations thresholded at the given value.
+     * These can be indexed with {@link org.deeplearning4j.clustering.rptree.RPForest.Builder#buildFromCodes(org.nd4j.linalg.api.ndarray.INDArray)}
+     * @param input the input to hash
+     * @param threshold the activation above which a bit is 1
+     * @return the 0/1 codes, one row per example
+     */
+    public INDArray hash(INDArray input,double threshold) {
+        return encode(input).gt(threshold);
+    }
+
 
 
 
@@ -21,6 +21,8 @@ import org.deeplearning4j.plot.NeuralNetPlotter;
 import org.deeplearning4j.optimize.optimizers.rbm.RBMOptimizer;
 import org.deeplearning4j.util.RBMUtil;
 
+import java.util.Arrays;
+
 
 
 
@@ -45,6 +47,13 @@ import org.deeplearning4j.util.RBMUtil;
  *
  * Based on Hinton et al.'s work
  *
+ * Training is contrastive divergence (cd-k) by default. With persistent chains configured
+ * the gibbs chains are not restarted at the input on every update: a fixed number of
+ * fantasy particles is carried across mini batches (persistent contrastive divergence),
+ * optionally sampled with an extra set of quickly decaying fast weights (fast pcd).
+ * See: Tieleman, Training Restricted Boltzmann Machines using Approximations to the Likelihood Gradient
+ * and Tieleman and Hinton, Using Fast Weights to Improve Persistent Contrastive Divergence
+ *
  * Great reference:
  * http://www.iro.umontreal.ca/~lisa/publications2/index.php/publications/show/239
  *
@@ -71,6 +80,10 @@ public  class RBM extends BaseNeuralNetwork {
     private static final long serialVersionUID = 6189188205731511957L;
     protected NeuralNetworkOptimizer optimizer;
     protected INDArray sigma,hiddenSigma;
+    //the hidden states of the fantasy particles for persistent contrastive divergence
+    protected transient INDArray persistentHidden;
+    //fast weights for fast persistent contrastive divergence
+    protected transient INDArray fastW,fastHBias,fastVBias;
 
 
 
@@ -163,9 +176,12 @@ public  class RBM extends BaseNeuralNetwork {
         Pair<INDArray,INDArray> probHidden = sampleHiddenGivenVisible(input);
 
 		/*
-		 * Start the gibbs sampling.
+		 * Start the gibbs sampling: from the input for cd-k
+		 * or from where the fantasy particles were left for pcd
 		 */
-        INDArray chainStart = probHidden.getSecond();
+        boolean persistent = conf.getPersistentChains() > 0;
+        boolean fastWeights = persistent && conf.getFastWeightsLearningRate() > 0;
+        INDArray chainStart = persistent ? persistentChainStart(probHidden.getSecond()) : probHidden.getSecond();
 
 		/*
 		 * Note that at a later date, we can explore alternative methods of 
@@ -191,50 +207,140 @@ public  class RBM extends BaseNeuralNetwork {
 		 * 
 		 */
 
-        for(int i = 0; i < k; i++) {
-
-            //NEGATIVE PHASE
-            if(i == 0)
-                matrices = gibbhVh(chainStart);
-            else
-                matrices = gibbhVh(nhSamples);
+        //the fantasy particles are sampled with the regular weights plus the fast weights
+        INDArray regularW = W,regularHBias = hBias,regularVBias = vBias;
+        if(fastWeights) {
+            initFastWeights();
+            W = W.add(fastW);
+            hBias = hBias.add(fastHBias);
+            vBias = vBias.add(fastVBias);
+        }
 
-            //getFromOrigin the cost updates for sampling in the chain after k iterations
-            nvMeans = matrices.getFirst().getFirst();
-            nvSamples = matrices.getFirst().getSecond();
-            nhMeans = matrices.getSecond().getFirst();
-            nhSamples = matrices.getSecond().getSecond();
+        try {
+            //all of the chains are advanced together: one matrix multiply per step
+            for(int i = 0; i < k; i++) {
+
+                //NEGATIVE PHASE
+                if(i == 0)
+                    matrices = gibbhVh(chainStart);
+                else
+                    matrices = gibbhVh(nhSamples);
+
+                //getFromOrigin the cost updates for sampling in the chain after k iterations
+                nvMeans = matrices.getFirst().getFirst();
+                nvSamples = matrices.getFirst().getSecond();
+                nhMeans = matrices.getSecond().getFirst();
+                nhSamples = matrices.getSecond().getSecond();
+            }
         }
+        finally {
+            W = regularW;
+            hBias = regularHBias;
+            vBias = regularVBias;
+        }
+
+        if(persistent)
+            persistentHidden = nhSamples;
 
 		/*
 		 * Update gradient parameters
 		 */
-        INDArray wGradient = input.transpose().mmul(probHidden.getSecond()).sub(
-                nvSamples.transpose().mmul(nhMeans)
-        );
-
-
-
+        INDArray wGradient;
         INDArray hBiasGradient;
+        INDArray vBiasGradient;
+        if(!persistent) {
+            wGradient = input.transpose().mmul(probHidden.getSecond()).sub(
+                    nvSamples.transpose().mmul(nhMeans)
+            );
+
+            if(conf.getSparsity() != 0)
+                //all hidden units must stay around this number
+                hBiasGradient = probHidden.getSecond().rsubi(conf.getSparsity()).mean(0);
+            else
+                //update rule: the expected values of the hidden input - the negative hidden  means adjusted by the learning rate
+                hBiasGradient = probHidden.getSecond().sub(nhMeans).mean(0);
 
-        if(conf.getSparsity() != 0)
-            //all hidden units must stay around this number
-            hBiasGradient = probHidden.getSecond().rsubi(conf.getSparsity()).mean(0);
-        else
-            //update rule: the expected values of the hidden input - the negative hidden  means adjusted by the learning rate
-            hBiasGradient = probHidden.getSecond().sub(nhMeans).mean(0);
+            //update rule: the expected values of the input - the negative samples adjusted by the learning rate
+            vBiasGradient = input.sub(nvSamples).mean(0);
+        }
 
+        else {
+            //the number of chains differs from the batch size: scale the negative statistics to the batch
+            double scale = input.rows() / (double) nvSamples.rows();
+            wGradient = input.transpose().mmul(probHidden.getSecond()).subi(
+                    nvSamples.transpose().mmul(nhMeans).muli(scale)
+            );
 
+            if(conf.getSparsity() != 0)
+                hBiasGradient = probHidden.getSecond().rsubi(conf.getSparsity()).mean(0);
+            else
+                hBiasGradient = probHidden.getSecond().mean(0).subi(nhMeans.mean(0));
+
+            vBiasGradient = input.mean(0).subi(nvSamples.mean(0));
+        }
 
+        if(fastWeights)
+            updateFastWeights(wGradient.div(input.rows()),vBiasGradient,hBiasGradient);
 
-        //update rule: the expected values of the input - the negative samples adjusted by the learning rate
-        INDArray  vBiasGradient = input.sub(nvSamples).mean(0);
         NeuralNetworkGradient ret = new NeuralNetworkGradient(wGradient, vBiasGradient, hBiasGradient);
 
         updateGradientAccordingToParams(ret, iteration,learningRate);
         return ret;
     }
 
+    /**
+     * The starting hidden states for the persistent chains.
+     * The chains are initialized from the hidden samples of the first mini batch,
+     * cycling through the rows when there are more chains than examples
+     * @param hiddenSamples the hidden samples of the current mini batch
+     * @return the hidden states of the fantasy particles
+     */
+    protected INDArray persistentChainStart(INDArray hiddenSamples) {
+        if(persistentHidden == null || persistentHidden.columns() != hiddenSamples.columns()) {
+            int numChains = conf.getPersistentChains();
+            persistentHidden = Nd4j.create(numChains,hiddenSamples.columns());
+            for(int i = 0; i < numChains; i++)
+                persistentHidden.putRow(i,hiddenSamples.getRow(i % hiddenSamples.rows()));
+        }
+        return persistentHidden;
+    }
+
+    /**
+     * Discards the fantasy particles and fast weights:
+     * the next update starts new persistent chains from its input
+     */
+    public void resetPersistentChains() {
+        persistentHidden = null;
+        fastW = null;
+        fastHBias = null;
+        fastVBias = null;
+    }
+
+    /**
+     * The hidden states of the fantasy particles
+     * @return the persistent hidden states or null if none have been sampled yet
+     */
+    public INDArray getPersistentHidden() {
+        return persistentHidden;
+    }
+
+    private void initFastWeights() {
+        if(fastW == null || !Arrays.equals(fastW.shape(),W.shape())) {
+            fastW = Nd4j.zeros(W.rows(),W.columns());
+            fastHBias = Nd4j.zeros(hBias.rows(),hBias.columns());
+            fastVBias = Nd4j.zeros(vBias.rows(),vBias.columns());
+        }
+    }
+
+    /* fast weights: decay then step along the (unscaled, per example) gradient with the fast learning rate */
+    private void updateFastWeights(INDArray wGradient,INDArray vBiasGradient,INDArray hBiasGradient) {
+        double lr = conf.getFastWeightsLearningRate();
+        double decay = conf.getFastWeightsDecay();
+        fastW.muli(decay).addi(wGradient.mul(lr));
+        fastHBias.muli(decay).addi(hBiasGradient.mul(lr));
+        fastVBias.muli(decay).addi(vBiasGradient.mul(lr));
+    }
+
     /**
      * Fit the model to the given data
      *
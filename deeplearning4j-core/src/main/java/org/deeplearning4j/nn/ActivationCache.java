@@ -0,0 +1,223 @@
+package org.deeplearning4j.nn;
+
+import org.deeplearning4j.util.FlatArrayUtil;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Materialized mini batches of a layer's activations,
+ * used as the input of the next layer during greedy layer wise pretraining
+ * so the earlier layers only have to be run once.
+ *
+ * Batches are kept in memory until they exceed the given number of bytes,
+ * after which all of them are spilled to a local binary file of
+ * (rows, columns, column major floats) records and streamed back on iteration.
+ * Spilled activations are stored in single precision.
+ *
+ * @author Adam Gibson
+ */
+public class ActivationCache implements Iterable<INDArray>,Closeable {
+
+    private long maxBytesInMemory;
+    private File directory;
+    private List<INDArray> batches = new ArrayList<>();
+    private long bytesInMemory = 0;
+    private File spillFile;
+    private DataOutputStream spill;
+    private int numBatches = 0;
+
+    /**
+     * @param maxBytesInMemory the number of bytes of activations to keep in memory
+     *                         before spilling to disk
+     * @param directory the directory to spill to, null for the default temp directory
+     */
+    public ActivationCache(long maxBytesInMemory,File directory) {
+        this.maxBytesInMemory = maxBytesInMemory;
+        this.directory = directory;
+    }
+
+    /**
+     * @param maxBytesInMemory the number of bytes of activations to keep in memory
+     *                         before spilling to disk
+     */
+    public ActivationCache(long maxBytesInMemory) {
+        this(maxBytesInMemory,null);
+    }
+
+    /**
+     * Adds a batch of activations
+     * @param batch the activations, one example per row
+     */
+    public void add(INDArray batch) {
+        long bytes = (long) batch.length() * 8;
+        if(spill == null && bytesInMemory + bytes > maxBytesInMemory)
+            spillToDisk();
+
+        try {
+            if(spill != null)
+                write(batch);
+            else {
+                batches.add(batch);
+                bytesInMemory += bytes;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        numBatches++;
+    }
+
+    private void spillToDisk() {
+        try {
+            spillFile = File.createTempFile("activations",".bin",directory);
+            spillFile.deleteOnExit();
+            spill = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile),1 << 16));
+            for(INDArray batch : batches)
+                write(batch);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        batches.clear();
+        bytesInMemory = 0;
+    }
+
+    private void write(INDArray batch) throws IOException {
+        int rows = batch.rows();
+        int columns = batch.columns();
+        spill.writeInt(rows);
+        spill.writeInt(columns);
+        if(FlatArrayUtil.isContiguous(batch)) {
+            double[] data = batch.data().asDouble();
+            int end = batch.offset() + batch.length();
+            for(int i = batch.offset(); i < end; i++)
+                spill.writeFloat((float) data[i]);
+        }
+        else {
+            for(int j = 0; j < columns; j++)
+                for(int i = 0; i < rows; i++)
+                    spill.writeFloat((float) batch.getDouble(i,j));
+        }
+    }
+
+    /**
+     * The number of batches added
+     * @return the number of batches
+     */
+    public int size() {
+        return numBatches;
+    }
+
+    /**
+     * Whether the batches were spilled to disk
+     * @return true if the batches are read back from a file
+     */
+    public boolean isSpilled() {
+        return spill != null;
+    }
+
+    /**
+     * Iterates over the batches in the order they were added.
+     * Spilled batches are read back one at a time; the iterator is then {@link Closeable}
+     * and holds the spill file open until it is exhausted or closed.
+     * @return an iterator over the batches
+     */
+    @Override
+    public Iterator<INDArray> iterator() {
+        if(spill == null)
+            return batches.iterator();
+
+        try {
+            spill.flush();
+            return new SpillIterator(new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile),1 << 16)),numBatches);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Releases the batches and deletes the spill file if any
+     */
+    @Override
+    public void close() {
+        batches.clear();
+        bytesInMemory = 0;
+        if(spill != null) {
+            try {
+                spill.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            spill = null;
+            spillFile.delete();
+        }
+    }
+
+    private static class SpillIterator implements Iterator<INDArray>,Closeable {
+        private DataInputStream in;
+        private int remaining;
+
+        private SpillIterator(DataInputStream in,int remaining) {
+            this.in = in;
+            this.remaining = remaining;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public INDArray next() {
+            if(remaining <= 0)
+                throw new NoSuchElementException();
+            try {
+                int rows = in.readInt();
+                int columns = in.readInt();
+                double[] data = new double[rows * columns];
+                for(int i = 0; i < data.length; i++)
+                    data[i] = in.readFloat();
+                if(--remaining == 0)
+                    close();
+                return Nd4j.create(data,new int[]{rows,columns});
+            } catch (EOFException e) {
+                close();
+                throw new IllegalStateException("Activation cache file ended early",e);
+            } catch (IOException e) {
+                close();
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            remaining = 0;
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -1,24 +1,420 @@
 package org.deeplearning4j.nn;
 
-import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.datasets.iterator.DataSetIterator;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.inference.InferenceNetwork;
+import org.deeplearning4j.nn.layers.ConvolutionDownSampleLayer;
+import org.deeplearning4j.nn.layers.OutputLayer;
+import org.deeplearning4j.nn.learning.AdaGradUpdater;
+import org.deeplearning4j.nn.learning.GradientUpdater;
+import org.deeplearning4j.nn.learning.GradientUpdaters;
+import org.deeplearning4j.nn.learning.MomentumUpdater;
+import org.deeplearning4j.util.FlatArrayUtil;
+import org.deeplearning4j.util.ModelFormat;
+import org.deeplearning4j.util.ModelReader;
+import org.deeplearning4j.util.ModelWriter;
+import org.nd4j.linalg.api.activation.Activations;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.*;
 
 /**
- * Created by agibsonccc on 9/8/14.
+ * A convolutional network: convolution layers (each a convolution, pooling and activation)
+ * followed by a soft max output layer, trained with back propagation.
+ *
+ * The layers are derived from the configuration: the input is numInFeatureMaps maps of featureMapSize,
+ * one example per row (see {@link org.deeplearning4j.util.ConvolutionUtil} for the layout);
+ * every convolution layer uses filterSize filters, stride x stride pooling windows and the pooling type,
+ * the number of filters of each layer is given to the builder (numFeatureMaps by default)
+ * and nOut is the number of labels.
+ * Each layer's input maps are the previous layer's pooled output maps.
+ *
+ * The output layer minimizes the multi class cross entropy. The gradient is computed for the
+ * whole mini batch in one pass and applied with the configured {@link NeuralNetConfiguration.Updater};
+ * {@link NeuralNetConfiguration.Updater#DEFAULT} is adagrad (if useAdaGrad) or momentum.
+ *
+ * @author Adam Gibson
  */
-public abstract class BaseConvolutionalMultiLayerNetwork {
+public class BaseConvolutionalMultiLayerNetwork {
+
+    private static Logger log = LoggerFactory.getLogger(BaseConvolutionalMultiLayerNetwork.class);
+
     private NeuralNetConfiguration conf;
-    private Layer[] layers;
+    private ConvolutionDownSampleLayer[] layers;
+    private OutputLayer outputLayer;
     private List<NeuralNetConfiguration> layerWiseConfigurations;
     private INDArray input;
+    //one per weight matrix and bias, in parameter order
+    private GradientUpdater[] updaters;
+    private int iteration = 0;
+
+    protected BaseConvolutionalMultiLayerNetwork(NeuralNetConfiguration conf,int[] featureMaps) {
+        this.conf = conf;
+        if(featureMaps == null)
+            featureMaps = new int[]{conf.getNumFeatureMaps()};
+        init(featureMaps);
+    }
+
+    /**
+     * Creates the layers and their configurations
+     * @param featureMaps the number of filters of each convolution layer
+     */
+    protected void init(int[] featureMaps) {
+        if(featureMaps.length < 1)
+            throw new IllegalArgumentException("At least one convolution layer is required");
+        if(conf.getnOut() < 1)
+            throw new IllegalArgumentException("nOut must be the number of labels");
+
+        layerWiseConfigurations = new ArrayList<>();
+        layers = new ConvolutionDownSampleLayer[featureMaps.length];
+        int maps = conf.getNumInFeatureMaps();
+        int[] mapSize = conf.getFeatureMapSize();
+        for(int i = 0; i < featureMaps.length; i++) {
+            int[] filterSize = conf.getFilterSize();
+            int[] stride = conf.getStride();
+            if(mapSize[0] < filterSize[0] || mapSize[1] < filterSize[1])
+                throw new IllegalArgumentException("Layer " + i + " maps of " + mapSize[0] + " x " + mapSize[1] + " are smaller than the filters");
+            if((mapSize[0] - filterSize[0] + 1) < stride[0] || (mapSize[1] - filterSize[1] + 1) < stride[1])
+                throw new IllegalArgumentException("Layer " + i + " convolved maps are smaller than the pooling windows");
+
+            NeuralNetConfiguration layerConf = conf.clone();
+            layerConf.setNumInFeatureMaps(maps);
+            layerConf.setFeatureMapSize(mapSize);
+            layerConf.setNumFeatureMaps(featureMaps[i]);
+            layerConf.setnIn(maps * filterSize[0] * filterSize[1]);
+            layerConf.setnOut(featureMaps[i]);
+            layers[i] = new ConvolutionDownSampleLayer(layerConf);
+            layerWiseConfigurations.add(layerConf);
+            maps = featureMaps[i];
+            mapSize = layers[i].outputMapSize();
+        }
+
+        NeuralNetConfiguration outputConf = conf.clone();
+        outputConf.setnIn(layers[layers.length - 1].numOutputs());
+        outputConf.setActivationFunction(Activations.softMaxRows());
+        outputConf.setLossFunction(LossFunctions.LossFunction.MCXENT);
+        outputConf.setDropOut(0);
+        outputLayer = new OutputLayer.Builder().configure(outputConf).build();
+        layerWiseConfigurations.add(outputConf);
+
+        updaters = new GradientUpdater[2 * (layers.length + 1)];
+        for(int i = 0; i < updaters.length; i++) {
+            NeuralNetConfiguration paramConf = layerWiseConfigurations.get(i / 2);
+            //weights are regularized, biases aren't
+            boolean regularize = i % 2 == 0;
+            updaters[i] = GradientUpdaters.create(paramConf,regularize);
+            if(updaters[i] == null)
+                updaters[i] = paramConf.isUseAdaGrad() ? new AdaGradUpdater(paramConf,regularize) : new MomentumUpdater(paramConf,regularize,false);
+        }
+    }
+
+    /**
+     * Feeds the input forward through every layer
+     * @param input the examples, one per row
+     * @return the input followed by the activation of each layer, the last one is the output
+     */
+    public List<INDArray> feedForward(INDArray input) {
+        this.input = input;
+        List<INDArray> activations = new ArrayList<>();
+        activations.add(input);
+        INDArray currInput = input;
+        for(ConvolutionDownSampleLayer layer : layers) {
+            currInput = layer.activate(currInput);
+            activations.add(currInput);
+        }
+
+        INDArray output = currInput.mmul(outputLayer.getW()).addiRowVector(outputLayer.getB());
+        NetworkWorkspace.activate(outputLayer.conf().getActivationFunction(),output);
+        activations.add(output);
+        return activations;
+    }
+
+    /**
+     * The label probabilities of each example
+     * @param input the examples, one per row
+     * @return the soft max output, one row per example
+     */
+    public INDArray output(INDArray input) {
+        List<INDArray> activations = feedForward(input);
+        return activations.get(activations.size() - 1);
+    }
 
+    /**
+     * The most likely label of each example
+     * @param input the examples, one per row
+     * @return the index of the label with the highest probability for each row
+     */
+    public int[] predict(INDArray input) {
+        return InferenceNetwork.argMax(output(input));
+    }
+
+    /**
+     * The mean multi class cross entropy of the network on the given examples
+     * @param input the examples, one per row
+     * @param labels the labels, one row per example
+     * @return the loss, lower is better
+     */
+    public double score(INDArray input,INDArray labels) {
+        return LossFunctions.score(labels,LossFunctions.LossFunction.MCXENT,output(input),0,false);
+    }
+
+    /**
+     * The mean multi class cross entropy of the network on the data set
+     * @param data the data to score
+     * @return the loss, lower is better
+     */
+    public double score(DataSet data) {
+        return score(data.getFeatureMatrix(),data.getLabels());
+    }
+
+    /**
+     * Computes the gradient of the loss on a mini batch with back propagation
+     * @param input the examples, one per row
+     * @param labels the labels, one row per example
+     * @return the negative gradient of {@link #score(INDArray, INDArray)} (the direction that lowers the loss)
+     * in the order of {@link #params()}
+     */
+    public INDArray gradient(INDArray input,INDArray labels) {
+        if(labels.rows() != input.rows() || labels.columns() != outputLayer.conf().getnOut())
+            throw new IllegalArgumentException("Labels must be " + input.rows() + " x " + outputLayer.conf().getnOut());
+
+        List<INDArray> activations = feedForward(input);
+        int rows = input.rows();
+        INDArray gradient = Nd4j.create(numParams());
+        INDArray[] views = paramViews(gradient);
+
+        //soft max with cross entropy: the gradient of the pre output is labels - output (averaged over the batch)
+        INDArray delta = labels.sub(activations.get(activations.size() - 1)).divi(rows);
+        INDArray layerInput = activations.get(layers.length);
+        int last = 2 * layers.length;
+        NetworkWorkspace.transpose(layerInput,Nd4j.create(layerInput.columns(),rows)).mmuli(delta,views[last]);
+        FlatArrayUtil.copy(delta.sum(0),views[last + 1]);
 
-    public void init() {
+        INDArray epsilon = delta.mmul(NetworkWorkspace.transpose(outputLayer.getW(),Nd4j.create(outputLayer.getW().columns(),outputLayer.getW().rows())));
+        for(int i = layers.length - 1; i >= 0; i--) {
+            INDArray inputGradient = i > 0 ? Nd4j.create(rows,layers[i].numInputs()) : null;
+            epsilon = layers[i].backpropGradient(epsilon,views[2 * i],views[2 * i + 1],inputGradient);
+        }
 
+        return gradient;
     }
 
+    /**
+     * Takes one gradient step on a mini batch
+     * @param input the examples, one per row
+     * @param labels the labels, one row per example
+     * @param lr the learning rate
+     */
+    public void fit(INDArray input,INDArray labels,double lr) {
+        INDArray gradient = gradient(input,labels);
+        INDArray[] gradientViews = paramViews(gradient);
+        INDArray[] params = parameters();
+        for(int i = 0; i < params.length; i++) {
+            //the gradient is already averaged over the batch
+            updaters[i].update(gradientViews[i],params[i],iteration,lr,1);
+            params[i].addi(gradientViews[i]);
+        }
+        iteration++;
+    }
+
+    /**
+     * Takes one gradient step on a mini batch with the configured learning rate
+     * @param data the mini batch
+     */
+    public void fit(DataSet data) {
+        fit(data.getFeatureMatrix(),data.getLabels(),conf.getLr());
+    }
+
+    /**
+     * Fine tunes the whole network with mini batch gradient descent
+     * @param iter the mini batches
+     * @param lr the learning rate
+     * @param epochs the number of passes over the iterator
+     */
+    public void finetune(DataSetIterator iter,double lr,int epochs) {
+        for(int epoch = 0; epoch < epochs; epoch++) {
+            iter.reset();
+            while(iter.hasNext()) {
+                DataSet data = iter.next();
+                if(data.getFeatureMatrix() == null || data.getLabels() == null)
+                    break;
+                fit(data.getFeatureMatrix(),data.getLabels(),lr);
+            }
+            log.info("Epoch " + epoch + " done after " + iteration + " iterations");
+        }
+    }
+
+    /**
+     * The number of parameters of the network
+     * @return the number of weights and biases of every layer
+     */
+    public int numParams() {
+        int ret = 0;
+        for(INDArray param : parameters())
+            ret += param.length();
+        return ret;
+    }
+
+    /**
+     * The parameters of the network as one row vector:
+     * the weights then bias of every convolution layer followed by the output layer's
+     * @return a copy of the parameters
+     */
+    public INDArray params() {
+        INDArray ret = Nd4j.create(numParams());
+        INDArray[] views = paramViews(ret);
+        INDArray[] params = parameters();
+        for(int i = 0; i < params.length; i++)
+            FlatArrayUtil.copy(params[i],views[i]);
+        return ret;
+    }
+
+    /**
+     * Sets the parameters of the network
+     * @param params the parameters in the order of {@link #params()}
+     */
+    public void setParams(INDArray params) {
+        if(params.length() != numParams())
+            throw new IllegalArgumentException("Expected " + numParams() + " parameters but got " + params.length());
+        INDArray[] views = paramViews(FlatArrayUtil.contiguous(params));
+        INDArray[] current = parameters();
+        for(int i = 0; i < current.length; i++)
+            FlatArrayUtil.copy(views[i],current[i]);
+    }
+
+    //the weights and biases of the layers in parameter order
+    private INDArray[] parameters() {
+        INDArray[] ret = new INDArray[2 * (layers.length + 1)];
+        for(int i = 0; i < layers.length; i++) {
+            ret[2 * i] = layers[i].getW();
+            ret[2 * i + 1] = layers[i].getB();
+        }
+        ret[2 * layers.length] = outputLayer.getW();
+        ret[2 * layers.length + 1] = outputLayer.getB();
+        return ret;
+    }
+
+    //views of the shape of each parameter in to a flat buffer
+    private INDArray[] paramViews(INDArray flat) {
+        INDArray[] params = parameters();
+        INDArray[] ret = new INDArray[params.length];
+        int offset = flat.offset();
+        for(int i = 0; i < params.length; i++) {
+            ret[i] = FlatArrayUtil.view(flat.data(),offset,new int[]{params[i].rows(),params[i].columns()});
+            offset += params[i].length();
+        }
+        return ret;
+    }
+
+    /**
+     * Writes the network in the binary model format (see {@link ModelFormat}):
+     * the configuration and number of filters of each layer in the header
+     * followed by the weights and bias of each layer. The updater state is not written.
+     * This does not close the stream
+     * @param os the stream to write to
+     */
+    public void write(OutputStream os) {
+        try {
+            Map<String,String> header = new LinkedHashMap<>();
+            ModelFormat.putConfiguration("conf.",conf,header);
+            int[] featureMaps = new int[layers.length];
+            for(int i = 0; i < layers.length; i++)
+                featureMaps[i] = layers[i].conf().getNumFeatureMaps();
+            header.put("featureMaps",Arrays.toString(featureMaps).replaceAll("[\\[\\] ]",""));
+
+            ModelWriter writer = new ModelWriter(os,getClass().getName(),header);
+            INDArray[] params = parameters();
+            for(int i = 0; i < params.length; i++)
+                writer.writeArray(String.valueOf(i),params[i]);
+            writer.finish();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Reads a network written by {@link #write(OutputStream)}
+     * @param is the stream to read from
+     * @return the network
+     */
+    public static BaseConvolutionalMultiLayerNetwork load(InputStream is) {
+        try {
+            ModelReader reader = new ModelReader(is);
+            NeuralNetConfiguration conf = ModelFormat.getConfiguration("conf.",reader.getHeader());
+            String[] split = reader.getHeader().get("featureMaps").split(",");
+            int[] featureMaps = new int[split.length];
+            for(int i = 0; i < split.length; i++)
+                featureMaps[i] = Integer.parseInt(split[i]);
+
+            BaseConvolutionalMultiLayerNetwork ret = new BaseConvolutionalMultiLayerNetwork(conf,featureMaps);
+            INDArray[] params = ret.parameters();
+            String name;
+            while((name = reader.next()) != null)
+                reader.readArray(params[Integer.parseInt(name)]);
+            return ret;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public ConvolutionDownSampleLayer[] getLayers() {
+        return layers;
+    }
+
+    public OutputLayer getOutputLayer() {
+        return outputLayer;
+    }
+
+    public List<NeuralNetConfiguration> getLayerWiseConfigurations() {
+        return layerWiseConfigurations;
+    }
+
+    public NeuralNetConfiguration getConf() {
+        return conf;
+    }
+
+    public INDArray getInput() {
+        return input;
+    }
+
+    public static class Builder {
+        private NeuralNetConfiguration conf;
+        private int[] featureMaps;
+
+        /**
+         * The configuration of every layer: the input maps, filter size, stride,
+         * pooling type and number of labels (nOut) as well as the training parameters
+         * @param conf the configuration
+         * @return the builder
+         */
+        public Builder configure(NeuralNetConfiguration conf) {
+            this.conf = conf;
+            return this;
+        }
+
+        /**
+         * The number of filters of each convolution layer
+         * @param featureMaps the number of output maps of each layer
+         * @return the builder
+         */
+        public Builder featureMaps(int[] featureMaps) {
+            this.featureMaps = featureMaps;
+            return this;
+        }
+
+        public BaseConvolutionalMultiLayerNetwork build() {
+            if(conf == null)
+                throw new IllegalStateException("No configuration specified");
+            return new BaseConvolutionalMultiLayerNetwork(conf,featureMaps);
+        }
+    }
 
 }
@@ -2,12 +2,15 @@ package org.deeplearning4j.nn;
 
 
 
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
 import org.deeplearning4j.berkeley.Pair;
 import org.deeplearning4j.datasets.iterator.DataSetIterator;
 import org.deeplearning4j.eval.Evaluation;
 import org.deeplearning4j.models.featuredetectors.autoencoder.AutoEncoder;
 import org.deeplearning4j.nn.api.Classifier;
 import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.inference.InferenceNetwork;
 import org.deeplearning4j.nn.api.NeuralNetwork;
 import org.deeplearning4j.nn.api.Persistable;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
@@ -16,7 +19,12 @@ import org.deeplearning4j.optimize.api.TrainingEvaluator;
 import org.deeplearning4j.optimize.optimizers.BackPropOptimizer;
 import org.deeplearning4j.optimize.optimizers.BackPropROptimizer;
 import org.deeplearning4j.optimize.optimizers.MultiLayerNetworkOptimizer;
+import org.deeplearning4j.optimize.optimizers.ParallelBackPropOptimizer;
 import org.deeplearning4j.util.Dl4jReflection;
+import org.deeplearning4j.util.FlatArrayUtil;
+import org.deeplearning4j.util.ModelFormat;
+import org.deeplearning4j.util.ModelReader;
+import org.deeplearning4j.util.ModelWriter;
 import org.deeplearning4j.util.SerializationUtils;
 import org.nd4j.linalg.api.activation.ActivationFunction;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -31,6 +39,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
@@ -127,6 +136,14 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
       Use gauss newton vector product: hessian free
      */
     protected boolean useGaussNewtonVectorProductBackProp = false;
+    //whether the mask is the one created by initMask: l2 on the weights only
+    private boolean defaultMask = false;
+    //preallocated buffers for back prop, one per training thread
+    private transient ThreadLocal<NetworkWorkspace> workspaces;
+    //the number of workspaces created, for seeding their generators
+    private transient int numWorkspaces;
+    //one buffer backing every layer's weights and biases, see flattenParams()
+    private transient INDArray flatParams;
 
 
     /* Reflection/factory constructor */
@@ -337,6 +354,7 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
 
         dimensionCheck();
         applyTransforms();
+        flattenParams();
         initCalled = true;
         initMask();
 
@@ -463,8 +481,18 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
      * @param input the input to apply drop connect to
      */
     protected void applyDropConnectIfNecessary(INDArray input) {
+        applyDropConnectIfNecessary(input, defaultConfiguration.getRng());
+    }
+
+    /**
+     * Applies drop connect relative to connections, sampling the mask with the given generator
+     *
+     * @param input the input to apply drop connect to
+     * @param rng the random generator to sample the mask with
+     */
+    protected void applyDropConnectIfNecessary(INDArray input, RandomGenerator rng) {
         if (useDropConnect) {
-            INDArray mask = Sampling.binomial(Nd4j.valueArrayOf(input.rows(), input.columns(), 0.5), 1, defaultConfiguration.getRng());
+            INDArray mask = Sampling.binomial(Nd4j.valueArrayOf(input.rows(), input.columns(), 0.5), 1, rng);
             input.muli(mask);
             //apply l2 for drop connect
             if (defaultConfiguration.getL2() > 0)
@@ -637,61 +665,155 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
 
     /* delta computation for back prop */
     protected void computeDeltas(List<INDArray> deltaRet) {
-        INDArray[] deltas = new INDArray[getnLayers() + 2];
-
-        List<INDArray> activations = feedForward();
-
-        //- y - h
-        INDArray ix = labels.sub(activations.get(activations.size() - 1)).negi().subi(getOutputLayer().conf().getActivationFunction().applyDerivative(activations.get(activations.size() - 1)));
-
-		/*
-		 * Precompute activations and z's (pre activation network outputs)
-		 */
-        List<INDArray> weights = new ArrayList<>();
-        List<INDArray> biases = new ArrayList<>();
+        NetworkWorkspace workspace = computeDeltas(workspace());
+        for (int i = 0; i < layers.length; i++)
+            deltaRet.add(workspace.weightGradient(i));
+        deltaRet.add(workspace.error(layers.length - 1));
+    }
 
-        List<ActivationFunction> activationFunctions = new ArrayList<>();
-        for (int j = 0; j < getNeuralNets().length; j++) {
-            weights.add(getNeuralNets()[j].getW());
-            biases.add(getNeuralNets()[j].gethBias());
-            activationFunctions.add(getLayers()[j].conf().getActivationFunction());
+    /**
+     * The workspace for back prop on the calling thread.
+     * The shared random generator isn't thread safe, so each workspace
+     * gets its own generator seeded from the configured seed
+     * @return the workspace for this thread
+     */
+    protected synchronized NetworkWorkspace workspace() {
+        if (workspaces == null)
+            workspaces = new ThreadLocal<>();
+        NetworkWorkspace ret = workspaces.get();
+        if (ret == null) {
+            ret = new NetworkWorkspace(new MersenneTwister(defaultConfiguration.getSeed() + numWorkspaces++));
+            workspaces.set(ret);
         }
+        return ret;
+    }
 
+    /* the input size followed by the output size of each layer */
+    private int[] layerSizes() {
+        int[] ret = new int[layers.length + 1];
+        ret[0] = defaultConfiguration.getnIn();
+        for (int i = 0; i < neuralNets.length; i++)
+            ret[i + 1] = neuralNets[i].getW().columns();
+        ret[layers.length] = getOutputLayer().getW().columns();
+        return ret;
+    }
 
-        weights.add(getOutputLayer().getW());
-        biases.add(getOutputLayer().getB());
-        activationFunctions.add(getOutputLayer().conf().getActivationFunction());
+    /**
+     * Compute activations from input to output of the output layer
+     * in to the workspace's buffers
+     *
+     * @param workspace the workspace to write the activations to
+     * @return the list of activations for each layer, backed by the workspace
+     */
+    protected List<INDArray> feedForward(NetworkWorkspace workspace) {
+        List<INDArray> ret = feedForward(input, workspace);
+        getOutputLayer().setInput(workspace.activation(layers.length - 1));
+        return ret;
+    }
 
+    /**
+     * Compute activations from the given input to output of the output layer
+     * in to the workspace's buffers. Unlike {@link #feedForward(NetworkWorkspace)}
+     * this does not set the input of the network or its output layer and samples
+     * masks with the workspace's generator, so threads with their own workspaces
+     * can run it concurrently on different inputs
+     *
+     * @param input the input to feed forward
+     * @param workspace the workspace to write the activations to
+     * @return the list of activations for each layer, backed by the workspace
+     */
+    protected List<INDArray> feedForward(INDArray input, NetworkWorkspace workspace) {
+        if (input.columns() != defaultConfiguration.getnIn())
+            throw new IllegalStateException("Illegal input length");
 
-        //errors
-        for (int i = getnLayers() + 1; i >= 0; i--) {
+        workspace.ensure(input.rows(), layerSizes());
+        workspace.setInput(input);
+
+        for (int i = 0; i < layers.length; i++) {
+            INDArray currInput = workspace.activation(i);
+            INDArray activation = workspace.activation(i + 1);
             //output layer
-            if (i >= getnLayers() + 1) {
-                //-( y - h) .* f'(z^l) where l is the output layer
-                deltas[i] = ix;
-
-            } else {
-                INDArray delta = activations.get(i).transpose().mmul(ix);
-                deltas[i] = delta;
-                applyDropConnectIfNecessary(deltas[i]);
-                INDArray weightsPlusBias = weights.get(i).addRowVector(biases.get(i)).transpose();
-                INDArray activation = activations.get(i);
-                if (i > 0)
-                    ix = ix.mmul(weightsPlusBias).muli(activationFunctions.get(i - 1).applyDerivative(activation));
+            if (i == neuralNets.length) {
+                OutputLayer outputLayer = getOutputLayer();
+                if (outputLayer.conf().isConcatBiases())
+                    throw new IllegalStateException("Concatenated biases don't fit the output layer's activation");
+                currInput.mmuli(outputLayer.getW(), activation).addiRowVector(outputLayer.getB());
+                NetworkWorkspace.activate(outputLayer.conf().getActivationFunction(), activation);
+                //keeps each unit with probability 1 - drop out
+                double dropOut = outputLayer.conf().getDropOut();
+                if (dropOut > 0)
+                    activation.muli(Sampling.binomial(Nd4j.valueArrayOf(activation.rows(), activation.columns(), 1 - dropOut), 1, workspace.getRng()));
+            }
 
+            else if (layers[i].conf().getActivationType() == NeuralNetConfiguration.ActivationType.HIDDEN_LAYER_ACTIVATION) {
+                INDArray layerInput = FlatArrayUtil.copy(currInput, workspace.layerInput(i));
+                Transforms.stabilize(layerInput, 1, false);
+                layerInput.mmuli(layers[i].getW(), activation).addiRowVector(layers[i].getB());
+                NetworkWorkspace.activate(layers[i].conf().getActivationFunction(), activation);
             }
 
+            else
+                FlatArrayUtil.copy(activationFromPrevLayer(i, currInput), activation);
+
+            //applies drop connect to the activation
+            applyDropConnectIfNecessary(activation, workspace.getRng());
         }
 
-        for (int i = 0; i < deltas.length; i++) {
-            if (defaultConfiguration.isConstrainGradientToUnitNorm())
-                deltaRet.add(deltas[i].divi(deltas[i].norm2(Integer.MAX_VALUE)));
+        return workspace.activationList();
+    }
 
-            else
-                deltaRet.add(deltas[i]);
+    /**
+     * Computes the weight gradients (before l2) in to the workspace,
+     * the error of each layer is left in the workspace's errors
+     * @param workspace the workspace to use
+     * @return the workspace
+     */
+    protected NetworkWorkspace computeDeltas(NetworkWorkspace workspace) {
+        return computeDeltas(input, labels, workspace);
+    }
+
+    /**
+     * Computes the weight gradients (before l2) for the given input and labels in to the workspace,
+     * the error of each layer is left in the workspace's errors
+     * @param input the input to compute the gradients for
+     * @param labels the labels for the input
+     * @param workspace the workspace to use
+     * @return the workspace
+     */
+    protected NetworkWorkspace computeDeltas(INDArray input, INDArray labels, NetworkWorkspace workspace) {
+        List<INDArray> activations = feedForward(input, workspace);
+        int outputIndex = layers.length - 1;
+        INDArray output = activations.get(activations.size() - 1);
+
+        //- y - h
+        INDArray ix = FlatArrayUtil.copy(output, workspace.error(outputIndex)).subi(labels)
+                .subi(NetworkWorkspace.derivative(getOutputLayer().conf().getActivationFunction(), output, workspace.derivativeBuffer(outputIndex + 1)));
+
+        //errors
+        for (int i = outputIndex; i >= 0; i--) {
+            INDArray weights = i < neuralNets.length ? neuralNets[i].getW() : getOutputLayer().getW();
+            INDArray bias = i < neuralNets.length ? neuralNets[i].gethBias() : getOutputLayer().getB();
+
+            INDArray delta = NetworkWorkspace.transpose(activations.get(i), workspace.transposedActivation(i))
+                    .mmuli(ix, workspace.weightGradient(i));
+            applyDropConnectIfNecessary(delta, workspace.getRng());
+
+            if (i > 0) {
+                INDArray weightsPlusBias = FlatArrayUtil.copy(weights, workspace.weightsPlusBias(i)).addiRowVector(bias);
+                INDArray transposed = NetworkWorkspace.transpose(weightsPlusBias, workspace.transposedWeightsPlusBias(i));
+                INDArray activation = activations.get(i);
+                ix = ix.mmuli(transposed, workspace.error(i - 1))
+                        .muli(NetworkWorkspace.derivative(getLayers()[i - 1].conf().getActivationFunction(), activation, workspace.derivativeBuffer(i)));
+            }
         }
 
+        if (defaultConfiguration.isConstrainGradientToUnitNorm()) {
+            for (int i = 0; i < layers.length; i++)
+                workspace.weightGradient(i).divi(workspace.weightGradient(i).norm2(Integer.MAX_VALUE));
+            workspace.error(outputIndex).divi(workspace.error(outputIndex).norm2(Integer.MAX_VALUE));
+        }
 
+        return workspace;
     }
 
     /**
@@ -699,6 +821,13 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
      */
     public void backPropStep() {
         List<Pair<INDArray, INDArray>> deltas = backPropGradient();
+        NetworkWorkspace workspace = workspace();
+        //the gradient is laid out like the params: one update for the whole network
+        if (deltas == workspace.gradients()) {
+            Nd4j.getBlasWrapper().axpy(-1.0, workspace.gradient(), paramsView());
+            return;
+        }
+
         for (int i = 0; i < layers.length; i++) {
             layers[i].getW().subi(deltas.get(i).getFirst());
             layers[i].getB().subi(deltas.get(i).getSecond());
@@ -891,13 +1020,91 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
      */
     @Override
     public INDArray params() {
-        List<INDArray> params = new ArrayList<>();
-        for(int i = 0; i < getnLayers(); i++) {
-            params.add(getNeuralNets()[i].getW());
-            params.add(getNeuralNets()[i].gethBias());
+        return paramsView().dup();
+    }
+
+    /**
+     * Returns the 1 x m parameter vector backing the weights and biases
+     * of the neuralNets and output layer.
+     * Unlike {@link #params()} this is not a copy: changes to the view
+     * are changes to the network and vice versa.
+     *
+     * @return a view of the params for this neural net
+     */
+    public INDArray paramsView() {
+        if (!isFlattened())
+            flattenParams();
+        return FlatArrayUtil.view(flatParams.data(), 0, new int[]{1, numParams()});
+    }
+
+    /**
+     * Copies the weights and biases of every layer in to one contiguous buffer
+     * and replaces them with views in to it. The buffer is laid out as
+     * the w,hbias of each of the neuralNets followed by the output layer w,bias
+     * (the same order as {@link #params()}), followed by the vbias of each of the neuralNets.
+     */
+    public void flattenParams() {
+        int length = numParams();
+        for (int i = 0; i < neuralNets.length; i++)
+            length += neuralNets[i].getvBias().length();
+
+        INDArray flat = Nd4j.create(1, length);
+        int offset = 0;
+        for (int i = 0; i < layers.length; i++) {
+            INDArray w = i < neuralNets.length ? neuralNets[i].getW() : getOutputLayer().getW();
+            INDArray b = i < neuralNets.length ? neuralNets[i].gethBias() : getOutputLayer().getB();
+            INDArray wView = FlatArrayUtil.copy(w, FlatArrayUtil.view(flat.data(), offset, w.shape()));
+            offset += w.length();
+            INDArray bView = FlatArrayUtil.copy(b, FlatArrayUtil.view(flat.data(), offset, b.shape()));
+            offset += b.length();
+            layers[i].setW(wView);
+            layers[i].setB(bView);
+            if (i < neuralNets.length) {
+                neuralNets[i].setW(wView);
+                neuralNets[i].sethBias(bView);
+            }
         }
-        params.add(getOutputLayer().params());
-        return Nd4j.toFlattened(params);
+
+        for (int i = 0; i < neuralNets.length; i++) {
+            INDArray vBias = neuralNets[i].getvBias();
+            neuralNets[i].setvBias(FlatArrayUtil.copy(vBias, FlatArrayUtil.view(flat.data(), offset, vBias.shape())));
+            offset += vBias.length();
+        }
+
+        flatParams = flat;
+    }
+
+    /**
+     * Whether every layer's weights and biases are still views in to the flat buffer.
+     * Setting a new weight matrix on a layer (rather than updating it in place)
+     * detaches it from the buffer, in which case the buffer is rebuilt on next use
+     *
+     * @return true if the layers are backed by the flat buffer
+     */
+    protected boolean isFlattened() {
+        if (flatParams == null || layers == null || neuralNets == null)
+            return false;
+        int offset = 0;
+        for (int i = 0; i < layers.length; i++) {
+            INDArray w = layers[i].getW();
+            INDArray b = layers[i].getB();
+            if (!FlatArrayUtil.isViewOf(w, flatParams.data(), offset))
+                return false;
+            offset += w.length();
+            if (!FlatArrayUtil.isViewOf(b, flatParams.data(), offset))
+                return false;
+            offset += b.length();
+            if (i < neuralNets.length && (neuralNets[i].getW() != w || neuralNets[i].gethBias() != b))
+                return false;
+        }
+
+        for (int i = 0; i < neuralNets.length; i++) {
+            if (!FlatArrayUtil.isViewOf(neuralNets[i].getvBias(), flatParams.data(), offset))
+                return false;
+            offset += neuralNets[i].getvBias().length();
+        }
+
+        return offset == flatParams.length();
     }
 
 
@@ -932,14 +1139,7 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
      */
 
     public INDArray pack() {
-        List<Pair<INDArray, INDArray>> vWvB = new ArrayList<>();
-        for (int i = 0; i < neuralNets.length; i++) {
-            vWvB.add(new Pair<>(neuralNets[i].getW(), neuralNets[i].gethBias()));
-        }
-
-        vWvB.add(new Pair<>(getOutputLayer().getW(), getOutputLayer().getB()));
-
-        return pack(vWvB);
+        return params();
 
     }
 
@@ -953,17 +1153,23 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
         if (layers.size() != this.neuralNets.length + 1)
             throw new IllegalArgumentException("Illegal number of neuralNets passed in. Was " + layers.size() + " when should have been " + (this.neuralNets.length + 1));
 
-        List<INDArray> list = new ArrayList<>();
+        int length = 0;
+        for(int i = 0; i < layers.size(); i++)
+            length += layers.get(i).getFirst().length() + layers.get(i).getSecond().length();
+        if(length != numParams())
+            throw new IllegalStateException("Illegal number of parameters found in the layers with a difference of " + Math.abs(length - numParams()));
+
+        INDArray ret = Nd4j.create(1, length);
+        int offset = 0;
         for(int i = 0; i < layers.size(); i++) {
-            list.add(layers.get(i).getFirst());
-            list.add(layers.get(i).getSecond());
+            INDArray w = layers.get(i).getFirst();
+            INDArray b = layers.get(i).getSecond();
+            FlatArrayUtil.copy(w, FlatArrayUtil.view(ret.data(), offset, w.shape()));
+            offset += w.length();
+            FlatArrayUtil.copy(b, FlatArrayUtil.view(ret.data(), offset, b.shape()));
+            offset += b.length();
         }
 
-
-
-        INDArray ret = Nd4j.toFlattened(list);
-        if(ret.length() != numParams())
-            throw new IllegalStateException("Illegal number of parameters found in the layers with a difference of " + Math.abs(ret.length() - numParams()));
         return ret;
     }
 
@@ -989,80 +1195,85 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
      * @return whether the training should converge or not
      */
     protected List<Pair<INDArray, INDArray>> backPropGradient() {
-        //feedforward to compute activations
-        //initial error
-        //log.info("Back prop step " + epoch);
-
-        //precompute deltas
-        List<INDArray> deltas = new ArrayList<>();
-        //compute derivatives and gradients given activations
-        computeDeltas(deltas);
-
-        List<Pair<INDArray, INDArray>> vWvB = new ArrayList<>();
-        for (int i = 0; i < neuralNets.length; i++)
-            vWvB.add(new Pair<>(neuralNets[i].getW(), neuralNets[i].gethBias()));
-
-
-        vWvB.add(new Pair<>(getOutputLayer().getW(), getOutputLayer().getB()));
+        NetworkWorkspace workspace = workspace();
+        INDArray gradient = backPropGradient(input, labels, workspace);
+        regularize(gradient, 1.0);
+        return workspace.gradients();
 
+    }
 
-        List<Pair<INDArray, INDArray>> list = new ArrayList<>();
+    /**
+     * Computes the back prop gradient (before l2) of the given input and labels
+     * in to the workspace, summed over the rows of the input.
+     * This only reads the network's parameters, so threads with their own
+     * workspaces can compute gradients for different inputs concurrently
+     *
+     * @param input the input to compute the gradient for
+     * @param labels the labels for the input
+     * @param workspace the workspace to compute the gradient in
+     * @return the flat gradient laid out like {@link #params()}, backed by the workspace
+     */
+    protected INDArray backPropGradient(INDArray input, INDArray labels, NetworkWorkspace workspace) {
+        //compute derivatives and gradients given activations
+        computeDeltas(input, labels, workspace);
 
-        for (int l = 0; l < getnLayers() + 1; l++) {
-            INDArray gradientChange = deltas.get(l);
+        for (int l = 0; l < layers.length; l++) {
+            INDArray gradientChange = workspace.weightGradient(l);
             if (gradientChange.length() != getLayers()[l].getW().length())
                 throw new IllegalStateException("Gradient change not equal to weight change");
 
-
-            //update hidden bias
-            INDArray deltaColumnSums = deltas.get(l).sum(0);
-
-
-            list.add(new Pair<>(gradientChange, deltaColumnSums));
-
-
+            //update hidden bias: the column sums of the weight gradient
+            workspace.ones(l).mmuli(gradientChange, workspace.biasGradient(l));
         }
 
+        return workspace.gradient();
+    }
 
-        if (mask == null)
-            initMask();
-
-
-
-        for(int i = 0; i < list.size(); i++) {
-            if(i < getnLayers()) {
-                INDArray weightGradientForLayer = list.get(i).getFirst();
-                INDArray biasGradientForLayer = list.get(i).getSecond();
-                assert Arrays.equals(weightGradientForLayer.shape(),getNeuralNets()[i].getW().shape()) :
-                        "Illegal shape for layer " + i + " weight gradient, should have been " +
-                                Arrays.toString(getNeuralNets()[i].getW().shape()) + " but was " + Arrays.toString(weightGradientForLayer.shape()) ;
-                assert Arrays.equals(biasGradientForLayer.shape(),getNeuralNets()[i].gethBias().shape()) :
-                        "Illegal shape for layer " + i + " bias   gradient, should have been " +
-                                Arrays.toString(getNeuralNets()[i].gethBias().shape()) + " but was " + Arrays.toString(biasGradientForLayer.shape());
-            }
-            else {
-                INDArray weightGradientForLayer = list.get(i).getFirst();
-                INDArray biasGradientForLayer = list.get(i).getSecond();
-                assert Arrays.equals(weightGradientForLayer.shape(),getOutputLayer().getW().shape()) :
-                        "Illegal shape for output  weight gradient, should have been " +
-                                Arrays.toString(getOutputLayer().getW().shape()) + " but was " + Arrays.toString(weightGradientForLayer.shape());
-                ;
-                assert Arrays.equals(biasGradientForLayer.shape(),getOutputLayer().getB().shape()) :
-                        "Illegal shape for output layer  bias   gradient, should have been " +
-                                Arrays.toString(getOutputLayer().getB().shape()) + " but was " + Arrays.toString(biasGradientForLayer.shape());
-                ;
+    /**
+     * Computes the back prop gradient (before l2) of the given input and labels
+     * in the calling thread's workspace, summed over the rows of the input.
+     * The returned gradient is overwritten by the next call on the same thread
+     *
+     * @param input the input to compute the gradient for
+     * @param labels the labels for the input
+     * @return the flat gradient laid out like {@link #params()}
+     */
+    public INDArray backPropGradient(INDArray input, INDArray labels) {
+        return backPropGradient(input, labels, workspace());
+    }
 
+    /**
+     * Adds the l2 penalty of the masked parameters to a flat gradient
+     * laid out like {@link #params()}
+     * @param gradient the gradient to regularize
+     * @param scale the fraction of the penalty to add
+     */
+    public void regularize(INDArray gradient, double scale) {
+        if (mask == null) {
+            //regularize may be called from several training threads at once
+            synchronized (this) {
+                if (mask == null)
+                    initMask();
             }
         }
 
+        double l2 = defaultConfiguration.getL2() * scale;
+        if (l2 == 0)
+            return;
 
-        INDArray gradient = pack(list);
-        INDArray params = params().mul(defaultConfiguration.getL2());
-        gradient.addi(mask.mul(params));
-        list = unPack(gradient);
-
-        return list;
+        if (!defaultMask) {
+            gradient.addi(mask.mul(paramsView()).muli(l2));
+            return;
+        }
 
+        //the default mask only regularizes the weights
+        int offset = gradient.offset();
+        for (int l = 0; l < layers.length; l++) {
+            INDArray weights = l < neuralNets.length ? neuralNets[l].getW() : getOutputLayer().getW();
+            INDArray bias = l < neuralNets.length ? neuralNets[l].gethBias() : getOutputLayer().getB();
+            Nd4j.getBlasWrapper().axpy(l2, weights, FlatArrayUtil.view(gradient.data(), offset, weights.shape()));
+            offset += weights.length() + bias.length();
+        }
     }
 
 
@@ -1078,9 +1289,22 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
         int numParams = numParams();
         if(param.length() != numParams)
             throw new IllegalArgumentException("Parameter vector not equal of length to " + numParams);
+        List<Pair<INDArray,INDArray>> ret = new ArrayList<>();
+        //views in to the vector, no copies needed
+        if(FlatArrayUtil.isContiguous(param)) {
+            int offset = param.offset();
+            for(int i = 0; i < layers.length; i++) {
+                INDArray w = FlatArrayUtil.view(param.data(),offset,layers[i].getW().shape());
+                offset += w.length();
+                INDArray b = FlatArrayUtil.view(param.data(),offset,layers[i].getB().shape());
+                offset += b.length();
+                ret.add(new Pair<>(w,b));
+            }
+            return ret;
+        }
+
         if(param.rows() != 1)
             param = param.reshape(1,param.length());
-        List<Pair<INDArray,INDArray>> ret = new ArrayList<>();
         int curr = 0;
         for(int i = 0; i < layers.length; i++) {
             int layerLength = layers[i].getW().length() + layers[i].getB().length();
@@ -1231,6 +1455,21 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
     }
 
 
+    /**
+     * Run back prop over the iterator with several worker threads,
+     * each computing the gradient of a slice of every mini batch
+     *
+     * @param iter       the mini batches to train on
+     * @param lr         the learning rate during training
+     * @param epochs     the number of passes over the iterator
+     * @param numWorkers the number of worker threads
+     * @param mode       whether the workers' gradients are summed before
+     *                   each update or applied as soon as they are computed
+     */
+    public void finetune(DataSetIterator iter, double lr, int epochs, int numWorkers, ParallelBackPropOptimizer.Mode mode) {
+        new ParallelBackPropOptimizer(this, lr, numWorkers, mode).optimize(iter, epochs);
+    }
+
     /**
      * Run SGD based on the given labels
      *
@@ -1328,11 +1567,7 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
      */
     @Override
     public int[] predict(INDArray d) {
-        INDArray output = output(d);
-        int[] ret = new int[d.rows()];
-        for (int i = 0; i < ret.length; i++)
-            ret[i] = Nd4j.getBlasWrapper().iamax(output.getRow(i));
-        return ret;
+        return InferenceNetwork.argMax(output(d));
     }
 
     /**
@@ -1436,20 +1671,96 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
         log.info(sb.toString());
     }
 
+    /**
+     * Writes the network in the binary model format (see {@link ModelFormat}):
+     * the settings and the layer wise configurations in the header,
+     * followed by the parameter buffer (see {@link #flattenParams()}) as one array.
+     * The input, labels, weight transforms and optimizer state are not written.
+     * This does not close the stream
+     *
+     * @param os the output stream to write to
+     */
     @Override
     public void write(OutputStream os) {
-        SerializationUtils.writeObject(this, os);
+        try {
+            Map<String, String> header = new LinkedHashMap<>();
+            ModelFormat.putValues("net.", this, header);
+            header.put("nLayers", String.valueOf(getnLayers()));
+            if (defaultConfiguration != null)
+                ModelFormat.putConfiguration("conf.", defaultConfiguration, header);
+            if (layerWiseConfigurations != null)
+                for (int i = 0; i < layerWiseConfigurations.size(); i++)
+                    ModelFormat.putConfiguration("layer." + i + ".", layerWiseConfigurations.get(i), header);
+
+            ModelWriter writer = new ModelWriter(os, getClass().getName(), header);
+            if (initCalled) {
+                paramsView();
+                writer.writeArray("params", flatParams);
+            }
+            if (mask != null && !defaultMask)
+                writer.writeArray("mask", mask);
+            writer.finish();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     /**
-     * Load (using {@link ObjectInputStream}
+     * Load a network written by {@link #write(OutputStream)}.
+     * The layers are recreated from the configurations and the parameters are read
+     * straight in to the new parameter buffer.
+     * Networks written with java serialization are still read (using {@link ObjectInputStream})
      *
      * @param is the input stream to load from (usually a file)
      */
     @Override
     public void load(InputStream is) {
-        BaseMultiLayerNetwork loaded = SerializationUtils.readObject(is);
-        update(loaded);
+        try {
+            is = ModelFormat.markable(is);
+            if (!ModelFormat.isModel(is)) {
+                BaseMultiLayerNetwork loaded = SerializationUtils.readObject(is);
+                update(loaded);
+                return;
+            }
+
+            ModelReader reader = new ModelReader(is);
+            if (!getClass().isAssignableFrom(Class.forName(reader.getModelType())))
+                throw new IllegalArgumentException("Unable to load a " + reader.getModelType() + " in to a " + getClass().getName());
+            Map<String, String> header = reader.getHeader();
+            ModelFormat.getFields("net.", this, header);
+            NeuralNetConfiguration conf = ModelFormat.getConfiguration("conf.", header);
+            if (conf != null)
+                defaultConfiguration = conf;
+
+            int nLayers = Integer.parseInt(header.get("nLayers"));
+            layerWiseConfigurations = new ArrayList<>();
+            for (int i = 0; i < nLayers + 1; i++) {
+                NeuralNetConfiguration layerConf = ModelFormat.getConfiguration("layer." + i + ".", header);
+                layerWiseConfigurations.add(layerConf != null ? layerConf : defaultConfiguration.clone());
+            }
+
+            input = null;
+            labels = null;
+            mask = null;
+            workspaces = null;
+            initCalled = false;
+            setnLayers(nLayers);
+            layers = new Layer[nLayers + 1];
+
+            String name;
+            while ((name = reader.next()) != null) {
+                if (name.equals("params")) {
+                    init();
+                    reader.readArray(flatParams);
+                }
+                else if (name.equals("mask")) {
+                    mask = reader.readArray();
+                    defaultMask = false;
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
     }
 
 
@@ -1644,6 +1955,16 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
     public void merge(BaseMultiLayerNetwork network, int batchSize) {
         if (network.getnLayers() != getnLayers())
             throw new IllegalArgumentException("Unable to merge networks that are not of equal length");
+        if (isFlattened() && network.isFlattened() && flatParams.length() == network.flatParams.length()) {
+            //everything but the output layer in one pass: a += b - a / n
+            int outputStart = startIndexForLayer(neuralNets.length).getwStart();
+            int numParams = numParams();
+            mergeRange(network, 0, outputStart, batchSize);
+            mergeRange(network, numParams, flatParams.length() - numParams, batchSize);
+            getOutputLayer().merge(network.getOutputLayer(), batchSize);
+            return;
+        }
+
         for (int i = 0; i < getnLayers(); i++) {
             NeuralNetwork n = neuralNets[i];
             NeuralNetwork otherNetwork = network.neuralNets[i];
@@ -1658,6 +1979,16 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
     }
 
 
+    /* merges length elements of the flat buffers starting at offset */
+    private void mergeRange(BaseMultiLayerNetwork network, int offset, int length, int batchSize) {
+        if (length < 1)
+            return;
+        INDArray range = FlatArrayUtil.view(flatParams.data(), offset, new int[]{1, length});
+        INDArray other = FlatArrayUtil.view(network.flatParams.data(), offset, new int[]{1, length});
+        range.addi(other.sub(range).divi(batchSize));
+    }
+
+
     public INDArray getLabels() {
         return labels;
     }
@@ -1683,6 +2014,7 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
         for (int i = 0; i < mask.size(); i++)
             mask.get(i).setSecond(Nd4j.zeros(mask.get(i).getSecond().rows(), mask.get(i).getSecond().columns()));
         setMask(pack(mask));
+        defaultMask = true;
 
     }
 
@@ -1778,6 +2110,7 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
 
     public void setMask(INDArray mask) {
         this.mask = mask;
+        this.defaultMask = false;
     }
 
 
@@ -1813,27 +2146,15 @@ public abstract class BaseMultiLayerNetwork implements Serializable,Persistable,
      * This is used to manipulate the weights and biases across
      * all neuralNets (including the output layer)
      *
-     * @param params a parameter vector equal 1,numParameters
+     * @param params a parameter vector equal 1,numParameters,
+     *               copied in to the network's parameter buffer
      */
     public void setParameters(INDArray params) {
-        for (int i = 0; i < getNeuralNets().length; i++) {
-            ParamRange range = startIndexForLayer(i);
-            INDArray w = params.get(NDArrayIndex.interval(0, params.rows()), NDArrayIndex.interval(range.getwStart(), range.getwEnd()));
-            INDArray bias = params.get(NDArrayIndex.interval(0, params.rows()), NDArrayIndex.interval(range.getBiasStart(), range.getBiasEnd()));
-            int rows = getNeuralNets()[i].getW().rows(), columns = getNeuralNets()[i].getW().columns();
-            getNeuralNets()[i].setW(w.reshape(rows, columns));
-            getNeuralNets()[i].sethBias(bias.reshape(getNeuralNets()[i].gethBias().rows(), getNeuralNets()[i].gethBias().columns()));
-        }
-
-
-        ParamRange range = startIndexForLayer(getNeuralNets().length);
-        INDArray w = params.get(NDArrayIndex.interval(0, params.rows()), NDArrayIndex.interval(range.getwStart(), range.getwEnd()));
-        INDArray bias = params.get(NDArrayIndex.interval(0, params.rows()), NDArrayIndex.interval(range.getBiasStart(), range.getBiasEnd()));
-        int rows = getOutputLayer().getW().rows(), columns = getOutputLayer().getW().columns();
-        getOutputLayer().setW(w.reshape(rows, columns));
-        getOutputLayer().setB(bias.reshape(getOutputLayer().getB().rows(), getOutputLayer().getB().columns()));
-
-
+        if (params.length() != numParams())
+            throw new IllegalArgumentException("Parameter vector not equal of length to " + numParams());
+        INDArray view = paramsView();
+        if (params.data() != view.data() || params.offset() != view.offset())
+            FlatArrayUtil.copy(params, view);
     }
 
 
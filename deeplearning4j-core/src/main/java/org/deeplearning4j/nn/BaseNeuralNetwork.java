@@ -6,10 +6,11 @@ import static org.nd4j.linalg.ops.transforms.Transforms.*;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 
 import org.nd4j.linalg.factory.NDArrayFactory;
@@ -22,10 +23,16 @@ import org.deeplearning4j.nn.api.NeuralNetwork;
 import org.deeplearning4j.nn.api.Persistable;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.gradient.NeuralNetworkGradient;
+import org.deeplearning4j.nn.learning.GradientUpdater;
+import org.deeplearning4j.nn.learning.GradientUpdaters;
 import org.nd4j.linalg.learning.AdaGrad;
 import org.deeplearning4j.optimize.optimizers.NeuralNetworkOptimizer;
 import org.deeplearning4j.plot.NeuralNetPlotter;
 import org.deeplearning4j.util.Dl4jReflection;
+import org.deeplearning4j.util.FlatArrayUtil;
+import org.deeplearning4j.util.ModelFormat;
+import org.deeplearning4j.util.ModelReader;
+import org.deeplearning4j.util.ModelWriter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,6 +68,8 @@ public abstract class BaseNeuralNetwork implements NeuralNetwork,Persistable {
 
     //adaptive learning rate for each of the biases and weights
     protected AdaGrad wAdaGrad,hBiasAdaGrad,vBiasAdaGrad;
+    //updaters for anything other than the default update rule
+    protected GradientUpdater wUpdater,hBiasUpdater,vBiasUpdater;
 
     //configuration of the neural net
     protected NeuralNetConfiguration conf;
@@ -197,6 +206,13 @@ public abstract class BaseNeuralNetwork implements NeuralNetwork,Persistable {
         INDArray weights = params.get(NDArrayIndex.interval(0,weightLength));
         INDArray vBias = params.get(NDArrayIndex.interval(weightLength, weightLength + conf.getnIn()));
         INDArray hBias = params.get(NDArrayIndex.interval(weightLength + conf.getnIn(), weightLength + conf.getnIn() + conf.getnOut()));
+        //copy in place so parameters viewed by a multi layer network stay in its buffer
+        if(W != null && this.vBias != null && this.hBias != null) {
+            FlatArrayUtil.copy(weights,W);
+            FlatArrayUtil.copy(vBias,this.vBias);
+            FlatArrayUtil.copy(hBias,this.hBias);
+            return;
+        }
         setW(weights.reshape(conf.getnIn(),conf.getnOut()));
         setvBias(vBias.dup());
         sethBias(hBias.dup());
@@ -263,23 +279,6 @@ public abstract class BaseNeuralNetwork implements NeuralNetwork,Persistable {
         fit(data,null);
     }
 
-    /**
-     * Applies sparsity to the passed in hbias gradient
-     * @param hBiasGradient the hbias gradient to apply to
-     */
-    protected void applySparsity(INDArray hBiasGradient) {
-
-        if(conf.isUseAdaGrad()) {
-            INDArray change = this.hBiasAdaGrad.getLearningRates(hBias).neg().muli(conf.getSparsity()).mul(hBiasGradient.mul(conf.getSparsity()));
-            hBiasGradient.addi(change);
-        }
-        else {
-            INDArray change = hBiasGradient.mul(conf.getSparsity()).mul(-conf.getLr() * conf.getSparsity());
-            hBiasGradient.addi(change);
-
-        }
-    }
-
     /**
      * Update the gradient according to the configuration such as adagrad, momentum, and sparsity
      * @param gradient the gradient to modify
@@ -292,84 +291,36 @@ public abstract class BaseNeuralNetwork implements NeuralNetwork,Persistable {
         INDArray hBiasGradient = gradient.gethBiasGradient();
         INDArray vBiasGradient = gradient.getvBiasGradient();
 
-        //reset adagrad history
-        if(iteration != 0 && conf.getResetAdaGradIterations() > 0 &&  iteration % conf.getResetAdaGradIterations() == 0) {
-            wAdaGrad.historicalGradient = null;
-            hBiasAdaGrad.historicalGradient = null;
-            vBiasAdaGrad.historicalGradient = null;
-            if(this.W != null && this.wAdaGrad == null)
-                this.wAdaGrad = new AdaGrad(this.W.rows(),this.W.columns());
-
-            if(this.vBias != null && this.vBiasAdaGrad == null)
-                this.vBiasAdaGrad = new AdaGrad(this.vBias.rows(),this.vBias.columns());
-
-
-            if(this.hBias != null && this.hBiasAdaGrad == null)
-                this.hBiasAdaGrad = new AdaGrad(this.hBias.rows(),this.hBias.columns());
+        if(conf.getUpdater() != null && conf.getUpdater() != NeuralNetConfiguration.Updater.DEFAULT) {
+            if(wUpdater == null) {
+                wUpdater = GradientUpdaters.create(conf,true);
+                hBiasUpdater = GradientUpdaters.create(conf,false);
+                vBiasUpdater = GradientUpdaters.create(conf,false);
+            }
 
-            log.info("Resetting adagrad");
+            wUpdater.update(wGradient,W,iteration,learningRate,lastMiniBatchSize);
+            hBiasUpdater.update(hBiasGradient,hBias,iteration,learningRate,lastMiniBatchSize);
+            vBiasUpdater.update(vBiasGradient,vBias,iteration,learningRate,lastMiniBatchSize);
         }
 
-        INDArray wLearningRates = wAdaGrad.getLearningRates(wGradient);
-        //change up momentum after so many iterations if specified
-        double momentum = conf.getMomentum();
-        if(conf.getMomentumAfter() != null && !conf.getMomentumAfter().isEmpty()) {
-            int key = conf.getMomentumAfter().keySet().iterator().next();
-            if(iteration >= key) {
-                momentum = conf.getMomentumAfter().get(key);
+        else {
+            //reset adagrad history
+            if(iteration != 0 && conf.getResetAdaGradIterations() > 0 &&  iteration % conf.getResetAdaGradIterations() == 0) {
+                wAdaGrad.historicalGradient = null;
+                hBiasAdaGrad.historicalGradient = null;
+                vBiasAdaGrad.historicalGradient = null;
+                log.info("Resetting adagrad");
             }
-        }
-
-
-        if (conf.isUseAdaGrad())
-            wGradient.muli(wLearningRates);
-        else
-            wGradient.muli(learningRate);
-
-        if (conf.isUseAdaGrad())
-            hBiasGradient.muli(hBiasAdaGrad.getLearningRates(hBiasGradient));
-        else
-            hBiasGradient.muli(learningRate);
-
-
-        if (conf.isUseAdaGrad())
-            vBiasGradient.muli(vBiasAdaGrad.getLearningRates(vBiasGradient));
-        else
-            vBiasGradient.muli(learningRate);
-
-
-
-        //only do this with binary hidden neuralNets
-        if (this.hBiasGradient != null && conf.getSparsity() != 0)
-            applySparsity(hBiasGradient);
-
-
-        if (momentum != 0 && this.wGradient != null)
-            wGradient.addi(this.wGradient.mul(momentum).addi(wGradient.mul(1 - momentum)));
-
 
-        if(momentum != 0 && this.vBiasGradient != null)
-            vBiasGradient.addi(this.vBiasGradient.mul(momentum).addi(vBiasGradient.mul(1 - momentum)));
-
-        if(momentum != 0 && this.hBiasGradient != null)
-            hBiasGradient.addi(this.hBiasGradient.mul(momentum).addi(hBiasGradient.mul(1 - momentum)));
-
-
-
-
-        wGradient.divi(lastMiniBatchSize);
-        vBiasGradient.divi(lastMiniBatchSize);
-        hBiasGradient.divi(lastMiniBatchSize);
-
-
-        //simulate post gradient application  and apply the difference to the gradient to decrease the change the gradient has
-        if(conf.isUseRegularization() && conf.getL2() > 0) {
-            if(conf.isUseAdaGrad())
-                wGradient.subi(W.mul(conf.getL2()).muli(wLearningRates));
-
-            else
-                wGradient.subi(W.mul(conf.getL2() * learningRate));
+            //change up momentum after so many iterations if specified
+            double momentum = GradientUpdaters.momentum(conf,iteration);
 
+            //sparsity only applies to the hidden bias once there is a previous gradient
+            boolean sparsity = this.hBiasGradient != null && conf.getSparsity() != 0;
+            boolean l2 = conf.isUseRegularization() && conf.getL2() > 0;
+            defaultUpdate(wGradient,W,this.wGradient,wAdaGrad,false,l2,learningRate,momentum);
+            defaultUpdate(vBiasGradient,vBias,this.vBiasGradient,vBiasAdaGrad,false,false,learningRate,momentum);
+            defaultUpdate(hBiasGradient,hBias,this.hBiasGradient,hBiasAdaGrad,sparsity,false,learningRate,momentum);
         }
 
         if(conf.isConstrainGradientToUnitNorm()) {
@@ -385,6 +336,101 @@ public abstract class BaseNeuralNetwork implements NeuralNetwork,Persistable {
 
     }
 
+    /**
+     * Turns the gradient of one parameter in to its update in place in a single pass.
+     * Per element this is: the adagrad learning rate (or the learning rate),
+     * the sparsity target, momentum against the last update, the mini batch average and
+     * l2 weight decay, in that order
+     *
+     * @param gradient the gradient to update in place
+     * @param params the parameters of the gradient
+     * @param lastGradient the last update of the parameters, null if none
+     * @param adaGrad the adagrad history of the parameters
+     * @param sparsity whether to apply the sparsity target
+     * @param l2 whether to apply weight decay
+     * @param learningRate the learning rate when not using adagrad
+     * @param momentum the momentum
+     */
+    private void defaultUpdate(INDArray gradient,INDArray params,INDArray lastGradient,AdaGrad adaGrad,
+                               boolean sparsity,boolean l2,double learningRate,double momentum) {
+        boolean useAdaGrad = conf.isUseAdaGrad();
+        INDArray g = FlatArrayUtil.contiguous(gradient);
+        INDArray p = FlatArrayUtil.contiguous(params);
+        double[] gData = g.data().asDouble();
+        double[] pData = p.data().asDouble();
+        int gOffset = g.offset();
+        int pOffset = p.offset();
+
+        INDArray history = null;
+        double[] hData = null;
+        int hOffset = 0;
+        double stepSize = 0,fudgeFactor = 0;
+        if(useAdaGrad) {
+            if(adaGrad.historicalGradient == null || adaGrad.historicalGradient.length() != gradient.length())
+                adaGrad.historicalGradient = Nd4j.zeros(gradient.rows(),gradient.columns());
+            history = FlatArrayUtil.contiguous(adaGrad.historicalGradient);
+            hData = history.data().asDouble();
+            hOffset = history.offset();
+            stepSize = adaGrad.getMasterStepSize();
+            fudgeFactor = adaGrad.fudgeFactor;
+        }
+
+        INDArray last = momentum != 0 && lastGradient != null && lastGradient != gradient ? FlatArrayUtil.contiguous(lastGradient) : null;
+        double[] lastData = last != null ? last.data().asDouble() : null;
+        int lastOffset = last != null ? last.offset() : 0;
+        //momentum against a gradient updated in place is momentum against the scaled gradient itself
+        boolean selfMomentum = momentum != 0 && lastGradient != null && lastGradient == gradient;
+
+        double sparsityTarget = conf.getSparsity();
+        double sparsityRate = -conf.getLr() * conf.getSparsity();
+        double l2Coefficient = conf.getL2();
+        double l2Rate = conf.getL2() * learningRate;
+        int batchSize = lastMiniBatchSize;
+
+        for(int i = 0; i < g.length(); i++) {
+            double grad = gData[gOffset + i];
+            double param = pData[pOffset + i];
+            double rate = 0;
+            if(useAdaGrad) {
+                double h = hData[hOffset + i] + grad * grad;
+                rate = Math.abs(grad) / (Math.sqrt(h) + fudgeFactor) * stepSize;
+                grad *= rate;
+                if(sparsity) {
+                    h += param * param;
+                    double paramRate = Math.abs(param) / (Math.sqrt(h) + fudgeFactor) * stepSize;
+                    grad += -paramRate * sparsityTarget * (grad * sparsityTarget);
+                }
+                hData[hOffset + i] = h;
+            }
+            else {
+                grad *= learningRate;
+                if(sparsity)
+                    grad += grad * sparsityTarget * sparsityRate;
+            }
+
+            if(selfMomentum)
+                grad += grad * momentum + grad * (1 - momentum);
+            else if(last != null)
+                grad += lastData[lastOffset + i] * momentum + grad * (1 - momentum);
+
+            grad /= batchSize;
+
+            if(l2) {
+                if(useAdaGrad)
+                    grad -= param * l2Coefficient * rate;
+                else
+                    grad -= param * l2Rate;
+            }
+
+            gData[gOffset + i] = grad;
+        }
+
+        if(g != gradient)
+            FlatArrayUtil.copy(g,gradient);
+        if(history != null && history != adaGrad.historicalGradient)
+            FlatArrayUtil.copy(history,adaGrad.historicalGradient);
+    }
+
 
     @Override
     public double score() {
@@ -498,17 +544,50 @@ public abstract class BaseNeuralNetwork implements NeuralNetwork,Persistable {
         this.wAdaGrad = n.wAdaGrad;
         this.hBiasAdaGrad = n.hBiasAdaGrad;
         this.vBiasAdaGrad = n.vBiasAdaGrad;
+        this.wUpdater = n.wUpdater;
+        this.hBiasUpdater = n.hBiasUpdater;
+        this.vBiasUpdater = n.vBiasUpdater;
     }
 
     /**
-     * Load (using {@link ObjectInputStream}
+     * Load a network written by {@link #write(OutputStream)}: the configuration
+     * and the weights and biases in the binary model format (see {@link ModelFormat}).
+     * Networks written with java serialization are still read (using {@link ObjectInputStream})
      * @param is the input stream to load from (usually a file)
      */
     public void load(InputStream is) {
         try {
-            ObjectInputStream ois = new ObjectInputStream(is);
-            BaseNeuralNetwork loaded = (BaseNeuralNetwork) ois.readObject();
-            update(loaded);
+            is = ModelFormat.markable(is);
+            if(!ModelFormat.isModel(is)) {
+                ObjectInputStream ois = new ObjectInputStream(is);
+                BaseNeuralNetwork loaded = (BaseNeuralNetwork) ois.readObject();
+                update(loaded);
+                return;
+            }
+
+            ModelReader reader = new ModelReader(is);
+            if(!getClass().isAssignableFrom(Class.forName(reader.getModelType())))
+                throw new IllegalArgumentException("Unable to load a " + reader.getModelType() + " in to a " + getClass().getName());
+            NeuralNetConfiguration conf = ModelFormat.getConfiguration("conf.",reader.getHeader());
+            if(conf != null)
+                this.conf = conf;
+            String name;
+            while((name = reader.next()) != null) {
+                if(name.equals("W"))
+                    W = reader.readArray();
+                else if(name.equals("hBias"))
+                    hBias = reader.readArray();
+                else if(name.equals("vBias"))
+                    vBias = reader.readArray();
+            }
+
+            //training state starts over with the loaded parameters
+            wAdaGrad = W != null ? new AdaGrad(W.rows(),W.columns()) : null;
+            hBiasAdaGrad = hBias != null ? new AdaGrad(hBias.rows(),hBias.columns()) : null;
+            vBiasAdaGrad = vBias != null ? new AdaGrad(vBias.rows(),vBias.columns()) : null;
+            wUpdater = null;
+            hBiasUpdater = null;
+            vBiasUpdater = null;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -607,13 +686,25 @@ public abstract class BaseNeuralNetwork implements NeuralNetwork,Persistable {
         this.vBiasAdaGrad = adaGrad;
     }
     /**
-     * Write this to an object output stream
+     * Write the configuration, weights and biases of this network
+     * in the binary model format (see {@link ModelFormat}).
+     * The adagrad history and updater state are not written.
+     * This does not close the stream
      * @param os the output stream to write to
      */
     public void write(OutputStream os) {
         try {
-            ObjectOutputStream os2 = new ObjectOutputStream(os);
-            os2.writeObject(this);
+            Map<String,String> header = new LinkedHashMap<>();
+            if(conf != null)
+                ModelFormat.putConfiguration("conf.",conf,header);
+            ModelWriter writer = new ModelWriter(os,getClass().getName(),header);
+            if(W != null)
+                writer.writeArray("W",W);
+            if(hBias != null)
+                writer.writeArray("hBias",hBias);
+            if(vBias != null)
+                writer.writeArray("vBias",vBias);
+            writer.finish();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
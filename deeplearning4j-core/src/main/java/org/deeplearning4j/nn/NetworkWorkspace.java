@@ -0,0 +1,276 @@
+package org.deeplearning4j.nn;
+
+import org.apache.commons.math3.random.RandomGenerator;
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.util.FlatArrayUtil;
+import org.nd4j.linalg.api.activation.ActivationFunction;
+import org.nd4j.linalg.api.activation.BaseActivationFunction;
+import org.nd4j.linalg.api.activation.Sigmoid;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.ArrayOps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Preallocated buffers for the forward and backward pass of a {@link BaseMultiLayerNetwork}.
+ *
+ * Layer l maps an input of size in(l) to an output of size out(l), the last layer being the output layer.
+ * For a mini batch of n rows the workspace holds:
+ * the activations (n x out(l)), the errors (n x out(l)),
+ * the weight gradients (in(l) x out(l)) and bias gradients (1 x out(l)) along with
+ * the scratch matrices needed to compute them.
+ * The gradients are views in to one flat gradient laid out like
+ * {@link BaseMultiLayerNetwork#params()}: each layer's weights followed by its bias.
+ *
+ * The buffers are only reallocated when the batch size or the layer sizes change,
+ * so a training loop over equally sized mini batches allocates close to nothing per batch.
+ * A workspace is not thread safe: the network keeps one per thread,
+ * each with its own random generator for drop out and drop connect.
+ *
+ * @author Adam Gibson
+ */
+public class NetworkWorkspace {
+
+    private int batchSize = -1;
+    private int[] layerSizes;
+
+    //activations[0] is the network input, activations[l + 1] the output of layer l
+    private INDArray[] activations;
+    //the stabilized input to each layer
+    private INDArray[] layerInputs;
+    private INDArray[] errors;
+    private INDArray[] derivatives;
+    private INDArray[] transposedActivations;
+    private INDArray[] weightsPlusBias;
+    private INDArray[] transposedWeightsPlusBias;
+    private INDArray[] weightGradients;
+    private INDArray[] biasGradients;
+    private INDArray gradient;
+    //row vectors of ones for summing the columns of the weight gradients
+    private INDArray[] ones;
+    //whether each activation function class can be applied in place, shared by all workspaces
+    private static Map<Class<?>,Boolean> inPlaceActivations = new ConcurrentHashMap<>();
+
+    private List<INDArray> activationList;
+    private List<Pair<INDArray,INDArray>> gradients;
+    private RandomGenerator rng;
+
+    /**
+     * @param rng the random generator for the masks sampled on this workspace's thread
+     */
+    public NetworkWorkspace(RandomGenerator rng) {
+        this.rng = rng;
+    }
+
+    /**
+     * Ensures the buffers fit the given batch size and layer sizes,
+     * reallocating them if either changed
+     * @param batchSize the number of rows in the mini batch
+     * @param layerSizes the input size followed by the output size of each layer
+     * @return true if the buffers were reallocated
+     */
+    public boolean ensure(int batchSize,int[] layerSizes) {
+        if(batchSize == this.batchSize && Arrays.equals(layerSizes,this.layerSizes))
+            return false;
+
+        int numLayers = layerSizes.length - 1;
+        this.batchSize = batchSize;
+        this.layerSizes = layerSizes.clone();
+        activations = new INDArray[numLayers + 1];
+        layerInputs = new INDArray[numLayers];
+        errors = new INDArray[numLayers];
+        derivatives = new INDArray[numLayers + 1];
+        transposedActivations = new INDArray[numLayers];
+        weightsPlusBias = new INDArray[numLayers];
+        transposedWeightsPlusBias = new INDArray[numLayers];
+        weightGradients = new INDArray[numLayers];
+        biasGradients = new INDArray[numLayers];
+        ones = new INDArray[numLayers];
+        activationList = new ArrayList<>(numLayers + 1);
+        gradients = new ArrayList<>(numLayers);
+
+        int length = 0;
+        for(int l = 0; l < numLayers; l++)
+            length += layerSizes[l] * layerSizes[l + 1] + layerSizes[l + 1];
+        gradient = Nd4j.create(1,length);
+
+        activationList.add(null);
+        int offset = 0;
+        for(int l = 0; l < numLayers; l++) {
+            int in = layerSizes[l];
+            int out = layerSizes[l + 1];
+            activations[l + 1] = Nd4j.create(batchSize,out);
+            layerInputs[l] = Nd4j.create(batchSize,in);
+            errors[l] = Nd4j.create(batchSize,out);
+            derivatives[l + 1] = Nd4j.create(batchSize,out);
+            transposedActivations[l] = Nd4j.create(in,batchSize);
+            weightsPlusBias[l] = Nd4j.create(in,out);
+            transposedWeightsPlusBias[l] = Nd4j.create(out,in);
+            weightGradients[l] = FlatArrayUtil.view(gradient.data(),offset,new int[]{in,out});
+            offset += in * out;
+            biasGradients[l] = FlatArrayUtil.view(gradient.data(),offset,new int[]{out});
+            offset += out;
+            ones[l] = Nd4j.ones(1,in);
+            activationList.add(activations[l + 1]);
+            gradients.add(new Pair<>(weightGradients[l],biasGradients[l]));
+        }
+
+        return true;
+    }
+
+    /**
+     * Applies the activation function to the given matrix in place.
+     * Functions that only override the element wise transform are applied
+     * without a copy, others are computed and copied in to the matrix
+     * @param function the activation function
+     * @param toActivate the matrix to transform
+     */
+    public static void activate(ActivationFunction function,INDArray toActivate) {
+        if(isInPlace(function))
+            new ArrayOps().from(toActivate).op(function.transformClazz()).build().exec();
+        else
+            FlatArrayUtil.copy(function.apply(toActivate),toActivate);
+    }
+
+    /**
+     * Computes the derivative of the activation function given its output
+     * @param function the activation function
+     * @param activation the output of the activation function
+     * @param result the matrix to write the derivative to
+     * @return the result
+     */
+    public static INDArray derivative(ActivationFunction function,INDArray activation,INDArray result) {
+        //sigmoid's derivative is computed from its output as (1 - f) * f
+        if(function instanceof Sigmoid)
+            return FlatArrayUtil.copy(activation,result).rsubi(1).muli(activation);
+        return FlatArrayUtil.copy(function.applyDerivative(activation),result);
+    }
+
+    /**
+     * Copies the transpose of the given matrix in to the result
+     * @param matrix the matrix to transpose
+     * @param result the matrix to copy the transpose in to
+     * @return the result
+     */
+    public static INDArray transpose(INDArray matrix,INDArray result) {
+        if(FlatArrayUtil.isContiguous(matrix) && FlatArrayUtil.isContiguous(result)) {
+            double[] from = matrix.data().asDouble();
+            double[] to = result.data().asDouble();
+            int fromOffset = matrix.offset();
+            int toOffset = result.offset();
+            int rows = matrix.rows();
+            int columns = matrix.columns();
+            for(int j = 0; j < columns; j++)
+                for(int i = 0; i < rows; i++)
+                    to[toOffset + i * columns + j] = from[fromOffset + j * rows + i];
+            return result;
+        }
+
+        for(int i = 0; i < matrix.rows(); i++)
+            for(int j = 0; j < matrix.columns(); j++)
+                result.putScalar(new int[]{j,i},matrix.getDouble(i,j));
+        return result;
+    }
+
+    /**
+     * Whether the function's apply is the element wise transform, ie: it can be applied without a copy
+     * @param function the activation function
+     * @return true if {@link #activate(ActivationFunction, INDArray)} applies it in place
+     */
+    public static boolean isInPlace(ActivationFunction function) {
+        Boolean ret = inPlaceActivations.get(function.getClass());
+        if(ret == null) {
+            try {
+                ret = function instanceof BaseActivationFunction && function.transformClazz() != null
+                        && function.getClass().getMethod("apply",INDArray.class).getDeclaringClass() == BaseActivationFunction.class;
+            } catch (NoSuchMethodException e) {
+                ret = false;
+            }
+            inPlaceActivations.put(function.getClass(),ret);
+        }
+        return ret;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public RandomGenerator getRng() {
+        return rng;
+    }
+
+    /**
+     * The activations of each layer; the first element is the network input
+     * @return the activations, backed by the workspace
+     */
+    public List<INDArray> activationList() {
+        return activationList;
+    }
+
+    /**
+     * The weight and bias gradients of each layer
+     * @return the gradients, backed by the workspace
+     */
+    public List<Pair<INDArray,INDArray>> gradients() {
+        return gradients;
+    }
+
+    public INDArray activation(int i) {
+        return activations[i];
+    }
+
+    public void setInput(INDArray input) {
+        activations[0] = input;
+        activationList.set(0,input);
+    }
+
+    public INDArray layerInput(int layer) {
+        return layerInputs[layer];
+    }
+
+    public INDArray error(int layer) {
+        return errors[layer];
+    }
+
+    public INDArray derivativeBuffer(int i) {
+        return derivatives[i];
+    }
+
+    public INDArray transposedActivation(int layer) {
+        return transposedActivations[layer];
+    }
+
+    public INDArray weightsPlusBias(int layer) {
+        return weightsPlusBias[layer];
+    }
+
+    public INDArray transposedWeightsPlusBias(int layer) {
+        return transposedWeightsPlusBias[layer];
+    }
+
+    public INDArray weightGradient(int layer) {
+        return weightGradients[layer];
+    }
+
+    /**
+     * The gradients of all of the layers as one flat row vector
+     * @return the flat gradient, backing {@link #gradients()}
+     */
+    public INDArray gradient() {
+        return gradient;
+    }
+
+    public INDArray biasGradient(int layer) {
+        return biasGradients[layer];
+    }
+
+    public INDArray ones(int layer) {
+        return ones[layer];
+    }
+
+}
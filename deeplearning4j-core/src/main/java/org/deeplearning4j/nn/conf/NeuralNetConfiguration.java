@@ -81,6 +81,23 @@ public class NeuralNetConfiguration implements Serializable,Cloneable {
     private int[] stride = {2,2};
 
     private int numInFeatureMaps = 2;
+    //persistent contrastive divergence: the number of fantasy particles kept across mini batches, 0 for cd-k
+    private int persistentChains = 0;
+    //fast persistent contrastive divergence: the learning rate of the fast weights, 0 for no fast weights
+    private float fastWeightsLearningRate = 0f;
+    //the fast weights decay by this much every update
+    private float fastWeightsDecay = 0.95f;
+    //how gradients are turned in to updates, DEFAULT uses useAdaGrad and momentum
+    private Updater updater = Updater.DEFAULT;
+    //decay of the moving average of squared gradients for rmsprop
+    private float rmsDecay = 0.95f;
+    //decay of the moving averages of the gradient and squared gradient for adam
+    private float adamMeanDecay = 0.9f;
+    private float adamVarDecay = 0.999f;
+    //the number of correction pairs kept by LBFGS
+    private int lbfgsHistorySize = 10;
+    //how convolution and sub sampling layers pool each stride x stride window
+    private PoolingType poolingType = PoolingType.MAX;
 
     public NeuralNetConfiguration() {
 
@@ -91,6 +108,23 @@ public class NeuralNetConfiguration implements Serializable,Cloneable {
         NET_ACTIVATION,HIDDEN_LAYER_ACTIVATION,SAMPLE
     }
 
+    /**
+     * How convolution and sub sampling layers reduce each pooling window:
+     * its maximum or its mean
+     */
+    public static enum PoolingType {
+        MAX,MEAN
+    }
+
+    /**
+     * How a gradient is turned in to an update.
+     * DEFAULT applies adagrad (if useAdaGrad) or the learning rate, sparsity and momentum as configured,
+     * the others are the standard update rules using the momentum of this configuration where relevant
+     */
+    public static enum Updater {
+        DEFAULT,SGD,MOMENTUM,NESTEROV,ADAGRAD,RMSPROP,ADAM
+    }
+
 
     public NeuralNetConfiguration(float sparsity, boolean useAdaGrad, float lr, int k, float corruptionLevel, int numIterations, float momentum, float l2, boolean useRegularization, Map<Integer, Float> momentumAfter, int resetAdaGradIterations, float dropOut, boolean applySparsity, WeightInit weightInit, NeuralNetwork.OptimizationAlgorithm optimizationAlgo, LossFunctions.LossFunction lossFunction, int renderWeightsEveryNumEpochs, boolean concatBiases, boolean constrainGradientToUnitNorm, RandomGenerator rng, RealDistribution dist, long seed, int nIn, int nOut, ActivationFunction activationFunction, RBM.VisibleUnit visibleUnit, RBM.HiddenUnit hiddenUnit, ActivationType activationType,int[] weightShape,int[] filterSize,int numFeatureMaps,int[] stride,int[] featureMapSize,int numInFeatureMaps) {
         this.sparsity = sparsity;
@@ -137,6 +171,7 @@ public class NeuralNetConfiguration implements Serializable,Cloneable {
         this.sparsity = neuralNetConfiguration.sparsity;
         this.useAdaGrad = neuralNetConfiguration.useAdaGrad;
         this.lr = neuralNetConfiguration.lr;
+        this.k = neuralNetConfiguration.k;
         this.momentum = neuralNetConfiguration.momentum;
         this.l2 = neuralNetConfiguration.l2;
         this.useRegularization = neuralNetConfiguration.useRegularization;
@@ -163,6 +198,16 @@ public class NeuralNetConfiguration implements Serializable,Cloneable {
         this.numFeatureMaps = neuralNetConfiguration.numFeatureMaps;
         this.filterSize = neuralNetConfiguration.filterSize;
         this.featureMapSize = neuralNetConfiguration.featureMapSize;
+        this.numInFeatureMaps = neuralNetConfiguration.numInFeatureMaps;
+        this.poolingType = neuralNetConfiguration.poolingType;
+        this.persistentChains = neuralNetConfiguration.persistentChains;
+        this.fastWeightsLearningRate = neuralNetConfiguration.fastWeightsLearningRate;
+        this.fastWeightsDecay = neuralNetConfiguration.fastWeightsDecay;
+        this.updater = neuralNetConfiguration.updater;
+        this.rmsDecay = neuralNetConfiguration.rmsDecay;
+        this.adamMeanDecay = neuralNetConfiguration.adamMeanDecay;
+        this.adamVarDecay = neuralNetConfiguration.adamVarDecay;
+        this.lbfgsHistorySize = neuralNetConfiguration.lbfgsHistorySize;
         if(dist == null)
             this.dist = new NormalDistribution(rng,0,.01,NormalDistribution.DEFAULT_INVERSE_ABSOLUTE_ACCURACY);
 
@@ -173,6 +218,78 @@ public class NeuralNetConfiguration implements Serializable,Cloneable {
         return numInFeatureMaps;
     }
 
+    public int getPersistentChains() {
+        return persistentChains;
+    }
+
+    public void setPersistentChains(int persistentChains) {
+        this.persistentChains = persistentChains;
+    }
+
+    public float getFastWeightsLearningRate() {
+        return fastWeightsLearningRate;
+    }
+
+    public void setFastWeightsLearningRate(float fastWeightsLearningRate) {
+        this.fastWeightsLearningRate = fastWeightsLearningRate;
+    }
+
+    public float getFastWeightsDecay() {
+        return fastWeightsDecay;
+    }
+
+    public void setFastWeightsDecay(float fastWeightsDecay) {
+        this.fastWeightsDecay = fastWeightsDecay;
+    }
+
+    public Updater getUpdater() {
+        return updater;
+    }
+
+    public void setUpdater(Updater updater) {
+        this.updater = updater;
+    }
+
+    public float getRmsDecay() {
+        return rmsDecay;
+    }
+
+    public void setRmsDecay(float rmsDecay) {
+        this.rmsDecay = rmsDecay;
+    }
+
+    public float getAdamMeanDecay() {
+        return adamMeanDecay;
+    }
+
+    public void setAdamMeanDecay(float adamMeanDecay) {
+        this.adamMeanDecay = adamMeanDecay;
+    }
+
+    public float getAdamVarDecay() {
+        return adamVarDecay;
+    }
+
+    public void setAdamVarDecay(float adamVarDecay) {
+        this.adamVarDecay = adamVarDecay;
+    }
+
+    public int getLbfgsHistorySize() {
+        return lbfgsHistorySize;
+    }
+
+    public void setLbfgsHistorySize(int lbfgsHistorySize) {
+        this.lbfgsHistorySize = lbfgsHistorySize;
+    }
+
+    public PoolingType getPoolingType() {
+        return poolingType;
+    }
+
+    public void setPoolingType(PoolingType poolingType) {
+        this.poolingType = poolingType;
+    }
+
     public void setNumInFeatureMaps(int numInFeatureMaps) {
         this.numInFeatureMaps = numInFeatureMaps;
     }
@@ -501,6 +618,15 @@ public class NeuralNetConfiguration implements Serializable,Cloneable {
                 ", featureMapSize=" + Arrays.toString(featureMapSize) +
                 ", stride=" + Arrays.toString(stride) +
                 ", numInFeatureMaps=" + numInFeatureMaps +
+                ", persistentChains=" + persistentChains +
+                ", fastWeightsLearningRate=" + fastWeightsLearningRate +
+                ", fastWeightsDecay=" + fastWeightsDecay +
+                ", updater=" + updater +
+                ", rmsDecay=" + rmsDecay +
+                ", adamMeanDecay=" + adamMeanDecay +
+                ", adamVarDecay=" + adamVarDecay +
+                ", lbfgsHistorySize=" + lbfgsHistorySize +
+                ", poolingType=" + poolingType +
                 '}';
     }
 
@@ -539,6 +665,15 @@ public class NeuralNetConfiguration implements Serializable,Cloneable {
         if (rng != null ? !rng.equals(that.rng) : that.rng != null) return false;
         if (visibleUnit != that.visibleUnit) return false;
         if (weightInit != that.weightInit) return false;
+        if (persistentChains != that.persistentChains) return false;
+        if (Float.compare(that.fastWeightsLearningRate, fastWeightsLearningRate) != 0) return false;
+        if (Float.compare(that.fastWeightsDecay, fastWeightsDecay) != 0) return false;
+        if (updater != that.updater) return false;
+        if (Float.compare(that.rmsDecay, rmsDecay) != 0) return false;
+        if (Float.compare(that.adamMeanDecay, adamMeanDecay) != 0) return false;
+        if (Float.compare(that.adamVarDecay, adamVarDecay) != 0) return false;
+        if (lbfgsHistorySize != that.lbfgsHistorySize) return false;
+        if (poolingType != that.poolingType) return false;
 
         return true;
     }
@@ -572,6 +707,15 @@ public class NeuralNetConfiguration implements Serializable,Cloneable {
         result = 31 * result + activationFunction.hashCode();
         result = 31 * result + visibleUnit.hashCode();
         result = 31 * result + hiddenUnit.hashCode();
+        result = 31 * result + persistentChains;
+        result = 31 * result + (fastWeightsLearningRate != +0.0f ? Float.floatToIntBits(fastWeightsLearningRate) : 0);
+        result = 31 * result + (fastWeightsDecay != +0.0f ? Float.floatToIntBits(fastWeightsDecay) : 0);
+        result = 31 * result + (updater != null ? updater.hashCode() : 0);
+        result = 31 * result + (rmsDecay != +0.0f ? Float.floatToIntBits(rmsDecay) : 0);
+        result = 31 * result + (adamMeanDecay != +0.0f ? Float.floatToIntBits(adamMeanDecay) : 0);
+        result = 31 * result + (adamVarDecay != +0.0f ? Float.floatToIntBits(adamVarDecay) : 0);
+        result = 31 * result + lbfgsHistorySize;
+        result = 31 * result + (poolingType != null ? poolingType.hashCode() : 0);
         return result;
     }
 
@@ -671,12 +815,110 @@ public class NeuralNetConfiguration implements Serializable,Cloneable {
         private int numIterations = 1000;
         private ActivationType activationType = ActivationType.HIDDEN_LAYER_ACTIVATION;
         private int[] weightShape;
-        private int[] filterSize;
+        private int[] filterSize = {2,2};
         private int numFeatureMaps = 2;
         private int[] featureMapSize = {2,2};
         private int numInFeatureMaps = 2;
         //subsampling layers
-        private int[] stride;
+        private int[] stride = {2,2};
+        private int persistentChains = 0;
+        private float fastWeightsLearningRate = 0f;
+        private float fastWeightsDecay = 0.95f;
+        private Updater updater = Updater.DEFAULT;
+        private float rmsDecay = 0.95f;
+        private float adamMeanDecay = 0.9f;
+        private float adamVarDecay = 0.999f;
+        private int lbfgsHistorySize = 10;
+        private PoolingType poolingType = PoolingType.MAX;
+
+        /**
+         * How gradients are turned in to updates
+         * @param updater the update rule
+         * @return the builder
+         */
+        public Builder updater(Updater updater) {
+            this.updater = updater;
+            return this;
+        }
+
+        /**
+         * The decay of the moving average of squared gradients for {@link Updater#RMSPROP}
+         * @param rmsDecay the decay
+         * @return the builder
+         */
+        public Builder rmsDecay(float rmsDecay) {
+            this.rmsDecay = rmsDecay;
+            return this;
+        }
+
+        /**
+         * The decays of the moving averages of the gradient and the squared gradient for {@link Updater#ADAM}
+         * @param adamMeanDecay the decay of the gradient average (beta 1)
+         * @param adamVarDecay the decay of the squared gradient average (beta 2)
+         * @return the builder
+         */
+        public Builder adamDecay(float adamMeanDecay,float adamVarDecay) {
+            this.adamMeanDecay = adamMeanDecay;
+            this.adamVarDecay = adamVarDecay;
+            return this;
+        }
+
+        /**
+         * The number of correction pairs kept by {@link NeuralNetwork.OptimizationAlgorithm#LBFGS}
+         * @param lbfgsHistorySize the history size
+         * @return the builder
+         */
+        public Builder lbfgsHistorySize(int lbfgsHistorySize) {
+            this.lbfgsHistorySize = lbfgsHistorySize;
+            return this;
+        }
+
+        /**
+         * How convolution and sub sampling layers pool each stride x stride window
+         * @param poolingType max or mean pooling
+         * @return the builder
+         */
+        public Builder poolingType(PoolingType poolingType) {
+            this.poolingType = poolingType;
+            return this;
+        }
+
+        /**
+         * The number of gibbs steps for contrastive divergence
+         * @param k the number of gibbs steps
+         * @return the builder
+         */
+        public Builder k(int k) {
+            this.k = k;
+            return this;
+        }
+
+        /**
+         * Use persistent contrastive divergence: the gibbs chains are continued
+         * from where the last mini batch left them rather than restarted at the input
+         * @param persistentChains the number of fantasy particles (chains) to keep
+         * @return the builder
+         */
+        public Builder persistentChains(int persistentChains) {
+            this.persistentChains = persistentChains;
+            return this;
+        }
+
+        /**
+         * Use fast weights for the persistent chains (fast persistent contrastive divergence).
+         * Only used with persistent chains.
+         * @param fastWeightsLearningRate the learning rate of the fast weights
+         * @return the builder
+         */
+        public Builder fastWeightsLearningRate(float fastWeightsLearningRate) {
+            this.fastWeightsLearningRate = fastWeightsLearningRate;
+            return this;
+        }
+
+        public Builder fastWeightsDecay(float fastWeightsDecay) {
+            this.fastWeightsDecay = fastWeightsDecay;
+            return this;
+        }
 
 
 
@@ -824,6 +1066,15 @@ public class NeuralNetConfiguration implements Serializable,Cloneable {
                     resetAdaGradIterations,  dropOut,  applySparsity,  weightInit,  optimizationAlgo, lossFunction,  renderWeightsEveryNumEpochs,
                     concatBiases,  constrainGradientToUnitNorm,  rng,
                     dist,  seed,  nIn,  nOut,  activationFunction, visibleUnit,hiddenUnit,  activationType,weightShape,filterSize,numFeatureMaps,stride,featureMapSize,numInFeatureMaps);
+            ret.setPersistentChains(persistentChains);
+            ret.setFastWeightsLearningRate(fastWeightsLearningRate);
+            ret.setFastWeightsDecay(fastWeightsDecay);
+            ret.setUpdater(updater);
+            ret.setRmsDecay(rmsDecay);
+            ret.setAdamMeanDecay(adamMeanDecay);
+            ret.setAdamVarDecay(adamVarDecay);
+            ret.setLbfgsHistorySize(lbfgsHistorySize);
+            ret.setPoolingType(poolingType);
             return ret;
         }
 
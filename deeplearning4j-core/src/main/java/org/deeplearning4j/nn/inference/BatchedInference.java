@@ -0,0 +1,258 @@
+package org.deeplearning4j.nn.inference;
+
+import org.deeplearning4j.util.FlatArrayUtil;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro batching in front of an {@link InferenceNetwork}.
+ *
+ * Requests from any number of threads are queued; one dispatcher thread takes the
+ * waiting requests (up to a maximum number of rows, waiting at most a given time for
+ * more to arrive), stacks them in to one matrix and feeds it forward once,
+ * so concurrent single example requests share one matrix multiply per layer.
+ * The output rows are then copied back to each request.
+ *
+ * @author Adam Gibson
+ */
+public class BatchedInference implements Closeable {
+
+    private static Logger log = LoggerFactory.getLogger(BatchedInference.class);
+
+    private InferenceNetwork network;
+    private int maxBatchSize;
+    private long maxWaitNanos;
+    private BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private Thread dispatcher;
+    private volatile boolean closed = false;
+    //a request that did not fit in the last batch
+    private Request carried;
+    //the stacked input of a batch
+    private INDArray batchInput;
+
+    /**
+     * @param network the network to feed forward
+     * @param maxBatchSize the maximum number of rows fed forward at once
+     * @param maxWaitMicros how long to wait for more requests once one arrives
+     */
+    public BatchedInference(InferenceNetwork network,int maxBatchSize,long maxWaitMicros) {
+        if(maxBatchSize < 1)
+            throw new IllegalArgumentException("Max batch size must be at least 1");
+        this.network = network;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+        this.batchInput = Nd4j.create(maxBatchSize * network.numInputs());
+        dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        },"batched-inference");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Queues examples to be fed forward
+     * @param input the examples, one per row
+     * @return the output of the network for the examples
+     */
+    public Future<INDArray> submit(INDArray input) {
+        if(input.columns() != network.numInputs())
+            throw new IllegalArgumentException("Input must have " + network.numInputs() + " columns but had " + input.columns());
+        Request request = new Request(input);
+        if(closed)
+            throw new IllegalStateException("Batched inference is closed");
+        queue.add(request);
+        //closed in between: make sure the request doesn't wait forever
+        if(closed)
+            failPending();
+        return request;
+    }
+
+    /**
+     * Feeds the examples forward as part of the next batch, waiting for the result
+     * @param input the examples, one per row
+     * @return the output of the network for the examples
+     */
+    public INDArray output(INDArray input) {
+        try {
+            return submit(input).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for output",e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * The label with the highest output for each example
+     * @param input the examples, one per row
+     * @return the index of the highest output of each row
+     */
+    public int[] predict(INDArray input) {
+        return InferenceNetwork.argMax(output(input));
+    }
+
+    /**
+     * The k labels with the highest output for each example
+     * @param input the examples, one per row
+     * @param k the number of labels to return per example
+     * @return for each row the indexes of the k highest outputs, highest first
+     */
+    public int[][] topK(INDArray input,int k) {
+        return InferenceNetwork.argTopK(output(input),k);
+    }
+
+    /**
+     * Stops the dispatcher; requests that have not been fed forward fail
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failPending();
+    }
+
+    private void dispatch() {
+        List<Request> batch = new ArrayList<>();
+        while(!closed) {
+            try {
+                Request first = carried != null ? carried : queue.take();
+                carried = null;
+                batch.add(first);
+                int rows = first.input.rows();
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while(rows < maxBatchSize) {
+                    Request next = queue.poll(deadline - System.nanoTime(),TimeUnit.NANOSECONDS);
+                    if(next == null)
+                        break;
+                    if(rows + next.input.rows() > maxBatchSize) {
+                        carried = next;
+                        break;
+                    }
+                    batch.add(next);
+                    rows += next.input.rows();
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+
+            run(batch);
+            batch.clear();
+        }
+
+        for(Request request : batch)
+            request.fail(new IllegalStateException("Batched inference is closed"));
+        if(carried != null)
+            carried.fail(new IllegalStateException("Batched inference is closed"));
+    }
+
+    //feeds the batch forward in one pass and hands each request its rows
+    private void run(List<Request> batch) {
+        try {
+            if(batch.size() == 1) {
+                Request request = batch.get(0);
+                request.set(network.output(request.input));
+                return;
+            }
+
+            int rows = 0;
+            for(Request request : batch)
+                rows += request.input.rows();
+
+            INDArray input = FlatArrayUtil.view(batchInput.data(),0,new int[]{rows,network.numInputs()});
+            int row = 0;
+            for(Request request : batch) {
+                copyRows(request.input,input,row);
+                row += request.input.rows();
+            }
+
+            INDArray output = network.output(input);
+            row = 0;
+            for(Request request : batch) {
+                INDArray result = Nd4j.create(request.input.rows(),output.columns());
+                copyRows(output,row,result);
+                row += request.input.rows();
+                request.set(result);
+            }
+        }
+        catch(Exception e) {
+            log.warn("Unable to feed forward batch",e);
+            for(Request request : batch)
+                request.fail(e);
+        }
+    }
+
+    //copies all of the rows of from in to the rows of the contiguous matrix to, starting at the given row
+    private static void copyRows(INDArray from,INDArray to,int row) {
+        from = FlatArrayUtil.contiguous(from);
+        int rows = from.rows();
+        double[] src = from.data().asDouble();
+        double[] dst = to.data().asDouble();
+        for(int j = 0; j < from.columns(); j++)
+            System.arraycopy(src,from.offset() + j * rows,dst,to.offset() + j * to.rows() + row,rows);
+    }
+
+    //copies the rows of the contiguous matrix from starting at the given row in to all of the rows of to
+    private static void copyRows(INDArray from,int row,INDArray to) {
+        int rows = to.rows();
+        double[] src = from.data().asDouble();
+        double[] dst = to.data().asDouble();
+        for(int j = 0; j < to.columns(); j++)
+            System.arraycopy(src,from.offset() + j * from.rows() + row,dst,to.offset() + j * rows,rows);
+    }
+
+    private void failPending() {
+        Request request;
+        while((request = queue.poll()) != null)
+            request.fail(new IllegalStateException("Batched inference is closed"));
+    }
+
+    private static class Request extends FutureTask<INDArray> {
+        private static final Callable<INDArray> NONE = new Callable<INDArray>() {
+            @Override
+            public INDArray call() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        private INDArray input;
+
+        private Request(INDArray input) {
+            super(NONE);
+            this.input = input;
+        }
+
+        @Override
+        protected void set(INDArray result) {
+            super.set(result);
+        }
+
+        private void fail(Throwable t) {
+            setException(t);
+        }
+    }
+
+}
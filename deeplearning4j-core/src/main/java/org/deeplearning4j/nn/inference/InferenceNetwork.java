@@ -0,0 +1,283 @@
+package org.deeplearning4j.nn.inference;
+
+import org.deeplearning4j.nn.BaseMultiLayerNetwork;
+import org.deeplearning4j.nn.NetworkWorkspace;
+import org.deeplearning4j.nn.api.Layer;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.layers.OutputLayer;
+import org.deeplearning4j.util.FlatArrayUtil;
+import org.nd4j.linalg.api.activation.ActivationFunction;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+
+/**
+ * A read only copy of a trained {@link BaseMultiLayerNetwork} for prediction.
+ *
+ * The weights and biases are copied when it is built, so training the original network
+ * afterwards does not change it. Nothing is written to the copied parameters and each
+ * thread feeds forward in to its own scratch buffers, so any number of threads can call
+ * {@link #output(INDArray)}, {@link #predict(INDArray)} and {@link #topK(INDArray, int)}
+ * concurrently on one instance.
+ *
+ * The forward pass is the network's hidden layer activation pass: every layer is one
+ * matrix multiply of the whole batch plus the bias and activation.
+ * Drop out and drop connect are training time only and are not applied.
+ * Use {@link BatchedInference} to combine concurrent single example requests in to one batch.
+ *
+ * @author Adam Gibson
+ */
+public class InferenceNetwork {
+
+    private INDArray[] weights;
+    private INDArray[] biases;
+    private ActivationFunction[] activationFunctions;
+    //the input size followed by the output size of each layer
+    private int[] layerSizes;
+    private ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    /**
+     * Copies the parameters of a trained network
+     * @param network the network to copy
+     * @throws IllegalArgumentException if a layer does not use hidden layer activations
+     * or the output layer concatenates its bias
+     */
+    public InferenceNetwork(BaseMultiLayerNetwork network) {
+        Layer[] layers = network.getLayers();
+        if(layers == null || layers[layers.length - 1] == null)
+            throw new IllegalStateException("Network is not initialized");
+
+        int numLayers = layers.length;
+        weights = new INDArray[numLayers];
+        biases = new INDArray[numLayers];
+        activationFunctions = new ActivationFunction[numLayers];
+        layerSizes = new int[numLayers + 1];
+
+        for(int i = 0; i < numLayers; i++) {
+            Layer layer = i == numLayers - 1 ? network.getOutputLayer() : layers[i];
+            NeuralNetConfiguration conf = layer.conf();
+            if(layer instanceof OutputLayer) {
+                if(conf.isConcatBiases())
+                    throw new IllegalArgumentException("Output layers with concatenated biases are not supported");
+            }
+            else if(conf.getActivationType() != NeuralNetConfiguration.ActivationType.HIDDEN_LAYER_ACTIVATION)
+                throw new IllegalArgumentException("Layer " + i + " uses " + conf.getActivationType() + ", only " + NeuralNetConfiguration.ActivationType.HIDDEN_LAYER_ACTIVATION + " is supported");
+
+            weights[i] = FlatArrayUtil.copy(layer.getW(),Nd4j.create(layer.getW().rows(),layer.getW().columns()));
+            biases[i] = FlatArrayUtil.copy(layer.getB(),Nd4j.create(1,layer.getB().length()));
+            activationFunctions[i] = conf.getActivationFunction();
+            layerSizes[i] = weights[i].rows();
+            layerSizes[i + 1] = weights[i].columns();
+        }
+    }
+
+    /**
+     * The number of columns of an input
+     * @return the input size
+     */
+    public int numInputs() {
+        return layerSizes[0];
+    }
+
+    /**
+     * The number of columns of an output
+     * @return the output size
+     */
+    public int numOutputs() {
+        return layerSizes[layerSizes.length - 1];
+    }
+
+    /**
+     * The output of the network
+     * @param input the examples, one per row
+     * @return the output of the output layer, one row per example
+     */
+    public INDArray output(INDArray input) {
+        return forward(input,Nd4j.create(input.rows(),numOutputs()));
+    }
+
+    /**
+     * Feeds forward in to the given matrix
+     * @param input the examples, one per row
+     * @param result the rows x outputs matrix to write the output to
+     * @return the result
+     */
+    public INDArray output(INDArray input,INDArray result) {
+        if(result.rows() != input.rows() || result.columns() != numOutputs())
+            throw new IllegalArgumentException("Result must be " + input.rows() + " x " + numOutputs());
+        return forward(input,result);
+    }
+
+    /**
+     * The label with the highest output for each example
+     * @param input the examples, one per row
+     * @return the index of the highest output of each row
+     */
+    public int[] predict(INDArray input) {
+        return argMax(forward(input,null));
+    }
+
+    /**
+     * The k labels with the highest output for each example
+     * @param input the examples, one per row
+     * @param k the number of labels to return per example
+     * @return for each row the indexes of the k highest outputs, highest first
+     */
+    public int[][] topK(INDArray input,int k) {
+        return argTopK(forward(input,null),k);
+    }
+
+    /*
+     * Feeds forward using this thread's scratch buffers.
+     * A null result leaves the output in the scratch buffers, valid until this thread's next call.
+     */
+    private INDArray forward(INDArray input,INDArray result) {
+        if(input.columns() != numInputs())
+            throw new IllegalArgumentException("Input must have " + numInputs() + " columns but had " + input.columns());
+
+        Scratch buffers = scratch.get();
+        int rows = input.rows();
+        buffers.ensure(rows,layerSizes);
+
+        //stabilizing is done in place: don't modify the caller's input
+        INDArray currInput = FlatArrayUtil.copy(input,buffers.view(0,rows,numInputs()));
+        int last = weights.length - 1;
+        for(int i = 0; i < weights.length; i++) {
+            INDArray activation = i == last && result != null ? result : buffers.view(i + 1,rows,layerSizes[i + 1]);
+            if(i < last)
+                Transforms.stabilize(currInput,1,false);
+            currInput.mmuli(weights[i],activation).addiRowVector(biases[i]);
+            activate(activationFunctions[i],activation);
+            currInput = activation;
+        }
+
+        return currInput;
+    }
+
+    private static void activate(ActivationFunction function,INDArray activation) {
+        if(activation.rows() > 1 || NetworkWorkspace.isInPlace(function)) {
+            NetworkWorkspace.activate(function,activation);
+            return;
+        }
+
+        //row wise functions (soft max) don't handle a single row: apply them to the row twice
+        int columns = activation.columns();
+        double[] data = new double[2 * columns];
+        for(int j = 0; j < columns; j++)
+            data[2 * j] = data[2 * j + 1] = activation.getDouble(0,j);
+        INDArray applied = function.apply(Nd4j.create(data,new int[]{2,columns}));
+        for(int j = 0; j < columns; j++)
+            activation.putScalar(j,applied.getDouble(0,j));
+    }
+
+    /**
+     * The column of the highest value of each row,
+     * the first one when there are ties
+     * @param matrix the matrix to search
+     * @return the column of the maximum of each row
+     */
+    public static int[] argMax(INDArray matrix) {
+        int rows = matrix.rows();
+        int columns = matrix.columns();
+        int[] ret = new int[rows];
+        double[] best = new double[rows];
+
+        if(FlatArrayUtil.isContiguous(matrix)) {
+            //column major: walk the columns keeping the best of every row
+            double[] data = matrix.data().asDouble();
+            int offset = matrix.offset();
+            System.arraycopy(data,offset,best,0,rows);
+            for(int j = 1; j < columns; j++) {
+                int column = offset + j * rows;
+                for(int i = 0; i < rows; i++) {
+                    if(data[column + i] > best[i]) {
+                        best[i] = data[column + i];
+                        ret[i] = j;
+                    }
+                }
+            }
+        }
+        else {
+            for(int i = 0; i < rows; i++)
+                best[i] = matrix.getDouble(i,0);
+            for(int j = 1; j < columns; j++) {
+                for(int i = 0; i < rows; i++) {
+                    double value = matrix.getDouble(i,j);
+                    if(value > best[i]) {
+                        best[i] = value;
+                        ret[i] = j;
+                    }
+                }
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * The columns of the k highest values of each row
+     * @param matrix the matrix to search
+     * @param k the number of columns per row, at most the number of columns
+     * @return for each row the k columns with the highest values, highest first
+     */
+    public static int[][] argTopK(INDArray matrix,int k) {
+        int rows = matrix.rows();
+        int columns = matrix.columns();
+        if(k < 1 || k > columns)
+            throw new IllegalArgumentException("k must be between 1 and " + columns);
+
+        int[][] ret = new int[rows][k];
+        double[][] best = new double[rows][k];
+        boolean contiguous = FlatArrayUtil.isContiguous(matrix);
+        double[] data = contiguous ? matrix.data().asDouble() : null;
+        int offset = matrix.offset();
+        for(int j = 0; j < columns; j++) {
+            //the first k columns fill the lists
+            int filled = Math.min(j,k);
+            for(int i = 0; i < rows; i++) {
+                double value = contiguous ? data[offset + j * rows + i] : matrix.getDouble(i,j);
+                double[] values = best[i];
+                if(filled == k && value <= values[k - 1])
+                    continue;
+                //insertion in to the sorted list, dropping the lowest when full
+                int pos = filled == k ? k - 1 : filled;
+                int[] indexes = ret[i];
+                while(pos > 0 && values[pos - 1] < value) {
+                    values[pos] = values[pos - 1];
+                    indexes[pos] = indexes[pos - 1];
+                    pos--;
+                }
+                values[pos] = value;
+                indexes[pos] = j;
+            }
+        }
+
+        return ret;
+    }
+
+    //one thread's activations, sized for the largest batch it has seen
+    private static class Scratch {
+        private int capacity = 0;
+        private INDArray[] buffers;
+
+        private void ensure(int rows,int[] layerSizes) {
+            if(rows <= capacity)
+                return;
+            buffers = new INDArray[layerSizes.length];
+            for(int i = 0; i < layerSizes.length; i++)
+                buffers[i] = Nd4j.create(rows * layerSizes[i]);
+            capacity = rows;
+        }
+
+        //the first rows * columns elements of the buffer as a column major matrix
+        private INDArray view(int i,int rows,int columns) {
+            return FlatArrayUtil.view(buffers[i].data(),0,new int[]{rows,columns});
+        }
+    }
+
+}
@@ -2,53 +2,238 @@ package org.deeplearning4j.nn.layers;
 
 import org.apache.commons.math3.distribution.RealDistribution;
 import org.apache.commons.math3.distribution.UniformRealDistribution;
+import org.deeplearning4j.nn.NetworkWorkspace;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
-import org.nd4j.linalg.api.activation.ActivationFunction;
+import org.deeplearning4j.util.ConvolutionUtil;
+import org.deeplearning4j.util.FlatArrayUtil;
 import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.convolution.Convolution;
 import org.nd4j.linalg.factory.Nd4j;
-import org.nd4j.linalg.ops.transforms.Transforms;
-import org.nd4j.linalg.util.ArrayUtil;
 
 /**
- * Convolution layer
+ * Convolution layer: a valid convolution of the input feature maps with numFeatureMaps filters,
+ * followed by pooling of stride x stride windows, a bias per filter and the activation function.
+ *
+ * The input is one example per row, numInFeatureMaps maps of featureMapSize each
+ * (see {@link ConvolutionUtil} for the layout). Each filter is filterSize over all of the input maps.
+ * The convolution is lowered to one matrix multiply of the batch's filter patches with the
+ * (numInFeatureMaps * filterRows * filterColumns) x numFeatureMaps weight matrix,
+ * the bias is a row vector with one element per filter.
+ * The output is numFeatureMaps maps of (featureMapSize - filterSize + 1) / stride per example.
+ *
+ * The patches and pooling indexes of the last activation are kept for
+ * {@link #backpropGradient(INDArray, INDArray, INDArray, INDArray)}.
  *
  * @author Adam Gibson
  */
 public class ConvolutionDownSampleLayer extends BaseLayer {
 
-       public ConvolutionDownSampleLayer(NeuralNetConfiguration conf, INDArray W, INDArray b, INDArray input) {
+    private SubsamplingLayer subsampling;
+    private INDArray activation;
+    //buffers sized for the last batch: the patch matrix, the convolved maps and the backward pass scratch
+    private int batchSize = -1;
+    private INDArray patches;
+    private INDArray convolved;
+    private INDArray scratch;
+
+    public ConvolutionDownSampleLayer(NeuralNetConfiguration conf, INDArray W, INDArray b, INDArray input) {
         super(conf, W, b, input);
+        NeuralNetConfiguration poolConf = conf.clone();
+        poolConf.setNumInFeatureMaps(conf.getNumFeatureMaps());
+        poolConf.setFeatureMapSize(new int[]{convolvedRows(),convolvedColumns()});
+        subsampling = new SubsamplingLayer(poolConf);
     }
 
 
     public ConvolutionDownSampleLayer(NeuralNetConfiguration conf) {
-        super(conf,null,null,null);
-
-
+        this(conf,null,null,null);
     }
 
     @Override
     protected INDArray createBias() {
-        return Nd4j.zeros(conf.getFilterSize()[0]);
+        return Nd4j.zeros(1,conf.getNumFeatureMaps());
     }
 
+    /**
+     * Uniform in +/- sqrt(6 / (fanIn + fanOut)) where the fan in is the size of a filter
+     * and the fan out the number of filters times the filter size over the pooling window
+     * @return the patchSize x numFeatureMaps weight matrix
+     */
     @Override
     protected INDArray createWeightMatrix() {
-        float prod = ArrayUtil.prod(ArrayUtil.removeIndex(conf.getWeightShape(), 0));
-        float min = -1 / prod;
-        float max = 1 / prod;
-        RealDistribution dist = new UniformRealDistribution(conf.getRng(),min,max);
-        return Nd4j.rand(conf.getWeightShape(),dist);
+        int fanIn = patchSize();
+        double fanOut = conf.getNumFeatureMaps() * conf.getFilterSize()[0] * conf.getFilterSize()[1]
+                / (double) (conf.getStride()[0] * conf.getStride()[1]);
+        double bound = Math.sqrt(6 / (fanIn + fanOut));
+        RealDistribution dist = new UniformRealDistribution(conf.getRng(),-bound,bound);
+        return Nd4j.rand(new int[]{fanIn,conf.getNumFeatureMaps()},dist);
+    }
+
+    /**
+     * The number of weights of each filter
+     * @return the number of input maps times the filter size
+     */
+    public int patchSize() {
+        return conf.getNumInFeatureMaps() * conf.getFilterSize()[0] * conf.getFilterSize()[1];
+    }
+
+    /**
+     * The number of columns of an input
+     * @return the number of input maps times the map size
+     */
+    public int numInputs() {
+        return conf.getNumInFeatureMaps() * conf.getFeatureMapSize()[0] * conf.getFeatureMapSize()[1];
+    }
+
+    /**
+     * The number of columns of the output
+     * @return the number of filters times the pooled map size
+     */
+    public int numOutputs() {
+        return subsampling.numOutputs();
+    }
+
+    /**
+     * The size of the pooled output maps
+     * @return the rows and columns of an output map
+     */
+    public int[] outputMapSize() {
+        return new int[]{subsampling.outputRows(),subsampling.outputColumns()};
+    }
+
+    private int convolvedRows() {
+        return ConvolutionUtil.outputSize(conf.getFeatureMapSize()[0],conf.getFilterSize()[0]);
+    }
+
+    private int convolvedColumns() {
+        return ConvolutionUtil.outputSize(conf.getFeatureMapSize()[1],conf.getFilterSize()[1]);
+    }
+
+    private void ensureBuffers(int rows) {
+        if(rows == batchSize)
+            return;
+        int positions = rows * convolvedRows() * convolvedColumns();
+        patches = Nd4j.create(positions,patchSize());
+        convolved = Nd4j.create(positions,conf.getNumFeatureMaps());
+        scratch = Nd4j.create(positions * Math.max(patchSize(),conf.getNumFeatureMaps()));
+        batchSize = rows;
+    }
+
+    @Override
+    public INDArray activate() {
+        return activate(input);
     }
 
     @Override
     public INDArray activate(INDArray input) {
-        ActivationFunction f = conf.getActivationFunction();
-        INDArray convolution = Convolution.conv2d(input,getW(), Convolution.Type.VALID);
-        INDArray pooled = Transforms.maxPool(convolution, conf.getFilterSize(),true);
-        INDArray bias = b.dimShuffle(new Object[]{'x',0,'x','x'},new int[]{0},new boolean[]{false});
-        pooled.addi(bias.broadcast(pooled.shape()));
-        return f.apply(pooled);
+        if(input == null)
+            throw new IllegalArgumentException("No null input allowed");
+        if(input.columns() != numInputs())
+            throw new IllegalArgumentException("Input must have " + numInputs() + " columns but had " + input.columns());
+        this.input = input;
+        int rows = input.rows();
+        ensureBuffers(rows);
+
+        int[] featureMapSize = conf.getFeatureMapSize();
+        int[] filterSize = conf.getFilterSize();
+        ConvolutionUtil.im2col(input,conf.getNumInFeatureMaps(),featureMapSize[0],featureMapSize[1],filterSize[0],filterSize[1],patches);
+        patches.mmuli(W,convolved);
+
+        //the convolved patches are ordered by position then example: the same buffer is the batch of convolved maps
+        INDArray maps = FlatArrayUtil.view(convolved.data(),convolved.offset(),new int[]{rows,convolved.length() / rows});
+        INDArray ret = subsampling.pool(maps,Nd4j.create(rows,numOutputs()));
+        addBias(ret);
+        NetworkWorkspace.activate(conf.getActivationFunction(),ret);
+        activation = ret;
+        return ret;
+    }
+
+    /**
+     * Computes the gradients of the last activation.
+     * Given the gradient of an objective with respect to the output, computes the gradient of the same
+     * objective with respect to the weights, bias and (optionally) the input
+     * @param epsilon the gradient with respect to the output, rows x {@link #numOutputs()}
+     * @param weightGradient the matrix to write the gradient of the weights to, the shape of the weights
+     * @param biasGradient the vector to write the gradient of the bias to, one element per filter
+     * @param inputGradient the matrix to write the gradient of the input to, the shape of the input,
+     *                      null if it isn't needed (the first layer)
+     * @return the input gradient
+     */
+    public INDArray backpropGradient(INDArray epsilon,INDArray weightGradient,INDArray biasGradient,INDArray inputGradient) {
+        if(activation == null)
+            throw new IllegalStateException("No activation to compute the gradient of");
+        int rows = activation.rows();
+        if(epsilon.rows() != rows || epsilon.columns() != activation.columns())
+            throw new IllegalArgumentException("Epsilon must be " + rows + " x " + activation.columns());
+
+        INDArray delta = NetworkWorkspace.derivative(conf.getActivationFunction(),activation,Nd4j.create(rows,activation.columns())).muli(epsilon);
+        sumBias(delta,biasGradient);
+
+        int positions = convolved.rows();
+        int numFeatureMaps = conf.getNumFeatureMaps();
+        INDArray convolvedGradient = FlatArrayUtil.view(scratch.data(),0,new int[]{positions,numFeatureMaps});
+        subsampling.backpropGradient(delta,FlatArrayUtil.view(scratch.data(),0,new int[]{rows,positions / rows * numFeatureMaps}));
+
+        INDArray transposed = NetworkWorkspace.transpose(patches,Nd4j.create(patches.columns(),positions));
+        transposed.mmuli(convolvedGradient,weightGradient);
+
+        if(inputGradient == null)
+            return null;
+        INDArray patchGradient = convolvedGradient.mmul(NetworkWorkspace.transpose(W,Nd4j.create(W.columns(),W.rows())));
+        int[] featureMapSize = conf.getFeatureMapSize();
+        int[] filterSize = conf.getFilterSize();
+        return ConvolutionUtil.col2im(patchGradient,conf.getNumInFeatureMaps(),featureMapSize[0],featureMapSize[1],filterSize[0],filterSize[1],inputGradient);
+    }
+
+    //adds the bias of each filter to all of its pooled map
+    private void addBias(INDArray pooled) {
+        int rows = pooled.rows();
+        int mapLength = pooled.columns() / conf.getNumFeatureMaps() * rows;
+        double[] data = pooled.data().asDouble();
+        for(int k = 0; k < conf.getNumFeatureMaps(); k++) {
+            double bias = b.getDouble(k);
+            int offset = pooled.offset() + k * mapLength;
+            for(int i = 0; i < mapLength; i++)
+                data[offset + i] += bias;
+        }
+    }
+
+    //the gradient of each filter's bias is the sum of the delta over its map and the batch
+    private void sumBias(INDArray delta,INDArray biasGradient) {
+        int mapLength = delta.columns() / conf.getNumFeatureMaps() * delta.rows();
+        double[] data = delta.data().asDouble();
+        for(int k = 0; k < conf.getNumFeatureMaps(); k++) {
+            double sum = 0;
+            int offset = delta.offset() + k * mapLength;
+            for(int i = 0; i < mapLength; i++)
+                sum += data[offset + i];
+            biasGradient.putScalar(k,sum);
+        }
+    }
+
+    /**
+     * The pooling of the convolved maps
+     * @return the sub sampling layer
+     */
+    public SubsamplingLayer getSubsampling() {
+        return subsampling;
+    }
+
+    @Override
+    public void setW(INDArray W) {
+        if(W.rows() != patchSize() || W.columns() != conf.getNumFeatureMaps())
+            throw new IllegalArgumentException("Weight matrix must be " + patchSize() + " x " + conf.getNumFeatureMaps());
+        this.W = W;
+    }
+
+    @Override
+    public void setB(INDArray b) {
+        if(b.length() != conf.getNumFeatureMaps())
+            throw new IllegalArgumentException("The bias must have " + conf.getNumFeatureMaps() + " elements");
+        this.b = b;
+    }
+
+    @Override
+    public org.deeplearning4j.nn.api.Layer transpose() {
+        throw new UnsupportedOperationException("Convolution layers can't be transposed");
     }
 }
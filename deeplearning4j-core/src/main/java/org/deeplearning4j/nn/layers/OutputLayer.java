@@ -23,6 +23,7 @@ import org.deeplearning4j.optimize.api.TrainingEvaluator;
 import org.deeplearning4j.optimize.optimizers.OutputLayerOptimizer;
 import org.deeplearning4j.optimize.solvers.StochasticHessianFree;
 import org.deeplearning4j.optimize.solvers.VectorizedDeepLearningGradientAscent;
+import org.deeplearning4j.optimize.solvers.VectorizedLBFGS;
 import org.deeplearning4j.optimize.solvers.VectorizedNonZeroStoppingConjugateGradient;
 
 
@@ -129,6 +130,16 @@ public class OutputLayer extends BaseLayer implements Serializable,Classifier {
             o.optimize(numEpochs);
         }
 
+        else if(conf.getOptimizationAlgo()  == OptimizationAlgorithm.LBFGS) {
+            //the gradient is scaled by the learning rate and batch size, but never goes through momentum
+            VectorizedLBFGS.checkConfiguration(conf,false);
+            VectorizedLBFGS l = new VectorizedLBFGS(opt,conf.getLbfgsHistorySize());
+            l.setTolerance(1e-3f);
+            l.setTrainingEvaluator(eval);
+            l.setMaxIterations(numEpochs);
+            l.optimize(numEpochs);
+        }
+
         else {
             VectorizedDeepLearningGradientAscent g = new VectorizedDeepLearningGradientAscent(opt);
             g.setTolerance(1e-3f);
@@ -160,6 +171,16 @@ public class OutputLayer extends BaseLayer implements Serializable,Classifier {
 
         }
 
+        else if(conf.getOptimizationAlgo()  == OptimizationAlgorithm.LBFGS) {
+            //the gradient is scaled by the learning rate and batch size, but never goes through momentum
+            VectorizedLBFGS.checkConfiguration(conf,false);
+            VectorizedLBFGS l = new VectorizedLBFGS(opt,conf.getLbfgsHistorySize());
+            l.setTolerance(1e-3f);
+            l.setTrainingEvaluator(eval);
+            l.setMaxIterations(numEpochs);
+            l.optimize(numEpochs);
+        }
+
         else {
             VectorizedDeepLearningGradientAscent g = new VectorizedDeepLearningGradientAscent(opt);
             g.setTolerance(1e-3f);
@@ -1,18 +1,26 @@
 package org.deeplearning4j.nn.layers;
 
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.util.ConvolutionUtil;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
 /**
- * Sub sampling layer
+ * Sub sampling layer: max or mean pooling of non overlapping
+ * stride x stride windows of each feature map.
+ *
+ * The input is one example per row, numInFeatureMaps maps of featureMapSize each
+ * (see {@link ConvolutionUtil} for the layout); the output has the same number of maps,
+ * each featureMapSize / stride. There are no parameters.
+ * For max pooling the input each output was taken from is kept
+ * so {@link #backpropGradient(INDArray, INDArray)} can route the gradient back to it.
  *
  * @author Adam Gibson
  */
 public class SubsamplingLayer extends BaseLayer {
 
-
-    private INDArray featureMap;
+    //for max pooling: the input column of every pooled value of the last activation
+    private int[] argMax;
 
 
 
@@ -20,9 +28,13 @@ public class SubsamplingLayer extends BaseLayer {
         super(conf, W, b, input);
     }
 
+    public SubsamplingLayer(NeuralNetConfiguration conf) {
+        this(conf,null,null,null);
+    }
+
     @Override
     protected INDArray createBias() {
-        return Nd4j.create(conf.getNumFeatureMaps(),1);
+        return null;
     }
 
     @Override
@@ -30,11 +42,84 @@ public class SubsamplingLayer extends BaseLayer {
         return null;
     }
 
+    /**
+     * The number of rows of a pooled map
+     * @return the rows of the input maps over the stride
+     */
+    public int outputRows() {
+        return conf.getFeatureMapSize()[0] / conf.getStride()[0];
+    }
+
+    /**
+     * The number of columns of a pooled map
+     * @return the columns of the input maps over the stride
+     */
+    public int outputColumns() {
+        return conf.getFeatureMapSize()[1] / conf.getStride()[1];
+    }
+
+    /**
+     * The number of columns of the output
+     * @return the number of maps times the pooled map size
+     */
+    public int numOutputs() {
+        return conf.getNumInFeatureMaps() * outputRows() * outputColumns();
+    }
+
+    @Override
+    public INDArray activate() {
+        return activate(input);
+    }
+
     @Override
     public INDArray activate(INDArray input) {
-        for(int i = 0; i < conf.getNumInFeatureMaps(); i++) {
+        if(input == null)
+            throw new IllegalArgumentException("No null input allowed");
+        this.input = input;
+        return pool(input,Nd4j.create(input.rows(),numOutputs()));
+    }
+
+    /**
+     * Pools the input in to the given matrix
+     * @param input the feature maps, one example per row
+     * @param result the rows x {@link #numOutputs()} matrix to write the pooled maps to
+     * @return the result
+     */
+    public INDArray pool(INDArray input,INDArray result) {
+        int length = input.rows() * numOutputs();
+        if(argMax == null || argMax.length < length)
+            argMax = new int[length];
+        int[] featureMapSize = conf.getFeatureMapSize();
+        int[] stride = conf.getStride();
+        return ConvolutionUtil.pool(input,conf.getNumInFeatureMaps(),featureMapSize[0],featureMapSize[1],
+                stride[0],stride[1],conf.getPoolingType(),result,argMax);
+    }
 
-        }
-         return super.activate(input);
+    /**
+     * The gradient of the input given the gradient of the last activation
+     * @param epsilon the gradient of the output, one example per row
+     * @param result the rows x (numInFeatureMaps * featureMapSize) matrix to write the gradient of the input to
+     * @return the result
+     */
+    public INDArray backpropGradient(INDArray epsilon,INDArray result) {
+        int[] featureMapSize = conf.getFeatureMapSize();
+        int[] stride = conf.getStride();
+        return ConvolutionUtil.unpool(epsilon,conf.getNumInFeatureMaps(),featureMapSize[0],featureMapSize[1],
+                stride[0],stride[1],conf.getPoolingType(),argMax,result);
+    }
+
+    @Override
+    public INDArray preOutput(INDArray x) {
+        throw new UnsupportedOperationException("Sub sampling has no pre output");
+    }
+
+    @Override
+    public org.deeplearning4j.nn.api.Layer clone() {
+        return new SubsamplingLayer(conf,null,null,input != null ? input.dup() : null);
+    }
+
+    @Override
+    public org.deeplearning4j.nn.api.Layer transpose() {
+        throw new UnsupportedOperationException("Sub sampling layers can't be transposed");
     }
 }
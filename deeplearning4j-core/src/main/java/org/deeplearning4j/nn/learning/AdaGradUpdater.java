@@ -0,0 +1,37 @@
+package org.deeplearning4j.nn.learning;
+
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+
+/**
+ * Adagrad: each element's learning rate is scaled down by the
+ * root of its sum of squared gradients
+ *
+ * @author Adam Gibson
+ */
+public class AdaGradUpdater extends BaseGradientUpdater {
+
+    public final static double EPSILON = 1e-6;
+    private double[] history;
+
+    public AdaGradUpdater(NeuralNetConfiguration conf,boolean regularize) {
+        super(conf,regularize);
+    }
+
+    @Override
+    protected void update(double[] gradient,int gradientOffset,double[] params,int paramsOffset,int length,
+                          int iteration,double learningRate,double scale,double l2) {
+        if(history == null || history.length != length)
+            history = new double[length];
+        for(int i = 0; i < length; i++) {
+            double g = gradient[gradientOffset + i] * scale - l2 * params[paramsOffset + i];
+            history[i] += g * g;
+            gradient[gradientOffset + i] = learningRate * g / (Math.sqrt(history[i]) + EPSILON);
+        }
+    }
+
+    @Override
+    public void reset() {
+        history = null;
+    }
+
+}
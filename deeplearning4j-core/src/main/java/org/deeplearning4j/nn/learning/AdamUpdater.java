@@ -0,0 +1,51 @@
+package org.deeplearning4j.nn.learning;
+
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+
+/**
+ * Adam: moving averages of the gradient and squared gradient,
+ * bias corrected for the number of updates so far
+ *
+ * @author Adam Gibson
+ */
+public class AdamUpdater extends BaseGradientUpdater {
+
+    public final static double EPSILON = 1e-8;
+    private double[] mean;
+    private double[] var;
+    private int updates = 0;
+
+    public AdamUpdater(NeuralNetConfiguration conf,boolean regularize) {
+        super(conf,regularize);
+    }
+
+    @Override
+    protected void update(double[] gradient,int gradientOffset,double[] params,int paramsOffset,int length,
+                          int iteration,double learningRate,double scale,double l2) {
+        if(mean == null || mean.length != length) {
+            mean = new double[length];
+            var = new double[length];
+            updates = 0;
+        }
+
+        updates++;
+        double beta1 = conf.getAdamMeanDecay();
+        double beta2 = conf.getAdamVarDecay();
+        //fold the bias corrections in to the step size
+        double alpha = learningRate * Math.sqrt(1 - Math.pow(beta2,updates)) / (1 - Math.pow(beta1,updates));
+        for(int i = 0; i < length; i++) {
+            double g = gradient[gradientOffset + i] * scale - l2 * params[paramsOffset + i];
+            mean[i] = beta1 * mean[i] + (1 - beta1) * g;
+            var[i] = beta2 * var[i] + (1 - beta2) * g * g;
+            gradient[gradientOffset + i] = alpha * mean[i] / (Math.sqrt(var[i]) + EPSILON);
+        }
+    }
+
+    @Override
+    public void reset() {
+        mean = null;
+        var = null;
+        updates = 0;
+    }
+
+}
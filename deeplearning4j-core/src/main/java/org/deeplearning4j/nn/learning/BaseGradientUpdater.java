@@ -0,0 +1,59 @@
+package org.deeplearning4j.nn.learning;
+
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.util.FlatArrayUtil;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+/**
+ * Base class for updaters that compute the update of every element in one pass
+ * over the raw buffers of the gradient and parameters, without temporaries.
+ *
+ * The gradient each rule sees is the mini batch average less the l2 penalty (if regularized):
+ * g = gradient / batchSize - l2 * params
+ *
+ * @author Adam Gibson
+ */
+public abstract class BaseGradientUpdater implements GradientUpdater {
+
+    protected NeuralNetConfiguration conf;
+    //whether the l2 penalty applies to the parameters, typically only for weights
+    protected boolean regularize;
+
+    /**
+     * @param conf the configuration for the update rule's hyper parameters
+     * @param regularize whether to apply the l2 penalty to these parameters
+     */
+    protected BaseGradientUpdater(NeuralNetConfiguration conf,boolean regularize) {
+        this.conf = conf;
+        this.regularize = regularize;
+    }
+
+    @Override
+    public void update(INDArray gradient,INDArray params,int iteration,double learningRate,int batchSize) {
+        if(gradient.length() != params.length())
+            throw new IllegalArgumentException("Gradient of length " + gradient.length() + " does not match parameters of length " + params.length());
+
+        INDArray g = FlatArrayUtil.contiguous(gradient);
+        INDArray p = FlatArrayUtil.contiguous(params);
+        double l2 = regularize && conf.isUseRegularization() ? conf.getL2() : 0;
+        update(g.data().asDouble(),g.offset(),p.data().asDouble(),p.offset(),g.length(),iteration,learningRate,1.0 / batchSize,l2);
+        if(g != gradient)
+            FlatArrayUtil.copy(g,gradient);
+    }
+
+    /**
+     * The update kernel
+     * @param gradient the gradient buffer, overwritten with the update
+     * @param gradientOffset the offset of the first element of the gradient
+     * @param params the parameter buffer
+     * @param paramsOffset the offset of the first parameter
+     * @param length the number of elements
+     * @param iteration the current iteration
+     * @param learningRate the learning rate
+     * @param scale the scale of the gradient, one over the batch size
+     * @param l2 the l2 coefficient, 0 for none
+     */
+    protected abstract void update(double[] gradient,int gradientOffset,double[] params,int paramsOffset,int length,
+                                   int iteration,double learningRate,double scale,double l2);
+
+}
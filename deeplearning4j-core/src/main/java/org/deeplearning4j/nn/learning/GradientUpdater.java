@@ -0,0 +1,32 @@
+package org.deeplearning4j.nn.learning;
+
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.Serializable;
+
+/**
+ * Turns the gradient of one parameter (a weight matrix or bias)
+ * in to the update added to it.
+ * An updater keeps whatever history its update rule needs (velocity, squared gradients..)
+ * so each parameter gets its own updater.
+ *
+ * @author Adam Gibson
+ */
+public interface GradientUpdater extends Serializable {
+
+    /**
+     * Replaces the gradient with the update in place
+     * @param gradient the gradient summed over the mini batch, in the direction the parameters should move
+     * @param params the current value of the parameters
+     * @param iteration the current iteration
+     * @param learningRate the learning rate for this iteration
+     * @param batchSize the number of examples the gradient was summed over
+     */
+    void update(INDArray gradient,INDArray params,int iteration,double learningRate,int batchSize);
+
+    /**
+     * Clears the history of the updater
+     */
+    void reset();
+
+}
@@ -0,0 +1,53 @@
+package org.deeplearning4j.nn.learning;
+
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+
+/**
+ * Creates the updater configured for a parameter
+ *
+ * @author Adam Gibson
+ */
+public class GradientUpdaters {
+
+    private GradientUpdaters() {}
+
+    /**
+     * Creates an updater for one parameter
+     * @param conf the configuration
+     * @param regularize whether the l2 penalty applies to the parameter
+     * @return the updater, or null for {@link NeuralNetConfiguration.Updater#DEFAULT}
+     */
+    public static GradientUpdater create(NeuralNetConfiguration conf,boolean regularize) {
+        NeuralNetConfiguration.Updater updater = conf.getUpdater();
+        if(updater == null)
+            return null;
+        switch(updater) {
+            case DEFAULT: return null;
+            case SGD: return new SgdUpdater(conf,regularize);
+            case MOMENTUM: return new MomentumUpdater(conf,regularize,false);
+            case NESTEROV: return new MomentumUpdater(conf,regularize,true);
+            case ADAGRAD: return new AdaGradUpdater(conf,regularize);
+            case RMSPROP: return new RmsPropUpdater(conf,regularize);
+            case ADAM: return new AdamUpdater(conf,regularize);
+            default: throw new IllegalStateException("Unknown updater " + updater);
+        }
+    }
+
+    /**
+     * The momentum at the given iteration: the configured momentum,
+     * switched to the momentum after the first key of the momentum schedule once it is reached
+     * @param conf the configuration
+     * @param iteration the current iteration
+     * @return the momentum for the iteration
+     */
+    public static double momentum(NeuralNetConfiguration conf,int iteration) {
+        double momentum = conf.getMomentum();
+        if(conf.getMomentumAfter() != null && !conf.getMomentumAfter().isEmpty()) {
+            int key = conf.getMomentumAfter().keySet().iterator().next();
+            if(iteration >= key)
+                momentum = conf.getMomentumAfter().get(key);
+        }
+        return momentum;
+    }
+
+}
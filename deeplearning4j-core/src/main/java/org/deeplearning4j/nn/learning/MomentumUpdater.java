@@ -0,0 +1,44 @@
+package org.deeplearning4j.nn.learning;
+
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+
+/**
+ * Classical or Nesterov momentum using the configured momentum (and momentum schedule):
+ * v = momentum * v + learningRate * g
+ *
+ * The classical update is v, the Nesterov update evaluates the look ahead
+ * position in terms of the current parameters: (1 + momentum) * v - momentum * vPrevious
+ *
+ * @author Adam Gibson
+ */
+public class MomentumUpdater extends BaseGradientUpdater {
+
+    private boolean nesterov;
+    private double[] velocity;
+
+    public MomentumUpdater(NeuralNetConfiguration conf,boolean regularize,boolean nesterov) {
+        super(conf,regularize);
+        this.nesterov = nesterov;
+    }
+
+    @Override
+    protected void update(double[] gradient,int gradientOffset,double[] params,int paramsOffset,int length,
+                          int iteration,double learningRate,double scale,double l2) {
+        if(velocity == null || velocity.length != length)
+            velocity = new double[length];
+        double momentum = GradientUpdaters.momentum(conf,iteration);
+        for(int i = 0; i < length; i++) {
+            double g = gradient[gradientOffset + i] * scale - l2 * params[paramsOffset + i];
+            double previous = velocity[i];
+            double v = momentum * previous + learningRate * g;
+            velocity[i] = v;
+            gradient[gradientOffset + i] = nesterov ? (1 + momentum) * v - momentum * previous : v;
+        }
+    }
+
+    @Override
+    public void reset() {
+        velocity = null;
+    }
+
+}
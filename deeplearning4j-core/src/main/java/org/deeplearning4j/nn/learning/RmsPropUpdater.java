@@ -0,0 +1,38 @@
+package org.deeplearning4j.nn.learning;
+
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+
+/**
+ * RMSProp: each element's learning rate is scaled down by the
+ * root of a moving average of its squared gradients
+ *
+ * @author Adam Gibson
+ */
+public class RmsPropUpdater extends BaseGradientUpdater {
+
+    public final static double EPSILON = 1e-8;
+    private double[] cache;
+
+    public RmsPropUpdater(NeuralNetConfiguration conf,boolean regularize) {
+        super(conf,regularize);
+    }
+
+    @Override
+    protected void update(double[] gradient,int gradientOffset,double[] params,int paramsOffset,int length,
+                          int iteration,double learningRate,double scale,double l2) {
+        if(cache == null || cache.length != length)
+            cache = new double[length];
+        double decay = conf.getRmsDecay();
+        for(int i = 0; i < length; i++) {
+            double g = gradient[gradientOffset + i] * scale - l2 * params[paramsOffset + i];
+            cache[i] = decay * cache[i] + (1 - decay) * g * g;
+            gradient[gradientOffset + i] = learningRate * g / (Math.sqrt(cache[i]) + EPSILON);
+        }
+    }
+
+    @Override
+    public void reset() {
+        cache = null;
+    }
+
+}
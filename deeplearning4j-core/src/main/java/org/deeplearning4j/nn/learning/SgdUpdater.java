@@ -0,0 +1,30 @@
+package org.deeplearning4j.nn.learning;
+
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+
+/**
+ * Plain gradient descent: the update is the learning rate times the gradient
+ *
+ * @author Adam Gibson
+ */
+public class SgdUpdater extends BaseGradientUpdater {
+
+    public SgdUpdater(NeuralNetConfiguration conf,boolean regularize) {
+        super(conf,regularize);
+    }
+
+    @Override
+    protected void update(double[] gradient,int gradientOffset,double[] params,int paramsOffset,int length,
+                          int iteration,double learningRate,double scale,double l2) {
+        for(int i = 0; i < length; i++) {
+            double g = gradient[gradientOffset + i] * scale - l2 * params[paramsOffset + i];
+            gradient[gradientOffset + i] = learningRate * g;
+        }
+    }
+
+    @Override
+    public void reset() {
+
+    }
+
+}
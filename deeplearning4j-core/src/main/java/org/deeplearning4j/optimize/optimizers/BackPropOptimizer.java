@@ -8,6 +8,7 @@ import org.deeplearning4j.optimize.api.OptimizableByGradientValueMatrix;
 import org.deeplearning4j.optimize.api.TrainingEvaluator;
 import org.deeplearning4j.optimize.solvers.StochasticHessianFree;
 import org.deeplearning4j.optimize.solvers.VectorizedDeepLearningGradientAscent;
+import org.deeplearning4j.optimize.solvers.VectorizedLBFGS;
 import org.deeplearning4j.optimize.solvers.VectorizedNonZeroStoppingConjugateGradient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -125,6 +126,14 @@ public class BackPropOptimizer implements Serializable,OptimizableByGradientValu
 
             }
 
+            else if(optimizationAlgorithm == NeuralNetwork.OptimizationAlgorithm.LBFGS) {
+                VectorizedLBFGS l = new VectorizedLBFGS(this,network.getDefaultConfiguration().getLbfgsHistorySize());
+                l.setTrainingEvaluator(eval);
+                l.setMaxIterations(numEpochs);
+                l.optimize(numEpochs);
+
+            }
+
 
 
             else {
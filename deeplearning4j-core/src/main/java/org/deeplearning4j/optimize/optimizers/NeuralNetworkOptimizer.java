@@ -14,6 +14,7 @@ import org.deeplearning4j.nn.gradient.NeuralNetworkGradient;
 import org.deeplearning4j.optimize.api.IterationListener;
 import org.deeplearning4j.optimize.api.OptimizableByGradientValueMatrix;
 import org.deeplearning4j.optimize.solvers.VectorizedDeepLearningGradientAscent;
+import org.deeplearning4j.optimize.solvers.VectorizedLBFGS;
 import org.deeplearning4j.optimize.solvers.VectorizedNonZeroStoppingConjugateGradient;
 import org.deeplearning4j.plot.NeuralNetPlotter;
 import org.deeplearning4j.util.OptimizerMatrix;
@@ -73,6 +74,11 @@ public abstract class NeuralNetworkOptimizer implements OptimizableByGradientVal
             opt.setTolerance(tolerance);
         }
 
+        else if(optimizationAlgorithm == OptimizationAlgorithm.LBFGS) {
+            VectorizedLBFGS.checkConfiguration(network.conf(),true);
+            opt = new VectorizedLBFGS(this,network.conf().getLbfgsHistorySize(),this);
+            opt.setTolerance(tolerance);
+        }
 
         else {
             opt = new VectorizedDeepLearningGradientAscent(this,this);
@@ -0,0 +1,179 @@
+package org.deeplearning4j.optimize.optimizers;
+
+import org.deeplearning4j.datasets.iterator.DataSetIterator;
+import org.deeplearning4j.nn.BaseMultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.util.ArrayUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Data parallel back prop on a single machine.
+ *
+ * Each mini batch is split in to one slice of rows per worker thread.
+ * The workers compute the back prop gradient of their slice concurrently
+ * (each in its own workspace, reading the shared parameters) and then either:
+ *
+ * SYNCHRONOUS: the slice gradients are summed in to one shared flat gradient
+ * and a single update is applied once every worker is done. This is the same update as
+ * computing the gradient of the whole mini batch on one thread.
+ *
+ * HOGWILD: each worker applies the update for its slice to the shared parameters
+ * as soon as it is computed, without locking. Workers may read parameters another
+ * worker is part way through updating; for sparse or small updates this costs little
+ * accuracy and removes the reduce step.
+ *
+ * The update is the learning rate times the gradient summed over the rows plus the l2 penalty.
+ * Layers should use HIDDEN_LAYER_ACTIVATION, other activation types go through
+ * the layers' own (non thread safe) state.
+ *
+ * @author Adam Gibson
+ */
+public class ParallelBackPropOptimizer {
+
+    public static enum Mode {
+        SYNCHRONOUS,HOGWILD
+    }
+
+    private static Logger log = LoggerFactory.getLogger(ParallelBackPropOptimizer.class);
+
+    private BaseMultiLayerNetwork network;
+    private double lr;
+    private int numWorkers;
+    private Mode mode;
+    private ExecutorService exec;
+    //the summed gradient for synchronous updates
+    private INDArray gradient;
+
+    /**
+     * @param network the network to train
+     * @param lr the learning rate
+     * @param numWorkers the number of worker threads
+     * @param mode how the workers' gradients are applied
+     */
+    public ParallelBackPropOptimizer(BaseMultiLayerNetwork network,double lr,int numWorkers,Mode mode) {
+        if(numWorkers < 1)
+            throw new IllegalArgumentException("Number of workers must be at least 1");
+        this.network = network;
+        this.lr = lr;
+        this.numWorkers = numWorkers;
+        this.mode = mode;
+    }
+
+    /**
+     * @param network the network to train
+     * @param lr the learning rate
+     * @param mode how the workers' gradients are applied
+     */
+    public ParallelBackPropOptimizer(BaseMultiLayerNetwork network,double lr,Mode mode) {
+        this(network,lr,Runtime.getRuntime().availableProcessors(),mode);
+    }
+
+    /**
+     * Runs one update per mini batch for the given number of epochs
+     * @param iter the mini batches to train on
+     * @param epochs the number of passes over the iterator
+     */
+    public void optimize(DataSetIterator iter,int epochs) {
+        try {
+            for(int epoch = 0; epoch < epochs; epoch++) {
+                iter.reset();
+                while(iter.hasNext()) {
+                    DataSet next = iter.next();
+                    if(next.getFeatureMatrix() == null || next.getLabels() == null)
+                        break;
+                    step(next.getFeatureMatrix(),next.getLabels());
+                }
+
+                log.info("Epoch " + epoch + " done");
+            }
+        }
+        finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Computes the gradient of one mini batch across the workers and updates the network
+     * @param input the input of the mini batch
+     * @param labels the labels of the mini batch
+     */
+    public void step(INDArray input,INDArray labels) {
+        //flatten the parameters (if needed) before any of the workers read them
+        final INDArray params = network.paramsView();
+        final int rows = input.rows();
+        int slices = Math.min(numWorkers,rows);
+
+        if(mode == Mode.SYNCHRONOUS) {
+            if(gradient == null || gradient.length() != params.length())
+                gradient = Nd4j.create(1,params.length());
+            else
+                gradient.muli(0);
+        }
+
+        List<Future<?>> futures = new ArrayList<>(slices);
+        for(int i = 0; i < slices; i++) {
+            int begin = (int) ((long) rows * i / slices);
+            int end = (int) ((long) rows * (i + 1) / slices);
+            final INDArray sliceInput = slices == 1 ? input : input.getRows(ArrayUtil.range(begin,end));
+            final INDArray sliceLabels = slices == 1 ? labels : labels.getRows(ArrayUtil.range(begin,end));
+            futures.add(executor().submit(new Runnable() {
+                @Override
+                public void run() {
+                    INDArray sliceGradient = network.backPropGradient(sliceInput,sliceLabels);
+                    if(mode == Mode.SYNCHRONOUS) {
+                        synchronized (gradient) {
+                            Nd4j.getBlasWrapper().axpy(1.0,sliceGradient,gradient);
+                        }
+                    }
+                    else {
+                        network.regularize(sliceGradient,(double) sliceInput.rows() / rows);
+                        Nd4j.getBlasWrapper().axpy(-lr,sliceGradient,params);
+                    }
+                }
+            }));
+        }
+
+        for(Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for gradients",e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        if(mode == Mode.SYNCHRONOUS) {
+            network.regularize(gradient,1.0);
+            Nd4j.getBlasWrapper().axpy(-lr,gradient,params);
+        }
+    }
+
+    /**
+     * Stops the worker threads; they are restarted on the next step
+     */
+    public synchronized void shutdown() {
+        if(exec != null) {
+            exec.shutdown();
+            exec = null;
+        }
+    }
+
+    private synchronized ExecutorService executor() {
+        if(exec == null)
+            exec = Executors.newFixedThreadPool(numWorkers);
+        return exec;
+    }
+
+}
@@ -0,0 +1,299 @@
+package org.deeplearning4j.optimize.solvers;
+
+import org.deeplearning4j.exception.InvalidStepException;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.optimize.api.IterationListener;
+import org.deeplearning4j.optimize.api.OptimizableByGradientValueMatrix;
+import org.deeplearning4j.optimize.api.TrainingEvaluator;
+import org.deeplearning4j.util.OptimizerMatrix;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedList;
+
+/**
+ * Limited memory BFGS, "Numerical Optimization" (Nocedal and Wright) algorithm 7.4.
+ *
+ * The last m parameter and gradient differences are kept and
+ * the search direction is the implicit inverse hessian approximation times the gradient
+ * (the two loop recursion), so each iteration costs O(m n) rather than O(n^2).
+ * Steps are found with a {@link VectorizedStrongWolfeLineSearch}, which hands back the value and
+ * gradient of the point it accepted: every iteration evaluates the function only at the line search's trial points.
+ *
+ * Like the other solvers the function is maximized.
+ * The curvature pairs assume the gradient is a fixed scaling of the true gradient,
+ * per parameter learning rates (adagrad) that change between evaluations make them inconsistent:
+ * layers are checked with {@link #checkConfiguration(NeuralNetConfiguration, boolean)} before optimizing.
+ *
+ * @author Adam Gibson
+ */
+public class VectorizedLBFGS implements OptimizerMatrix {
+
+    private static Logger log = LoggerFactory.getLogger(VectorizedLBFGS.class);
+
+    private OptimizableByGradientValueMatrix optimizable;
+    private VectorizedStrongWolfeLineSearch lineSearch;
+    private TrainingEvaluator eval;
+    private IterationListener listener;
+    private int m = 10;
+    private double tolerance = 1e-5;
+    private double gradientTolerance = 1e-5;
+    private int maxIterations = 10000;
+    private boolean converged = false;
+    // "eps" is a small number to rectify the special case of converging
+    // to exactly zero function value
+    private final double eps = 1.0e-10;
+
+    //value and gradient at the current parameters
+    private double value;
+    private INDArray gradient;
+    private int iterations;
+    //the last m steps and gradient differences, newest last
+    private LinkedList<INDArray> s = new LinkedList<>();
+    private LinkedList<INDArray> y = new LinkedList<>();
+    private LinkedList<Double> rho = new LinkedList<>();
+
+    /**
+     * @param optimizable the function to maximize
+     * @param m the number of correction pairs to keep
+     * @param listener notified after every iteration, may be null
+     */
+    public VectorizedLBFGS(OptimizableByGradientValueMatrix optimizable, int m, IterationListener listener) {
+        if(m < 1)
+            throw new IllegalArgumentException("History size must be at least 1");
+        this.optimizable = optimizable;
+        this.m = m;
+        this.listener = listener;
+        this.lineSearch = new VectorizedStrongWolfeLineSearch(optimizable);
+    }
+
+    public VectorizedLBFGS(OptimizableByGradientValueMatrix optimizable, int m) {
+        this(optimizable, m, null);
+    }
+
+    public VectorizedLBFGS(OptimizableByGradientValueMatrix optimizable, IterationListener listener) {
+        this(optimizable, 10, listener);
+    }
+
+    public VectorizedLBFGS(OptimizableByGradientValueMatrix optimizable) {
+        this(optimizable, 10, null);
+    }
+
+    /**
+     * Checks the gradient of a layer with the given configuration is a fixed scaling of
+     * the objective's gradient. Adagrad, momentum and the other updaters keep state that is
+     * updated on every evaluation, including each line search trial
+     * @param conf the configuration of the layer to optimize
+     * @param momentum whether the layer's gradient also goes through momentum and the updaters
+     * @throws IllegalArgumentException if the configuration changes the gradient between evaluations
+     */
+    public static void checkConfiguration(NeuralNetConfiguration conf, boolean momentum) {
+        if(conf.isUseAdaGrad())
+            throw new IllegalArgumentException("LBFGS needs the raw gradient, turn off adagrad");
+        if(!momentum)
+            return;
+        if(conf.getMomentum() != 0 || (conf.getMomentumAfter() != null && !conf.getMomentumAfter().isEmpty()))
+            throw new IllegalArgumentException("LBFGS needs the raw gradient, set the momentum to 0");
+        if(conf.getUpdater() != null && conf.getUpdater() != NeuralNetConfiguration.Updater.DEFAULT)
+            throw new IllegalArgumentException("LBFGS needs the raw gradient, use the default updater");
+    }
+
+    @Override
+    public boolean optimize() {
+        return optimize(maxIterations);
+    }
+
+    @Override
+    public boolean optimize(int numIterations) {
+        if(converged)
+            return true;
+
+        if(gradient == null) {
+            value = optimizable.getValue();
+            assert !Double.isNaN(value) && !Double.isInfinite(value) : "Function appears to be NaN or infinite, please check your parameters.";
+            gradient = optimizable.getValueGradient(0);
+            iterations = 0;
+        }
+
+        for(int iterationCount = 0; iterationCount < numIterations; iterationCount++) {
+            optimizable.setCurrentIteration(iterationCount);
+            double gradientNorm = Math.sqrt(Nd4j.getBlasWrapper().dot(gradient, gradient));
+            if(gradientNorm < gradientTolerance) {
+                log.info("LBFGS converged: gradient two norm " + gradientNorm + ", less than " + gradientTolerance);
+                converged = true;
+                done(iterationCount);
+                return true;
+            }
+
+            INDArray direction = direction();
+            //without curvature information scale the first step to unit length
+            double initialStep = s.isEmpty() ? Math.min(1.0, 1.0 / gradientNorm) : 1.0;
+            double step;
+            try {
+                step = lineSearch.optimize(direction, iterationCount, initialStep, value, gradient);
+            } catch (InvalidStepException e) {
+                step = 0;
+            }
+
+            if(step == 0) {
+                if(s.isEmpty()) {
+                    log.info("LBFGS: no progress along the gradient, stopping");
+                    converged = true;
+                    done(iterationCount);
+                    return true;
+                }
+                //the approximation is bad, start again from the gradient
+                log.warn("LBFGS: line search failed, resetting history");
+                clearHistory();
+                continue;
+            }
+
+            double newValue = lineSearch.getValue();
+            INDArray newGradient = lineSearch.getGradient();
+            log.info("LBFGS: At iteration " + iterations + ", cost = " + newValue + " step = " + step);
+
+            //s = step * direction, y = g_old - g_new (the gradient is an ascent direction)
+            INDArray sk = direction.mul(step);
+            INDArray yk = gradient.sub(newGradient);
+            double sy = Nd4j.getBlasWrapper().dot(sk, yk);
+            double yy = Nd4j.getBlasWrapper().dot(yk, yk);
+            if(sy > eps * yy) {
+                if(s.size() == m) {
+                    s.removeFirst();
+                    y.removeFirst();
+                    rho.removeFirst();
+                }
+                s.addLast(sk);
+                y.addLast(yk);
+                rho.addLast(1.0 / sy);
+            }
+
+            double oldValue = value;
+            value = newValue;
+            gradient = newGradient;
+            iterations++;
+
+            if(tolerance > 0 && 2.0 * Math.abs(value - oldValue) <= tolerance * (Math.abs(value) + Math.abs(oldValue) + eps)) {
+                log.info("LBFGS converged: old value= " + oldValue + " new value= " + value + " tolerance=" + tolerance);
+                converged = true;
+                done(iterationCount);
+                return true;
+            }
+
+            if(iterations > maxIterations) {
+                log.info("Passed max number of iterations");
+                converged = true;
+                done(iterationCount);
+                return true;
+            }
+
+            done(iterationCount);
+
+            if(eval != null && eval.shouldStop(iterations))
+                return true;
+        }
+
+        return false;
+    }
+
+    //two loop recursion: the inverse hessian approximation times the gradient
+    private INDArray direction() {
+        INDArray q = gradient.dup();
+        int k = s.size();
+        if(k == 0)
+            return q;
+
+        double[] alpha = new double[k];
+        for(int i = k - 1; i >= 0; i--) {
+            alpha[i] = rho.get(i) * Nd4j.getBlasWrapper().dot(s.get(i), q);
+            Nd4j.getBlasWrapper().axpy(-alpha[i], y.get(i), q);
+        }
+
+        INDArray lastY = y.getLast();
+        double gamma = 1.0 / (rho.getLast() * Nd4j.getBlasWrapper().dot(lastY, lastY));
+        q.muli(gamma);
+
+        for(int i = 0; i < k; i++) {
+            double beta = rho.get(i) * Nd4j.getBlasWrapper().dot(y.get(i), q);
+            Nd4j.getBlasWrapper().axpy(alpha[i] - beta, s.get(i), q);
+        }
+
+        return q;
+    }
+
+    private void done(int iteration) {
+        if(listener != null)
+            listener.iterationDone(iteration);
+    }
+
+    private void clearHistory() {
+        s.clear();
+        y.clear();
+        rho.clear();
+    }
+
+    /**
+     * Clears the history and the cached value and gradient,
+     * the next call to optimize starts from the current parameters
+     */
+    public void reset() {
+        clearHistory();
+        gradient = null;
+        converged = false;
+    }
+
+    @Override
+    public boolean isConverged() {
+        return converged;
+    }
+
+    @Override
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    @Override
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    public void setGradientTolerance(double gradientTolerance) {
+        this.gradientTolerance = gradientTolerance;
+    }
+
+    /**
+     * Sets the training evaluator
+     *
+     * @param eval the evaluator to use
+     */
+    @Override
+    public void setTrainingEvaluator(TrainingEvaluator eval) {
+        this.eval = eval;
+    }
+
+    public int getHistorySize() {
+        return m;
+    }
+
+    /**
+     * The number of correction pairs currently kept
+     * @return the number of pairs, at most the history size
+     */
+    public int getNumCorrections() {
+        return s.size();
+    }
+
+    public VectorizedStrongWolfeLineSearch getLineSearch() {
+        return lineSearch;
+    }
+
+    public double getValue() {
+        return value;
+    }
+}
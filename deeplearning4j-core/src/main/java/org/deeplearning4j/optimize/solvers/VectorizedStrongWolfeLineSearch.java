@@ -0,0 +1,263 @@
+package org.deeplearning4j.optimize.solvers;
+
+import org.deeplearning4j.exception.InvalidStepException;
+import org.deeplearning4j.optimize.api.LineOptimizerMatrix;
+import org.deeplearning4j.optimize.api.OptimizableByGradientValueMatrix;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Line search for a step satisfying the strong Wolfe conditions,
+ * "Numerical Optimization" (Nocedal and Wright) algorithms 3.5 and 3.6.
+ *
+ * Like the other solvers the function is maximized: a step a along the line d is accepted when
+ * value(x + a d) >= value(x) + c1 a g.d (sufficient increase) and
+ * |g(x + a d).d| <= c2 |g.d| (curvature).
+ *
+ * Every trial point is evaluated once (value and gradient); the value and gradient
+ * of the accepted point are kept so the caller does not have to evaluate them again.
+ * When no acceptable step is found the parameters are left at the best point seen,
+ * or restored if no point improved on the starting value.
+ *
+ * @author Adam Gibson
+ */
+public class VectorizedStrongWolfeLineSearch implements LineOptimizerMatrix {
+
+    private static Logger log = LoggerFactory.getLogger(VectorizedStrongWolfeLineSearch.class);
+
+    private OptimizableByGradientValueMatrix function;
+    private double c1 = 1e-4;
+    private double c2 = 0.9;
+    private double maxStep = 1e4;
+    private int maxEvaluations = 20;
+
+    //the value and gradient of the accepted point
+    private double value;
+    private INDArray gradient;
+    private int evaluations;
+    //the step the parameters are currently set to
+    private double lastStep;
+
+    //start of the line
+    private INDArray x0;
+    private INDArray line;
+    private int iteration;
+
+    public VectorizedStrongWolfeLineSearch(OptimizableByGradientValueMatrix function) {
+        this.function = function;
+    }
+
+    /**
+     * Searches along the line, evaluating the starting point first
+     * @param line the (ascent) direction to search along
+     * @param iteration the current iteration
+     * @param initialStep the first step to try
+     * @return the accepted step, 0 if the parameters were not changed
+     * @throws InvalidStepException if the line is not an ascent direction
+     */
+    @Override
+    public double optimize(INDArray line, int iteration, double initialStep) throws InvalidStepException {
+        double value0 = function.getValue();
+        INDArray gradient0 = function.getValueGradient(iteration);
+        return optimize(line,iteration,initialStep,value0,gradient0);
+    }
+
+    /**
+     * Searches along the line from the current parameters
+     * @param line the (ascent) direction to search along
+     * @param iteration the current iteration
+     * @param initialStep the first step to try
+     * @param value0 the value at the current parameters
+     * @param gradient0 the gradient at the current parameters
+     * @return the accepted step, 0 if the parameters were not changed
+     * @throws InvalidStepException if the line is not an ascent direction
+     */
+    public double optimize(INDArray line, int iteration, double initialStep,double value0,INDArray gradient0) throws InvalidStepException {
+        //work with phi(a) = -value(x + a d) so the conditions read as in the literature
+        double phi0 = -value0;
+        double dphi0 = -Nd4j.getBlasWrapper().dot(gradient0, line);
+        if(Double.isNaN(dphi0) || dphi0 >= 0)
+            throw new InvalidStepException("Slope = " + (-dphi0) + " is not positive");
+
+        this.x0 = function.getParameters().dup();
+        this.line = line;
+        this.iteration = iteration;
+        this.evaluations = 0;
+        this.lastStep = 0;
+
+        double aPrev = 0, phiPrev = phi0, dphiPrev = dphi0;
+        INDArray gradPrev = gradient0;
+        double a = Math.min(initialStep, maxStep);
+
+        while(evaluations < maxEvaluations) {
+            INDArray grad = evaluate(a);
+            double phi = -value;
+            double dphi = -Nd4j.getBlasWrapper().dot(grad, line);
+
+            if(Double.isNaN(phi) || Double.isInfinite(phi) || phi > phi0 + c1 * a * dphi0 || (evaluations > 1 && phi >= phiPrev))
+                return zoom(aPrev, phiPrev, dphiPrev, gradPrev, a, phi, dphi, phi0, dphi0);
+
+            if(Math.abs(dphi) <= -c2 * dphi0)
+                return accept(a, -phi, grad);
+
+            if(dphi >= 0)
+                return zoom(a, phi, dphi, grad, aPrev, phiPrev, dphiPrev, phi0, dphi0);
+
+            aPrev = a;
+            phiPrev = phi;
+            dphiPrev = dphi;
+            gradPrev = grad;
+            if(a >= maxStep)
+                break;
+            a = Math.min(2 * a, maxStep);
+        }
+
+        log.debug("Line search ran out of evaluations, taking the best step " + aPrev);
+        return accept(aPrev, -phiPrev, gradPrev);
+    }
+
+    /*
+     * Narrows [lo,hi] down to a step satisfying the strong Wolfe conditions.
+     * lo always satisfies sufficient decrease and has the lowest phi seen.
+     */
+    private double zoom(double lo, double phiLo, double dphiLo, INDArray gradLo,
+                        double hi, double phiHi, double dphiHi,
+                        double phi0, double dphi0) {
+        while(evaluations < maxEvaluations) {
+            double a = interpolate(lo, phiLo, dphiLo, hi, phiHi, dphiHi);
+            INDArray grad = evaluate(a);
+            double phi = -value;
+            double dphi = -Nd4j.getBlasWrapper().dot(grad, line);
+
+            if(Double.isNaN(phi) || Double.isInfinite(phi) || phi > phi0 + c1 * a * dphi0 || phi >= phiLo) {
+                hi = a;
+                phiHi = phi;
+                dphiHi = dphi;
+            }
+            else {
+                if(Math.abs(dphi) <= -c2 * dphi0)
+                    return accept(a, -phi, grad);
+                if(dphi * (hi - lo) >= 0) {
+                    hi = lo;
+                    phiHi = phiLo;
+                    dphiHi = dphiLo;
+                }
+                lo = a;
+                phiLo = phi;
+                dphiLo = dphi;
+                gradLo = grad;
+            }
+
+            if(Math.abs(hi - lo) <= 1e-12 * Math.max(1.0, Math.abs(lo)))
+                break;
+        }
+
+        log.debug("Line search zoom ran out of evaluations, taking the best step " + lo);
+        return accept(lo, -phiLo, gradLo);
+    }
+
+    /*
+     * Minimizer of the cubic through (lo,phiLo,dphiLo) and (hi,phiHi,dphiHi),
+     * kept away from the ends of the interval; bisection when the cubic is not usable.
+     */
+    private double interpolate(double lo, double phiLo, double dphiLo, double hi, double phiHi, double dphiHi) {
+        double left = Math.min(lo, hi), right = Math.max(lo, hi);
+        double margin = 0.1 * (right - left);
+        double mid = 0.5 * (lo + hi);
+        if(Double.isNaN(phiHi) || Double.isInfinite(phiHi) || Double.isNaN(dphiHi))
+            return mid;
+
+        double d1 = dphiLo + dphiHi - 3 * (phiLo - phiHi) / (lo - hi);
+        double disc = d1 * d1 - dphiLo * dphiHi;
+        if(disc < 0)
+            return mid;
+        double d2 = Math.signum(hi - lo) * Math.sqrt(disc);
+        double a = hi - (hi - lo) * (dphiHi + d2 - d1) / (dphiHi - dphiLo + 2 * d2);
+        if(Double.isNaN(a) || a < left + margin || a > right - margin)
+            return mid;
+        return a;
+    }
+
+    //sets the parameters to x0 + a d and evaluates the value and gradient there
+    private INDArray evaluate(double a) {
+        INDArray x = x0.dup();
+        Nd4j.getBlasWrapper().axpy(a, line, x);
+        function.setParameters(x);
+        function.setCurrentIteration(iteration);
+        lastStep = a;
+        evaluations++;
+        value = function.getValue();
+        return function.getValueGradient(iteration);
+    }
+
+    //makes a the current point, only setting the parameters again if a was not the last point evaluated
+    private double accept(double a, double value, INDArray gradient) {
+        if(a != lastStep) {
+            INDArray x = x0.dup();
+            if(a != 0)
+                Nd4j.getBlasWrapper().axpy(a, line, x);
+            function.setParameters(x);
+        }
+        this.value = value;
+        this.gradient = gradient;
+        return a;
+    }
+
+    /**
+     * The value at the accepted point
+     * @return the value after the last search
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * The gradient at the accepted point
+     * @return the gradient after the last search
+     */
+    public INDArray getGradient() {
+        return gradient;
+    }
+
+    /**
+     * The number of function and gradient evaluations of the last search
+     * @return the number of evaluations
+     */
+    public int getEvaluations() {
+        return evaluations;
+    }
+
+    public double getC1() {
+        return c1;
+    }
+
+    public void setC1(double c1) {
+        this.c1 = c1;
+    }
+
+    public double getC2() {
+        return c2;
+    }
+
+    public void setC2(double c2) {
+        this.c2 = c2;
+    }
+
+    public double getMaxStep() {
+        return maxStep;
+    }
+
+    public void setMaxStep(double maxStep) {
+        this.maxStep = maxStep;
+    }
+
+    public int getMaxEvaluations() {
+        return maxEvaluations;
+    }
+
+    public void setMaxEvaluations(int maxEvaluations) {
+        this.maxEvaluations = maxEvaluations;
+    }
+}
@@ -0,0 +1,272 @@
+package org.deeplearning4j.util;
+
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.util.Arrays;
+
+/**
+ * Kernels for convolutional layers working on the raw column major buffers.
+ *
+ * A batch of images is a matrix with one example per row: an example with c feature maps
+ * of rows x columns pixels is a row of c * rows * columns values where pixel (y,x) of map k
+ * is column (k * rows + y) * columns + x. Since the matrix is column major, one pixel
+ * of every example in the batch is a contiguous run of numExamples values.
+ *
+ * A valid convolution is lowered to a matrix multiply (im2col): every filter patch of every example
+ * is laid out as a row of a patch matrix, so convolving with all of the filters is the patch matrix
+ * times a (c * filterRows * filterColumns) x numFilters weight matrix. The rows are ordered by
+ * output position then example, which makes the product directly usable as a
+ * numExamples x (numFilters * outRows * outColumns) batch of feature maps.
+ *
+ * @author Adam Gibson
+ */
+public class ConvolutionUtil {
+
+    private ConvolutionUtil() {}
+
+    /**
+     * The size of a valid convolution
+     * @param inputSize the size of the input along one dimension
+     * @param filterSize the size of the filter along the same dimension
+     * @return the size of the output along the dimension
+     */
+    public static int outputSize(int inputSize,int filterSize) {
+        return inputSize - filterSize + 1;
+    }
+
+    /**
+     * Lays out the filter patches of a batch of images as rows (im2col).
+     * Row p * numExamples + n is the patch at output position p = y * outColumns + x of example n,
+     * column (k * filterRows + i) * filterColumns + j is pixel (y + i,x + j) of map k
+     * @param input the numExamples x (channels * rows * columns) images
+     * @param channels the number of feature maps of each image
+     * @param rows the number of rows of a map
+     * @param columns the number of columns of a map
+     * @param filterRows the number of rows of a filter
+     * @param filterColumns the number of columns of a filter
+     * @param result the (numExamples * outRows * outColumns) x (channels * filterRows * filterColumns) patch matrix
+     * @return the result
+     */
+    public static INDArray im2col(INDArray input,int channels,int rows,int columns,int filterRows,int filterColumns,INDArray result) {
+        checkContiguous(result);
+        input = FlatArrayUtil.contiguous(input);
+        int n = input.rows();
+        int outRows = outputSize(rows,filterRows);
+        int outColumns = outputSize(columns,filterColumns);
+        int patchRows = n * outRows * outColumns;
+        if(input.columns() != channels * rows * columns)
+            throw new IllegalArgumentException("Input must have " + channels * rows * columns + " columns but had " + input.columns());
+        if(result.rows() != patchRows || result.columns() != channels * filterRows * filterColumns)
+            throw new IllegalArgumentException("Result must be " + patchRows + " x " + channels * filterRows * filterColumns);
+
+        double[] in = input.data().asDouble();
+        double[] out = result.data().asDouble();
+        int inOffset = input.offset();
+        int outOffset = result.offset();
+        int patchColumn = 0;
+        for(int k = 0; k < channels; k++) {
+            for(int i = 0; i < filterRows; i++) {
+                for(int j = 0; j < filterColumns; j++) {
+                    int dest = outOffset + patchColumn * patchRows;
+                    for(int y = 0; y < outRows; y++) {
+                        int src = inOffset + ((k * rows + y + i) * columns + j) * n;
+                        //one row of output positions reads consecutive pixels: one run of outColumns * n values
+                        System.arraycopy(in,src,out,dest,outColumns * n);
+                        dest += outColumns * n;
+                    }
+                    patchColumn++;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * The inverse of {@link #im2col(INDArray, int, int, int, int, int, INDArray)}: sums the
+     * patch matrix back in to the pixels each patch was read from (col2im).
+     * This is the gradient of the input given the gradient of the patch matrix
+     * @param patches the (numExamples * outRows * outColumns) x (channels * filterRows * filterColumns) patch matrix
+     * @param channels the number of feature maps of each image
+     * @param rows the number of rows of a map
+     * @param columns the number of columns of a map
+     * @param filterRows the number of rows of a filter
+     * @param filterColumns the number of columns of a filter
+     * @param result the numExamples x (channels * rows * columns) images, overwritten
+     * @return the result
+     */
+    public static INDArray col2im(INDArray patches,int channels,int rows,int columns,int filterRows,int filterColumns,INDArray result) {
+        checkContiguous(result);
+        patches = FlatArrayUtil.contiguous(patches);
+        int n = result.rows();
+        int outRows = outputSize(rows,filterRows);
+        int outColumns = outputSize(columns,filterColumns);
+        int patchRows = n * outRows * outColumns;
+        if(result.columns() != channels * rows * columns)
+            throw new IllegalArgumentException("Result must have " + channels * rows * columns + " columns but had " + result.columns());
+        if(patches.rows() != patchRows || patches.columns() != channels * filterRows * filterColumns)
+            throw new IllegalArgumentException("Patches must be " + patchRows + " x " + channels * filterRows * filterColumns);
+
+        double[] in = patches.data().asDouble();
+        double[] out = result.data().asDouble();
+        int inOffset = patches.offset();
+        int outOffset = result.offset();
+        Arrays.fill(out,outOffset,outOffset + result.length(),0);
+        int patchColumn = 0;
+        int run = outColumns * n;
+        for(int k = 0; k < channels; k++) {
+            for(int i = 0; i < filterRows; i++) {
+                for(int j = 0; j < filterColumns; j++) {
+                    int src = inOffset + patchColumn * patchRows;
+                    for(int y = 0; y < outRows; y++) {
+                        int dest = outOffset + ((k * rows + y + i) * columns + j) * n;
+                        for(int e = 0; e < run; e++)
+                            out[dest + e] += in[src + e];
+                        src += run;
+                    }
+                    patchColumn++;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Pools non overlapping poolRows x poolColumns windows of every feature map.
+     * Rows and columns left over at the bottom and right that don't fill a window are dropped
+     * @param input the numExamples x (maps * rows * columns) feature maps
+     * @param maps the number of feature maps
+     * @param rows the number of rows of a map
+     * @param columns the number of columns of a map
+     * @param poolRows the number of rows of a window
+     * @param poolColumns the number of columns of a window
+     * @param poolingType the maximum or mean of each window
+     * @param result the numExamples x (maps * (rows / poolRows) * (columns / poolColumns)) pooled maps
+     * @param argMax for max pooling, one per element of the result: the input column the maximum came from, may be null otherwise
+     * @return the result
+     */
+    public static INDArray pool(INDArray input,int maps,int rows,int columns,int poolRows,int poolColumns,
+                                NeuralNetConfiguration.PoolingType poolingType,INDArray result,int[] argMax) {
+        checkContiguous(result);
+        input = FlatArrayUtil.contiguous(input);
+        int n = input.rows();
+        int outRows = rows / poolRows;
+        int outColumns = columns / poolColumns;
+        boolean max = poolingType == NeuralNetConfiguration.PoolingType.MAX;
+        if(input.columns() != maps * rows * columns)
+            throw new IllegalArgumentException("Input must have " + maps * rows * columns + " columns but had " + input.columns());
+        if(result.rows() != n || result.columns() != maps * outRows * outColumns)
+            throw new IllegalArgumentException("Result must be " + n + " x " + maps * outRows * outColumns);
+        if(max && (argMax == null || argMax.length < result.length()))
+            throw new IllegalArgumentException("Max pooling needs an arg max index per output");
+
+        double[] in = input.data().asDouble();
+        double[] out = result.data().asDouble();
+        int inOffset = input.offset();
+        int outOffset = result.offset();
+        double scale = 1.0 / (poolRows * poolColumns);
+        int outColumn = 0;
+        for(int k = 0; k < maps; k++) {
+            for(int y = 0; y < outRows; y++) {
+                for(int x = 0; x < outColumns; x++) {
+                    int dest = outOffset + outColumn * n;
+                    for(int i = 0; i < poolRows; i++) {
+                        for(int j = 0; j < poolColumns; j++) {
+                            int column = (k * rows + y * poolRows + i) * columns + x * poolColumns + j;
+                            int src = inOffset + column * n;
+                            boolean first = i == 0 && j == 0;
+                            for(int e = 0; e < n; e++) {
+                                double value = in[src + e];
+                                if(max) {
+                                    if(first || value > out[dest + e]) {
+                                        out[dest + e] = value;
+                                        argMax[outColumn * n + e] = column;
+                                    }
+                                }
+                                else if(first)
+                                    out[dest + e] = value;
+                                else
+                                    out[dest + e] += value;
+                            }
+                        }
+                    }
+                    if(!max)
+                        for(int e = 0; e < n; e++)
+                            out[dest + e] *= scale;
+                    outColumn++;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * The gradient of {@link #pool(INDArray, int, int, int, int, int, NeuralNetConfiguration.PoolingType, INDArray, int[])}:
+     * routes the gradient of each pooled value back to the input it was taken from
+     * (max pooling) or spreads it evenly over its window (mean pooling)
+     * @param epsilon the gradient of the pooled maps, numExamples x (maps * (rows / poolRows) * (columns / poolColumns))
+     * @param maps the number of feature maps
+     * @param rows the number of rows of a map
+     * @param columns the number of columns of a map
+     * @param poolRows the number of rows of a window
+     * @param poolColumns the number of columns of a window
+     * @param poolingType the maximum or mean of each window
+     * @param argMax for max pooling, the indexes recorded by the forward pass
+     * @param result the numExamples x (maps * rows * columns) gradient of the input, overwritten
+     * @return the result
+     */
+    public static INDArray unpool(INDArray epsilon,int maps,int rows,int columns,int poolRows,int poolColumns,
+                                  NeuralNetConfiguration.PoolingType poolingType,int[] argMax,INDArray result) {
+        checkContiguous(result);
+        epsilon = FlatArrayUtil.contiguous(epsilon);
+        int n = epsilon.rows();
+        int outRows = rows / poolRows;
+        int outColumns = columns / poolColumns;
+        if(epsilon.columns() != maps * outRows * outColumns)
+            throw new IllegalArgumentException("Epsilon must have " + maps * outRows * outColumns + " columns but had " + epsilon.columns());
+        if(result.rows() != n || result.columns() != maps * rows * columns)
+            throw new IllegalArgumentException("Result must be " + n + " x " + maps * rows * columns);
+
+        double[] in = epsilon.data().asDouble();
+        double[] out = result.data().asDouble();
+        int inOffset = epsilon.offset();
+        int outOffset = result.offset();
+        Arrays.fill(out,outOffset,outOffset + result.length(),0);
+
+        if(poolingType == NeuralNetConfiguration.PoolingType.MAX) {
+            int length = epsilon.length();
+            for(int i = 0; i < length; i++)
+                out[outOffset + argMax[i] * n + i % n] += in[inOffset + i];
+            return result;
+        }
+
+        double scale = 1.0 / (poolRows * poolColumns);
+        int outColumn = 0;
+        for(int k = 0; k < maps; k++) {
+            for(int y = 0; y < outRows; y++) {
+                for(int x = 0; x < outColumns; x++) {
+                    int src = inOffset + outColumn * n;
+                    for(int i = 0; i < poolRows; i++) {
+                        for(int j = 0; j < poolColumns; j++) {
+                            int dest = outOffset + ((k * rows + y * poolRows + i) * columns + x * poolColumns + j) * n;
+                            for(int e = 0; e < n; e++)
+                                out[dest + e] += in[src + e] * scale;
+                        }
+                    }
+                    outColumn++;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private static void checkContiguous(INDArray result) {
+        if(!FlatArrayUtil.isContiguous(result))
+            throw new IllegalArgumentException("Result must be a contiguous column major matrix");
+    }
+
+}
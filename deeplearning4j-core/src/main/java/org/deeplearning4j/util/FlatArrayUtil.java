@@ -0,0 +1,118 @@
+package org.deeplearning4j.util;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * Views and copies for matrices laid out in one contiguous buffer.
+ *
+ * A flat buffer holds several matrices back to back in column major order;
+ * each matrix is a view at an offset in to the buffer, so updating the buffer
+ * updates all of the matrices at once and vice versa.
+ *
+ * @author Adam Gibson
+ */
+public class FlatArrayUtil {
+
+    private FlatArrayUtil() {}
+
+    /**
+     * Creates a column major view of the given shape in to the buffer
+     * @param buffer the buffer to view
+     * @param offset the offset of the first element of the view
+     * @param shape the shape of the view
+     * @return a view sharing the given buffer
+     */
+    public static INDArray view(DataBuffer buffer,int offset,int[] shape) {
+        int[] stride = new int[shape.length];
+        int curr = 1;
+        for(int i = 0; i < shape.length; i++) {
+            stride[i] = curr;
+            curr *= shape[i];
+        }
+        return Nd4j.create(buffer,shape,stride,offset);
+    }
+
+    /**
+     * Whether the elements of the array are contiguous doubles
+     * in column major order in its buffer
+     * @param arr the array to check
+     * @return true if the array can be copied with a single array copy
+     */
+    public static boolean isContiguous(INDArray arr) {
+        return arr.data().dataType().equals(DataBuffer.DOUBLE) && isColumnMajor(arr);
+    }
+
+    /**
+     * Whether the elements of the array are contiguous
+     * in column major order in its buffer, whatever their type
+     * @param arr the array to check
+     * @return true if the array is a dense column major block of its buffer
+     */
+    public static boolean isColumnMajor(INDArray arr) {
+        if(arr.ordering() != 'f')
+            return false;
+        int[] shape = arr.shape();
+        int[] stride = arr.stride();
+        int curr = 1;
+        for(int i = 0; i < shape.length; i++) {
+            if(shape[i] != 1 && stride[i] != curr)
+                return false;
+            curr *= shape[i];
+        }
+        return arr.offset() + arr.length() <= arr.data().length();
+    }
+
+    /**
+     * Copies the elements of one array in to another with the same number of elements.
+     * Arrays of different shapes are copied in column major order,
+     * as if both were laid out in one buffer
+     * @param from the array to copy
+     * @param to the array to copy in to
+     * @return the array copied in to
+     */
+    public static INDArray copy(INDArray from,INDArray to) {
+        if(from.length() != to.length())
+            throw new IllegalArgumentException("Unable to copy an array of length " + from.length() + " in to one of length " + to.length());
+        if(isContiguous(from) && isContiguous(to)) {
+            System.arraycopy(from.data().asDouble(),from.offset(),to.data().asDouble(),to.offset(),from.length());
+            return to;
+        }
+
+        if(from.isMatrix() && to.isMatrix() && from.rows() == to.rows() && from.columns() == to.columns()) {
+            for(int i = 0; i < from.rows(); i++)
+                for(int j = 0; j < from.columns(); j++)
+                    to.putScalar(new int[]{i,j},from.getDouble(i,j));
+        }
+        else {
+            for(int i = 0; i < from.length(); i++)
+                to.putScalar(i,from.getDouble(i));
+        }
+        return to;
+    }
+
+    /**
+     * The array itself if it is contiguous, otherwise a contiguous copy of it.
+     * Kernels working on the raw buffer use this and copy back when given a copy
+     * @param arr the array
+     * @return the array or a contiguous copy
+     */
+    public static INDArray contiguous(INDArray arr) {
+        if(isContiguous(arr))
+            return arr;
+        return copy(arr,Nd4j.create(arr.shape()));
+    }
+
+    /**
+     * Whether the given array is a view in to the given buffer at the given offset
+     * @param arr the array to check
+     * @param buffer the buffer
+     * @param offset the expected offset
+     * @return true if the array is backed by the buffer at the offset
+     */
+    public static boolean isViewOf(INDArray arr,DataBuffer buffer,int offset) {
+        return arr != null && arr.data() == buffer && arr.offset() == offset && isColumnMajor(arr);
+    }
+
+}
@@ -6,6 +6,7 @@ import org.nd4j.linalg.util.ArrayUtil;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
 import java.io.File;
@@ -70,16 +71,66 @@ public class ImageLoader {
         BufferedImage image = ImageIO.read(file);
         if (height > 0 && width > 0)
             image = toBufferedImage(image.getScaledInstance(height, width, Image.SCALE_SMOOTH));
-        Raster raster = image.getData();
+        //the raster itself rather than a copy, read in bulk
+        Raster raster = image.getRaster();
         int w = raster.getWidth(), h = raster.getHeight();
+        int[] samples = raster.getSamples(raster.getMinX(), raster.getMinY(), w, h, 0, (int[]) null);
         int[][] ret = new int[w][h];
         for (int i = 0; i < w; i++)
             for (int j = 0; j < h; j++)
-                ret[i][j] = raster.getSample(i, j, 0);
+                ret[i][j] = samples[j * w + i];
 
         return ret;
     }
 
+    /**
+     * Decodes an image as 8 bit grayscale, resized to the width and height
+     * of this loader if they were set.
+     * The pixels are in the same order as {@link #flattenedImageFromFile(File)}:
+     * pixel (x,y) is at x * height + y
+     * @param file the image to read
+     * @return the gray level (0 to 255) of each pixel
+     * @throws IOException if the image can't be read
+     */
+    public byte[] asGrayPixels(File file) throws IOException {
+        BufferedImage image = ImageIO.read(file);
+        if(image == null)
+            throw new IOException("Unable to decode image " + file);
+        int w = width > 0 ? width : image.getWidth();
+        int h = height > 0 ? height : image.getHeight();
+        byte[] data = ((DataBufferByte) toGray(image, w, h).getRaster().getDataBuffer()).getData();
+        byte[] ret = new byte[data.length];
+        for(int y = 0, i = 0; y < h; y++)
+            for(int x = 0; x < w; x++, i++)
+                ret[x * h + y] = data[i];
+        return ret;
+    }
+
+    /**
+     * Converts an image to 8 bit grayscale of the given size.
+     * Large reductions are done in steps of half the size, so bilinear
+     * interpolation still takes every pixel in to account
+     * @param image the image to convert
+     * @param width the width of the result
+     * @param height the height of the result
+     * @return a {@link BufferedImage#TYPE_BYTE_GRAY} image
+     */
+    public static BufferedImage toGray(BufferedImage image, int width, int height) {
+        BufferedImage ret = image;
+        int w = image.getWidth(), h = image.getHeight();
+        do {
+            w = w / 2 >= width ? w / 2 : width;
+            h = h / 2 >= height ? h / 2 : height;
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(ret, 0, 0, w, h, null);
+            g.dispose();
+            ret = next;
+        } while (w != width || h != height);
+        return ret;
+    }
+
 
     public static BufferedImage toImage(INDArray matrix) {
         BufferedImage img = new BufferedImage(matrix.rows(), matrix.columns(), BufferedImage.TYPE_INT_ARGB);
@@ -0,0 +1,351 @@
+package org.deeplearning4j.util;
+
+import org.apache.commons.math3.distribution.UniformRealDistribution;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * The binary model format read and written by {@link ModelReader} and {@link ModelWriter}.
+ *
+ * A model is laid out as:
+ * <pre>
+ *     magic "DL4J", int version
+ *     string model type
+ *     int header size, header size x (string key, string value)
+ *     records: byte tag followed by
+ *         ARRAY:   string name, byte data type, int rank, rank x int shape, long length,
+ *                  length x float or double elements in column major order
+ *         STRINGS: string name, int size, size x string
+ *     byte END
+ * </pre>
+ * All numbers are little endian, strings are an int byte length followed by their UTF-8 bytes.
+ *
+ * The header is flat string key value pairs. Configurations are stored field by field
+ * (see {@link #putFields(String, Object, Map)}), so a model can be read after fields
+ * are added to or removed from its classes: unknown keys are ignored
+ * and missing ones keep their defaults.
+ *
+ * @author Adam Gibson
+ */
+public class ModelFormat {
+
+    private static Logger log = LoggerFactory.getLogger(ModelFormat.class);
+
+    public final static byte[] MAGIC = {'D','L','4','J'};
+    public final static int VERSION = 1;
+
+    public final static byte END = 0;
+    public final static byte ARRAY = 1;
+    public final static byte STRINGS = 2;
+
+    public final static byte FLOAT = 0;
+    public final static byte DOUBLE = 1;
+
+    //size of the reading and writing buffers
+    final static int BUFFER_SIZE = 1 << 20;
+
+    private ModelFormat() {}
+
+    /**
+     * A stream supporting mark and reset, for checking the format of a stream
+     * before reading it
+     * @param is the stream
+     * @return the stream itself if it supports marking, otherwise a buffered stream over it
+     */
+    public static InputStream markable(InputStream is) {
+        return is.markSupported() ? is : new BufferedInputStream(is);
+    }
+
+    /**
+     * Whether the stream starts with the model format header.
+     * The stream is reset to where it was
+     * @param is a stream supporting mark and reset, see {@link #markable(InputStream)}
+     * @return true if the stream is a model in this format, false for anything else
+     * such as a java serialized model
+     * @throws IOException
+     */
+    public static boolean isModel(InputStream is) throws IOException {
+        if(!is.markSupported())
+            throw new IllegalArgumentException("The stream must support mark and reset");
+        is.mark(MAGIC.length);
+        try {
+            for(int i = 0; i < MAGIC.length; i++)
+                if(is.read() != MAGIC[i])
+                    return false;
+            return true;
+        }
+        finally {
+            is.reset();
+        }
+    }
+
+    /**
+     * Adds the fields of the configuration to the header
+     * @param prefix the prefix of the keys, used to store several configurations in one header
+     * @param conf the configuration
+     * @param header the header to add to
+     */
+    public static void putConfiguration(String prefix,NeuralNetConfiguration conf,Map<String,String> header) {
+        putFields(prefix,conf,header);
+    }
+
+    /**
+     * Reads a configuration written by {@link #putConfiguration(String, NeuralNetConfiguration, java.util.Map)}.
+     * The random number generator and distribution are recreated from the seed,
+     * as with java serialization
+     * @param prefix the prefix of the keys
+     * @param header the header to read from
+     * @return the configuration or null if the header has none with the given prefix
+     */
+    public static NeuralNetConfiguration getConfiguration(String prefix,Map<String,String> header) {
+        if(!hasPrefix(prefix,header))
+            return null;
+        NeuralNetConfiguration conf = new NeuralNetConfiguration();
+        getFields(prefix,conf,header);
+        conf.setRng(new MersenneTwister(conf.getSeed()));
+        conf.setDist(new UniformRealDistribution());
+        return conf;
+    }
+
+    /**
+     * Adds the non static, non transient fields of an object to the header as prefix + field name.
+     * Primitives, strings and enums are stored as their string values, arrays of primitives
+     * and maps of those comma separated. Any other object is stored as its class name,
+     * followed by its own fields under prefix + field name + "."
+     * @param prefix the prefix of the keys
+     * @param o the object to store
+     * @param header the header to add to
+     */
+    public static void putFields(String prefix,Object o,Map<String,String> header) {
+        putFields(prefix,o,header,true);
+    }
+
+    /**
+     * Adds the fields of an object with simple values (primitives, strings, enums, arrays of primitives
+     * and maps of those) to the header as prefix + field name, skipping any other fields.
+     * Used for objects such as networks whose other fields are written separately
+     * @param prefix the prefix of the keys
+     * @param o the object to store
+     * @param header the header to add to
+     */
+    public static void putValues(String prefix,Object o,Map<String,String> header) {
+        putFields(prefix,o,header,false);
+    }
+
+    private static void putFields(String prefix,Object o,Map<String,String> header,boolean recurse) {
+        for(Field field : fields(o.getClass())) {
+            Object value;
+            try {
+                value = field.get(o);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+            if(value == null)
+                continue;
+            String key = prefix + field.getName();
+            String encoded = encode(value);
+            if(encoded != null)
+                header.put(key,encoded);
+            else if(recurse && !value.getClass().isArray() && !(value instanceof Collection) && !(value instanceof Map)) {
+                header.put(key,value.getClass().getName());
+                putFields(key + ".",value,header,true);
+            }
+        }
+    }
+
+    /**
+     * Sets the fields of an object from a header written by {@link #putFields(String, Object, java.util.Map)}.
+     * Fields without a key keep their values, keys without a field are ignored
+     * @param prefix the prefix of the keys
+     * @param o the object to set the fields of
+     * @param header the header to read from
+     */
+    public static void getFields(String prefix,Object o,Map<String,String> header) {
+        for(Field field : fields(o.getClass())) {
+            String key = prefix + field.getName();
+            String value = header.get(key);
+            if(value == null)
+                continue;
+            try {
+                Object decoded = decode(field.getType(),field.getGenericType(),value);
+                if(decoded == null) {
+                    decoded = instantiate(value);
+                    if(decoded == null || !field.getType().isInstance(decoded))
+                        continue;
+                    getFields(key + ".",decoded,header);
+                }
+                field.set(o,decoded);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Adds an object to the header as its class name under the key
+     * followed by its fields (see {@link #putFields(String, Object, java.util.Map)}) under key + "."
+     * @param key the key of the object
+     * @param o the object to store, nothing is stored if this is null
+     * @param header the header to add to
+     */
+    public static void putObject(String key,Object o,Map<String,String> header) {
+        if(o == null)
+            return;
+        header.put(key,o.getClass().getName());
+        putFields(key + ".",o,header);
+    }
+
+    /**
+     * Reads an object written by {@link #putObject(String, Object, java.util.Map)}.
+     * The object is created with its no argument constructor
+     * @param key the key of the object
+     * @param header the header to read from
+     * @return the object or null if the header doesn't have it or it can't be created
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T getObject(String key,Map<String,String> header) {
+        String className = header.get(key);
+        if(className == null)
+            return null;
+        Object ret = instantiate(className);
+        if(ret != null)
+            getFields(key + ".",ret,header);
+        return (T) ret;
+    }
+
+    private static boolean hasPrefix(String prefix,Map<String,String> header) {
+        for(String key : header.keySet())
+            if(key.startsWith(prefix))
+                return true;
+        return false;
+    }
+
+    private static List<Field> fields(Class<?> clazz) {
+        List<Field> ret = new ArrayList<>();
+        for(Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for(Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if(Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || Modifier.isFinal(modifiers) || field.isSynthetic())
+                    continue;
+                field.setAccessible(true);
+                ret.add(field);
+            }
+        }
+        return ret;
+    }
+
+    //the string form of simple values, null for objects stored field by field
+    private static String encode(Object value) {
+        if(isSimple(value))
+            return value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+        if(value.getClass().isArray() && value.getClass().getComponentType().isPrimitive()) {
+            StringBuilder sb = new StringBuilder();
+            for(int i = 0; i < Array.getLength(value); i++) {
+                if(i > 0)
+                    sb.append(',');
+                sb.append(Array.get(value,i));
+            }
+            return sb.toString();
+        }
+        if(value instanceof Map) {
+            StringBuilder sb = new StringBuilder();
+            for(Map.Entry<?,?> entry : ((Map<?,?>) value).entrySet()) {
+                if(!isSimple(entry.getKey()) || !isSimple(entry.getValue()))
+                    return null;
+                if(sb.length() > 0)
+                    sb.append(',');
+                sb.append(entry.getKey()).append('=').append(entry.getValue());
+            }
+            return sb.toString();
+        }
+        return null;
+    }
+
+    private static boolean isSimple(Object value) {
+        return value instanceof String || value instanceof Enum || isBoxed(value.getClass());
+    }
+
+    private static boolean isBoxed(Class<?> type) {
+        return type == Integer.class || type == Long.class || type == Float.class || type == Double.class
+                || type == Short.class || type == Byte.class || type == Boolean.class || type == Character.class;
+    }
+
+    //the value of the given type from its string form, null for objects stored field by field
+    @SuppressWarnings("unchecked")
+    private static Object decode(Class<?> type,Type genericType,String value) {
+        if(type == String.class)
+            return value;
+        if(type.isPrimitive() || isBoxed(type))
+            return parse(type,value);
+        if(type.isEnum())
+            return Enum.valueOf((Class<Enum>) type,value);
+        if(type.isArray() && type.getComponentType().isPrimitive()) {
+            String[] split = value.isEmpty() ? new String[0] : value.split(",");
+            Object ret = Array.newInstance(type.getComponentType(),split.length);
+            for(int i = 0; i < split.length; i++)
+                Array.set(ret,i,parse(type.getComponentType(),split[i]));
+            return ret;
+        }
+        if(Map.class.isAssignableFrom(type)) {
+            Class<?> keyType = String.class,valueType = String.class;
+            if(genericType instanceof ParameterizedType) {
+                Type[] args = ((ParameterizedType) genericType).getActualTypeArguments();
+                if(args[0] instanceof Class && args[1] instanceof Class) {
+                    keyType = (Class<?>) args[0];
+                    valueType = (Class<?>) args[1];
+                }
+            }
+            Map<Object,Object> ret = type.isInterface() ? new HashMap<>() : (Map<Object,Object>) instantiate(type.getName());
+            if(ret == null)
+                return null;
+            if(!value.isEmpty())
+                for(String entry : value.split(",")) {
+                    int split = entry.indexOf('=');
+                    ret.put(parse(keyType,entry.substring(0,split)),parse(valueType,entry.substring(split + 1)));
+                }
+            return ret;
+        }
+        return null;
+    }
+
+    private static Object parse(Class<?> type,String value) {
+        if(type == int.class || type == Integer.class)
+            return Integer.parseInt(value);
+        if(type == long.class || type == Long.class)
+            return Long.parseLong(value);
+        if(type == float.class || type == Float.class)
+            return Float.parseFloat(value);
+        if(type == double.class || type == Double.class)
+            return Double.parseDouble(value);
+        if(type == boolean.class || type == Boolean.class)
+            return Boolean.parseBoolean(value);
+        if(type == short.class || type == Short.class)
+            return Short.parseShort(value);
+        if(type == byte.class || type == Byte.class)
+            return Byte.parseByte(value);
+        if(type == char.class || type == Character.class)
+            return value.charAt(0);
+        return value;
+    }
+
+    //an instance of the named class from its no argument constructor, null if there is none
+    private static Object instantiate(String className) {
+        try {
+            Constructor<?> c = Class.forName(className).getDeclaredConstructor();
+            c.setAccessible(true);
+            return c.newInstance();
+        } catch (Exception e) {
+            log.warn("Unable to create an instance of " + className + ", keeping the default",e);
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,415 @@
+package org.deeplearning4j.util;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+/**
+ * Reads a model written by {@link ModelWriter}.
+ *
+ * The header (model type and configuration) is read on construction,
+ * the records are then read in order:
+ * <pre>
+ *     ModelReader reader = new ModelReader(is);
+ *     String name;
+ *     while((name = reader.next()) != null) {
+ *         if(reader.isArray())
+ *             arrays.put(name,reader.readArray());
+ *     }
+ * </pre>
+ * A record that isn't read is skipped by the next call to {@link #next()}.
+ *
+ * Arrays are read with bulk reads through one reusable buffer. When reading from a file,
+ * they are memory mapped and copied straight from the page cache instead.
+ * {@link #readArray(INDArray)} reads in to an existing array, such as the parameter
+ * buffer of a network, so loading does not need a second copy of the parameters.
+ *
+ * @author Adam Gibson
+ */
+public class ModelReader implements Closeable {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    //largest region mapped at once
+    private static final int MAP_SIZE = 1 << 30;
+
+    private ReadableByteChannel channel;
+    private FileChannel fileChannel;
+    private ByteBuffer buffer = ByteBuffer.allocate(ModelFormat.BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private int version;
+    private String modelType;
+    private Map<String,String> header = new LinkedHashMap<>();
+
+    //the current record
+    private byte tag = -1;
+    private String name;
+    private boolean pending = false;
+    private byte dataType;
+    private int[] shape;
+    private long length;
+
+    /**
+     * Reads the header of a model from the given stream
+     * @param is the stream to read from
+     * @throws IOException if the stream is not a model or can't be read
+     */
+    public ModelReader(InputStream is) throws IOException {
+        this(Channels.newChannel(is),null);
+    }
+
+    /**
+     * Reads the header of a model from the given file.
+     * The arrays of the model are memory mapped when read
+     * @param file the file to read from
+     * @throws IOException if the file is not a model or can't be read
+     */
+    public ModelReader(File file) throws IOException {
+        this(new RandomAccessFile(file,"r").getChannel());
+    }
+
+    private ModelReader(FileChannel fileChannel) throws IOException {
+        this(fileChannel,fileChannel);
+    }
+
+    private ModelReader(ReadableByteChannel channel,FileChannel fileChannel) throws IOException {
+        this.channel = channel;
+        this.fileChannel = fileChannel;
+        buffer.limit(0);
+
+        fill(ModelFormat.MAGIC.length + 4);
+        byte[] magic = new byte[ModelFormat.MAGIC.length];
+        buffer.get(magic);
+        if(!Arrays.equals(magic,ModelFormat.MAGIC))
+            throw new IOException("Not a model: missing the model format header");
+        version = buffer.getInt();
+        if(version > ModelFormat.VERSION)
+            throw new IOException("Unable to read version " + version + " of the model format, the latest supported is " + ModelFormat.VERSION);
+
+        modelType = readString();
+        fill(4);
+        int size = buffer.getInt();
+        for(int i = 0; i < size; i++) {
+            String key = readString();
+            header.put(key,readString());
+        }
+    }
+
+    /**
+     * The version of the format the model was written with
+     * @return the format version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * The type of the model, usually its class name
+     * @return the model type
+     */
+    public String getModelType() {
+        return modelType;
+    }
+
+    /**
+     * The configuration of the model
+     * @return the header key value pairs
+     */
+    public Map<String,String> getHeader() {
+        return header;
+    }
+
+    /**
+     * Moves to the next record, skipping the current one if it wasn't read
+     * @return the name of the next record or null if there are no more records
+     * @throws IOException
+     */
+    public String next() throws IOException {
+        if(tag == ModelFormat.END)
+            return null;
+        if(pending)
+            skip();
+
+        fill(1);
+        tag = buffer.get();
+        if(tag == ModelFormat.END) {
+            name = null;
+            return null;
+        }
+        if(tag != ModelFormat.ARRAY && tag != ModelFormat.STRINGS)
+            throw new IOException("Corrupt model: unknown record type " + tag);
+
+        name = readString();
+        if(tag == ModelFormat.ARRAY) {
+            fill(5);
+            dataType = buffer.get();
+            if(dataType != ModelFormat.FLOAT && dataType != ModelFormat.DOUBLE)
+                throw new IOException("Corrupt model: unknown data type " + dataType + " of array " + name);
+            int rank = buffer.getInt();
+            fill(4 * rank + 8);
+            shape = new int[rank];
+            for(int i = 0; i < rank; i++)
+                shape[i] = buffer.getInt();
+            length = buffer.getLong();
+        }
+        pending = true;
+        return name;
+    }
+
+    /**
+     * The name of the current record
+     * @return the name of the current record
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Whether the current record is an array
+     * @return true if the current record is an array, false if it is a list of strings
+     */
+    public boolean isArray() {
+        return tag == ModelFormat.ARRAY;
+    }
+
+    /**
+     * The shape of the current array
+     * @return the shape of the current array
+     */
+    public int[] getShape() {
+        checkArray();
+        return shape;
+    }
+
+    /**
+     * Reads the current array in to a new array of the configured data type
+     * @return the array
+     * @throws IOException
+     */
+    public INDArray readArray() throws IOException {
+        checkArray();
+        if(length > Integer.MAX_VALUE)
+            throw new IOException("Array " + name + " is too large to load: " + length + " elements");
+        INDArray ret;
+        if(Nd4j.dtype.equals(DataBuffer.FLOAT)) {
+            float[] data = new float[(int) length];
+            readFloats(data,0,data.length);
+            ret = Nd4j.create(data,shape);
+        }
+        else {
+            double[] data = new double[(int) length];
+            readDoubles(data,0,data.length);
+            ret = Nd4j.create(data,shape);
+        }
+        pending = false;
+        return ret;
+    }
+
+    /**
+     * Reads the current array in to the given one. The array must have the same
+     * number of elements and be one contiguous column major run of its buffer,
+     * the shape of the record is not checked
+     * @param into the array to read in to
+     * @return the given array
+     * @throws IOException
+     */
+    public INDArray readArray(INDArray into) throws IOException {
+        checkArray();
+        if(into.length() != length)
+            throw new IllegalArgumentException("Array " + name + " has " + length + " elements, unable to read it in to an array of " + into.length());
+        if(FlatArrayUtil.isContiguous(into))
+            readDoubles(into.data().asDouble(),into.offset(),into.length());
+        else if(into.data().dataType().equals(DataBuffer.FLOAT) && into.ordering() == 'f' && into.offset() == 0 && into.data().length() == into.length())
+            readFloats(into.data().asFloat(),0,into.length());
+        else
+            FlatArrayUtil.copy(readArray(),into);
+        pending = false;
+        return into;
+    }
+
+    /**
+     * Reads the current list of strings
+     * @return the strings
+     * @throws IOException
+     */
+    public List<String> readStrings() throws IOException {
+        if(!pending || tag != ModelFormat.STRINGS)
+            throw new IllegalStateException("The current record is not a list of strings");
+        fill(4);
+        int size = buffer.getInt();
+        List<String> ret = new ArrayList<>(size);
+        for(int i = 0; i < size; i++)
+            ret.add(readString());
+        pending = false;
+        return ret;
+    }
+
+    /**
+     * Skips the current record
+     * @throws IOException
+     */
+    public void skip() throws IOException {
+        if(!pending)
+            return;
+        if(tag == ModelFormat.ARRAY)
+            skipBytes(length * elementSize());
+        else
+            readStrings();
+        pending = false;
+    }
+
+    /**
+     * Reads all of the remaining arrays, skipping any lists of strings
+     * @return the arrays by name in the order they were written
+     * @throws IOException
+     */
+    public Map<String,INDArray> readArrays() throws IOException {
+        Map<String,INDArray> ret = new LinkedHashMap<>();
+        String next;
+        while((next = next()) != null)
+            if(isArray())
+                ret.put(next,readArray());
+        return ret;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void checkArray() {
+        if(!pending || tag != ModelFormat.ARRAY)
+            throw new IllegalStateException("The current record is not an array");
+    }
+
+    private int elementSize() {
+        return dataType == ModelFormat.FLOAT ? 4 : 8;
+    }
+
+    private void readDoubles(double[] data,int offset,int length) throws IOException {
+        int elementSize = elementSize();
+        if(fileChannel != null && (long) length * elementSize > buffer.remaining()) {
+            long start = discardBuffer();
+            int i = 0;
+            while(i < length) {
+                int n = Math.min(length - i,MAP_SIZE / elementSize);
+                MappedByteBuffer map = fileChannel.map(FileChannel.MapMode.READ_ONLY,start + (long) i * elementSize,(long) n * elementSize);
+                map.order(ByteOrder.LITTLE_ENDIAN);
+                if(dataType == ModelFormat.DOUBLE)
+                    map.asDoubleBuffer().get(data,offset + i,n);
+                else
+                    for(int j = 0; j < n; j++)
+                        data[offset + i + j] = map.getFloat();
+                i += n;
+            }
+            fileChannel.position(start + (long) length * elementSize);
+            return;
+        }
+
+        int i = 0;
+        while(i < length) {
+            fill(elementSize);
+            int n = Math.min(length - i,buffer.remaining() / elementSize);
+            if(dataType == ModelFormat.DOUBLE) {
+                buffer.asDoubleBuffer().get(data,offset + i,n);
+                buffer.position(buffer.position() + n * 8);
+            }
+            else
+                for(int j = 0; j < n; j++)
+                    data[offset + i + j] = buffer.getFloat();
+            i += n;
+        }
+    }
+
+    private void readFloats(float[] data,int offset,int length) throws IOException {
+        int elementSize = elementSize();
+        if(fileChannel != null && (long) length * elementSize > buffer.remaining()) {
+            long start = discardBuffer();
+            int i = 0;
+            while(i < length) {
+                int n = Math.min(length - i,MAP_SIZE / elementSize);
+                MappedByteBuffer map = fileChannel.map(FileChannel.MapMode.READ_ONLY,start + (long) i * elementSize,(long) n * elementSize);
+                map.order(ByteOrder.LITTLE_ENDIAN);
+                if(dataType == ModelFormat.FLOAT)
+                    map.asFloatBuffer().get(data,offset + i,n);
+                else
+                    for(int j = 0; j < n; j++)
+                        data[offset + i + j] = (float) map.getDouble();
+                i += n;
+            }
+            fileChannel.position(start + (long) length * elementSize);
+            return;
+        }
+
+        int i = 0;
+        while(i < length) {
+            fill(elementSize);
+            int n = Math.min(length - i,buffer.remaining() / elementSize);
+            if(dataType == ModelFormat.FLOAT) {
+                buffer.asFloatBuffer().get(data,offset + i,n);
+                buffer.position(buffer.position() + n * 4);
+            }
+            else
+                for(int j = 0; j < n; j++)
+                    data[offset + i + j] = (float) buffer.getDouble();
+            i += n;
+        }
+    }
+
+    //drops the read ahead of the file channel, returning the position of the next unread byte
+    private long discardBuffer() throws IOException {
+        long position = fileChannel.position() - buffer.remaining();
+        buffer.clear();
+        buffer.limit(0);
+        return position;
+    }
+
+    private void skipBytes(long bytes) throws IOException {
+        if(fileChannel != null) {
+            long position = discardBuffer();
+            fileChannel.position(position + bytes);
+            return;
+        }
+        while(bytes > 0) {
+            fill(1);
+            int n = (int) Math.min(bytes,buffer.remaining());
+            buffer.position(buffer.position() + n);
+            bytes -= n;
+        }
+    }
+
+    private String readString() throws IOException {
+        fill(4);
+        int size = buffer.getInt();
+        byte[] bytes = new byte[size];
+        int i = 0;
+        while(i < size) {
+            fill(1);
+            int n = Math.min(size - i,buffer.remaining());
+            buffer.get(bytes,i,n);
+            i += n;
+        }
+        return new String(bytes,UTF8);
+    }
+
+    //makes sure at least the given number of bytes are buffered
+    private void fill(int bytes) throws IOException {
+        if(buffer.remaining() >= bytes)
+            return;
+        buffer.compact();
+        while(buffer.position() < bytes) {
+            if(channel.read(buffer) < 0)
+                throw new EOFException("Unexpected end of model");
+        }
+        buffer.flip();
+    }
+
+}
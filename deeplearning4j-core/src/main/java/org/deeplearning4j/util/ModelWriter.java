@@ -0,0 +1,255 @@
+package org.deeplearning4j.util;
+
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Streams a model in the binary model format (see {@link ModelFormat}):
+ * a header of the model type and its configuration followed by
+ * named parameter arrays written as raw little endian blocks.
+ *
+ * Records are written as they are passed in through one reusable buffer,
+ * so a model is never copied in full to be written.
+ *
+ * Usage:
+ * <pre>
+ *     ModelWriter writer = new ModelWriter(os,getClass().getName(),header);
+ *     writer.writeArray("W",W);
+ *     writer.finish();
+ * </pre>
+ *
+ * @author Adam Gibson
+ */
+public class ModelWriter implements Closeable {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private OutputStream os;
+    private WritableByteChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(ModelFormat.BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private boolean floatPrecision = false;
+    private boolean finished = false;
+
+    /**
+     * Writes the header of a model to the given stream
+     * @param os the stream to write to
+     * @param modelType the type of the model, usually its class name
+     * @param header the configuration of the model
+     * @throws IOException
+     */
+    public ModelWriter(OutputStream os,String modelType,Map<String,String> header) throws IOException {
+        this.os = os;
+        this.channel = Channels.newChannel(os);
+        ensure(ModelFormat.MAGIC.length + 4);
+        buffer.put(ModelFormat.MAGIC);
+        buffer.putInt(ModelFormat.VERSION);
+        putString(modelType);
+        ensure(4);
+        buffer.putInt(header.size());
+        for(Map.Entry<String,String> entry : header.entrySet()) {
+            putString(entry.getKey());
+            putString(entry.getValue());
+        }
+    }
+
+    /**
+     * Writes the header of a model to the given file
+     * @param file the file to write to
+     * @param modelType the type of the model, usually its class name
+     * @param header the configuration of the model
+     * @throws IOException
+     */
+    public ModelWriter(File file,String modelType,Map<String,String> header) throws IOException {
+        this(new FileOutputStream(file),modelType,header);
+    }
+
+    /**
+     * Whether to write the arrays as floats rather than doubles, halving their size
+     * @param floatPrecision true to write floats
+     */
+    public void setFloatPrecision(boolean floatPrecision) {
+        this.floatPrecision = floatPrecision;
+    }
+
+    /**
+     * Writes a named array: its shape followed by its elements in column major order
+     * @param name the name of the array
+     * @param arr the array to write
+     * @throws IOException
+     */
+    public void writeArray(String name,INDArray arr) throws IOException {
+        checkNotFinished();
+        ensure(1);
+        buffer.put(ModelFormat.ARRAY);
+        putString(name);
+        int[] shape = arr.shape();
+        ensure(1 + 4 + 4 * shape.length + 8);
+        buffer.put(floatPrecision ? ModelFormat.FLOAT : ModelFormat.DOUBLE);
+        buffer.putInt(shape.length);
+        for(int i = 0; i < shape.length; i++)
+            buffer.putInt(shape[i]);
+        buffer.putLong(arr.length());
+
+        if(FlatArrayUtil.isContiguous(arr))
+            putDoubles(arr.data().asDouble(),arr.offset(),arr.length());
+        else if(isContiguousFloat(arr))
+            putFloats(arr.data().asFloat(),arr.offset(),arr.length());
+        else
+            putElements(arr);
+    }
+
+    /**
+     * Writes a named list of strings, such as a vocabulary
+     * @param name the name of the list
+     * @param strings the strings to write
+     * @throws IOException
+     */
+    public void writeStrings(String name,Collection<String> strings) throws IOException {
+        checkNotFinished();
+        ensure(1);
+        buffer.put(ModelFormat.STRINGS);
+        putString(name);
+        ensure(4);
+        buffer.putInt(strings.size());
+        for(String s : strings)
+            putString(s);
+    }
+
+    /**
+     * Marks the end of the model and flushes it to the stream.
+     * This does not close the stream
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        if(finished)
+            return;
+        ensure(1);
+        buffer.put(ModelFormat.END);
+        flushBuffer();
+        os.flush();
+        finished = true;
+    }
+
+    /**
+     * Finishes the model and closes the stream
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        finish();
+        channel.close();
+    }
+
+    private void checkNotFinished() {
+        if(finished)
+            throw new IllegalStateException("The model was already finished");
+    }
+
+    private boolean isContiguousFloat(INDArray arr) {
+        if(!arr.data().dataType().equals(DataBuffer.FLOAT) || arr.ordering() != 'f')
+            return false;
+        int[] shape = arr.shape();
+        int[] stride = arr.stride();
+        int curr = 1;
+        for(int i = 0; i < shape.length; i++) {
+            if(shape[i] != 1 && stride[i] != curr)
+                return false;
+            curr *= shape[i];
+        }
+        return arr.offset() + arr.length() <= arr.data().length();
+    }
+
+    private void putDoubles(double[] data,int offset,int length) throws IOException {
+        int elementSize = floatPrecision ? 4 : 8;
+        int i = 0;
+        while(i < length) {
+            ensure(elementSize);
+            int n = Math.min(length - i,buffer.remaining() / elementSize);
+            if(floatPrecision) {
+                for(int j = 0; j < n; j++)
+                    buffer.putFloat((float) data[offset + i + j]);
+            }
+            else {
+                buffer.asDoubleBuffer().put(data,offset + i,n);
+                buffer.position(buffer.position() + n * 8);
+            }
+            i += n;
+        }
+    }
+
+    private void putFloats(float[] data,int offset,int length) throws IOException {
+        int elementSize = floatPrecision ? 4 : 8;
+        int i = 0;
+        while(i < length) {
+            ensure(elementSize);
+            int n = Math.min(length - i,buffer.remaining() / elementSize);
+            if(floatPrecision) {
+                buffer.asFloatBuffer().put(data,offset + i,n);
+                buffer.position(buffer.position() + n * 4);
+            }
+            else {
+                for(int j = 0; j < n; j++)
+                    buffer.putDouble(data[offset + i + j]);
+            }
+            i += n;
+        }
+    }
+
+    //element by element in column major order for views that aren't one run of the buffer
+    private void putElements(INDArray arr) throws IOException {
+        int elementSize = floatPrecision ? 4 : 8;
+        if(arr.isMatrix()) {
+            for(int j = 0; j < arr.columns(); j++)
+                for(int i = 0; i < arr.rows(); i++)
+                    putElement(arr.getDouble(i,j),elementSize);
+        }
+        else {
+            for(int i = 0; i < arr.length(); i++)
+                putElement(arr.getDouble(i),elementSize);
+        }
+    }
+
+    private void putElement(double value,int elementSize) throws IOException {
+        ensure(elementSize);
+        if(floatPrecision)
+            buffer.putFloat((float) value);
+        else
+            buffer.putDouble(value);
+    }
+
+    private void putString(String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF8);
+        ensure(4);
+        buffer.putInt(bytes.length);
+        int i = 0;
+        while(i < bytes.length) {
+            ensure(1);
+            int n = Math.min(bytes.length - i,buffer.remaining());
+            buffer.put(bytes,i,n);
+            i += n;
+        }
+    }
+
+    //makes room for at least the given number of bytes
+    private void ensure(int bytes) throws IOException {
+        if(buffer.remaining() < bytes)
+            flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+}
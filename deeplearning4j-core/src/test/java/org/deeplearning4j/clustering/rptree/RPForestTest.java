@@ -0,0 +1,121 @@
+package org.deeplearning4j.clustering.rptree;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by agibsonccc on 10/29/14.
+ */
+public class RPForestTest {
+
+    private static Logger log = LoggerFactory.getLogger(RPForestTest.class);
+
+    @Test
+    public void testRecall() {
+        int rows = 2000, columns = 16, k = 10;
+        Random r = new Random(123);
+        float[] data = new float[rows * columns];
+        for(int i = 0; i < data.length; i++)
+            data[i] = (float) r.nextGaussian();
+        float[] copy = data.clone();
+
+        RPForest forest = new RPForest.Builder().numTrees(10).leafSize(16).build(copy,rows,columns);
+        assertEquals(rows,forest.numRows());
+
+        double recall = 0.0;
+        int numQueries = 50;
+        for(int q = 0; q < numQueries; q++) {
+            double[] query = new double[columns];
+            for(int j = 0; j < columns; j++)
+                query[j] = data[q * columns + j];
+            List<Pair<Integer,Double>> result = forest.query(query,k,500);
+            assertEquals(k,result.size());
+            //the query row itself is always found first
+            assertEquals(q,(int) result.get(0).getFirst());
+            for(int i = 1; i < result.size(); i++)
+                assertTrue(result.get(i - 1).getSecond() >= result.get(i).getSecond());
+            recall += RPForest.recall(exact(data,rows,columns,query,k),indices(result));
+        }
+
+        recall /= numQueries;
+        log.info("Recall " + recall);
+        assertTrue(recall > 0.8);
+    }
+
+    @Test
+    public void testIllegalArguments() {
+        RPForest forest = new RPForest.Builder().numTrees(2).leafSize(2).build(new float[]{1,0,0,1,1,1},3,2);
+        try {
+            forest.query(new double[]{1,0},0);
+            fail("k must be positive");
+        }catch(IllegalArgumentException e) {}
+
+        try {
+            new RPForest.Builder().build(new float[4],65536,65536);
+            fail("The size of the data overflows an int");
+        }catch(IllegalArgumentException e) {}
+    }
+
+    @Test
+    public void testCodesAndSave() throws Exception {
+        INDArray codes = Nd4j.create(new double[][]{
+                {1,1,1,1,0,0,0,0},
+                {1,1,1,0,0,0,0,0},
+                {0,0,0,0,1,1,1,1},
+                {0,0,0,1,1,1,1,1}
+        });
+
+        RPForest forest = new RPForest.Builder().numTrees(3).leafSize(1).buildFromCodes(codes);
+        File file = File.createTempFile("rpforest","bin");
+        file.deleteOnExit();
+        forest.save(file);
+        RPForest loaded = RPForest.load(file);
+
+        List<Pair<Integer,Double>> result = loaded.query(new double[]{1,1,1,1,-1,-1,-1,-1},2,4);
+        assertEquals(0,(int) result.get(0).getFirst());
+        assertEquals(1,(int) result.get(1).getFirst());
+    }
+
+
+    private int[] indices(List<Pair<Integer,Double>> result) {
+        int[] ret = new int[result.size()];
+        for(int i = 0; i < ret.length; i++)
+            ret[i] = result.get(i).getFirst();
+        return ret;
+    }
+
+    private int[] exact(float[] data,int rows,int columns,double[] query,int k) {
+        double[] scores = new double[rows];
+        for(int i = 0; i < rows; i++) {
+            double dot = 0, norm = 0;
+            for(int j = 0; j < columns; j++) {
+                dot += data[i * columns + j] * query[j];
+                norm += data[i * columns + j] * data[i * columns + j];
+            }
+            scores[i] = dot / Math.sqrt(norm);
+        }
+
+        int[] ret = new int[k];
+        boolean[] used = new boolean[rows];
+        for(int i = 0; i < k; i++) {
+            int best = -1;
+            for(int j = 0; j < rows; j++)
+                if(!used[j] && (best < 0 || scores[j] > scores[best]))
+                    best = j;
+            used[best] = true;
+            ret[i] = best;
+        }
+        return ret;
+    }
+
+}
@@ -0,0 +1,141 @@
+package org.deeplearning4j.datasets.binary;
+
+import org.deeplearning4j.datasets.iterator.DataSetIterator;
+import org.deeplearning4j.datasets.iterator.impl.BinaryDataSetIterator;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.util.SerializationUtils;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of data sets through the binary data set format
+ */
+public class BinaryDataSetFileTest {
+
+    @Test
+    public void testConvertIterator() throws IOException {
+        File f = tempFile();
+        DataSet all = new IrisDataSetIterator(150,150).next();
+        assertEquals(150,BinaryDataSetWriter.write(new IrisDataSetIterator(150,150),f,BinaryDataSetFormat.Encoding.DOUBLE,BinaryDataSetFormat.Encoding.DOUBLE));
+
+        DataSetIterator iter = new BinaryDataSetIterator(f,40);
+        assertEquals(4,iter.inputColumns());
+        assertEquals(3,iter.totalOutcomes());
+        for(int epoch = 0; epoch < 2; epoch++) {
+            int row = 0;
+            while(iter.hasNext()) {
+                DataSet next = iter.next();
+                for(int i = 0; i < next.numExamples(); i++,row++) {
+                    assertEquals(all.getFeatureMatrix().getRow(row),next.getFeatureMatrix().getRow(i));
+                    assertEquals(all.getLabels().getRow(row),next.getLabels().getRow(i));
+                }
+            }
+            assertEquals(150,row);
+            iter.reset();
+        }
+
+        //random access to the last, partial batch
+        BinaryDataSetFile file = ((BinaryDataSetIterator) iter).file();
+        DataSet last = file.getBatch(3,40);
+        assertEquals(30,last.numExamples());
+        assertEquals(all.getFeatureMatrix().getRow(120),last.getFeatureMatrix().getRow(0));
+
+        //closing releases the file, which is opened again on next use
+        ((BinaryDataSetIterator) iter).close();
+        iter.reset();
+        assertEquals(40,iter.next().numExamples());
+        ((BinaryDataSetIterator) iter).close();
+    }
+
+    @Test
+    public void testQuantized() throws IOException {
+        INDArray features = Nd4j.rand(50,20);
+        INDArray labels = Nd4j.create(50,3);
+        for(int i = 0; i < 50; i++)
+            labels.putScalar(new int[]{i,i % 3},1);
+        DataSet data = new DataSet(features,labels);
+
+        File exact = tempFile();
+        BinaryDataSetWriter.save(data,exact);
+        File half = tempFile();
+        BinaryDataSetWriter writer = new BinaryDataSetWriter(half,BinaryDataSetFormat.Encoding.HALF,BinaryDataSetFormat.Encoding.UBYTE);
+        writer.write(data);
+        writer.close();
+        File ubyte = tempFile();
+        writer = new BinaryDataSetWriter(ubyte,BinaryDataSetFormat.Encoding.UBYTE,BinaryDataSetFormat.Encoding.UBYTE);
+        double min = (double) features.min(Integer.MAX_VALUE).element();
+        double max = (double) features.max(Integer.MAX_VALUE).element();
+        writer.setFeatureRange(min,max);
+        writer.write(data);
+        writer.close();
+
+        DataSet read = BinaryDataSetFile.load(exact);
+        assertEquals(features,read.getFeatureMatrix());
+        assertEquals(labels,read.getLabels());
+        read = BinaryDataSetFile.load(half);
+        assertEquals(labels,read.getLabels());
+        for(int i = 0; i < features.length(); i++)
+            assertEquals(features.getDouble(i),read.getFeatureMatrix().getDouble(i),1e-3 * Math.max(1,Math.abs(features.getDouble(i))));
+        read = BinaryDataSetFile.load(ubyte);
+        for(int i = 0; i < features.length(); i++)
+            assertEquals(features.getDouble(i),read.getFeatureMatrix().getDouble(i),(max - min) / 510 + 1e-9);
+
+        long header = BinaryDataSetFormat.HEADER_SIZE;
+        assertEquals(header + 50 * 23 * 8,exact.length());
+        assertEquals(header + 50 * 20 * 2 + 50 * 3,half.length());
+        assertEquals(header + 50 * 23,ubyte.length());
+    }
+
+    @Test
+    public void testIsDataSet() throws IOException {
+        File binary = tempFile();
+        DataSet data = new DataSet(Nd4j.rand(5,4),Nd4j.ones(5,2));
+        BinaryDataSetWriter.save(data,binary);
+        assertTrue(BinaryDataSetFile.isDataSet(binary));
+        File serialized = tempFile();
+        SerializationUtils.saveObject(data,serialized);
+        assertFalse(BinaryDataSetFile.isDataSet(serialized));
+        assertFalse(BinaryDataSetFile.isDataSet(tempFile()));
+    }
+
+    @Test
+    public void testNoLabels() throws IOException {
+        DataSet data = new DataSet(Nd4j.rand(5,4),Nd4j.ones(5,2));
+        data.setLabels(null);
+        BinaryDataSetWriter writer = new BinaryDataSetWriter(tempFile());
+        try {
+            writer.write(data);
+            fail("A data set without labels should be rejected");
+        }catch(IllegalArgumentException e) {
+            assertEquals("Unable to write a data set without labels",e.getMessage());
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testHalf() {
+        float[] exact = {0,1,-2.5f,0.5f,65504,1000.5f,(float) Math.pow(2,-24),Float.POSITIVE_INFINITY};
+        for(float f : exact)
+            assertEquals(f,BinaryDataSetFormat.toFloat(BinaryDataSetFormat.toHalf(f)),0);
+        assertEquals(Float.POSITIVE_INFINITY,BinaryDataSetFormat.toFloat(BinaryDataSetFormat.toHalf(1e6f)),0);
+        assertEquals(0,BinaryDataSetFormat.toFloat(BinaryDataSetFormat.toHalf(1e-9f)),0);
+        assertTrue(Float.isNaN(BinaryDataSetFormat.toFloat(BinaryDataSetFormat.toHalf(Float.NaN))));
+        assertEquals(0.1f,BinaryDataSetFormat.toFloat(BinaryDataSetFormat.toHalf(0.1f)),1e-4);
+    }
+
+    private File tempFile() throws IOException {
+        File f = File.createTempFile("dataset",".bin");
+        f.deleteOnExit();
+        return f;
+    }
+
+}
@@ -0,0 +1,111 @@
+package org.deeplearning4j.datasets.image;
+
+import org.deeplearning4j.datasets.binary.BinaryDataSetFile;
+import org.deeplearning4j.util.ImageLoader;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Image batch loading tests on generated images
+ */
+public class ImageBatchLoaderTest {
+
+    @Test
+    public void testSameAsImageLoader() throws Exception {
+        List<File> images = grayImages(20,8,6);
+        ImageBatchLoader loader = new ImageBatchLoader(8,6,4);
+        INDArray batch = loader.normalize(false).load(images);
+        assertEquals(20,batch.rows());
+        assertEquals(48,batch.columns());
+        ImageLoader single = new ImageLoader();
+        for(int i = 0; i < images.size(); i++) {
+            int[] pixels = single.flattenedImageFromFile(images.get(i));
+            for(int j = 0; j < pixels.length; j++)
+                assertEquals(pixels[j],batch.getDouble(i,j),0);
+        }
+        loader.close();
+    }
+
+    @Test
+    public void testParallel() throws IOException {
+        List<File> images = grayImages(50,30,20);
+        int[] labels = new int[images.size()];
+        for(int i = 0; i < labels.length; i++)
+            labels[i] = i % 4;
+        ImageBatchLoader parallel = new ImageBatchLoader(10,10,4);
+        DataSet d = parallel.load(images,labels,4);
+        DataSet sequential = new ImageBatchLoader(10,10,1).load(images,labels,4);
+        assertEquals(sequential.getFeatureMatrix(),d.getFeatureMatrix());
+        assertEquals(sequential.getLabels(),d.getLabels());
+        for(int i = 0; i < labels.length; i++)
+            assertEquals(1,d.getLabels().getDouble(i,labels[i]),0);
+        assertTrue((double) d.getFeatureMatrix().max(Integer.MAX_VALUE).element() <= 1);
+
+        //pixels are stored as bytes, so the cache is exact
+        File cache = File.createTempFile("images",".bin");
+        cache.deleteOnExit();
+        assertEquals(50,parallel.write(images,labels,4,cache));
+        DataSet read = BinaryDataSetFile.load(cache);
+        for(int i = 0; i < d.getFeatureMatrix().length(); i++)
+            assertEquals(d.getFeatureMatrix().getDouble(i),read.getFeatureMatrix().getDouble(i),1e-12);
+        assertEquals(d.getLabels(),read.getLabels());
+        parallel.close();
+    }
+
+    @Test
+    public void testGrayscaleResize() throws IOException {
+        BufferedImage color = new BufferedImage(250,250,BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = color.createGraphics();
+        g.setColor(new Color(200,100,50));
+        g.fillRect(0,0,250,250);
+        g.dispose();
+        BufferedImage gray = ImageLoader.toGray(color,28,28);
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY,gray.getType());
+        assertEquals(28,gray.getWidth());
+        assertEquals(28,gray.getHeight());
+        int[] samples = gray.getRaster().getSamples(0,0,28,28,0,(int[]) null);
+        for(int sample : samples) {
+            assertEquals(samples[0],sample);
+            assertTrue(sample > 50 && sample < 200);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAnImage() throws IOException {
+        List<File> images = grayImages(20,4,4);
+        File bad = File.createTempFile("notanimage",".png");
+        bad.deleteOnExit();
+        images.set(13,bad);
+        new ImageBatchLoader(4,4,4).load(images);
+    }
+
+    private List<File> grayImages(int num,int width,int height) throws IOException {
+        Random r = new Random(123);
+        List<File> ret = new ArrayList<>();
+        for(int i = 0; i < num; i++) {
+            BufferedImage image = new BufferedImage(width,height,BufferedImage.TYPE_BYTE_GRAY);
+            byte[] pixels = new byte[width * height];
+            r.nextBytes(pixels);
+            image.getRaster().setDataElements(0,0,width,height,pixels);
+            File f = File.createTempFile("image",".png");
+            f.deleteOnExit();
+            ImageIO.write(image,"png",f);
+            ret.add(f);
+        }
+        return ret;
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.deeplearning4j.datasets.iterator;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.deeplearning4j.datasets.iterator.impl.MnistDataSetIterator;
+import org.deeplearning4j.distributions.Distributions;
+import org.deeplearning4j.models.classifiers.dbn.DBN;
+import org.deeplearning4j.nn.WeightInit;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.nd4j.linalg.api.activation.Activations;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Times pretraining and fine tuning a DBN on MNIST fetching the mini batches
+ * on the training thread and prefetching them with an {@link AsyncDataSetIterator}.
+ * Not a unit test: run it directly, optionally passing the number of examples.
+ */
+public class AsyncDataSetIteratorBenchmark {
+
+    private static Logger log = LoggerFactory.getLogger(AsyncDataSetIteratorBenchmark.class);
+
+    public static void main(String[] args) throws Exception {
+        int numExamples = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        long sync = time(new MnistDataSetIterator(100,numExamples));
+        AsyncDataSetIterator async = new AsyncDataSetIterator(new MnistDataSetIterator(100,numExamples));
+        long prefetched = time(async);
+        async.shutdown();
+        log.info("Training on " + numExamples + " examples took " + sync + " ms fetching on the training thread and " + prefetched + " ms prefetching");
+    }
+
+    private static long time(DataSetIterator iter) {
+        RandomGenerator gen = new MersenneTwister(123);
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .momentum(5e-1f).weightInit(WeightInit.DISTRIBUTION).dist(Distributions.uniform(gen,784,10))
+                .lossFunction(LossFunctions.LossFunction.RECONSTRUCTION_CROSSENTROPY).rng(gen)
+                .iterations(5).learningRate(1e-1f).nIn(784).nOut(10).build();
+
+        DBN d = new DBN.Builder().configure(conf)
+                .hiddenLayerSizes(new int[]{500, 250})
+                .build();
+        d.getOutputLayer().conf().setActivationFunction(Activations.softMaxRows());
+        d.getOutputLayer().conf().setLossFunction(LossFunctions.LossFunction.MCXENT);
+
+        long start = System.currentTimeMillis();
+        d.pretrain(iter,1,1e-1f,5);
+        d.finetune(iter,1e-1,5);
+        return System.currentTimeMillis() - start;
+    }
+
+}
@@ -0,0 +1,187 @@
+package org.deeplearning4j.datasets.iterator;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator;
+import org.deeplearning4j.distributions.Distributions;
+import org.deeplearning4j.models.classifiers.dbn.DBN;
+import org.deeplearning4j.models.featuredetectors.rbm.RBM;
+import org.deeplearning4j.nn.WeightInit;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.junit.Test;
+import org.nd4j.linalg.api.activation.Activations;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Prefetching data sets in the background
+ */
+public class AsyncDataSetIteratorTest {
+
+    @Test
+    public void testSameBatches() {
+        DataSetIterator iter = new IrisDataSetIterator(10,150);
+        List<DataSet> expected = new ArrayList<>();
+        while(iter.hasNext())
+            expected.add(iter.next());
+        iter.reset();
+
+        //a queue smaller than the number of batches so the fetching thread blocks
+        AsyncDataSetIterator async = new AsyncDataSetIterator(iter,2);
+        for(int epoch = 0; epoch < 2; epoch++) {
+            List<DataSet> batches = new ArrayList<>();
+            while(async.hasNext())
+                batches.add(async.next());
+            assertSameData(expected,batches);
+            assertFalse(async.hasNext());
+            async.reset();
+        }
+        async.shutdown();
+    }
+
+    @Test
+    public void testResetMidEpoch() {
+        AsyncDataSetIterator async = new AsyncDataSetIterator(new IrisDataSetIterator(10,150),2);
+        DataSet first = async.next();
+        async.next();
+        async.next();
+        async.reset();
+        assertSameData(first,async.next());
+        int batches = 1;
+        while(async.hasNext()) {
+            async.next();
+            batches++;
+        }
+        assertEquals(15,batches);
+        async.shutdown();
+    }
+
+    @Test
+    public void testNextNum() {
+        List<DataSet> examples = new IrisDataSetIterator(150,150).next().asList();
+        AsyncDataSetIterator async = new AsyncDataSetIterator(new ListDataSetIterator(examples,10),2);
+        //the batch size is served from the data sets fetched ahead, other sizes from the examples fetched ahead first
+        assertSameData(DataSet.merge(examples.subList(0,10)),async.next(10));
+        assertSameData(DataSet.merge(examples.subList(10,25)),async.next(15));
+        assertSameData(DataSet.merge(examples.subList(25,35)),async.next());
+
+        int seen = 35;
+        while(async.hasNext()) {
+            DataSet next = async.next();
+            assertSameData(DataSet.merge(examples.subList(seen,seen + next.numExamples())),next);
+            seen += next.numExamples();
+        }
+        assertEquals(150,seen);
+
+        async.reset();
+        assertSameData(DataSet.merge(examples.subList(0,3)),async.next(3));
+        async.shutdown();
+    }
+
+    @Test
+    public void testException() {
+        AsyncDataSetIterator async = new AsyncDataSetIterator(new ListDataSetIterator(new IrisDataSetIterator(150,150).next().asList(),50));
+        async.setPreProcessor(new DataSetPreProcessor() {
+            int count = 0;
+            @Override
+            public void preProcess(org.nd4j.linalg.dataset.api.DataSet toPreProcess) {
+                if(++count == 2)
+                    throw new IllegalStateException("Second batch");
+            }
+        });
+
+        assertNotNull(async.next());
+        try {
+            async.next();
+            fail("Expected the exception of the pre processor");
+        } catch (IllegalStateException e) {
+            assertEquals("Second batch",e.getMessage());
+        }
+        assertFalse(async.hasNext());
+        try {
+            async.next();
+            fail("Expected no more data sets");
+        } catch (NoSuchElementException e) {
+        }
+        async.shutdown();
+    }
+
+    @Test
+    public void testPreProcessor() {
+        DataSetIterator iter = new IrisDataSetIterator(10,150);
+        List<DataSet> expected = new ArrayList<>();
+        while(iter.hasNext()) {
+            DataSet next = iter.next();
+            next.scale();
+            expected.add(next);
+        }
+        iter.reset();
+
+        AsyncDataSetIterator async = new AsyncDataSetIterator(iter,3,2);
+        async.setPreProcessor(new DataSetPreProcessor() {
+            @Override
+            public void preProcess(org.nd4j.linalg.dataset.api.DataSet toPreProcess) {
+                ((DataSet) toPreProcess).scale();
+            }
+        });
+        List<DataSet> batches = new ArrayList<>();
+        while(async.hasNext())
+            batches.add(async.next());
+        assertSameData(expected,batches);
+        async.shutdown();
+    }
+
+    @Test
+    public void testDBN() {
+        DBN sync = network();
+        DataSetIterator iter = new IrisDataSetIterator(50,150);
+        sync.pretrain(iter,1,1e-1f,2);
+        sync.finetune(iter,1e-1,2);
+
+        DBN async = network();
+        AsyncDataSetIterator asyncIter = new AsyncDataSetIterator(new IrisDataSetIterator(50,150));
+        async.pretrain(asyncIter,1,1e-1f,2);
+        async.finetune(asyncIter,1e-1,2);
+        asyncIter.shutdown();
+
+        assertEquals(sync.params(),async.params());
+    }
+
+    //data sets don't implement equals
+    private void assertSameData(List<DataSet> expected,List<DataSet> batches) {
+        assertEquals(expected.size(),batches.size());
+        for(int i = 0; i < expected.size(); i++)
+            assertSameData(expected.get(i),batches.get(i));
+    }
+
+    private void assertSameData(DataSet expected,DataSet data) {
+        assertEquals(expected.getFeatureMatrix(),data.getFeatureMatrix());
+        assertEquals(expected.getLabels(),data.getLabels());
+    }
+
+    private DBN network() {
+        RandomGenerator gen = new MersenneTwister(123);
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .hiddenUnit(RBM.HiddenUnit.RECTIFIED).momentum(5e-1f)
+                .visibleUnit(RBM.VisibleUnit.GAUSSIAN).dist(Distributions.uniform(gen))
+                .activationFunction(Activations.sigmoid()).iterations(2)
+                .weightInit(WeightInit.DISTRIBUTION)
+                .lossFunction(LossFunctions.LossFunction.RECONSTRUCTION_CROSSENTROPY).rng(gen)
+                .learningRate(1e-1f).nIn(4).nOut(3).build();
+
+        DBN d = new DBN.Builder().configure(conf)
+                .hiddenLayerSizes(new int[]{4,3})
+                .build();
+        d.getOutputLayer().conf().setActivationFunction(Activations.softMaxRows());
+        d.getOutputLayer().conf().setLossFunction(LossFunctions.LossFunction.MCXENT);
+        return d;
+    }
+
+}
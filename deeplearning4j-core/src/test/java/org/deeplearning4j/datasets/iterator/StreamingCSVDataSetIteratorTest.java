@@ -0,0 +1,93 @@
+package org.deeplearning4j.datasets.iterator;
+
+import org.deeplearning4j.datasets.fetchers.StreamingCSVDataFetcher;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Streaming CSV test
+ */
+public class StreamingCSVDataSetIteratorTest {
+
+    @Test
+    public void testSameAsCSV() throws Exception {
+        File f = new ClassPathResource("csv-example.csv").getFile();
+        DataSet expected = new CSVDataSetIterator(10,10,f,0).next();
+        DataSet next = new StreamingCSVDataSetIterator(10,10,f,0,0).next();
+        assertEquals(expected.getFeatureMatrix(),next.getFeatureMatrix());
+        assertEquals(expected.numOutcomes(),next.numOutcomes());
+    }
+
+    @Test
+    public void testBatches() throws IOException {
+        //enough rows to be parsed on several threads
+        int rows = 1000;
+        double[][] features = new double[rows][3];
+        String[] labels = {"b","a","c"};
+        Random r = new Random(123);
+        File f = File.createTempFile("streaming",".tsv");
+        f.deleteOnExit();
+        Writer w = new FileWriter(f);
+        w.write("x\ty\tlabel\tz\n");
+        for(int i = 0; i < rows; i++) {
+            for(int j = 0; j < 3; j++)
+                features[i][j] = r.nextGaussian();
+            w.write(features[i][0] + "\t" + features[i][1] + "\t\"" + labels[i % 3] + "\"\t" + features[i][2] + "\n");
+            if(i == 500)
+                w.write("malformed\t1\n\n");
+        }
+        w.close();
+
+        StreamingCSVDataFetcher fetcher = new StreamingCSVDataFetcher(f,2,1,'\t',null,4);
+        assertEquals(Arrays.asList("a","b","c"),fetcher.getLabels());
+        assertEquals(rows,fetcher.totalExamples());
+        assertEquals(3,fetcher.inputColumns());
+
+        DataSetIterator iter = new BaseDatasetIterator(400,-1,fetcher);
+        for(int epoch = 0; epoch < 2; epoch++) {
+            int row = 0;
+            while(iter.hasNext()) {
+                DataSet next = iter.next();
+                INDArray in = next.getFeatureMatrix();
+                for(int i = 0; i < in.rows(); i++,row++) {
+                    for(int j = 0; j < 3; j++)
+                        assertEquals(features[row][j],in.getDouble(i,j),0);
+                    int label = Arrays.asList("a","b","c").indexOf(labels[row % 3]);
+                    assertEquals(1,next.getLabels().getDouble(i,label),0);
+                    assertEquals(1,(double) next.getLabels().getRow(i).sum(Integer.MAX_VALUE).element(),0);
+                }
+            }
+            assertEquals(rows,row);
+            iter.reset();
+        }
+
+        //closing stops the parsers, which are started again on next use
+        fetcher.close();
+        assertEquals(400,iter.next().numExamples());
+        fetcher.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownLabel() throws IOException {
+        File f = File.createTempFile("streaming",".csv");
+        f.deleteOnExit();
+        Writer w = new FileWriter(f);
+        w.write("1,2,a\n3,4,b\n");
+        w.close();
+        StreamingCSVDataFetcher fetcher = new StreamingCSVDataFetcher(f,2,0,',',Arrays.asList("a"),1);
+        assertEquals(Integer.MAX_VALUE,fetcher.totalExamples());
+        fetcher.fetch(2);
+    }
+
+}
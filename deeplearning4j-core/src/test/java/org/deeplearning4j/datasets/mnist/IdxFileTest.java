@@ -0,0 +1,109 @@
+package org.deeplearning4j.datasets.mnist;
+
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reading IDX files written the way MNIST is
+ */
+public class IdxFileTest {
+
+    @Test
+    public void testImages() throws IOException {
+        int count = 7,rows = 4,cols = 4;
+        byte[] pixels = new byte[count * rows * cols];
+        new Random(123).nextBytes(pixels);
+        File file = idx(IdxFile.UBYTE,new int[]{count,rows,cols},pixels);
+
+        IdxFile images = new IdxFile(file);
+        assertEquals(count,images.getCount());
+        assertEquals(rows * cols,images.getEntryLength());
+
+        INDArray raw = images.read(2,3);
+        INDArray scaled = images.read(2,3,1 / 255.0);
+        INDArray binarized = images.readBinarized(2,3,30);
+        assertArrayEquals(new int[]{3,rows * cols},raw.shape());
+
+        //the same pixels as the per image reader
+        MnistImageFile legacy = new MnistImageFile(file.getPath(),"r");
+        legacy.setCurrentIndex(3);
+        for(int i = 0; i < 3; i++) {
+            int[][] image = legacy.readImage();
+            for(int j = 0; j < rows * cols; j++) {
+                int pixel = image[j / cols][j % cols];
+                assertEquals(pixel,raw.getDouble(i,j),0);
+                assertEquals(pixel / 255.0,scaled.getDouble(i,j),1e-12);
+                assertEquals(pixel > 30 ? 1 : 0,binarized.getDouble(i,j),0);
+            }
+        }
+        legacy.close();
+        images.close();
+    }
+
+    @Test
+    public void testTensor() throws IOException {
+        int[] shape = {3,2,4};
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        for(int i = 0; i < 24; i++)
+            dos.writeFloat(i * 0.5f);
+        dos.close();
+        File file = idx(IdxFile.FLOAT,shape,bos.toByteArray());
+
+        IdxFile idx = new IdxFile(file);
+        INDArray tensor = idx.readTensor(1,2);
+        assertArrayEquals(new int[]{2,2,4},tensor.shape());
+        for(int i = 0; i < 2; i++)
+            for(int j = 0; j < 2; j++)
+                for(int k = 0; k < 4; k++)
+                    assertEquals(((i + 1) * 8 + j * 4 + k) * 0.5,tensor.getDouble(i,j,k),0);
+        idx.close();
+    }
+
+    @Test
+    public void testLabels() throws IOException {
+        File file = idx(IdxFile.UBYTE,new int[]{5},new byte[]{3,1,4,1,5});
+        IdxFile labels = new IdxFile(file);
+        assertArrayEquals(new int[]{4,1,5},labels.readInts(2,3));
+        try {
+            labels.readInts(3,3);
+            fail("Expected the range to be checked");
+        } catch (IllegalArgumentException e) {
+        }
+        labels.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotIdx() throws IOException {
+        File file = File.createTempFile("idx",".bin");
+        file.deleteOnExit();
+        FileOutputStream fos = new FileOutputStream(file);
+        fos.write(new byte[]{'D','L','4','J'});
+        fos.close();
+        new IdxFile(file);
+    }
+
+    private File idx(byte dataType,int[] shape,byte[] data) throws IOException {
+        File file = File.createTempFile("idx",".bin");
+        file.deleteOnExit();
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(file));
+        dos.writeShort(0);
+        dos.writeByte(dataType);
+        dos.writeByte(shape.length);
+        for(int dim : shape)
+            dos.writeInt(dim);
+        dos.write(data);
+        dos.close();
+        return file;
+    }
+
+}
@@ -0,0 +1,48 @@
+package org.deeplearning4j.models.classifiers.dbn;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.deeplearning4j.datasets.iterator.DataSetIterator;
+import org.deeplearning4j.datasets.iterator.impl.MnistDataSetIterator;
+import org.deeplearning4j.distributions.Distributions;
+import org.deeplearning4j.nn.WeightInit;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Times greedy layer wise pretraining of a 5 layer DBN on MNIST
+ * with and without cached layer activations.
+ * Not a unit test: run it directly, optionally passing the number of examples.
+ */
+public class DBNPretrainBenchmark {
+
+    private static Logger log = LoggerFactory.getLogger(DBNPretrainBenchmark.class);
+
+    public static void main(String[] args) throws Exception {
+        int numExamples = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        long uncached = time(false,numExamples);
+        long cached = time(true,numExamples);
+        log.info("Pretraining " + numExamples + " examples took " + uncached + " ms uncached and " + cached + " ms cached");
+    }
+
+    private static long time(boolean cacheLayerActivations,int numExamples) throws Exception {
+        RandomGenerator gen = new MersenneTwister(123);
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .momentum(5e-1f).weightInit(WeightInit.DISTRIBUTION).dist(Distributions.uniform(gen,784,10))
+                .lossFunction(LossFunctions.LossFunction.RECONSTRUCTION_CROSSENTROPY).rng(gen)
+                .iterations(10).learningRate(1e-1f).nIn(784).nOut(10).build();
+
+        DBN d = new DBN.Builder().configure(conf)
+                .hiddenLayerSizes(new int[]{500, 400, 300, 200, 100})
+                .cacheLayerActivations(cacheLayerActivations)
+                .build();
+
+        DataSetIterator iter = new MnistDataSetIterator(100,numExamples);
+        long start = System.currentTimeMillis();
+        d.pretrain(iter,1,1e-1f,10);
+        return System.currentTimeMillis() - start;
+    }
+
+}
@@ -18,6 +18,8 @@ import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.layers.OutputLayer;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -108,4 +110,44 @@ public class DBNTest {
 
     }
 
+    @Test
+    public void testCachedPretrainMatchesUncached() {
+        DBN uncached = irisDbn(false,Long.MAX_VALUE);
+        DBN cached = irisDbn(true,Long.MAX_VALUE);
+        uncached.pretrain(new IrisDataSetIterator(50,150),1,1e-1f,5);
+        cached.pretrain(new IrisDataSetIterator(50,150),1,1e-1f,5);
+
+        for(int i = 0; i < uncached.getnLayers(); i++)
+            assertEquals(uncached.getNeuralNets()[i].getW(),cached.getNeuralNets()[i].getW());
+    }
+
+    @Test
+    public void testCachedPretrainSpilled() {
+        DBN uncached = irisDbn(false,Long.MAX_VALUE);
+        //small enough that every cache spills to disk
+        DBN spilled = irisDbn(true,1);
+        uncached.pretrain(new IrisDataSetIterator(50,150),1,1e-1f,5);
+        spilled.pretrain(new IrisDataSetIterator(50,150),1,1e-1f,5);
+
+        for(int i = 0; i < uncached.getnLayers(); i++) {
+            INDArray diff = uncached.getNeuralNets()[i].getW().sub(spilled.getNeuralNets()[i].getW());
+            assertEquals(0,(double) diff.norm2(Integer.MAX_VALUE).element(),1e-3);
+        }
+    }
+
+    private DBN irisDbn(boolean cacheLayerActivations,long maxCachedActivationBytes) {
+        RandomGenerator gen = new MersenneTwister(123);
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .hiddenUnit(RBM.HiddenUnit.BINARY).visibleUnit(RBM.VisibleUnit.GAUSSIAN)
+                .dist(Distributions.uniform(gen)).weightInit(WeightInit.DISTRIBUTION)
+                .lossFunction(LossFunctions.LossFunction.RECONSTRUCTION_CROSSENTROPY).rng(gen)
+                .iterations(5).learningRate(1e-1f).nIn(4).nOut(3).build();
+
+        return new DBN.Builder().configure(conf)
+                .hiddenLayerSizes(new int[]{4, 3, 2})
+                .cacheLayerActivations(cacheLayerActivations)
+                .maxCachedActivationBytes(maxCachedActivationBytes)
+                .build();
+    }
+
 }
@@ -102,6 +102,68 @@ public class RBMTests {
 
     }
 
+    @Test
+    public void testPersistentContrastiveDivergence() {
+        INDArray input = basicData();
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .rng(new MersenneTwister(123)).useAdaGrad(false).momentum(0)
+                .persistentChains(10).k(1)
+                .learningRate(1e-1f).nIn(6).nOut(4).build();
+        assertEquals(10,conf.clone().getPersistentChains());
+        assertEquals(1,conf.clone().getK());
+
+        RBM rbm = new RBM.Builder().configure(conf).withInput(input).build();
+        double before = reconstructionError(rbm,input);
+        for(int i = 0; i < 500; i++)
+            rbm.contrastiveDivergence(1e-1f,1,input);
+
+        INDArray fantasy = rbm.getPersistentHidden();
+        assertEquals(10,fantasy.rows());
+        assertEquals(4,fantasy.columns());
+        assertTrue(reconstructionError(rbm,input) < before);
+    }
+
+    @Test
+    public void testFastPersistentContrastiveDivergence() {
+        INDArray input = basicData();
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .rng(new MersenneTwister(123)).useAdaGrad(false).momentum(0)
+                .persistentChains(10).k(1).fastWeightsLearningRate(1e-1f)
+                .learningRate(1e-1f).nIn(6).nOut(4).build();
+
+        RBM rbm = new RBM.Builder().configure(conf).withInput(input).build();
+        double before = reconstructionError(rbm,input);
+        INDArray w = rbm.getW().dup();
+        for(int i = 0; i < 500; i++)
+            rbm.contrastiveDivergence(1e-1f,1,input);
+
+        //the regular weights are still trained
+        assertFalse(w.equals(rbm.getW()));
+        assertTrue(reconstructionError(rbm,input) < before);
+
+        rbm.resetPersistentChains();
+        assertNull(rbm.getPersistentHidden());
+    }
+
+    private double reconstructionError(RBM rbm,INDArray input) {
+        INDArray diff = rbm.transform(input).sub(input);
+        return (double) diff.mul(diff).sum(Integer.MAX_VALUE).element();
+    }
+
+    private INDArray basicData() {
+        float[][] data = new float[][]
+                {
+                        {1,1,1,0,0,0},
+                        {1,0,1,0,0,0},
+                        {1,1,1,0,0,0},
+                        {0,0,1,1,1,0},
+                        {0,0,1,1,0,0},
+                        {0,0,1,1,1,0},
+                        {0,0,1,1,1,0}
+                };
+        return Nd4j.create(data);
+    }
+
     @Test
     public void testMnist() throws Exception {
         MnistDataFetcher fetcher = new MnistDataFetcher(true);
@@ -0,0 +1,73 @@
+package org.deeplearning4j.models.layers;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.deeplearning4j.datasets.iterator.DataSetIterator;
+import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator;
+import org.deeplearning4j.datasets.iterator.impl.MnistDataSetIterator;
+import org.deeplearning4j.nn.BaseConvolutionalMultiLayerNetwork;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.inference.InferenceNetwork;
+import org.nd4j.linalg.api.activation.Activations;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Trains a LeNet style convolutional network on MNIST:
+ * 6 then 16 filters of 5 x 5, each followed by 2 x 2 max pooling, and a soft max output layer.
+ * Logs the training throughput per epoch and the accuracy on the examples.
+ * Not a unit test: run it directly, optionally passing the number of examples and epochs,
+ * and "synthetic" to train on random 28 x 28 images instead of MNIST.
+ */
+public class ConvolutionBenchmark {
+
+    private static Logger log = LoggerFactory.getLogger(ConvolutionBenchmark.class);
+
+    public static void main(String[] args) throws Exception {
+        int numExamples = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int epochs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        boolean synthetic = args.length > 2 && args[2].equals("synthetic");
+
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .activationFunction(Activations.sigmoid()).rng(new MersenneTwister(123))
+                .numInFeatureMaps(1).featureMapSize(new int[]{28,28})
+                .filterSize(new int[]{5,5}).stride(new int[]{2,2})
+                .poolingType(NeuralNetConfiguration.PoolingType.MAX)
+                .useAdaGrad(true).nOut(10).build();
+        BaseConvolutionalMultiLayerNetwork network = new BaseConvolutionalMultiLayerNetwork.Builder()
+                .configure(conf).featureMaps(new int[]{6,16}).build();
+
+        DataSetIterator iter = synthetic ? synthetic(numExamples) : new MnistDataSetIterator(100,numExamples);
+        for(int epoch = 0; epoch < epochs; epoch++) {
+            long start = System.currentTimeMillis();
+            network.finetune(iter,1e-1,1);
+            long elapsed = System.currentTimeMillis() - start;
+            log.info(String.format("Epoch %d: %d ms, %.0f examples/s",epoch,elapsed,numExamples / (elapsed / 1000.0)));
+        }
+
+        int correct = 0;
+        iter.reset();
+        while(iter.hasNext()) {
+            DataSet data = iter.next();
+            int[] predicted = network.predict(data.getFeatureMatrix());
+            int[] actual = InferenceNetwork.argMax(data.getLabels());
+            for(int i = 0; i < predicted.length; i++)
+                if(predicted[i] == actual[i])
+                    correct++;
+        }
+        log.info(String.format("Accuracy %.4f",correct / (double) numExamples));
+    }
+
+    /* random images with random labels, in batches of 100 like the MNIST iterator */
+    private static DataSetIterator synthetic(int numExamples) {
+        INDArray features = Nd4j.rand(numExamples,28 * 28,123);
+        INDArray labels = Nd4j.zeros(numExamples,10);
+        MersenneTwister rng = new MersenneTwister(123);
+        for(int i = 0; i < numExamples; i++)
+            labels.putScalar(new int[]{i,rng.nextInt(10)},1);
+        return new ListDataSetIterator(new DataSet(features,labels).asList(),100);
+    }
+
+}
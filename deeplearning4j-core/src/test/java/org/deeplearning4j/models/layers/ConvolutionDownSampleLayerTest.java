@@ -1,38 +1,122 @@
 package org.deeplearning4j.models.layers;
 
-import org.deeplearning4j.datasets.fetchers.MnistDataFetcher;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.deeplearning4j.nn.BaseConvolutionalMultiLayerNetwork;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.layers.ConvolutionDownSampleLayer;
 import org.junit.Test;
-import org.junit.Ignore;
+import org.nd4j.linalg.api.activation.Activations;
 import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.dataset.api.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+import static org.junit.Assert.*;
 
 /**
- * Created by agibsonccc on 9/7/14.
+ * The im2col convolution against a direct one and gradient checks of the convolutional network
  */
 public class ConvolutionDownSampleLayerTest {
 
 
     @Test
-    @Ignore
     public void testConvolution() throws Exception {
-        MnistDataFetcher data = new MnistDataFetcher(true);
-        data.fetch(2);
-        DataSet d = data.next();
+        int channels = 2, rows = 6, columns = 5, filters = 3;
+        int[] filterSize = {3,2};
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .activationFunction(Activations.linear()).rng(new MersenneTwister(123))
+                .numInFeatureMaps(channels).featureMapSize(new int[]{rows,columns})
+                .filterSize(filterSize).numFeatureMaps(filters).stride(new int[]{1,1}).build();
+        ConvolutionDownSampleLayer layer = new ConvolutionDownSampleLayer(conf);
+        layer.getB().putScalar(0,0.1);
+        layer.getB().putScalar(1,-0.2);
+        layer.getB().putScalar(2,0.3);
+        assertArrayEquals(new int[]{4,4},layer.outputMapSize());
 
-        d.setFeatures(d.getFeatureMatrix().reshape(2,1,28,28));
+        INDArray input = Nd4j.rand(3,channels * rows * columns);
+        INDArray output = layer.activate(input);
+        assertEquals(filters * 16,output.columns());
 
-        NeuralNetConfiguration n = new NeuralNetConfiguration.Builder()
-                .filterSize(new int[]{2,2}).numFeatureMaps(2)
-                .weightShape(new int[]{2, 3, 9, 9}).build();
+        INDArray W = layer.getW();
+        for(int n = 0; n < input.rows(); n++)
+            for(int f = 0; f < filters; f++)
+                for(int y = 0; y < 4; y++)
+                    for(int x = 0; x < 4; x++) {
+                        double expected = layer.getB().getDouble(f);
+                        for(int k = 0; k < channels; k++)
+                            for(int i = 0; i < filterSize[0]; i++)
+                                for(int j = 0; j < filterSize[1]; j++)
+                                    expected += input.getDouble(n,(k * rows + y + i) * columns + x + j)
+                                            * W.getDouble((k * filterSize[0] + i) * filterSize[1] + j,f);
+                        assertEquals(expected,output.getDouble(n,(f * 4 + y) * 4 + x),1e-12);
+                    }
+    }
 
-        ConvolutionDownSampleLayer c = new ConvolutionDownSampleLayer(n);
+    @Test
+    public void testMaxPoolingGradient() {
+        checkGradient(NeuralNetConfiguration.PoolingType.MAX);
+    }
 
-        INDArray convolved = c.activate(d.getFeatureMatrix());
+    @Test
+    public void testMeanPoolingGradient() {
+        checkGradient(NeuralNetConfiguration.PoolingType.MEAN);
+    }
 
+    @Test
+    public void testFinetune() {
+        BaseConvolutionalMultiLayerNetwork network = network(NeuralNetConfiguration.PoolingType.MAX);
+        INDArray input = Nd4j.rand(20,2 * 10 * 10);
+        INDArray labels = Nd4j.zeros(20,3);
+        for(int i = 0; i < 20; i++)
+            labels.putScalar(new int[]{i,i % 3},1);
 
+        double before = network.score(input,labels);
+        for(int i = 0; i < 50; i++)
+            network.fit(input,labels,1e-1);
+        double after = network.score(input,labels);
+        assertTrue("Loss should decrease: " + before + " -> " + after,after < before);
     }
 
+    //compares the back propagated gradient with central differences of the loss
+    private void checkGradient(NeuralNetConfiguration.PoolingType poolingType) {
+        BaseConvolutionalMultiLayerNetwork network = network(poolingType);
+        INDArray input = Nd4j.rand(4,2 * 10 * 10);
+        INDArray labels = Nd4j.create(new double[][]{{1,0,0},{0,1,0},{0,0,1},{0,1,0}});
+
+        INDArray gradient = network.gradient(input,labels);
+        INDArray params = network.params();
+        assertEquals(network.numParams(),gradient.length());
+
+        double epsilon = 1e-6;
+        for(int i = 0; i < params.length(); i++) {
+            double value = params.getDouble(i);
+            params.putScalar(i,value + epsilon);
+            network.setParams(params);
+            double plus = network.score(input,labels);
+            params.putScalar(i,value - epsilon);
+            network.setParams(params);
+            double minus = network.score(input,labels);
+            params.putScalar(i,value);
+            network.setParams(params);
+
+            //the gradient is the direction that lowers the loss
+            double numeric = -(plus - minus) / (2 * epsilon);
+            double analytic = gradient.getDouble(i);
+            assertEquals("Parameter " + i,numeric,analytic,1e-6 + 1e-4 * Math.abs(numeric));
+        }
+    }
+
+    //2 maps of 10 x 10: 3 filters of 3 x 3 -> 8 x 8 pooled to 4 x 4, 2 filters of 3 x 3 -> 2 x 2 pooled to 1 x 1, 3 labels
+    private BaseConvolutionalMultiLayerNetwork network(NeuralNetConfiguration.PoolingType poolingType) {
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .activationFunction(Activations.sigmoid()).rng(new MersenneTwister(123))
+                .numInFeatureMaps(2).featureMapSize(new int[]{10,10})
+                .filterSize(new int[]{3,3}).stride(new int[]{2,2}).poolingType(poolingType)
+                .useAdaGrad(false).momentum(0).nOut(3).build();
+        BaseConvolutionalMultiLayerNetwork network = new BaseConvolutionalMultiLayerNetwork.Builder()
+                .configure(conf).featureMaps(new int[]{3,2}).build();
+        //larger filters than the default so the gradient reaches the first layer
+        network.getLayers()[0].getW().muli(20);
+        network.getLayers()[1].getW().muli(20);
+        return network;
+    }
 
 }
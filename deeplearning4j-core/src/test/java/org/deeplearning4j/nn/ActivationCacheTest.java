@@ -0,0 +1,81 @@
+package org.deeplearning4j.nn;
+
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Cached activations should iterate back in order whether in memory or spilled
+ */
+public class ActivationCacheTest {
+
+    @Test
+    public void testInMemory() {
+        List<INDArray> batches = batches();
+        ActivationCache cache = new ActivationCache(Long.MAX_VALUE);
+        for(INDArray batch : batches)
+            cache.add(batch);
+        assertFalse(cache.isSpilled());
+        assertEquals(batches.size(),cache.size());
+
+        int i = 0;
+        for(INDArray batch : cache)
+            assertEquals(batches.get(i++),batch);
+        assertEquals(batches.size(),i);
+        cache.close();
+    }
+
+    @Test
+    public void testSpill() {
+        List<INDArray> batches = batches();
+        //one batch fits in memory, the second forces a spill
+        ActivationCache cache = new ActivationCache(batches.get(0).length() * 8);
+        for(INDArray batch : batches)
+            cache.add(batch);
+        assertTrue(cache.isSpilled());
+        assertEquals(batches.size(),cache.size());
+
+        //iterating twice should read the file from the start each time
+        for(int pass = 0; pass < 2; pass++) {
+            int i = 0;
+            for(INDArray batch : cache) {
+                INDArray expected = batches.get(i++);
+                assertArrayEquals(expected.shape(),batch.shape());
+                assertEquals(0,(double) expected.sub(batch).norm2(Integer.MAX_VALUE).element(),1e-5);
+            }
+            assertEquals(batches.size(),i);
+        }
+        cache.close();
+    }
+
+    @Test
+    public void testCloseAbandonedIterator() throws IOException {
+        List<INDArray> batches = batches();
+        ActivationCache cache = new ActivationCache(0);
+        for(INDArray batch : batches)
+            cache.add(batch);
+
+        Iterator<INDArray> iter = cache.iterator();
+        iter.next();
+        assertTrue(iter instanceof Closeable);
+        ((Closeable) iter).close();
+        assertFalse(iter.hasNext());
+        cache.close();
+    }
+
+    private List<INDArray> batches() {
+        List<INDArray> ret = new ArrayList<>();
+        for(int i = 0; i < 4; i++)
+            ret.add(Nd4j.rand(10 - i,3));
+        return ret;
+    }
+
+}
@@ -0,0 +1,120 @@
+package org.deeplearning4j.nn;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.datasets.iterator.DataSetIterator;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.distributions.Distributions;
+import org.deeplearning4j.models.classifiers.dbn.DBN;
+import org.deeplearning4j.models.featuredetectors.rbm.RBM;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+import org.nd4j.linalg.api.activation.Activations;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The layers of a network should be views in to one flat parameter buffer
+ */
+public class FlatParamsTest {
+
+    private DBN d;
+
+    @Before
+    public void before() {
+        RandomGenerator gen = new MersenneTwister(123);
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .hiddenUnit(RBM.HiddenUnit.RECTIFIED).momentum(5e-1f)
+                .visibleUnit(RBM.VisibleUnit.GAUSSIAN).regularization(true)
+                .regularizationCoefficient(2e-4f).dist(Distributions.uniform(gen))
+                .activationFunction(Activations.sigmoid()).iterations(10)
+                .weightInit(WeightInit.DISTRIBUTION)
+                .lossFunction(LossFunctions.LossFunction.RECONSTRUCTION_CROSSENTROPY).rng(gen)
+                .learningRate(1e-1f).nIn(4).nOut(3).build();
+
+        d = new DBN.Builder().configure(conf)
+                .hiddenLayerSizes(new int[]{5,4})
+                .build();
+        d.getOutputLayer().conf().setActivationFunction(Activations.softMaxRows());
+        d.getOutputLayer().conf().setLossFunction(LossFunctions.LossFunction.MCXENT);
+
+        DataSetIterator iter = new IrisDataSetIterator(150,150);
+        DataSet next = iter.next(150);
+        next.normalizeZeroMeanZeroUnitVariance();
+        d.initializeLayers(next.getFeatureMatrix());
+        d.setLabels(next.getLabels());
+    }
+
+    @Test
+    public void testLayersAreViews() {
+        assertTrue(d.isFlattened());
+        assertEquals(expectedParams(),d.params());
+
+        INDArray view = d.paramsView();
+        assertTrue(view.data() == d.getLayers()[0].getW().data());
+        assertTrue(view.data() == d.getOutputLayer().getB().data());
+        assertTrue(d.getLayers()[1].getW() == d.getNeuralNets()[1].getW());
+
+        //writes through the view are seen by the layers
+        view.putScalar(0,42);
+        assertEquals(42,d.getNeuralNets()[0].getW().getDouble(0,0),1e-12);
+
+        List<Pair<INDArray,INDArray>> unPacked = d.unPack(view);
+        for(int i = 0; i < d.getLayers().length; i++) {
+            assertEquals(d.getLayers()[i].getW(),unPacked.get(i).getFirst());
+            assertEquals(d.getLayers()[i].getB(),unPacked.get(i).getSecond());
+        }
+    }
+
+    @Test
+    public void testSetParameters() {
+        INDArray params = Nd4j.rand(1,d.numParams());
+        INDArray outputW = d.getOutputLayer().getW();
+        d.setParameters(params);
+        assertTrue(d.isFlattened());
+        assertTrue(outputW == d.getOutputLayer().getW());
+        assertEquals(params,d.params());
+        assertEquals(params,expectedParams());
+    }
+
+    @Test
+    public void testBackPropStep() {
+        INDArray before = d.params();
+        INDArray gradient = d.pack(d.backPropGradient());
+        d.backPropStep();
+        assertTrue(d.isFlattened());
+        assertEquals(before.sub(gradient),d.params());
+    }
+
+    @Test
+    public void testDetachedLayerIsFlattenedAgain() {
+        INDArray w = Nd4j.rand(4,5);
+        d.getNeuralNets()[0].setW(w);
+        d.getLayers()[0].setW(w);
+        assertFalse(d.isFlattened());
+        assertEquals(w,d.unPack(d.paramsView()).get(0).getFirst());
+        assertTrue(d.isFlattened());
+    }
+
+    /* the params as they were flattened before the network owned a buffer */
+    private INDArray expectedParams() {
+        List<INDArray> params = new ArrayList<>();
+        for(int i = 0; i < d.getnLayers(); i++) {
+            params.add(d.getNeuralNets()[i].getW());
+            params.add(d.getNeuralNets()[i].gethBias());
+        }
+        params.add(d.getOutputLayer().getW());
+        params.add(d.getOutputLayer().getB());
+        return Nd4j.toFlattened(params);
+    }
+
+}
@@ -0,0 +1,190 @@
+package org.deeplearning4j.nn;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.deeplearning4j.distributions.Distributions;
+import org.deeplearning4j.models.featuredetectors.rbm.RBM;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.gradient.NeuralNetworkGradient;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * The fused default update should match applying adagrad, sparsity, momentum
+ * and l2 one after the other, and the other update rules should move the parameters
+ */
+public class GradientUpdateTest {
+
+    @Test
+    public void testDefaultMatchesReference() {
+        for(boolean adaGrad : new boolean[]{true,false})
+            for(float momentum : new float[]{0f,0.5f})
+                for(float sparsity : new float[]{0f,0.1f})
+                    for(boolean l2 : new boolean[]{true,false})
+                        assertMatchesReference(conf(adaGrad,momentum,sparsity,l2,NeuralNetConfiguration.Updater.DEFAULT));
+    }
+
+    @Test
+    public void testMomentumSchedule() {
+        NeuralNetConfiguration conf = conf(true,0.5f,0f,true,NeuralNetConfiguration.Updater.DEFAULT);
+        conf.setMomentumAfter(Collections.singletonMap(2,0.9f));
+        assertMatchesReference(conf);
+    }
+
+    @Test
+    public void testUpdaters() {
+        for(NeuralNetConfiguration.Updater updater : NeuralNetConfiguration.Updater.values()) {
+            if(updater == NeuralNetConfiguration.Updater.DEFAULT)
+                continue;
+            NeuralNetConfiguration conf = conf(false,0.9f,0f,false,updater);
+            RBM rbm = rbm(conf);
+            //a constant gradient should move every parameter in its direction
+            INDArray wGradient = Nd4j.ones(conf.getnIn(),conf.getnOut());
+            NeuralNetworkGradient gradient = new NeuralNetworkGradient(wGradient,Nd4j.ones(conf.getnIn()),Nd4j.ones(conf.getnOut()));
+            rbm.updateGradientAccordingToParams(gradient,0,0.1);
+            for(int i = 0; i < wGradient.length(); i++)
+                assertTrue(updater + " update " + wGradient.getDouble(i),wGradient.getDouble(i) > 0);
+            if(updater == NeuralNetConfiguration.Updater.SGD)
+                assertEquals(0.1 / 10,wGradient.getDouble(0),1e-12);
+        }
+    }
+
+    @Test
+    public void testNesterovAccumulates() {
+        NeuralNetConfiguration conf = conf(false,0.9f,0f,false,NeuralNetConfiguration.Updater.NESTEROV);
+        RBM rbm = rbm(conf);
+        double last = 0;
+        for(int i = 0; i < 3; i++) {
+            INDArray wGradient = Nd4j.ones(conf.getnIn(),conf.getnOut());
+            rbm.updateGradientAccordingToParams(new NeuralNetworkGradient(wGradient,Nd4j.ones(conf.getnIn()),Nd4j.ones(conf.getnOut())),i,0.1);
+            assertTrue(wGradient.getDouble(0) > last);
+            last = wGradient.getDouble(0);
+        }
+        //first step: (1 + m) * lr * g
+        rbm = rbm(conf);
+        INDArray wGradient = Nd4j.ones(conf.getnIn(),conf.getnOut());
+        rbm.updateGradientAccordingToParams(new NeuralNetworkGradient(wGradient,Nd4j.ones(conf.getnIn()),Nd4j.ones(conf.getnOut())),0,0.1);
+        assertEquals(1.9f * 0.1 / 10,wGradient.getDouble(0),1e-6);
+    }
+
+    private void assertMatchesReference(NeuralNetConfiguration conf) {
+        RBM fused = rbm(conf);
+        RBM reference = rbm(conf);
+        reference.setW(fused.getW().dup());
+        reference.setvBias(fused.getvBias().dup());
+        reference.sethBias(fused.gethBias().dup());
+        RandomGenerator gen = new MersenneTwister(42);
+        for(int iteration = 0; iteration < 5; iteration++) {
+            NeuralNetworkGradient gradient = randomGradient(conf,gen);
+            NeuralNetworkGradient expected = new NeuralNetworkGradient(gradient.getwGradient().dup(),gradient.getvBiasGradient().dup(),gradient.gethBiasGradient().dup());
+            fused.updateGradientAccordingToParams(gradient,iteration,0.1);
+            referenceUpdate(reference,expected,iteration,0.1);
+            assertClose(conf,expected.getwGradient(),gradient.getwGradient());
+            assertClose(conf,expected.getvBiasGradient(),gradient.getvBiasGradient());
+            assertClose(conf,expected.gethBiasGradient(),gradient.gethBiasGradient());
+            if(conf.isUseAdaGrad()) {
+                assertClose(conf,reference.wAdaGrad.historicalGradient,fused.wAdaGrad.historicalGradient);
+                assertClose(conf,reference.hBiasAdaGrad.historicalGradient,fused.hBiasAdaGrad.historicalGradient);
+            }
+        }
+    }
+
+    private void assertClose(NeuralNetConfiguration conf,INDArray expected,INDArray actual) {
+        assertEquals(expected.length(),actual.length());
+        for(int i = 0; i < expected.length(); i++)
+            assertEquals(conf.toString(),expected.getDouble(i),actual.getDouble(i),0);
+    }
+
+    /* the update as it was applied before it was fused */
+    private void referenceUpdate(BaseNeuralNetwork n,NeuralNetworkGradient gradient,int iteration,double learningRate) {
+        NeuralNetConfiguration conf = n.conf();
+        INDArray wGradient = gradient.getwGradient();
+        INDArray hBiasGradient = gradient.gethBiasGradient();
+        INDArray vBiasGradient = gradient.getvBiasGradient();
+
+        INDArray wLearningRates = n.wAdaGrad.getLearningRates(wGradient);
+        double momentum = conf.getMomentum();
+        if(conf.getMomentumAfter() != null && !conf.getMomentumAfter().isEmpty()) {
+            int key = conf.getMomentumAfter().keySet().iterator().next();
+            if(iteration >= key)
+                momentum = conf.getMomentumAfter().get(key);
+        }
+
+        if(conf.isUseAdaGrad())
+            wGradient.muli(wLearningRates);
+        else
+            wGradient.muli(learningRate);
+        if(conf.isUseAdaGrad())
+            hBiasGradient.muli(n.hBiasAdaGrad.getLearningRates(hBiasGradient));
+        else
+            hBiasGradient.muli(learningRate);
+        if(conf.isUseAdaGrad())
+            vBiasGradient.muli(n.vBiasAdaGrad.getLearningRates(vBiasGradient));
+        else
+            vBiasGradient.muli(learningRate);
+
+        if(n.hBiasGradient != null && conf.getSparsity() != 0) {
+            if(conf.isUseAdaGrad()) {
+                INDArray change = n.hBiasAdaGrad.getLearningRates(n.hBias).neg().muli(conf.getSparsity()).mul(hBiasGradient.mul(conf.getSparsity()));
+                hBiasGradient.addi(change);
+            }
+            else {
+                INDArray change = hBiasGradient.mul(conf.getSparsity()).mul(-conf.getLr() * conf.getSparsity());
+                hBiasGradient.addi(change);
+            }
+        }
+
+        if(momentum != 0 && n.wGradient != null)
+            wGradient.addi(n.wGradient.mul(momentum).addi(wGradient.mul(1 - momentum)));
+        if(momentum != 0 && n.vBiasGradient != null)
+            vBiasGradient.addi(n.vBiasGradient.mul(momentum).addi(vBiasGradient.mul(1 - momentum)));
+        if(momentum != 0 && n.hBiasGradient != null)
+            hBiasGradient.addi(n.hBiasGradient.mul(momentum).addi(hBiasGradient.mul(1 - momentum)));
+
+        wGradient.divi(n.lastMiniBatchSize);
+        vBiasGradient.divi(n.lastMiniBatchSize);
+        hBiasGradient.divi(n.lastMiniBatchSize);
+
+        if(conf.isUseRegularization() && conf.getL2() > 0) {
+            if(conf.isUseAdaGrad())
+                wGradient.subi(n.W.mul(conf.getL2()).muli(wLearningRates));
+            else
+                wGradient.subi(n.W.mul(conf.getL2() * learningRate));
+        }
+
+        n.wGradient = wGradient;
+        n.vBiasGradient = vBiasGradient;
+        n.hBiasGradient = hBiasGradient;
+    }
+
+    private NeuralNetworkGradient randomGradient(NeuralNetConfiguration conf,RandomGenerator gen) {
+        INDArray w = Nd4j.create(conf.getnIn(),conf.getnOut());
+        INDArray v = Nd4j.create(conf.getnIn());
+        INDArray h = Nd4j.create(conf.getnOut());
+        for(INDArray arr : new INDArray[]{w,v,h})
+            for(int i = 0; i < arr.length(); i++)
+                arr.putScalar(i,gen.nextGaussian());
+        return new NeuralNetworkGradient(w,v,h);
+    }
+
+    private RBM rbm(NeuralNetConfiguration conf) {
+        RBM ret = new RBM.Builder().configure(conf).build();
+        ret.lastMiniBatchSize = 10;
+        return ret;
+    }
+
+    private NeuralNetConfiguration conf(boolean adaGrad,float momentum,float sparsity,boolean l2,NeuralNetConfiguration.Updater updater) {
+        RandomGenerator gen = new MersenneTwister(123);
+        return new NeuralNetConfiguration.Builder()
+                .useAdaGrad(adaGrad).momentum(momentum).sparsity(sparsity)
+                .regularization(l2).l2(2e-2f).updater(updater)
+                .dist(Distributions.uniform(gen)).weightInit(WeightInit.DISTRIBUTION).rng(gen)
+                .learningRate(1e-1f).nIn(5).nOut(4).build();
+    }
+
+}
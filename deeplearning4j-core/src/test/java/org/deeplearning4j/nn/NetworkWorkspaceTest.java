@@ -0,0 +1,119 @@
+package org.deeplearning4j.nn;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.datasets.iterator.DataSetIterator;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.distributions.Distributions;
+import org.deeplearning4j.models.classifiers.dbn.DBN;
+import org.deeplearning4j.models.featuredetectors.rbm.RBM;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.junit.Test;
+import org.nd4j.linalg.api.activation.Activations;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Back prop through the preallocated workspace should match
+ * the gradients computed with freshly allocated matrices
+ */
+public class NetworkWorkspaceTest {
+
+    @Test
+    public void testGradientsMatchAllocating() {
+        DBN d = network();
+        DataSet next = iris(150);
+        d.initializeLayers(next.getFeatureMatrix());
+        d.setLabels(next.getLabels());
+
+        List<Pair<INDArray,INDArray>> expected = referenceGradient(d);
+        List<Pair<INDArray,INDArray>> gradient = d.backPropGradient();
+        assertEquals(expected.size(),gradient.size());
+        for(int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getFirst(),gradient.get(i).getFirst());
+            assertEquals(expected.get(i).getSecond(),gradient.get(i).getSecond());
+        }
+    }
+
+    @Test
+    public void testBuffersReused() {
+        DBN d = network();
+        DataSet next = iris(150);
+        d.initializeLayers(next.getFeatureMatrix());
+        d.setLabels(next.getLabels());
+
+        List<Pair<INDArray,INDArray>> first = d.backPropGradient();
+        INDArray firstWeights = first.get(0).getFirst();
+        List<Pair<INDArray,INDArray>> second = d.backPropGradient();
+        assertTrue(firstWeights == second.get(0).getFirst());
+
+        NetworkWorkspace workspace = d.workspace();
+        assertEquals(150,workspace.getBatchSize());
+        DataSet smaller = next.get(new int[]{0,1,2,3,4});
+        d.setInput(smaller.getFeatureMatrix());
+        d.setLabels(smaller.getLabels());
+        d.backPropGradient();
+        assertEquals(5,workspace.getBatchSize());
+        assertFalse(workspace.ensure(5,new int[]{4,3,3}));
+    }
+
+    /* the gradient computed as back prop did before the workspace */
+    private List<Pair<INDArray,INDArray>> referenceGradient(DBN d) {
+        List<INDArray> activations = d.feedForward();
+        INDArray output = activations.get(activations.size() - 1);
+        INDArray ix = d.getLabels().sub(output).negi()
+                .subi(d.getOutputLayer().conf().getActivationFunction().applyDerivative(output));
+        int numLayers = d.getLayers().length;
+        INDArray[] deltas = new INDArray[numLayers];
+        for(int i = numLayers - 1; i >= 0; i--) {
+            INDArray w = i < d.getnLayers() ? d.getNeuralNets()[i].getW() : d.getOutputLayer().getW();
+            INDArray b = i < d.getnLayers() ? d.getNeuralNets()[i].gethBias() : d.getOutputLayer().getB();
+            deltas[i] = activations.get(i).transpose().mmul(ix);
+            if(i > 0)
+                ix = ix.mmul(w.addRowVector(b).transpose())
+                        .muli(d.getLayers()[i - 1].conf().getActivationFunction().applyDerivative(activations.get(i)));
+        }
+
+        double l2 = d.getDefaultConfiguration().getL2();
+        List<Pair<INDArray,INDArray>> ret = new ArrayList<>();
+        for(int i = 0; i < numLayers; i++) {
+            INDArray w = i < d.getnLayers() ? d.getNeuralNets()[i].getW() : d.getOutputLayer().getW();
+            ret.add(new Pair<>(deltas[i].add(w.mul(l2)),deltas[i].sum(0)));
+        }
+        return ret;
+    }
+
+    private DataSet iris(int n) {
+        DataSetIterator iter = new IrisDataSetIterator(n,n);
+        DataSet next = iter.next(n);
+        next.normalizeZeroMeanZeroUnitVariance();
+        return next;
+    }
+
+    private DBN network() {
+        RandomGenerator gen = new MersenneTwister(123);
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .hiddenUnit(RBM.HiddenUnit.RECTIFIED).momentum(5e-1f)
+                .visibleUnit(RBM.VisibleUnit.GAUSSIAN).regularization(true)
+                .regularizationCoefficient(2e-4f).dist(Distributions.uniform(gen))
+                .activationFunction(Activations.sigmoid()).iterations(10)
+                .weightInit(WeightInit.DISTRIBUTION)
+                .lossFunction(LossFunctions.LossFunction.RECONSTRUCTION_CROSSENTROPY).rng(gen)
+                .learningRate(1e-1f).nIn(4).nOut(3).build();
+
+        DBN d = new DBN.Builder().configure(conf)
+                .hiddenLayerSizes(new int[]{3})
+                .build();
+        d.getOutputLayer().conf().setActivationFunction(Activations.softMaxRows());
+        d.getOutputLayer().conf().setLossFunction(LossFunctions.LossFunction.MCXENT);
+        return d;
+    }
+
+}
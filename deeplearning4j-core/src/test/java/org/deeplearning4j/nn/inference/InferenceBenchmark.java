@@ -0,0 +1,119 @@
+package org.deeplearning4j.nn.inference;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.deeplearning4j.distributions.Distributions;
+import org.deeplearning4j.models.classifiers.dbn.DBN;
+import org.deeplearning4j.nn.WeightInit;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.nd4j.linalg.api.activation.Activations;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Throughput and latency of single example requests from many threads against
+ * a 784-500-250-10 network: one locked network, one {@link InferenceNetwork} shared by the threads
+ * and the same behind {@link BatchedInference}.
+ * Not a unit test: run it directly, optionally passing the number of threads and requests per thread.
+ */
+public class InferenceBenchmark {
+
+    private static Logger log = LoggerFactory.getLogger(InferenceBenchmark.class);
+
+    private static interface Model {
+        INDArray output(INDArray input);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        RandomGenerator gen = new MersenneTwister(123);
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .weightInit(WeightInit.DISTRIBUTION).dist(Distributions.uniform(gen,784,10))
+                .activationFunction(Activations.sigmoid())
+                .lossFunction(LossFunctions.LossFunction.MCXENT).rng(gen)
+                .nIn(784).nOut(10).build();
+        final DBN d = new DBN.Builder().configure(conf)
+                .hiddenLayerSizes(new int[]{500, 250})
+                .build();
+        d.getOutputLayer().conf().setActivationFunction(Activations.softMaxRows());
+        final INDArray input = Nd4j.rand(threads,784);
+        d.initializeLayers(input);
+
+        final InferenceNetwork inference = new InferenceNetwork(d);
+        final BatchedInference batched = new BatchedInference(inference,64,200);
+
+        run("locked network",new Model() {
+            @Override
+            public INDArray output(INDArray row) {
+                synchronized (d) {
+                    return d.output(row);
+                }
+            }
+        },input,threads,requests);
+
+        run("inference network",new Model() {
+            @Override
+            public INDArray output(INDArray row) {
+                return inference.output(row);
+            }
+        },input,threads,requests);
+
+        run("batched inference",new Model() {
+            @Override
+            public INDArray output(INDArray row) {
+                return batched.output(row);
+            }
+        },input,threads,requests);
+
+        batched.close();
+    }
+
+    private static void run(String name,final Model model,final INDArray input,int threads,final int requests) throws Exception {
+        final long[][] latencies = new long[threads][requests];
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for(int t = 0; t < threads; t++) {
+            final int thread = t;
+            final INDArray row = input.getRow(t).dup();
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for(int i = 0; i < requests; i++) {
+                            long begin = System.nanoTime();
+                            model.output(row);
+                            latencies[thread][i] = System.nanoTime() - begin;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+
+        long[] all = new long[threads * requests];
+        for(int t = 0; t < threads; t++)
+            System.arraycopy(latencies[t],0,all,t * requests,requests);
+        Arrays.sort(all);
+        double qps = all.length / (elapsed / 1e9);
+        log.info(String.format("%s: %d threads %.0f requests/s p50 %.3f ms p99 %.3f ms",
+                name,threads,qps,all[all.length / 2] / 1e6,all[(int) (all.length * 0.99)] / 1e6));
+    }
+
+}
@@ -0,0 +1,138 @@
+package org.deeplearning4j.nn.inference;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.distributions.Distributions;
+import org.deeplearning4j.models.classifiers.dbn.DBN;
+import org.deeplearning4j.models.featuredetectors.rbm.RBM;
+import org.deeplearning4j.nn.WeightInit;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.junit.Test;
+import org.nd4j.linalg.api.activation.Activations;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * The inference network and micro batching should match the network they were built from
+ */
+public class InferenceNetworkTest {
+
+    @Test
+    public void testMatchesNetwork() {
+        DataSet data = iris();
+        DBN d = network(data);
+        InferenceNetwork inference = new InferenceNetwork(d);
+
+        INDArray expected = d.output(data.getFeatureMatrix());
+        INDArray output = inference.output(data.getFeatureMatrix());
+        assertEquals(0,(double) expected.sub(output).norm2(Integer.MAX_VALUE).element(),1e-12);
+        assertArrayEquals(d.predict(data.getFeatureMatrix()),inference.predict(data.getFeatureMatrix()));
+
+        //smaller batches reuse the scratch buffers
+        INDArray first = data.getFeatureMatrix().getRow(0);
+        assertEquals(0,(double) inference.output(first).sub(expected.getRow(0)).norm2(Integer.MAX_VALUE).element(),1e-12);
+    }
+
+    @Test
+    public void testCopiesParameters() {
+        DataSet data = iris();
+        DBN d = network(data);
+        InferenceNetwork inference = new InferenceNetwork(d);
+        INDArray before = inference.output(data.getFeatureMatrix());
+        d.getOutputLayer().getW().addi(1);
+        assertEquals(before,inference.output(data.getFeatureMatrix()));
+    }
+
+    @Test
+    public void testArgMaxAndTopK() {
+        INDArray matrix = Nd4j.create(new double[][]{
+                {0.1,0.5,0.2,0.2},
+                {0.7,0.1,0.1,0.1},
+                {0.3,0.3,0.1,0.4}
+        });
+
+        assertArrayEquals(new int[]{1,0,3},InferenceNetwork.argMax(matrix));
+        int[][] top = InferenceNetwork.argTopK(matrix,3);
+        assertArrayEquals(new int[]{1,2,3},top[0]);
+        assertArrayEquals(new int[]{0,1,2},top[1]);
+        assertArrayEquals(new int[]{3,0,1},top[2]);
+        //non contiguous, ties go to the first column
+        assertArrayEquals(new int[]{1,0,0},InferenceNetwork.argMax(matrix.getColumns(new int[]{0,1})));
+    }
+
+    @Test
+    public void testConcurrentAndBatched() throws Exception {
+        DataSet data = iris();
+        DBN d = network(data);
+        final InferenceNetwork inference = new InferenceNetwork(d);
+        final INDArray features = data.getFeatureMatrix();
+        INDArray expected = inference.output(features);
+        final BatchedInference batched = new BatchedInference(inference,16,1000);
+
+        ExecutorService exec = Executors.newFixedThreadPool(8);
+        List<Future<INDArray>> direct = new ArrayList<>();
+        List<Future<INDArray>> queued = new ArrayList<>();
+        for(int i = 0; i < features.rows(); i++) {
+            final INDArray row = features.getRow(i);
+            direct.add(exec.submit(new Callable<INDArray>() {
+                @Override
+                public INDArray call() {
+                    return inference.output(row);
+                }
+            }));
+            queued.add(exec.submit(new Callable<INDArray>() {
+                @Override
+                public INDArray call() {
+                    return batched.output(row);
+                }
+            }));
+        }
+
+        for(int i = 0; i < features.rows(); i++) {
+            INDArray row = expected.getRow(i);
+            assertEquals(0,(double) direct.get(i).get().sub(row).norm2(Integer.MAX_VALUE).element(),1e-12);
+            assertEquals(0,(double) queued.get(i).get().sub(row).norm2(Integer.MAX_VALUE).element(),1e-12);
+        }
+
+        exec.shutdown();
+        batched.close();
+    }
+
+    private DataSet iris() {
+        DataSet next = new IrisDataSetIterator(150,150).next(150);
+        next.normalizeZeroMeanZeroUnitVariance();
+        return next;
+    }
+
+    private DBN network(DataSet data) {
+        RandomGenerator gen = new MersenneTwister(123);
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .hiddenUnit(RBM.HiddenUnit.RECTIFIED).momentum(5e-1f)
+                .visibleUnit(RBM.VisibleUnit.GAUSSIAN).dist(Distributions.uniform(gen))
+                .activationFunction(Activations.sigmoid()).iterations(10)
+                .weightInit(WeightInit.DISTRIBUTION)
+                .lossFunction(LossFunctions.LossFunction.RECONSTRUCTION_CROSSENTROPY).rng(gen)
+                .learningRate(1e-1f).nIn(4).nOut(3).build();
+
+        DBN d = new DBN.Builder().configure(conf)
+                .hiddenLayerSizes(new int[]{4,3})
+                .build();
+        d.getOutputLayer().conf().setActivationFunction(Activations.softMaxRows());
+        d.getOutputLayer().conf().setLossFunction(LossFunctions.LossFunction.MCXENT);
+        d.initializeLayers(data.getFeatureMatrix());
+        return d;
+    }
+
+}
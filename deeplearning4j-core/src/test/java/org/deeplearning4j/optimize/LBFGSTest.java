@@ -0,0 +1,170 @@
+package org.deeplearning4j.optimize;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.nn.api.NeuralNetwork;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.nn.layers.OutputLayer;
+import org.deeplearning4j.optimize.api.OptimizableByGradientValueMatrix;
+import org.deeplearning4j.optimize.solvers.VectorizedLBFGS;
+import org.junit.Test;
+import org.nd4j.linalg.api.activation.Activations;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import static org.junit.Assert.*;
+
+/**
+ * LBFGS on a known function and on an output layer
+ */
+public class LBFGSTest {
+
+    @Test
+    public void testRosenbrock() {
+        Rosenbrock f = new Rosenbrock(-1.2,1);
+        VectorizedLBFGS lbfgs = new VectorizedLBFGS(f,5);
+        lbfgs.setTolerance(0);
+        lbfgs.setGradientTolerance(1e-8);
+        lbfgs.optimize(200);
+
+        assertTrue(lbfgs.isConverged());
+        assertEquals(1.0,f.x.getDouble(0),1e-4);
+        assertEquals(1.0,f.x.getDouble(1),1e-4);
+        assertTrue(lbfgs.getNumCorrections() <= 5);
+    }
+
+    @Test
+    public void testEvaluationsAreReused() {
+        Rosenbrock f = new Rosenbrock(-1.2,1);
+        VectorizedLBFGS lbfgs = new VectorizedLBFGS(f,5);
+        lbfgs.setTolerance(0);
+
+        //the first evaluation plus one per line search trial point
+        int expected = 1;
+        for(int i = 0; i < 10; i++) {
+            lbfgs.optimize(1);
+            expected += lbfgs.getLineSearch().getEvaluations();
+        }
+
+        assertEquals(expected,f.gradientEvaluations);
+        assertEquals(expected,f.valueEvaluations);
+        assertEquals(-f.rosenbrock(),lbfgs.getValue(),1e-12);
+    }
+
+    @Test
+    public void testOutputLayer() {
+        DataSet data = new IrisDataSetIterator(150,150).next();
+        data.normalizeZeroMeanZeroUnitVariance();
+
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .lossFunction(LossFunctions.LossFunction.MCXENT)
+                .activationFunction(Activations.softmax())
+                .optimizationAlgo(NeuralNetwork.OptimizationAlgorithm.LBFGS)
+                .lbfgsHistorySize(4).useAdaGrad(false).iterations(50)
+                .rng(new MersenneTwister(123))
+                .learningRate(1e-1f).nIn(4).nOut(3).build();
+
+        OutputLayer layer = new OutputLayer.Builder().configure(conf).build();
+        double before = loss(layer,data);
+        layer.fit(data);
+        double after = loss(layer,data);
+        assertTrue("Loss should decrease: " + before + " -> " + after,after < before);
+    }
+
+    @Test
+    public void testRejectsStatefulGradients() {
+        NeuralNetConfiguration.Builder builder = new NeuralNetConfiguration.Builder()
+                .lossFunction(LossFunctions.LossFunction.MCXENT)
+                .activationFunction(Activations.softmax())
+                .optimizationAlgo(NeuralNetwork.OptimizationAlgorithm.LBFGS)
+                .rng(new MersenneTwister(123)).nIn(4).nOut(3);
+        try {
+            new OutputLayer.Builder().configure(builder.useAdaGrad(true).build()).build()
+                    .fit(new IrisDataSetIterator(150,150).next());
+            fail("Adagrad changes the gradient between line search trials");
+        }catch(IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("adagrad"));
+        }
+
+        //momentum only matters where the layer applies it
+        NeuralNetConfiguration momentum = builder.useAdaGrad(false).momentum(0.5f).build();
+        VectorizedLBFGS.checkConfiguration(momentum,false);
+        try {
+            VectorizedLBFGS.checkConfiguration(momentum,true);
+            fail("Momentum changes the gradient between line search trials");
+        }catch(IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("momentum"));
+        }
+        VectorizedLBFGS.checkConfiguration(builder.momentum(0).build(),true);
+    }
+
+    private double loss(OutputLayer layer,DataSet data) {
+        INDArray output = layer.output(data.getFeatureMatrix());
+        return LossFunctions.score(data.getLabels(),LossFunctions.LossFunction.MCXENT,output,0,false);
+    }
+
+    //maximizes -rosenbrock(x), the maximum is at (1,1)
+    private static class Rosenbrock implements OptimizableByGradientValueMatrix {
+        private INDArray x;
+        private int valueEvaluations;
+        private int gradientEvaluations;
+
+        private Rosenbrock(double x0,double x1) {
+            x = Nd4j.create(new double[]{x0,x1});
+        }
+
+        private double rosenbrock() {
+            double a = x.getDouble(0), b = x.getDouble(1);
+            return (1 - a) * (1 - a) + 100 * (b - a * a) * (b - a * a);
+        }
+
+        @Override
+        public int getNumParameters() {
+            return 2;
+        }
+
+        @Override
+        public INDArray getParameters() {
+            return x.dup();
+        }
+
+        @Override
+        public double getParameter(int index) {
+            return x.getDouble(index);
+        }
+
+        @Override
+        public void setParameters(INDArray params) {
+            x = params.dup();
+        }
+
+        @Override
+        public void setParameter(int index, double value) {
+            x.putScalar(index,value);
+        }
+
+        @Override
+        public INDArray getValueGradient(int iteration) {
+            gradientEvaluations++;
+            double a = x.getDouble(0), b = x.getDouble(1);
+            return Nd4j.create(new double[]{
+                    2 * (1 - a) + 400 * a * (b - a * a),
+                    -200 * (b - a * a)
+            });
+        }
+
+        @Override
+        public double getValue() {
+            valueEvaluations++;
+            return -rosenbrock();
+        }
+
+        @Override
+        public void setCurrentIteration(int value) {
+
+        }
+    }
+
+}
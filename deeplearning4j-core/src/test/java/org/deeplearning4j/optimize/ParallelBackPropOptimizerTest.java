@@ -0,0 +1,122 @@
+package org.deeplearning4j.optimize;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.deeplearning4j.datasets.iterator.DataSetIterator;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator;
+import org.deeplearning4j.distributions.Distributions;
+import org.deeplearning4j.models.classifiers.dbn.DBN;
+import org.deeplearning4j.models.featuredetectors.rbm.RBM;
+import org.deeplearning4j.nn.WeightInit;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.deeplearning4j.optimize.optimizers.ParallelBackPropOptimizer;
+import org.junit.Test;
+import org.nd4j.linalg.api.activation.Activations;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import static org.junit.Assert.*;
+
+/**
+ * Data parallel back prop should match back prop on one thread
+ */
+public class ParallelBackPropOptimizerTest {
+
+    @Test
+    public void testSynchronousMatchesBackPropStep() {
+        DataSet data = iris();
+        DBN expected = network(data);
+        DBN parallel = network(data);
+        parallel.setParameters(expected.params());
+
+        expected.setInput(data.getFeatureMatrix());
+        expected.setLabels(data.getLabels());
+        expected.backPropStep();
+
+        //back prop step applies the whole gradient: a learning rate of 1
+        ParallelBackPropOptimizer optimizer = new ParallelBackPropOptimizer(parallel,1.0,4,ParallelBackPropOptimizer.Mode.SYNCHRONOUS);
+        optimizer.step(data.getFeatureMatrix(),data.getLabels());
+        optimizer.shutdown();
+
+        INDArray diff = expected.params().sub(parallel.params());
+        assertEquals(0,(double) diff.norm2(Integer.MAX_VALUE).element(),1e-6);
+    }
+
+    @Test
+    public void testHogwildCloseToSynchronous() {
+        DataSet data = iris();
+        DBN synchronous = network(data);
+        DBN hogwild = network(data);
+        hogwild.setParameters(synchronous.params());
+        INDArray initial = synchronous.params();
+
+        synchronous.finetune(new ListDataSetIterator(data.asList(),150),1e-3,1,4,ParallelBackPropOptimizer.Mode.SYNCHRONOUS);
+        hogwild.finetune(new ListDataSetIterator(data.asList(),150),1e-3,1,4,ParallelBackPropOptimizer.Mode.HOGWILD);
+
+        //the slices see slightly different parameters, which should only matter to second order
+        double update = (double) synchronous.params().sub(initial).norm2(Integer.MAX_VALUE).element();
+        double diff = (double) synchronous.params().sub(hogwild.params()).norm2(Integer.MAX_VALUE).element();
+        assertTrue(update > 0);
+        assertTrue("Hogwild differs by " + diff + " for an update of " + update,diff < 0.1 * update);
+    }
+
+    @Test
+    public void testWorkersLeaveSharedStateAlone() {
+        DataSet data = iris();
+        DBN network = network(data);
+        RandomGenerator shared = new ThreadCheckingGenerator();
+        network.getDefaultConfiguration().setRng(shared);
+        network.setUseDropConnect(true);
+        network.getOutputLayer().conf().setDropOut(0.5f);
+        INDArray outputInput = network.getOutputLayer().getInput();
+
+        ParallelBackPropOptimizer optimizer = new ParallelBackPropOptimizer(network,1e-3,4,ParallelBackPropOptimizer.Mode.HOGWILD);
+        optimizer.step(data.getFeatureMatrix(),data.getLabels());
+        optimizer.shutdown();
+
+        //the workers sample their masks with their own generators and keep their activations in their workspaces
+        assertSame(outputInput,network.getOutputLayer().getInput());
+    }
+
+    /* fails when used off the thread that created it */
+    private static class ThreadCheckingGenerator extends MersenneTwister {
+        private Thread owner = Thread.currentThread();
+
+        @Override
+        protected int next(int bits) {
+            if(owner != null && Thread.currentThread() != owner)
+                throw new IllegalStateException("Shared generator used by " + Thread.currentThread().getName());
+            return super.next(bits);
+        }
+    }
+
+    private DataSet iris() {
+        DataSetIterator iter = new IrisDataSetIterator(150,150);
+        DataSet next = iter.next(150);
+        next.normalizeZeroMeanZeroUnitVariance();
+        return next;
+    }
+
+    private DBN network(DataSet data) {
+        RandomGenerator gen = new MersenneTwister(123);
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .hiddenUnit(RBM.HiddenUnit.RECTIFIED).momentum(5e-1f)
+                .visibleUnit(RBM.VisibleUnit.GAUSSIAN).regularization(true)
+                .regularizationCoefficient(2e-4f).dist(Distributions.uniform(gen))
+                .activationFunction(Activations.sigmoid()).iterations(10)
+                .weightInit(WeightInit.DISTRIBUTION)
+                .lossFunction(LossFunctions.LossFunction.RECONSTRUCTION_CROSSENTROPY).rng(gen)
+                .learningRate(1e-1f).nIn(4).nOut(3).build();
+
+        DBN d = new DBN.Builder().configure(conf)
+                .hiddenLayerSizes(new int[]{4,3})
+                .build();
+        d.getOutputLayer().conf().setActivationFunction(Activations.softMaxRows());
+        d.getOutputLayer().conf().setLossFunction(LossFunctions.LossFunction.MCXENT);
+        d.initializeLayers(data.getFeatureMatrix());
+        return d;
+    }
+
+}
@@ -0,0 +1,68 @@
+package org.deeplearning4j.util;
+
+import org.junit.Test;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import static org.junit.Assert.*;
+
+/**
+ * Copies between contiguous and strided arrays
+ */
+public class FlatArrayUtilTest {
+
+    @Test
+    public void testCopyDifferentShapes() {
+        //a row of a column major matrix is strided
+        INDArray matrix = Nd4j.linspace(1,18,18).reshape(3,6);
+        INDArray row = matrix.getRow(1);
+        assertFalse(FlatArrayUtil.isContiguous(row));
+
+        INDArray to = FlatArrayUtil.copy(row,Nd4j.create(2,3));
+        INDArray expected = FlatArrayUtil.copy(row.dup(),Nd4j.create(2,3));
+        assertEquals(expected,to);
+        for(int i = 0; i < row.length(); i++)
+            assertEquals(row.getDouble(i),to.getDouble(i),0);
+
+        INDArray back = FlatArrayUtil.copy(to,Nd4j.create(6,1));
+        for(int i = 0; i < row.length(); i++)
+            assertEquals(row.getDouble(i),back.getDouble(i),0);
+    }
+
+    @Test
+    public void testCopyStridedMatrixDifferentShape() {
+        //the first two rows of a 4 x 3 matrix
+        INDArray buffer = Nd4j.linspace(1,12,12);
+        INDArray strided = Nd4j.create(buffer.data(),new int[]{2,3},new int[]{1,4},0);
+        assertFalse(FlatArrayUtil.isContiguous(strided));
+
+        INDArray to = FlatArrayUtil.copy(strided,Nd4j.create(3,2));
+        for(int i = 0; i < strided.length(); i++)
+            assertEquals(strided.getDouble(i),to.getDouble(i),0);
+    }
+
+    @Test
+    public void testCopySameShape() {
+        INDArray matrix = Nd4j.linspace(1,12,12).reshape(4,3);
+        INDArray to = FlatArrayUtil.copy(matrix.transpose(),Nd4j.create(3,4));
+        assertEquals(matrix.transpose(),to);
+    }
+
+    @Test
+    public void testFloatViews() {
+        DataBuffer buffer = Nd4j.createBuffer(new float[12]);
+        INDArray view = FlatArrayUtil.view(buffer,6,new int[]{2,3});
+        //views in to float buffers aren't contiguous doubles, but are still views of the buffer
+        assertFalse(FlatArrayUtil.isContiguous(view));
+        assertTrue(FlatArrayUtil.isColumnMajor(view));
+        assertTrue(FlatArrayUtil.isViewOf(view,buffer,6));
+        assertFalse(FlatArrayUtil.isViewOf(view,buffer,0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCopyDifferentLengths() {
+        FlatArrayUtil.copy(Nd4j.create(2,3),Nd4j.create(2,2));
+    }
+
+}
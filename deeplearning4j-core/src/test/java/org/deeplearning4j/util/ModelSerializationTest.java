@@ -0,0 +1,196 @@
+package org.deeplearning4j.util;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.deeplearning4j.datasets.iterator.impl.IrisDataSetIterator;
+import org.deeplearning4j.distributions.Distributions;
+import org.deeplearning4j.models.classifiers.dbn.DBN;
+import org.deeplearning4j.models.featuredetectors.rbm.RBM;
+import org.deeplearning4j.nn.BaseConvolutionalMultiLayerNetwork;
+import org.deeplearning4j.nn.BaseMultiLayerNetwork;
+import org.deeplearning4j.nn.WeightInit;
+import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
+import org.junit.Test;
+import org.nd4j.linalg.api.activation.Activations;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.lossfunctions.LossFunctions;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of configurations and models through the binary model format
+ */
+public class ModelSerializationTest {
+
+    @Test
+    public void testConfiguration() {
+        Map<Integer,Float> momentumAfter = new HashMap<>();
+        momentumAfter.put(10,0.9f);
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .activationFunction(Activations.softMaxRows()).momentumAfter(momentumAfter)
+                .filterSize(new int[]{3,5}).poolingType(NeuralNetConfiguration.PoolingType.MEAN)
+                .lossFunction(LossFunctions.LossFunction.MCXENT).learningRate(0.3f).nIn(7).nOut(2).build();
+
+        Map<String,String> header = new LinkedHashMap<>();
+        ModelFormat.putConfiguration("conf.",conf,header);
+        NeuralNetConfiguration read = ModelFormat.getConfiguration("conf.",header);
+        assertEquals(header(conf),header(read));
+        assertEquals(0.9f,read.getMomentumAfter().get(10),0);
+        assertArrayEquals(new int[]{3,5},read.getFilterSize());
+        assertNotNull(read.getRng());
+
+        //soft max over rows rather than columns
+        INDArray matrix = Nd4j.create(new double[][]{{1,2,3},{4,1,0}});
+        assertEquals(conf.getActivationFunction().apply(matrix.dup()),read.getActivationFunction().apply(matrix.dup()));
+
+        //unknown keys are ignored, missing ones keep the defaults
+        header.put("conf.removedField","1");
+        header.remove("conf.lr");
+        assertEquals(new NeuralNetConfiguration().getLr(),ModelFormat.getConfiguration("conf.",header).getLr(),0);
+    }
+
+    @Test
+    public void testRBM() {
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .visibleUnit(RBM.VisibleUnit.GAUSSIAN).hiddenUnit(RBM.HiddenUnit.RECTIFIED)
+                .rng(new MersenneTwister(123)).nIn(4).nOut(3).build();
+        RBM rbm = new RBM.Builder().configure(conf).build();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        rbm.write(bos);
+        RBM read = new RBM.Builder().configure(new NeuralNetConfiguration.Builder().nIn(2).nOut(2).build()).build();
+        read.load(new ByteArrayInputStream(bos.toByteArray()));
+
+        assertEquals(header(rbm.conf()),header(read.conf()));
+        assertEquals(rbm.getW(),read.getW());
+        assertEquals(rbm.gethBias(),read.gethBias());
+        assertEquals(rbm.getvBias(),read.getvBias());
+    }
+
+    @Test
+    public void testDBN() {
+        DataSet data = new IrisDataSetIterator(150,150).next();
+        DBN d = network(data);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        d.write(bos);
+        DBN read = new BaseMultiLayerNetwork.Builder<DBN>().withClazz(DBN.class).buildEmpty();
+        read.load(new ByteArrayInputStream(bos.toByteArray()));
+
+        assertArrayEquals(d.getHiddenLayerSizes(),read.getHiddenLayerSizes());
+        assertEquals(d.params(),read.params());
+        assertEquals(d.getNeuralNets()[0].getvBias(),read.getNeuralNets()[0].getvBias());
+        for(int i = 0; i < d.getLayerWiseConfigurations().size(); i++)
+            assertEquals(header(d.getLayerWiseConfigurations().get(i)),header(read.getLayerWiseConfigurations().get(i)));
+        INDArray expected = d.output(data.getFeatureMatrix());
+        assertEquals(0,(double) expected.sub(read.output(data.getFeatureMatrix())).norm2(Integer.MAX_VALUE).element(),1e-12);
+    }
+
+    @Test
+    public void testJavaSerializedDBN() {
+        DataSet data = new IrisDataSetIterator(150,150).next();
+        DBN d = network(data);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        SerializationUtils.writeObject(d,bos);
+        DBN read = new BaseMultiLayerNetwork.Builder<DBN>().withClazz(DBN.class).buildEmpty();
+        read.load(new ByteArrayInputStream(bos.toByteArray()));
+        assertEquals(d.getNeuralNets()[0].getW(),read.getNeuralNets()[0].getW());
+    }
+
+    @Test
+    public void testMemoryMapped() throws IOException {
+        INDArray matrix = Nd4j.rand(300,500);
+        INDArray tensor = Nd4j.rand(new int[]{3,4,5});
+        File file = File.createTempFile("model",".bin");
+        file.deleteOnExit();
+
+        Map<String,String> header = new LinkedHashMap<>();
+        header.put("key","value");
+        ModelWriter writer = new ModelWriter(file,"test",header);
+        writer.writeArray("matrix",matrix);
+        writer.writeStrings("words",Arrays.asList("a","b","été"));
+        //a column is a strided view of the matrix
+        writer.writeArray("column",matrix.getColumn(3));
+        writer.setFloatPrecision(true);
+        writer.writeArray("tensor",tensor);
+        writer.close();
+
+        ModelReader reader = new ModelReader(file);
+        assertEquals("test",reader.getModelType());
+        assertEquals("value",reader.getHeader().get("key"));
+        assertEquals("matrix",reader.next());
+        assertArrayEquals(new int[]{300,500},reader.getShape());
+        INDArray into = Nd4j.create(300,500);
+        assertEquals(matrix,reader.readArray(into));
+        assertEquals("words",reader.next());
+        assertEquals(Arrays.asList("a","b","été"),reader.readStrings());
+        //skipped without reading
+        assertEquals("column",reader.next());
+        assertEquals("tensor",reader.next());
+        INDArray readTensor = reader.readArray();
+        assertArrayEquals(tensor.shape(),readTensor.shape());
+        for(int i = 0; i < tensor.length(); i++)
+            assertEquals(tensor.getDouble(i),readTensor.getDouble(i),1e-6);
+        assertNull(reader.next());
+        reader.close();
+
+        Map<String,INDArray> arrays = new ModelReader(new FileInputStream(file)).readArrays();
+        assertEquals(matrix,arrays.get("matrix"));
+        assertEquals(matrix.getColumn(3),arrays.get("column"));
+    }
+
+    @Test
+    public void testConvolutional() {
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .activationFunction(Activations.sigmoid()).rng(new MersenneTwister(123))
+                .numInFeatureMaps(1).featureMapSize(new int[]{8,8})
+                .filterSize(new int[]{3,3}).stride(new int[]{2,2}).nOut(3).build();
+        BaseConvolutionalMultiLayerNetwork network = new BaseConvolutionalMultiLayerNetwork.Builder()
+                .configure(conf).featureMaps(new int[]{2}).build();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        network.write(bos);
+        BaseConvolutionalMultiLayerNetwork read = BaseConvolutionalMultiLayerNetwork.load(new ByteArrayInputStream(bos.toByteArray()));
+        assertEquals(network.params(),read.params());
+        INDArray input = Nd4j.rand(4,64);
+        assertEquals(network.output(input),read.output(input));
+    }
+
+    //configurations don't implement equals without their random number generators,
+    //compare what is written instead; a null map reads back empty
+    private Map<String,String> header(NeuralNetConfiguration conf) {
+        Map<String,String> ret = new HashMap<>();
+        ModelFormat.putConfiguration("",conf,ret);
+        ret.values().removeAll(Arrays.asList(""));
+        return ret;
+    }
+
+    private DBN network(DataSet data) {
+        RandomGenerator gen = new MersenneTwister(123);
+        NeuralNetConfiguration conf = new NeuralNetConfiguration.Builder()
+                .hiddenUnit(RBM.HiddenUnit.RECTIFIED).momentum(5e-1f)
+                .visibleUnit(RBM.VisibleUnit.GAUSSIAN).dist(Distributions.uniform(gen))
+                .activationFunction(Activations.sigmoid()).iterations(10)
+                .weightInit(WeightInit.DISTRIBUTION)
+                .lossFunction(LossFunctions.LossFunction.RECONSTRUCTION_CROSSENTROPY).rng(gen)
+                .learningRate(1e-1f).nIn(4).nOut(3).build();
+
+        DBN d = new DBN.Builder().configure(conf)
+                .hiddenLayerSizes(new int[]{4,3})
+                .build();
+        d.getOutputLayer().conf().setActivationFunction(Activations.softMaxRows());
+        d.getOutputLayer().conf().setLossFunction(LossFunctions.LossFunction.MCXENT);
+        d.initializeLayers(data.getFeatureMatrix());
+        return d;
+    }
+
+}
@@ -118,7 +118,11 @@ public class BagOfWordsVectorizer extends BaseTextVectorizer {
 
         @Override
         public TextVectorizer build() {
-            return new BagOfWordsVectorizer(cache, tokenizerFactory, stopWords, layerSize, minWordFrequency, docIter, sentenceIterator,labels,index);
+            BagOfWordsVectorizer ret = new BagOfWordsVectorizer(cache, tokenizerFactory, stopWords, layerSize, minWordFrequency, docIter, sentenceIterator,labels,index);
+            ret.setIndexDocuments(indexDocuments);
+            if(indexDir != null)
+                ret.setIndexDir(indexDir);
+            return ret;
 
         }
     }
@@ -6,9 +6,11 @@ import akka.actor.Props;
 import akka.routing.RoundRobinPool;
 import org.deeplearning4j.models.word2vec.InputStreamCreator;
 import org.deeplearning4j.models.word2vec.StreamWork;
+import org.deeplearning4j.models.word2vec.VocabWord;
 import org.deeplearning4j.models.word2vec.VocabWork;
 import org.deeplearning4j.models.word2vec.actor.VocabActor;
 import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCounter;
 import org.deeplearning4j.text.documentiterator.DocumentIterator;
 import org.deeplearning4j.text.invertedindex.DefaultInvertedIndex;
 import org.deeplearning4j.text.invertedindex.InvertedIndex;
@@ -22,8 +24,11 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.io.InputStream;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Base text vectorizer for handling creation of vocab
@@ -43,6 +48,12 @@ public abstract class BaseTextVectorizer implements TextVectorizer {
     private AtomicInteger numWordsEncountered =  new AtomicInteger(0);
     private static Logger log = LoggerFactory.getLogger(BaseTextVectorizer.class);
     private InvertedIndex index;
+    //the maximum amount of work queued for the vocab actors at once
+    private int maxOutstanding = 10000;
+    //whether fit adds the tokenized documents to the index or only builds the vocab
+    private boolean indexDocuments = true;
+    //where the default lucene index is written
+    private File indexDir = new File("word2vec-index");
 
     public BaseTextVectorizer(){}
 
@@ -56,52 +67,57 @@ public abstract class BaseTextVectorizer implements TextVectorizer {
         this.sentenceIterator = sentenceIterator;
         this.labels = labels;
         this.index = index;
-        if(index == null)
-            this.index = new LuceneInvertedIndex.Builder().indexDir(new File("word2vec-index"))
-                   .cache(cache).build();
     }
 
     @Override
     public void fit() {
-        if(trainingSystem == null)
+        //the system is shut down at the end of each fit
+        if(trainingSystem == null || trainingSystem.isTerminated())
             trainingSystem = ActorSystem.create();
 
 
 
 
 
-        final AtomicLong semaphore = new AtomicLong(System.currentTimeMillis());
-        final AtomicInteger queued = new AtomicInteger(0);
+        //each actor counts on its own, the counts are merged once all of the work is done
+        ConcurrentMap<String,VocabWord> tokens = new ConcurrentHashMap<>();
+        for(VocabWord token : cache.tokens())
+            tokens.put(token.getWord(),token);
+        Queue<VocabCounter> counters = new ConcurrentLinkedQueue<>();
 
         final ActorRef vocabActor = trainingSystem.actorOf(
                 new RoundRobinPool(Runtime.getRuntime().availableProcessors()).props(
                         Props.create(
                                 VocabActor.class,
                                 tokenizerFactory,
-                                cache,
                                 stopWords,
-                                semaphore,
-                                minWordFrequency,
+                                tokens,
+                                counters,
                                 numWordsEncountered,
-                                index)));
+                                indexDocuments ? index() : null)));
 
 		/* all words; including those not in the actual ending index */
 
-        final AtomicInteger latch = new AtomicInteger(0);
+        //work sent but not yet processed: counted down by the actors
+        final AtomicInteger outstanding = new AtomicInteger(0);
+        int queued = 0;
 
         while(docIter != null && docIter.hasNext()) {
+            final InputStream document = docIter.nextDocument();
+            if(document == null)
+                break;
+            waitForOutstanding(outstanding,maxOutstanding - 1);
+            outstanding.incrementAndGet();
+            vocabActor.tell(new StreamWork(new InputStreamCreator() {
+                @Override
+                public InputStream create() {
+                    return document;
+                }
+            },outstanding),vocabActor);
 
-            vocabActor.tell(new StreamWork(new DefaultInputStreamCreator(docIter),latch),vocabActor);
-
-            queued.incrementAndGet();
-            if(queued.get() % 10000 == 0) {
+            queued++;
+            if(queued % 10000 == 0)
                 log.info("Sent " + queued);
-                try {
-                    Thread.sleep(1);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();;
-                }
-            }
 
         }
 
@@ -110,38 +126,46 @@ public abstract class BaseTextVectorizer implements TextVectorizer {
             String sentence = getSentenceIterator().nextSentence();
             if(sentence == null)
                 break;
-            vocabActor.tell(new VocabWork(latch,sentence), vocabActor);
-            queued.incrementAndGet();
-            if(queued.get() % 10000 == 0) {
+            waitForOutstanding(outstanding,maxOutstanding - 1);
+            outstanding.incrementAndGet();
+            vocabActor.tell(new VocabWork(outstanding,sentence), vocabActor);
+            queued++;
+            if(queued % 10000 == 0)
                 log.info("Sent " + queued);
-                try {
-                    Thread.sleep(1);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();;
-                }
-            }
 
 
         }
 
 
-        boolean done = false;
-        while(!done) {
-            long sys = System.currentTimeMillis();
-            long curr = semaphore.get();
-            long diff = Math.abs(sys - curr);
-            if(diff > 10000) {
-                log.info("Done working");
-                done = true;
-            }
-        }
+        waitForOutstanding(outstanding,0);
+        log.info("Done working");
 
-        index.finish();
+        VocabCounter.merge(counters,cache,stopWords,minWordFrequency);
+        log.info("Vocab built with " + cache.numWords() + " words");
+
+        if(indexDocuments)
+            index().finish();
         trainingSystem.shutdown();
+        //the next fit creates a new system once this one is terminated
+        trainingSystem.awaitTermination();
 
 
     }
 
+    /* blocks until at most max pieces of work are outstanding */
+    private void waitForOutstanding(AtomicInteger outstanding,int max) {
+        synchronized (outstanding) {
+            while(outstanding.get() > max) {
+                try {
+                    outstanding.wait(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting on vocab work",e);
+                }
+            }
+        }
+    }
+
     @Override
     public VocabCache vocab() {
         return cache;
@@ -204,13 +228,64 @@ public abstract class BaseTextVectorizer implements TextVectorizer {
         this.cache = cache;
     }
 
+    public int getMaxOutstanding() {
+        return maxOutstanding;
+    }
+
+    /**
+     * The maximum number of documents or sentences queued
+     * for the vocab actors at once; fit blocks while this many
+     * are waiting to be processed
+     * @param maxOutstanding the maximum amount of queued work
+     */
+    public void setMaxOutstanding(int maxOutstanding) {
+        if(maxOutstanding < 1)
+            throw new IllegalArgumentException("Max outstanding must be positive");
+        this.maxOutstanding = maxOutstanding;
+    }
+
     @Override
     public int numWordsEncountered() {
         return numWordsEncountered.get();
     }
 
+    public boolean isIndexDocuments() {
+        return indexDocuments;
+    }
+
+    /**
+     * Whether fit adds the tokenized documents to the index.
+     * When false only the vocab is built, which saves the
+     * index's disk and heap footprint when the documents are not needed afterwards
+     * @param indexDocuments whether to index the documents
+     */
+    public void setIndexDocuments(boolean indexDocuments) {
+        this.indexDocuments = indexDocuments;
+    }
+
+    public File getIndexDir() {
+        return indexDir;
+    }
+
+    /**
+     * The directory the default {@link LuceneInvertedIndex} is written to,
+     * word2vec-index in the working directory unless set
+     * @param indexDir the index directory
+     */
+    public void setIndexDir(File indexDir) {
+        this.indexDir = indexDir;
+    }
+
+    /**
+     * The index the documents are added to, a {@link LuceneInvertedIndex}
+     * is created on first use if none was specified
+     * @return the index
+     */
     @Override
-    public InvertedIndex index() {
+    public synchronized InvertedIndex index() {
+        if(index == null)
+            index = new LuceneInvertedIndex.Builder().indexDir(indexDir)
+                    .cache(cache).build();
         return index;
     }
 }
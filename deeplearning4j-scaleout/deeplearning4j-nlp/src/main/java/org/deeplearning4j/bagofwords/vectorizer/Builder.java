@@ -9,6 +9,7 @@ import org.deeplearning4j.text.sentenceiterator.SentenceIterator;
 import org.deeplearning4j.text.stopwords.StopWords;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
 
+import java.io.File;
 import java.lang.reflect.Constructor;
 import java.util.List;
 
@@ -22,7 +23,31 @@ public abstract class Builder {
     protected SentenceIterator sentenceIterator;
     protected List<String> labels;
     protected InvertedIndex index;
+    protected boolean indexDocuments = true;
+    protected File indexDir;
+
+    /**
+     * The directory to write the default lucene index to
+     * when no index is given, the default is word2vec-index
+     * in the working directory
+     * @param indexDir the index directory
+     * @return the builder
+     */
+    public Builder indexDir(File indexDir) {
+        this.indexDir = indexDir;
+        return this;
+    }
 
+    /**
+     * Whether to add the tokenized documents to the index
+     * or only build the vocab, the default is true
+     * @param indexDocuments whether to index the documents
+     * @return the builder
+     */
+    public Builder indexDocuments(boolean indexDocuments) {
+        this.indexDocuments = indexDocuments;
+        return this;
+    }
 
     public Builder index(InvertedIndex index){
         this.index = index;
@@ -120,7 +120,11 @@ public class TfidfVectorizer extends BaseTextVectorizer implements Serializable
 
         public TextVectorizer build() {
 
-            return new TfidfVectorizer(cache, tokenizerFactory, stopWords, layerSize, minWordFrequency, docIter, sentenceIterator,labels,index);
+            TfidfVectorizer ret = new TfidfVectorizer(cache, tokenizerFactory, stopWords, layerSize, minWordFrequency, docIter, sentenceIterator,labels,index);
+            ret.setIndexDocuments(indexDocuments);
+            if(indexDir != null)
+                ret.setIndexDir(indexDir);
+            return ret;
 
         }
 
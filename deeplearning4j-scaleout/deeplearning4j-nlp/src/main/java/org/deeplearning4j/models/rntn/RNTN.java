@@ -16,6 +16,11 @@ import org.nd4j.linalg.indexing.NDArrayIndex;
 import org.nd4j.linalg.ops.transforms.Transforms;
 import org.nd4j.linalg.learning.AdaGrad;
 import org.deeplearning4j.parallel.Parallelization;
+import org.deeplearning4j.nn.api.Persistable;
+import org.deeplearning4j.util.FlatArrayUtil;
+import org.deeplearning4j.util.ModelFormat;
+import org.deeplearning4j.util.ModelReader;
+import org.deeplearning4j.util.ModelWriter;
 import org.deeplearning4j.util.MultiDimensionalMap;
 import org.deeplearning4j.util.MultiDimensionalSet;
 import org.deeplearning4j.models.word2vec.Word2Vec;
@@ -23,7 +28,9 @@ import org.deeplearning4j.models.word2vec.Word2Vec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.Serializable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -42,7 +49,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
  * @author Adam Gibson
  *
  */
-public class RNTN implements Serializable {
+public class RNTN implements Persistable {
 
     protected double value = 0;
     private int numOuts = 3;
@@ -883,6 +890,129 @@ public class RNTN implements Serializable {
     }
 
 
+    /**
+     * Writes the model in the binary model format (see {@link ModelFormat}):
+     * the sizes, regularization and activation functions in the header followed by
+     * the transforms, classification matrices and word vectors.
+     * The word vectors are written as one matrix with a column per word.
+     * The adagrad history and training trees are not written.
+     * This does not close the stream
+     * @param os the output stream to write to
+     */
+    @Override
+    public void write(OutputStream os) {
+        try {
+            Map<String,String> header = new LinkedHashMap<>();
+            ModelFormat.putValues("",this,header);
+            ModelFormat.putObject("activationFunction",activationFunction,header);
+            ModelFormat.putObject("outputActivation",outputActivation,header);
+            ModelWriter writer = new ModelWriter(os,getClass().getName(),header);
+            writeMap("binaryTransform",binaryTransform,writer);
+            writeMap("binaryINd4j",binaryINd4j,writer);
+            writeMap("binaryClassification",binaryClassification,writer);
+
+            List<String> unaryKeys = new ArrayList<>(unaryClassification.keySet());
+            writer.writeStrings("unaryClassification",unaryKeys);
+            for(int i = 0; i < unaryKeys.size(); i++)
+                writer.writeArray("unaryClassification." + i,unaryClassification.get(unaryKeys.get(i)));
+
+            List<String> words = new ArrayList<>(featureVectors.keySet());
+            writer.writeStrings("featureVectors",words);
+            if(!words.isEmpty()) {
+                int[] shape = featureVectors.get(words.get(0)).shape();
+                int length = featureVectors.get(words.get(0)).length();
+                INDArray vectors = Nd4j.create(length,words.size());
+                for(int i = 0; i < words.size(); i++) {
+                    INDArray vector = featureVectors.get(words.get(i));
+                    if(vector.length() != length)
+                        throw new IllegalStateException("Word vector " + words.get(i) + " has " + vector.length() + " elements, expected " + length);
+                    FlatArrayUtil.copy(vector,FlatArrayUtil.view(vectors.data(),i * length,shape));
+                }
+                writer.writeArray("featureVectors",vectors);
+                writer.writeArray("featureVectors.shape",Nd4j.create(new double[]{shape[0],shape[1]}));
+            }
+            writer.finish();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Loads a model written by {@link #write(OutputStream)} in to this one.
+     * Each word vector is a view of its column of the loaded word vector matrix
+     * @param is the input stream to load from
+     */
+    @Override
+    public void load(InputStream is) {
+        try {
+            ModelReader reader = new ModelReader(is);
+            Map<String,String> header = reader.getHeader();
+            ModelFormat.getFields("",this,header);
+            ActivationFunction activationFunction = ModelFormat.getObject("activationFunction",header);
+            if(activationFunction != null)
+                this.activationFunction = activationFunction;
+            ActivationFunction outputActivation = ModelFormat.getObject("outputActivation",header);
+            if(outputActivation != null)
+                this.outputActivation = outputActivation;
+
+            binaryTransform = MultiDimensionalMap.newTreeBackedMap();
+            binaryINd4j = MultiDimensionalMap.newTreeBackedMap();
+            binaryClassification = MultiDimensionalMap.newTreeBackedMap();
+            unaryClassification = new TreeMap<>();
+            featureVectors = new HashMap<>();
+            Map<String,List<String>> keys = new HashMap<>();
+            Map<String,INDArray> arrays = new HashMap<>();
+            String name;
+            while((name = reader.next()) != null) {
+                if(reader.isArray())
+                    arrays.put(name,reader.readArray());
+                else
+                    keys.put(name,reader.readStrings());
+            }
+
+            readMap("binaryTransform",binaryTransform,keys,arrays);
+            readMap("binaryINd4j",binaryINd4j,keys,arrays);
+            readMap("binaryClassification",binaryClassification,keys,arrays);
+            List<String> unaryKeys = keys.get("unaryClassification");
+            for(int i = 0; i < unaryKeys.size(); i++)
+                unaryClassification.put(unaryKeys.get(i),arrays.get("unaryClassification." + i));
+
+            List<String> words = keys.get("featureVectors");
+            if(!words.isEmpty()) {
+                INDArray vectors = arrays.get("featureVectors");
+                INDArray shape = arrays.get("featureVectors.shape");
+                int[] vectorShape = {(int) shape.getDouble(0),(int) shape.getDouble(1)};
+                for(int i = 0; i < words.size(); i++)
+                    featureVectors.put(words.get(i),FlatArrayUtil.view(vectors.data(),i * vectors.rows(),vectorShape));
+            }
+
+            identity = Nd4j.eye(numHidden);
+            paramAdaGrad = null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    //the left and right keys as one list of strings followed by an array per entry
+    private void writeMap(String name,MultiDimensionalMap<String,String,INDArray> map,ModelWriter writer) throws IOException {
+        List<String> keys = new ArrayList<>();
+        List<INDArray> values = new ArrayList<>();
+        for(MultiDimensionalMap.Entry<String,String,INDArray> entry : map.entrySet()) {
+            keys.add(entry.getFirstKey());
+            keys.add(entry.getSecondKey());
+            values.add(entry.getValue());
+        }
+        writer.writeStrings(name,keys);
+        for(int i = 0; i < values.size(); i++)
+            writer.writeArray(name + "." + i,values.get(i));
+    }
+
+    private void readMap(String name,MultiDimensionalMap<String,String,INDArray> map,Map<String,List<String>> keys,Map<String,INDArray> arrays) {
+        List<String> mapKeys = keys.get(name);
+        for(int i = 0; i < mapKeys.size() / 2; i++)
+            map.put(mapKeys.get(2 * i),mapKeys.get(2 * i + 1),arrays.get(name + "." + i));
+    }
+
     public double getValue() {
         return value;
     }
@@ -0,0 +1,592 @@
+package org.deeplearning4j.models.word2vec;
+
+import com.google.common.util.concurrent.AtomicDouble;
+import org.apache.commons.math3.util.FastMath;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
+import org.deeplearning4j.text.invertedindex.CompactInvertedIndex;
+import org.deeplearning4j.text.invertedindex.InvertedIndex;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock free (hogwild) skip gram trainer.
+ *
+ * A fixed number of worker threads each train on a contiguous
+ * shard of the documents in the inverted index. The workers update the
+ * buffers backing syn0, syn1 and syn1Neg in place without synchronization;
+ * only weights that are not dense column major doubles are copied, and those
+ * are written back to the lookup cache when training is done. Each worker keeps
+ * its own scratch buffers so no objects are allocated per word pair.
+ * As with {@link InMemoryLookupCache#iterate(VocabWord, VocabWord)}, the error of a
+ * context word is scaled by the average gradient when the cache uses AdaGrad.
+ *
+ * Instead of an index the trainer can stream from a {@link TokenIdBatchProducer}:
+ * each epoch the workers consume batches of word indices while they are
+ * still being tokenized, so no documents are kept around between epochs.
+ *
+ * @author Adam Gibson
+ */
+public class SkipGramTrainer {
+
+    private static Logger log = LoggerFactory.getLogger(SkipGramTrainer.class);
+    private static final int EXP_TABLE_SIZE = 1000;
+    private static final double MAX_EXP = 6;
+
+    private InMemoryLookupCache cache;
+    private InvertedIndex index;
+    private TokenIdBatchProducer producer;
+    private int window = 5;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private int iterations = 1;
+    private long seed = 123;
+    private AtomicDouble alpha = new AtomicDouble(0.025);
+    private double minAlpha = 1e-4;
+    private AtomicLong wordsSoFar = new AtomicLong(0);
+
+    private double startingAlpha;
+    private long totalWords;
+    private int layerSize;
+    private int vocabSize;
+    //column major, so element j of a word's vector is at index + j * vocabSize
+    private double[] syn0,syn1,syn1Neg;
+    private boolean useAdaGrad;
+    private double[] expTable;
+    private AtomicLong wordsTrained = new AtomicLong(0);
+    private double[] wordsPerSecPerThread;
+    //the vocab words by index for looking up streamed indices
+    private VocabWord[] vocab;
+    //the first failure of a worker, the other workers and the producer stop when it is set
+    private AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private SkipGramTrainer() {}
+
+    /**
+     * Train on every document in the index (or every batch from the producer)
+     * for the configured number of iterations.
+     * If a worker fails the others stop, and its exception is rethrown;
+     * the weights keep the updates made up to then
+     */
+    public void train() {
+        INDArray syn0Matrix = cache.getSyn0();
+        vocabSize = syn0Matrix.rows();
+        layerSize = syn0Matrix.columns();
+        syn0 = weights(syn0Matrix);
+        syn1 = null;
+        syn1Neg = null;
+        if(cache.isUseHierarchicSoftmax()) {
+            if(cache.getSyn1() == null)
+                throw new IllegalStateException("Hierarchical softmax is enabled but syn1 is not initialized, please call resetWeights()");
+            syn1 = weights(cache.getSyn1());
+        }
+        if(cache.getNegative() > 0) {
+            if(cache.getSyn1Neg() == null)
+                throw new IllegalStateException("Negative sampling is enabled but syn1Neg is not initialized, please call resetWeights()");
+            syn1Neg = weights(cache.getSyn1Neg());
+        }
+        useAdaGrad = cache.isUseAdaGrad();
+        initExpTable();
+
+        startingAlpha = alpha.get();
+        totalWords = 0;
+        for(VocabWord word : cache.vocabWords())
+            totalWords += (long) word.getWordFrequency();
+
+        wordsTrained.set(0);
+        failure.set(null);
+        try {
+            if(producer != null)
+                trainStreaming();
+            else
+                trainIndex();
+        }
+        finally {
+            writeBack(syn0,syn0Matrix);
+            if(syn1 != null)
+                writeBack(syn1,cache.getSyn1());
+            if(syn1Neg != null)
+                writeBack(syn1Neg,cache.getSyn1Neg());
+        }
+
+        Throwable t = failure.get();
+        if(t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        if(t instanceof Error)
+            throw (Error) t;
+        if(t != null)
+            throw new IllegalStateException("Training failed",t);
+
+        log.info("Trained " + wordsTrained.get() + " words, words/sec/thread " + Arrays.toString(wordsPerSecPerThread));
+    }
+
+    private void trainIndex() {
+        int numDocs = index.numDocuments();
+        int workers = Math.max(1,Math.min(numThreads,numDocs));
+        wordsPerSecPerThread = new double[workers];
+        int shardSize = (int) Math.ceil(numDocs / (double) workers);
+        log.info("Training on " + numDocs + " documents with " + workers + " threads");
+
+        ExecutorService service = Executors.newFixedThreadPool(workers);
+        for(int i = 0; i < workers; i++) {
+            int begin = i * shardSize;
+            int end = Math.min(numDocs,begin + shardSize);
+            service.execute(new Worker(i,begin,end));
+        }
+
+        await(service);
+    }
+
+    /* each epoch the workers consume the batches while the producer is still tokenizing */
+    private void trainStreaming() {
+        vocab = new VocabWord[vocabSize];
+        for(VocabWord word : cache.vocabWords())
+            if(word.getIndex() >= 0 && word.getIndex() < vocabSize)
+                vocab[word.getIndex()] = word;
+
+        wordsPerSecPerThread = new double[numThreads];
+        log.info("Training on streamed batches with " + numThreads + " threads");
+        for(int i = 0; i < iterations; i++) {
+            BlockingQueue<int[]> queue = producer.newQueue();
+            ExecutorService service = Executors.newFixedThreadPool(numThreads);
+            Worker[] workers = new Worker[numThreads];
+            for(int j = 0; j < numThreads; j++) {
+                workers[j] = new Worker(j,queue);
+                service.execute(workers[j]);
+            }
+
+            try {
+                producer.produce(queue,numThreads,failure);
+            }
+            finally {
+                await(service);
+            }
+            if(failure.get() != null)
+                return;
+            log.info("Epoch " + (i + 1) + " done, alpha is " + alpha.get());
+        }
+    }
+
+    private void await(ExecutorService service) {
+        try {
+            service.shutdown();
+            service.awaitTermination(1, TimeUnit.DAYS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The throughput of each worker in the last call to {@link #train()}
+     * @return the words per second processed by each thread
+     */
+    public double[] wordsPerSecPerThread() {
+        return wordsPerSecPerThread;
+    }
+
+    /**
+     * The number of words trained on in the last call to {@link #train()}
+     * (after sub sampling)
+     * @return the number of words trained on
+     */
+    public long wordsTrained() {
+        return wordsTrained.get();
+    }
+
+
+    private void initExpTable() {
+        expTable = new double[EXP_TABLE_SIZE];
+        for (int i = 0; i < expTable.length; i++) {
+            double tmp = FastMath.exp((i / (double) expTable.length * 2 - 1) * MAX_EXP);
+            expTable[i]  = tmp / (tmp + 1.0);
+        }
+    }
+
+
+    /* the buffer backing the matrix, or a column major copy of it if it isn't a dense column major double matrix */
+    private double[] weights(INDArray matrix) {
+        if(matrix.rows() != vocabSize || matrix.columns() != layerSize)
+            throw new IllegalStateException("Expected weights of shape " + vocabSize + " x " + layerSize + " but was " + matrix.rows() + " x " + matrix.columns());
+        if(isDenseColumnMajor(matrix))
+            return matrix.data().asDouble();
+
+        double[] ret = new double[vocabSize * layerSize];
+        for(int i = 0; i < vocabSize; i++)
+            for(int j = 0; j < layerSize; j++)
+                ret[j * vocabSize + i] = matrix.getDouble(i,j);
+        return ret;
+    }
+
+    /* copies the weights back in to the matrix unless they were trained in place */
+    private void writeBack(double[] data,INDArray matrix) {
+        if(isDenseColumnMajor(matrix))
+            return;
+        for(int i = 0; i < vocabSize; i++)
+            for(int j = 0; j < layerSize; j++)
+                matrix.putScalar(new int[]{i,j},data[j * vocabSize + i]);
+    }
+
+    private boolean isDenseColumnMajor(INDArray matrix) {
+        return matrix.ordering() == 'f' && matrix.offset() == 0
+                && matrix.data().dataType().equals(DataBuffer.DOUBLE)
+                && matrix.data().length() == matrix.length();
+    }
+
+
+    /**
+     * A worker trains on the documents [begin,end) of the index,
+     * or on the batches from the queue until it receives an empty batch
+     */
+    private class Worker implements Runnable {
+        private int id;
+        private int begin,end;
+        private BlockingQueue<int[]> queue;
+        private double[] neu1e = new double[layerSize];
+        private VocabWord[] sentence = new VocabWord[1024];
+        private VocabWord[] document = new VocabWord[1024];
+        private long nextRandom;
+        private long lastWordCount = 0;
+        private long trained = 0;
+
+        private Worker(int id,int begin, int end) {
+            this.id = id;
+            this.begin = begin;
+            this.end = end;
+            this.nextRandom = seed + id;
+        }
+
+        private Worker(int id,BlockingQueue<int[]> queue) {
+            this.id = id;
+            this.queue = queue;
+            //a different stream of random numbers each epoch
+            this.nextRandom = seed + id + wordsSoFar.get();
+        }
+
+        @Override
+        public void run() {
+            long start = System.currentTimeMillis();
+            long words;
+            try {
+                words = queue != null ? trainBatches() : trainShard();
+            }catch(Throwable t) {
+                failure.compareAndSet(null,t);
+                log.error("Worker " + id + " failed",t);
+                return;
+            }
+
+            wordsSoFar.addAndGet(words - lastWordCount);
+            wordsTrained.addAndGet(trained);
+            long took = Math.max(1,System.currentTimeMillis() - start);
+            wordsPerSecPerThread[id] = trained / (took / 1000.0);
+        }
+
+        private long trainShard() {
+            long words = 0;
+            for(int i = 0; i < iterations; i++) {
+                for(int doc = begin; doc < end && failure.get() == null; doc++) {
+                    words += trainDocument(readDocument(doc));
+                    if(words - lastWordCount > 10000)
+                        decayAlpha(words);
+                }
+            }
+            return words;
+        }
+
+        private long trainBatches() {
+            long words = 0;
+            //polled so a failure of another worker, after which no empty batch is sent, is noticed
+            while(failure.get() == null) {
+                int[] batch;
+                try {
+                    batch = queue.poll(100,TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if(batch == null)
+                    continue;
+                if(batch.length == 0)
+                    break;
+
+                int pos = 0;
+                while(pos < batch.length) {
+                    int length = batch[pos++];
+                    if(length > document.length)
+                        document = new VocabWord[length];
+                    for(int i = 0; i < length; i++) {
+                        int index = batch[pos++];
+                        document[i] = index < vocab.length ? vocab[index] : null;
+                    }
+                    words += trainDocument(length);
+                    if(words - lastWordCount > 10000)
+                        decayAlpha(words);
+                }
+            }
+            return words;
+        }
+
+        /* linear decay of the learning rate by the number of words processed across all workers */
+        private void decayAlpha(long words) {
+            long processed = wordsSoFar.addAndGet(words - lastWordCount);
+            lastWordCount = words;
+            double decayed = startingAlpha * (1 - processed / (double) (iterations * totalWords + 1));
+            alpha.set(Math.max(minAlpha,decayed));
+        }
+
+        /* reads the document in to the document buffer, returning its length */
+        private int readDocument(int doc) {
+            if(index instanceof CompactInvertedIndex) {
+                CompactInvertedIndex compact = (CompactInvertedIndex) index;
+                int length = compact.document(doc,document);
+                if(length < 0) {
+                    document = new VocabWord[-length];
+                    length = compact.document(doc,document);
+                }
+                return length;
+            }
+
+            List<VocabWord> words = index.document(doc);
+            if(words == null)
+                return 0;
+            if(words.size() > document.length)
+                document = new VocabWord[words.size()];
+            for(int i = 0; i < words.size(); i++)
+                document[i] = words.get(i);
+            return words.size();
+        }
+
+        /* trains on the first documentLength words of the document buffer,
+           returns the number of vocab words in the document before sub sampling */
+        private int trainDocument(int documentLength) {
+            if(documentLength == 0)
+                return 0;
+            if(documentLength > sentence.length)
+                sentence = new VocabWord[documentLength];
+            int length = 0;
+            int seen = 0;
+            for(int w = 0; w < documentLength; w++) {
+                VocabWord word = document[w];
+                if(word == null || word.getIndex() < 0 || word.getIndex() >= vocabSize)
+                    continue;
+                seen++;
+                if(word.getSampleProbability() < 1.0) {
+                    nextRandom = nextRandom * 25214903917L + 11;
+                    if(word.getSampleProbability() < (nextRandom & 0xFFFF) / 65536.0)
+                        continue;
+                }
+                sentence[length++] = word;
+            }
+
+            double alpha = SkipGramTrainer.this.alpha.get();
+            for(int i = 0; i < length; i++) {
+                nextRandom = nextRandom * 25214903917L + 11;
+                int b = (int) ((nextRandom >>> 16) % window);
+                for(int a = b; a < window * 2 + 1 - b; a++) {
+                    if(a == window)
+                        continue;
+                    int c = i - window + a;
+                    if(c < 0 || c >= length)
+                        continue;
+                    trainPair(sentence[i],sentence[c].getIndex(),alpha);
+                }
+            }
+
+            trained += length;
+            return seen;
+        }
+
+        private void trainPair(VocabWord word,int lastWord,double alpha) {
+            int l1 = lastWord;
+            Arrays.fill(neu1e,0.0);
+            double avgChange = 0.0;
+
+            if(syn1 != null) {
+                int[] codes = word.getCodes();
+                int[] points = word.getPoints();
+                for(int d = 0; d < word.getCodeLength(); d++) {
+                    int l2 = points[d];
+                    double f = dot(syn0,l1,syn1,l2);
+                    if(f <= -MAX_EXP || f >= MAX_EXP)
+                        continue;
+                    f = expTable[(int) ((f + MAX_EXP) * (EXP_TABLE_SIZE / MAX_EXP / 2))];
+                    double g = (1 - codes[d] - f) * alpha;
+                    avgChange += g;
+                    update(g,syn1,l2,syn0,l1);
+                }
+                if(word.getCodeLength() > 0)
+                    avgChange /= word.getCodeLength();
+            }
+
+            if(syn1Neg != null) {
+                int[] table = cache.getTable();
+                int negative = cache.getNegative();
+                double negChange = 0.0;
+                for(int d = 0; d < negative + 1; d++) {
+                    int target;
+                    int label;
+                    if(d == 0) {
+                        target = word.getIndex();
+                        label = 1;
+                    }
+                    else {
+                        nextRandom = nextRandom * 25214903917L + 11;
+                        target = table[(int) ((nextRandom >>> 16) % table.length)];
+                        if(target == word.getIndex())
+                            continue;
+                        label = 0;
+                    }
+
+                    int l2 = target;
+                    double f = dot(syn0,l1,syn1Neg,l2);
+                    double g;
+                    if(f >= MAX_EXP)
+                        g = (label - 1) * alpha;
+                    else if(f <= -MAX_EXP)
+                        g = label * alpha;
+                    else
+                        g = (label - expTable[(int) ((f + MAX_EXP) * (EXP_TABLE_SIZE / MAX_EXP / 2))]) * alpha;
+                    negChange += g;
+                    update(g,syn1Neg,l2,syn0,l1);
+                }
+                avgChange += negChange / (negative + 1);
+            }
+
+            double scale = useAdaGrad ? avgChange : 1.0;
+            for(int j = 0; j < layerSize; j++)
+                syn0[l1 + j * vocabSize] += scale * neu1e[j];
+        }
+
+        /* accumulates the error for the context word and updates the output vector */
+        private void update(double g,double[] out,int l2,double[] in,int l1) {
+            for(int j = 0; j < layerSize; j++) {
+                int k = j * vocabSize;
+                neu1e[j] += g * out[l2 + k];
+                out[l2 + k] += g * in[l1 + k];
+            }
+        }
+
+        private double dot(double[] x,int xRow,double[] y,int yRow) {
+            double ret = 0.0;
+            for(int j = 0; j < layerSize; j++) {
+                int k = j * vocabSize;
+                ret += x[xRow + k] * y[yRow + k];
+            }
+            return ret;
+        }
+
+    }
+
+
+    public static class Builder {
+        private InMemoryLookupCache cache;
+        private InvertedIndex index;
+        private TokenIdBatchProducer producer;
+        private int window = 5;
+        private int numThreads = Runtime.getRuntime().availableProcessors();
+        private int iterations = 1;
+        private long seed = 123;
+        private AtomicDouble alpha = new AtomicDouble(0.025);
+        private double minAlpha = 1e-4;
+        private AtomicLong wordsSoFar = new AtomicLong(0);
+
+        public Builder cache(InMemoryLookupCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        public Builder index(InvertedIndex index) {
+            this.index = index;
+            return this;
+        }
+
+        /**
+         * Stream the documents from the producer instead of an index
+         * @param producer the producer of batches of word indices
+         * @return the builder
+         */
+        public Builder producer(TokenIdBatchProducer producer) {
+            this.producer = producer;
+            return this;
+        }
+
+        public Builder window(int window) {
+            this.window = window;
+            return this;
+        }
+
+        public Builder numThreads(int numThreads) {
+            this.numThreads = numThreads;
+            return this;
+        }
+
+        public Builder iterations(int iterations) {
+            this.iterations = iterations;
+            return this;
+        }
+
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * The starting learning rate; this is decayed linearly
+         * by the number of words trained on down to the min alpha
+         * @param alpha the learning rate
+         * @return the builder
+         */
+        public Builder alpha(AtomicDouble alpha) {
+            this.alpha = alpha;
+            return this;
+        }
+
+        public Builder minAlpha(double minAlpha) {
+            this.minAlpha = minAlpha;
+            return this;
+        }
+
+        /**
+         * Counter for the number of words processed across all threads,
+         * this may be shared with the caller to monitor progress
+         * @param wordsSoFar the counter to use
+         * @return the builder
+         */
+        public Builder wordsSoFar(AtomicLong wordsSoFar) {
+            this.wordsSoFar = wordsSoFar;
+            return this;
+        }
+
+        public SkipGramTrainer build() {
+            if(cache == null)
+                throw new IllegalStateException("Please specify a lookup cache");
+            if(index == null && producer == null)
+                throw new IllegalStateException("Please specify an inverted index or a batch producer");
+            if(numThreads < 1)
+                throw new IllegalArgumentException("Number of threads must be at least 1");
+
+            SkipGramTrainer ret = new SkipGramTrainer();
+            ret.cache = cache;
+            ret.index = index;
+            ret.producer = producer;
+            ret.window = window;
+            ret.numThreads = numThreads;
+            ret.iterations = iterations;
+            ret.seed = seed;
+            ret.alpha = alpha;
+            ret.minAlpha = minAlpha;
+            ret.wordsSoFar = wordsSoFar;
+            return ret;
+        }
+
+    }
+
+}
@@ -23,9 +23,15 @@ public class StreamWork implements Serializable {
 	public void setCount(AtomicInteger count) {
 		this.count = count;
 	}
+	/**
+	 * Marks this work as done and wakes up
+	 * anything waiting on the count
+	 */
 	public void countDown() {
-		count.decrementAndGet();
-
+		synchronized (count) {
+			count.decrementAndGet();
+			count.notifyAll();
+		}
 	}
 
 
@@ -0,0 +1,437 @@
+package org.deeplearning4j.models.word2vec;
+
+import org.apache.commons.compress.utils.IOUtils;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.text.documentiterator.DocumentIterator;
+import org.deeplearning4j.text.sentenceiterator.SentenceIterator;
+import org.deeplearning4j.text.stopwords.StopWords;
+import org.deeplearning4j.text.tokenization.tokenizer.Tokenizer;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tokenizes sentences and documents in to batches of word indices for streaming training.
+ *
+ * The iterators are read by the calling thread and tokenized by a pool of
+ * producer threads, each batch is put on a bounded queue for the training threads
+ * to consume. A batch is a flat int array of documents, each written as
+ * its length followed by the vocab indices of its words. Words that are not in the
+ * vocab are dropped. Once an epoch is done every consumer is sent an empty batch.
+ *
+ * Optionally the batches of the first epoch are written to a cache file
+ * as varints, later epochs are then read back from the file instead of tokenizing again.
+ *
+ * @author Adam Gibson
+ */
+public class TokenIdBatchProducer {
+
+    private static Logger log = LoggerFactory.getLogger(TokenIdBatchProducer.class);
+
+    private VocabCache cache;
+    private TokenizerFactory tokenizerFactory;
+    private Set<String> stopWords;
+    private SentenceIterator sentenceIter;
+    private DocumentIterator docIter;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+    private int batchSize = 256;
+    private int queueSize = 64;
+    private File cacheFile;
+    //whether the cache file holds a complete epoch
+    private boolean cached = false;
+
+    private TokenIdBatchProducer() {}
+
+    /**
+     * A queue of the configured size for the batches
+     * @return a new queue
+     */
+    public BlockingQueue<int[]> newQueue() {
+        return new ArrayBlockingQueue<>(queueSize);
+    }
+
+    /**
+     * Produces one epoch of batches, blocking while the queue is full.
+     * Returns once every batch has been queued, followed by an empty batch
+     * for each consumer
+     * @param queue the queue to put the batches on
+     * @param numConsumers the number of threads consuming the queue
+     */
+    public void produce(BlockingQueue<int[]> queue,int numConsumers) {
+        produce(queue,numConsumers,new AtomicReference<Throwable>());
+    }
+
+    /**
+     * Produces one epoch of batches, blocking while the queue is full.
+     * Returns once every batch has been queued, followed by an empty batch
+     * for each consumer, or as soon as a consumer failed: then the rest of the
+     * epoch is dropped and no empty batches are sent
+     * @param queue the queue to put the batches on
+     * @param numConsumers the number of threads consuming the queue
+     * @param consumerFailure set by a consumer that failed
+     */
+    public void produce(BlockingQueue<int[]> queue,int numConsumers,AtomicReference<Throwable> consumerFailure) {
+        try {
+            if(cached)
+                readCache(queue,consumerFailure);
+            else
+                tokenize(queue,consumerFailure);
+        }
+        finally {
+            for(int i = 0; i < numConsumers; i++)
+                if(!put(queue,new int[0],consumerFailure))
+                    break;
+        }
+    }
+
+    /* tokenizes the iterators with the producer pool, writing the cache file if configured */
+    private void tokenize(final BlockingQueue<int[]> queue,final AtomicReference<Throwable> consumerFailure) {
+        ThreadPoolExecutor service = new ThreadPoolExecutor(numThreads,numThreads,0L,TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(numThreads * 2),new ThreadPoolExecutor.CallerRunsPolicy());
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        DataOutputStream cacheOut = null;
+
+        try {
+            if(cacheFile != null)
+                cacheOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile)));
+            final DataOutputStream out = cacheOut;
+
+            if(sentenceIter != null) {
+                sentenceIter.reset();
+                while(sentenceIter.hasNext() && error.get() == null && consumerFailure.get() == null) {
+                    final List<String> sentences = new ArrayList<>(batchSize);
+                    while(sentences.size() < batchSize && sentenceIter.hasNext()) {
+                        String sentence = sentenceIter.nextSentence();
+                        if(sentence == null)
+                            break;
+                        sentences.add(sentence);
+                    }
+                    if(sentences.isEmpty())
+                        break;
+                    service.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                List<int[]> docs = new ArrayList<>(sentences.size());
+                                for(String sentence : sentences)
+                                    docs.add(ids(tokenizerFactory.create(sentence)));
+                                emit(queue,docs,out,consumerFailure);
+                            }catch(Throwable t) {
+                                error.compareAndSet(null,t);
+                            }
+                        }
+                    });
+                }
+            }
+
+            if(docIter != null) {
+                docIter.reset();
+                while(docIter.hasNext() && error.get() == null && consumerFailure.get() == null) {
+                    final List<InputStream> documents = new ArrayList<>(batchSize);
+                    while(documents.size() < batchSize && docIter.hasNext()) {
+                        InputStream document = docIter.nextDocument();
+                        if(document == null)
+                            break;
+                        documents.add(document);
+                    }
+                    if(documents.isEmpty())
+                        break;
+                    service.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                List<int[]> docs = new ArrayList<>(documents.size());
+                                for(InputStream document : documents) {
+                                    try {
+                                        docs.add(ids(tokenizerFactory.create(document)));
+                                    }
+                                    finally {
+                                        IOUtils.closeQuietly(document);
+                                    }
+                                }
+                                emit(queue,docs,out,consumerFailure);
+                            }catch(Throwable t) {
+                                error.compareAndSet(null,t);
+                            }
+                        }
+                    });
+                }
+            }
+
+            service.shutdown();
+            service.awaitTermination(1,TimeUnit.DAYS);
+            if(error.get() != null)
+                throw new IllegalStateException("Unable to tokenize documents",error.get());
+
+            //an epoch cut short by a consumer failure is not cached
+            if(cacheOut != null && consumerFailure.get() == null) {
+                cacheOut.close();
+                cached = true;
+                log.info("Cached token ids to " + cacheFile.getAbsolutePath() + " (" + cacheFile.length() + " bytes)");
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while tokenizing",e);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        finally {
+            service.shutdownNow();
+            IOUtils.closeQuietly(cacheOut);
+        }
+    }
+
+    /* the vocab indices of the tokens; stop words are counted as STOP when building the vocab */
+    private int[] ids(Tokenizer tokenizer) {
+        int[] ret = new int[16];
+        int length = 0;
+        while(tokenizer.hasMoreTokens()) {
+            String token = tokenizer.nextToken();
+            if(token == null || token.isEmpty())
+                continue;
+            if(stopWords.contains(token))
+                token = "STOP";
+            int index = cache.indexOf(token);
+            if(index < 0)
+                continue;
+            if(length == ret.length) {
+                int[] grown = new int[ret.length * 2];
+                System.arraycopy(ret,0,grown,0,length);
+                ret = grown;
+            }
+            ret[length++] = index;
+        }
+
+        int[] trimmed = new int[length];
+        System.arraycopy(ret,0,trimmed,0,length);
+        return trimmed;
+    }
+
+    /* packs the documents in to a single batch */
+    private void emit(BlockingQueue<int[]> queue,List<int[]> docs,DataOutputStream out,AtomicReference<Throwable> consumerFailure) throws IOException {
+        int size = 0;
+        for(int[] doc : docs)
+            if(doc.length > 0)
+                size += doc.length + 1;
+        if(size == 0)
+            return;
+
+        int[] batch = new int[size];
+        int pos = 0;
+        for(int[] doc : docs) {
+            if(doc.length == 0)
+                continue;
+            batch[pos++] = doc.length;
+            System.arraycopy(doc,0,batch,pos,doc.length);
+            pos += doc.length;
+        }
+
+        if(out != null) {
+            synchronized (out) {
+                writeVarInt(out,batch.length);
+                for(int i : batch)
+                    writeVarInt(out,i);
+            }
+        }
+
+        put(queue,batch,consumerFailure);
+    }
+
+    private void readCache(BlockingQueue<int[]> queue,AtomicReference<Throwable> consumerFailure) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            while(true) {
+                int length;
+                try {
+                    length = readVarInt(in);
+                }catch(EOFException e) {
+                    break;
+                }
+                int[] batch = new int[length];
+                for(int i = 0; i < length; i++)
+                    batch[i] = readVarInt(in);
+                if(!put(queue,batch,consumerFailure))
+                    break;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /* waits for room on the queue, returns false without queueing the batch once a consumer failed */
+    private boolean put(BlockingQueue<int[]> queue,int[] batch,AtomicReference<Throwable> consumerFailure) {
+        try {
+            while(consumerFailure.get() == null)
+                if(queue.offer(batch,100,TimeUnit.MILLISECONDS))
+                    return true;
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing batch",e);
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out,int value) throws IOException {
+        while((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int ret = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            ret |= (b & 0x7F) << shift;
+            shift += 7;
+        } while((b & 0x80) != 0);
+        return ret;
+    }
+
+    /**
+     * Whether the cache file holds a complete epoch,
+     * in which case batches are read from it instead of tokenizing
+     * @return whether the batches are cached
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+
+    public static class Builder {
+        private VocabCache cache;
+        private TokenizerFactory tokenizerFactory;
+        private List<String> stopWords = StopWords.getStopWords();
+        private SentenceIterator sentenceIter;
+        private DocumentIterator docIter;
+        private int numThreads = Runtime.getRuntime().availableProcessors();
+        private int batchSize = 256;
+        private int queueSize = 64;
+        private File cacheFile;
+
+        /**
+         * The vocab used to map words to indices, this must already be built
+         * @param cache the vocab
+         * @return the builder
+         */
+        public Builder cache(VocabCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        public Builder tokenizerFactory(TokenizerFactory tokenizerFactory) {
+            this.tokenizerFactory = tokenizerFactory;
+            return this;
+        }
+
+        public Builder stopWords(List<String> stopWords) {
+            this.stopWords = stopWords;
+            return this;
+        }
+
+        public Builder iterate(SentenceIterator sentenceIter) {
+            this.sentenceIter = sentenceIter;
+            return this;
+        }
+
+        public Builder iterate(DocumentIterator docIter) {
+            this.docIter = docIter;
+            return this;
+        }
+
+        /**
+         * The number of threads tokenizing
+         * @param numThreads the number of producer threads
+         * @return the builder
+         */
+        public Builder numThreads(int numThreads) {
+            this.numThreads = numThreads;
+            return this;
+        }
+
+        /**
+         * The number of sentences or documents per batch
+         * @param batchSize the batch size
+         * @return the builder
+         */
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * The maximum number of batches waiting to be trained on,
+         * the producers block while the queue is full
+         * @param queueSize the queue size
+         * @return the builder
+         */
+        public Builder queueSize(int queueSize) {
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        /**
+         * File to cache the batches of the first epoch in, later epochs
+         * are read from it instead of tokenizing again. The file is overwritten
+         * since the indices are only valid for the current vocab
+         * @param cacheFile the file to cache the batches in, null (the default) to always tokenize
+         * @return the builder
+         */
+        public Builder cacheFile(File cacheFile) {
+            this.cacheFile = cacheFile;
+            return this;
+        }
+
+        public TokenIdBatchProducer build() {
+            if(cache == null)
+                throw new IllegalStateException("Please specify a vocab cache");
+            if(tokenizerFactory == null)
+                throw new IllegalStateException("Please specify a tokenizer factory");
+            if(sentenceIter == null && docIter == null)
+                throw new IllegalStateException("Please specify a sentence or document iterator");
+            if(numThreads < 1 || batchSize < 1 || queueSize < 1)
+                throw new IllegalArgumentException("Number of threads, batch size and queue size must be positive");
+
+            TokenIdBatchProducer ret = new TokenIdBatchProducer();
+            ret.cache = cache;
+            ret.tokenizerFactory = tokenizerFactory;
+            ret.stopWords = stopWords == null ? new HashSet<String>() : new HashSet<>(stopWords);
+            ret.sentenceIter = sentenceIter;
+            ret.docIter = docIter;
+            ret.numThreads = numThreads;
+            ret.batchSize = batchSize;
+            ret.queueSize = queueSize;
+            ret.cacheFile = cacheFile;
+            return ret;
+        }
+    }
+
+}
@@ -38,6 +38,8 @@ public  class VocabWord implements Comparable<VocabWord>,Serializable {
 	private INDArray historicalGradient;
 	private int[] points = new int[40];
     private int codeLength = 0;
+	//probability of keeping this word when sub sampling frequent words
+	private double sampleProbability = 1.0;
 	
 
 	public static VocabWord none() {
@@ -186,6 +188,14 @@ public  class VocabWord implements Comparable<VocabWord>,Serializable {
         this.codeLength = codeLength;
     }
 
+    public double getSampleProbability() {
+        return sampleProbability;
+    }
+
+    public void setSampleProbability(double sampleProbability) {
+        this.sampleProbability = sampleProbability;
+    }
+
     @Override
     public String toString() {
         return "VocabWord{" +
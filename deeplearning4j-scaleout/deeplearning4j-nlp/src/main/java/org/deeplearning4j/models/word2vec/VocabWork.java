@@ -37,8 +37,15 @@ public class VocabWork implements Serializable {
         this.work = work;
     }
 
+    /**
+     * Marks this work as done and wakes up
+     * anything waiting on the count
+     */
     public void countDown() {
-        count.decrementAndGet();
+        synchronized (count) {
+            count.decrementAndGet();
+            count.notifyAll();
+        }
     }
 
 }
@@ -1,9 +1,9 @@
 package org.deeplearning4j.models.word2vec;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.util.*;
 import java.util.concurrent.*;
@@ -16,16 +16,19 @@ import it.unimi.dsi.util.XorShift1024StarRandomGenerator;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.deeplearning4j.bagofwords.vectorizer.TextVectorizer;
 import org.deeplearning4j.bagofwords.vectorizer.TfidfVectorizer;
-import org.deeplearning4j.berkeley.Counter;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.ops.transforms.Transforms;
 import org.deeplearning4j.nn.api.Persistable;
 import org.deeplearning4j.text.documentiterator.DocumentIterator;
+import org.deeplearning4j.text.invertedindex.InvertedIndex;
 import org.deeplearning4j.text.stopwords.StopWords;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.UimaTokenizerFactory;
 import org.deeplearning4j.util.MathUtils;
+import org.deeplearning4j.util.ModelFormat;
+import org.deeplearning4j.util.ModelReader;
+import org.deeplearning4j.util.ModelWriter;
 import org.deeplearning4j.text.sentenceiterator.SentenceIterator;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
 import org.deeplearning4j.text.tokenization.tokenizer.Tokenizer;
@@ -54,7 +57,8 @@ public class Word2Vec implements Persistable {
     private transient VocabCache cache;
 
     private int topNSize = 40;
-    private int sample = 1;
+    //threshold for sub sampling frequent words, 0 disables sub sampling
+    private double sample = 0;
     //learning rate
     private AtomicDouble alpha = new AtomicDouble(0.025);
     //number of times the word must occur in the vocab to appear in the calculations, otherwise treat as unknown
@@ -74,8 +78,18 @@ public class Word2Vec implements Persistable {
     private long seed = 123;
     private boolean saveVocab = false;
     private double minLearningRate = 0.01;
-    private AtomicInteger numWordsSoFar = new AtomicInteger(0);
+    private AtomicLong numWordsSoFar = new AtomicLong(0);
+    private double startingAlpha;
     private TextVectorizer vectorizer;
+    private transient InvertedIndex index;
+    private transient File indexDir;
+    //number of negative samples per word pair, 0 means hierarchical softmax only
+    private int negative = 0;
+    private boolean useHierarchicSoftmax = true;
+    private transient WordSimilarityEngine similarityEngine;
+    //train on batches tokenized while training instead of replaying an index
+    private boolean streaming = false;
+    private transient File tokenCacheFile;
 
 
     public Word2Vec() {}
@@ -151,44 +165,29 @@ public class Word2Vec implements Persistable {
      * @return the top n words
      */
     public Collection<String> wordsNearest(String word,int n) {
-        INDArray vec = Transforms.unitVec(this.getWordVectorMatrix(word));
-
-
-       if(cache instanceof  InMemoryLookupCache) {
-           InMemoryLookupCache l = (InMemoryLookupCache) cache;
-           INDArray syn0 = l.getSyn0();
-           INDArray weights = syn0.norm2(0).rdivi(1).muli(vec);
-           INDArray distances = syn0.mulRowVector(weights).sum(1);
-           INDArray[] sorted = Nd4j.sortWithIndices(distances,0,false);
-           INDArray sort = sorted[0];
-           List<String> ret = new ArrayList<>();
-           if(n > sort.length())
-               n = sort.length();
-
-           for(int i = 0; i < n; i++)
-               ret.add(cache.wordAtIndex(sort.getInt(i)));
-
-
-
-           return ret;
-       }
-
-        if(vec == null)
-            return new ArrayList<>();
-        Counter<String> distances = new Counter<>();
-
-        for(String s : cache.words()) {
-            if(s.equals(word))
-                continue;
-            INDArray otherVec = getWordVectorMatrix(s);
-            double sim = Transforms.cosineSim(vec,otherVec);
-            distances.incrementCount(s, sim);
-        }
-
+        return similarityEngine().wordsNearest(word,n);
+    }
 
-        distances.keepTopNKeys(n);
-        return distances.keySet();
+    /**
+     * Get the top n words most similar to each of the given words.
+     * The queries are scored as a single batch
+     * @param words the words to compare
+     * @param n the n to get
+     * @return the top n words for each word
+     */
+    public List<List<String>> wordsNearest(List<String> words,int n) {
+        return similarityEngine().wordsNearest(words,n);
+    }
 
+    /**
+     * The engine used for similarity queries, built from
+     * the current word vectors on first use
+     * @return the similarity engine
+     */
+    public synchronized WordSimilarityEngine similarityEngine() {
+        if(similarityEngine == null)
+            similarityEngine = new WordSimilarityEngine(cache);
+        return similarityEngine;
     }
 
     /**
@@ -212,33 +211,6 @@ public class Word2Vec implements Persistable {
 
 
 
-    private void insertTopN(String name, double score, List<VocabWord> wordsEntrys) {
-        if (wordsEntrys.size() < topNSize) {
-            VocabWord v = new VocabWord(score,name);
-            v.setIndex(cache.indexOf(name));
-            wordsEntrys.add(v);
-            return;
-        }
-        double min = Double.MAX_VALUE;
-        int minOffe = 0;
-        int minIndex = -1;
-        for (int i = 0; i < topNSize; i++) {
-            VocabWord wordEntry = wordsEntrys.get(i);
-            if (min > wordEntry.getWordFrequency()) {
-                min =  wordEntry.getWordFrequency();
-                minOffe = i;
-                minIndex = wordEntry.getIndex();
-            }
-        }
-
-        if (score > min) {
-            VocabWord w = new VocabWord(score, VocabWord.PARENT_NODE);
-            w.setIndex(minIndex);
-            wordsEntrys.set(minOffe,w);
-        }
-
-    }
-
     /**
      * Returns true if the model has this word in the vocab
      * @param word the word to test for
@@ -258,7 +230,12 @@ public class Word2Vec implements Persistable {
             cache.saveVocab();
         if(stopWords == null)
             readStopWords();
+        if(sample > 0)
+            computeSampleProbabilities();
 
+        startingAlpha = alpha.get();
+        numWordsSoFar.set(0);
+        resetSimilarityEngine();
 
         log.info("Training word2vec multithreaded");
 
@@ -268,6 +245,33 @@ public class Word2Vec implements Persistable {
             docIter.reset();
 
 
+        if(streaming) {
+            if(!(cache instanceof InMemoryLookupCache))
+                throw new IllegalStateException("Streaming training requires an in memory lookup cache");
+            TokenIdBatchProducer producer = new TokenIdBatchProducer.Builder()
+                    .cache(cache).tokenizerFactory(tokenizerFactory).stopWords(stopWords)
+                    .iterate(sentenceIter).iterate(docIter).cacheFile(tokenCacheFile).build();
+            SkipGramTrainer trainer = new SkipGramTrainer.Builder()
+                    .cache((InMemoryLookupCache) cache).producer(producer)
+                    .window(window).iterations(numIterations).seed(seed)
+                    .numThreads(Runtime.getRuntime().availableProcessors())
+                    .alpha(alpha).minAlpha(minLearningRate)
+                    .wordsSoFar(numWordsSoFar).build();
+            trainer.train();
+            return;
+        }
+
+        if(cache instanceof InMemoryLookupCache) {
+            SkipGramTrainer trainer = new SkipGramTrainer.Builder()
+                    .cache((InMemoryLookupCache) cache).index(vectorizer.index())
+                    .window(window).iterations(numIterations).seed(seed)
+                    .numThreads(Runtime.getRuntime().availableProcessors())
+                    .alpha(alpha).minAlpha(minLearningRate)
+                    .wordsSoFar(numWordsSoFar).build();
+            trainer.train();
+            return;
+        }
+
         final AtomicLong latch = new AtomicLong(0);
         //final List<List<VocabWord>> docs = new CopyOnWriteArrayList<>();
         //for(int i = 0; i < vectorizer.index().numDocuments(); i++)
@@ -398,22 +402,9 @@ public class Word2Vec implements Persistable {
      * @return
      */
     public Set<VocabWord> distance(String word) {
-        INDArray wordVector = getWordVectorMatrix(word);
-        if (wordVector == null) {
+        if(!hasWord(word))
             return null;
-        }
-
-        INDArray tempVector;
-        List<VocabWord> wordEntrys = new ArrayList<>(topNSize);
-        for (String name : cache.words()) {
-            if (name.equals(word)) {
-                continue;
-            }
-
-            tempVector = cache.vector(name);
-            insertTopN(name, Nd4j.getBlasWrapper().dot(wordVector,tempVector), wordEntrys);
-        }
-        return new TreeSet<>(wordEntrys);
+        return toVocabWords(similarityEngine().nearest(word,topNSize));
     }
 
     /**
@@ -421,39 +412,31 @@ public class Word2Vec implements Persistable {
      * @return
      */
     public TreeSet<VocabWord> analogy(String word0, String word1, String word2) {
-        INDArray wv0 = getWordVectorMatrix(word0);
-        INDArray wv1 = getWordVectorMatrix(word1);
-        INDArray wv2 = getWordVectorMatrix(word2);
-
-
-        INDArray wordVector = wv1.sub(wv0).add(wv2);
-
-        if (wv1 == null || wv2 == null || wv0 == null)
+        if(!hasWord(word0) || !hasWord(word1) || !hasWord(word2))
             return null;
+        return toVocabWords(similarityEngine().analogy(word0,word1,word2,topNSize));
+    }
 
-        INDArray tempVector;
-        String name;
-        List<VocabWord> wordEntrys = new ArrayList<>(topNSize);
-        for (int i = 0; i < cache.numWords(); i++) {
-            name = cache.wordAtIndex(i);
-
-            if (name.equals(word0) || name.equals(word1) || name.equals(word2)) {
-                continue;
-            }
-
-
-            tempVector = cache.vector(cache.wordAtIndex(i));
-            double dist = Nd4j.getBlasWrapper().dot(wordVector,tempVector);
-            insertTopN(name, dist, wordEntrys);
+    //the score is stored as the frequency for sorting
+    private TreeSet<VocabWord> toVocabWords(WordSimilarityEngine.TopK topK) {
+        TreeSet<VocabWord> ret = new TreeSet<>();
+        int[] indices = topK.indices();
+        double[] scores = topK.scores();
+        for(int i = 0; i < indices.length; i++) {
+            VocabWord w = new VocabWord(scores[i],cache.wordAtIndex(indices[i]));
+            w.setIndex(indices[i]);
+            ret.add(w);
         }
-        return new TreeSet<>(wordEntrys);
+        return ret;
     }
 
 
     public void setup() {
 
-        log.info("Building binary tree");
-        buildBinaryTree();
+        if(useHierarchicSoftmax) {
+            log.info("Building binary tree");
+            buildBinaryTree();
+        }
         log.info("Resetting weights");
         if(shouldReset)
             resetWeights();
@@ -478,7 +461,7 @@ public class Word2Vec implements Persistable {
         vectorizer = new TfidfVectorizer.Builder()
                 .cache(cache).iterate(docIter).iterate(sentenceIter)
                 .minWords(minWordFrequency).stopWords(stopWords)
-                .tokenize(tokenizerFactory).build();
+                .tokenize(tokenizerFactory).index(index).indexDir(indexDir).indexDocuments(!streaming).build();
         vectorizer.fit();
 
         setup();
@@ -505,18 +488,54 @@ public class Word2Vec implements Persistable {
         if(sentence == null)
             return;
         numWordsSoFar.getAndAdd(sentence.size());
-        if(doc % 1000 == 0) {
-            alpha.set(Math.max(minLearningRate,alpha.get() * (1 - (1.0 * (double) doc / (double) vectorizer.index().numDocuments()))));
+        decayAlpha();
+        if(doc % 1000 == 0)
             log.info("Num words so far " + numWordsSoFar.get() + " alpha is " + alpha.get());
-        }
 
         if(sentence.isEmpty())
             return;
 
+        List<VocabWord> sampled = sentence;
+        if(sample > 0) {
+            sampled = new ArrayList<>(sentence.size());
+            for(VocabWord word : sentence)
+                if(word.getSampleProbability() >= g.nextDouble())
+                    sampled.add(word);
+        }
 
+        for(int i = 0; i < sampled.size(); i++)
+            skipGram(i, sampled, (int) g.nextDouble() % window);
+    }
 
-        for(int i = 0; i < sentence.size(); i++)
-            skipGram(i, sentence, (int) g.nextDouble() % window);
+    /* linear decay of the learning rate by the number of words processed so far */
+    private void decayAlpha() {
+        if(startingAlpha <= 0)
+            return;
+        double totalWords = (double) cache.totalWordOccurrences() * numIterations;
+        if(totalWords <= 0)
+            return;
+        alpha.set(Math.max(minLearningRate,startingAlpha * (1 - numWordsSoFar.get() / (totalWords + 1))));
+    }
+
+    /**
+     * Computes the probability of keeping each word in the vocab
+     * when sub sampling frequent words. A word that occurs with frequency f
+     * is kept with probability (sqrt(f / (sample * total)) + 1) * (sample * total) / f
+     */
+    public void computeSampleProbabilities() {
+        double total = 0;
+        for(VocabWord word : cache.vocabWords())
+            total += word.getWordFrequency();
+        double threshold = sample * total;
+        for(VocabWord word : cache.vocabWords()) {
+            double frequency = word.getWordFrequency();
+            if(frequency <= 0 || threshold <= 0) {
+                word.setSampleProbability(1.0);
+                continue;
+            }
+            double keep = (Math.sqrt(frequency / threshold) + 1) * threshold / frequency;
+            word.setSampleProbability(Math.min(1.0,keep));
+        }
     }
 
 
@@ -629,32 +648,124 @@ public class Word2Vec implements Persistable {
 
 
 
+    /**
+     * Writes the model in the binary model format (see {@link ModelFormat}):
+     * the hyper parameters in the header, followed by the vocab and
+     * the syn0, syn1 and syn1Neg weights of an in memory cache.
+     * This does not close the stream
+     * @param os the output stream to write to
+     */
     @Override
     public void write(OutputStream os) {
         try {
-            ObjectOutputStream dos = new ObjectOutputStream(os);
-
-            dos.writeObject(this);
-
+            Map<String,String> header = new LinkedHashMap<>();
+            ModelFormat.putValues("",this,header);
+            header.put("learningRate",String.valueOf(alpha.get()));
+            ModelWriter writer = new ModelWriter(os,getClass().getName(),header);
+            if(stopWords != null)
+                writer.writeStrings("stopWords",stopWords);
+            if(cache instanceof InMemoryLookupCache)
+                writeCache((InMemoryLookupCache) cache,writer);
+            writer.finish();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
 
     }
 
+    //the vocab words with their frequencies and huffman codes, then the weights
+    private void writeCache(InMemoryLookupCache cache,ModelWriter writer) throws IOException {
+        List<VocabWord> words = new ArrayList<>(cache.vocabWords());
+        List<String> strings = new ArrayList<>(words.size());
+        double[] indexes = new double[words.size()];
+        double[] frequencies = new double[words.size()];
+        double[] sampleProbabilities = new double[words.size()];
+        double[] codeLengths = new double[words.size()];
+        int totalCodeLength = 0;
+        for(int i = 0; i < words.size(); i++) {
+            VocabWord word = words.get(i);
+            strings.add(word.getWord());
+            indexes[i] = word.getIndex();
+            frequencies[i] = word.getWordFrequency();
+            sampleProbabilities[i] = word.getSampleProbability();
+            codeLengths[i] = word.getCodeLength();
+            totalCodeLength += word.getCodeLength();
+        }
+
+        double[] codes = new double[totalCodeLength];
+        double[] points = new double[totalCodeLength];
+        int offset = 0;
+        for(VocabWord word : words) {
+            for(int j = 0; j < word.getCodeLength(); j++) {
+                codes[offset + j] = word.getCodes()[j];
+                points[offset + j] = word.getPoints()[j];
+            }
+            offset += word.getCodeLength();
+        }
+
+        writer.writeStrings("vocab",strings);
+        if(!words.isEmpty()) {
+            writer.writeArray("vocab.index",Nd4j.create(indexes));
+            writer.writeArray("vocab.frequency",Nd4j.create(frequencies));
+            writer.writeArray("vocab.sampleProbability",Nd4j.create(sampleProbabilities));
+            writer.writeArray("vocab.codeLength",Nd4j.create(codeLengths));
+        }
+        if(totalCodeLength > 0) {
+            writer.writeArray("vocab.codes",Nd4j.create(codes));
+            writer.writeArray("vocab.points",Nd4j.create(points));
+        }
+        if(cache.getSyn0() != null)
+            writer.writeArray("syn0",cache.getSyn0());
+        if(cache.getSyn1() != null)
+            writer.writeArray("syn1",cache.getSyn1());
+        if(cache.getSyn1Neg() != null)
+            writer.writeArray("syn1Neg",cache.getSyn1Neg());
+    }
+
+    /**
+     * Loads a model written by {@link #write(OutputStream)}, including
+     * its vocab and weights when it was trained with an in memory cache.
+     * Models written with java serialization are still read (hyper parameters only)
+     * @param is the input stream to load from
+     */
     @Override
     public void load(InputStream is) {
         try {
-            ObjectInputStream ois = new ObjectInputStream(is);
-            Word2Vec vec = (Word2Vec) ois.readObject();
-            this.alpha = vec.alpha;
-            this.minWordFrequency = vec.minWordFrequency;
-            this.numSentencesProcessed = vec.numSentencesProcessed;
-            this.sample = vec.sample;
-            this.stopWords = vec.stopWords;
-            this.topNSize = vec.topNSize;
-            this.window = vec.window;
+            is = ModelFormat.markable(is);
+            if(!ModelFormat.isModel(is)) {
+                ObjectInputStream ois = new ObjectInputStream(is);
+                Word2Vec vec = (Word2Vec) ois.readObject();
+                this.alpha = vec.alpha;
+                this.minWordFrequency = vec.minWordFrequency;
+                this.numSentencesProcessed = vec.numSentencesProcessed;
+                this.sample = vec.sample;
+                this.stopWords = vec.stopWords;
+                this.topNSize = vec.topNSize;
+                this.window = vec.window;
+                this.negative = vec.negative;
+                this.useHierarchicSoftmax = vec.useHierarchicSoftmax;
+                return;
+            }
+
+            ModelReader reader = new ModelReader(is);
+            ModelFormat.getFields("",this,reader.getHeader());
+            if(reader.getHeader().containsKey("learningRate"))
+                alpha.set(Double.parseDouble(reader.getHeader().get("learningRate")));
+
+            List<String> words = null;
+            Map<String,INDArray> arrays = new HashMap<>();
+            String name;
+            while((name = reader.next()) != null) {
+                if(name.equals("stopWords"))
+                    stopWords = reader.readStrings();
+                else if(name.equals("vocab"))
+                    words = reader.readStrings();
+                else if(reader.isArray())
+                    arrays.put(name,reader.readArray());
+            }
 
+            if(words != null)
+                readCache(words,arrays);
         }catch(Exception e) {
             throw new RuntimeException(e);
         }
@@ -663,6 +774,39 @@ public class Word2Vec implements Persistable {
 
     }
 
+    private void readCache(List<String> words,Map<String,INDArray> arrays) {
+        InMemoryLookupCache cache = new InMemoryLookupCache(layerSize);
+        int offset = 0;
+        for(int i = 0; i < words.size(); i++) {
+            VocabWord word = new VocabWord(arrays.get("vocab.frequency").getDouble(i),words.get(i));
+            word.setIndex((int) arrays.get("vocab.index").getDouble(i));
+            word.setSampleProbability(arrays.get("vocab.sampleProbability").getDouble(i));
+            int codeLength = (int) arrays.get("vocab.codeLength").getDouble(i);
+            int[] codes = new int[Math.max(codeLength,word.getCodes().length)];
+            int[] points = new int[codes.length];
+            for(int j = 0; j < codeLength; j++) {
+                codes[j] = (int) arrays.get("vocab.codes").getDouble(offset + j);
+                points[j] = (int) arrays.get("vocab.points").getDouble(offset + j);
+            }
+            offset += codeLength;
+            word.setCodes(codes);
+            word.setPoints(points);
+            word.setCodeLength(codeLength);
+            cache.incrementWordCount(word.getWord(),(int) word.getWordFrequency());
+            cache.addToken(word);
+            cache.putVocabWord(word.getWord());
+        }
+
+        cache.setNegative(negative);
+        cache.setUseHierarchicSoftmax(useHierarchicSoftmax);
+        cache.setSyn0(arrays.get("syn0"));
+        cache.setSyn1(arrays.get("syn1"));
+        cache.setSyn1Neg(arrays.get("syn1Neg"));
+        if(negative > 0 && cache.getSyn0() != null)
+            cache.makeTable(cache.getTableSize(),0.75);
+        setCache(cache);
+    }
+
 
 
 
@@ -709,6 +853,15 @@ public class Word2Vec implements Persistable {
 
     public void setCache(VocabCache cache) {
         this.cache = cache;
+        resetSimilarityEngine();
+    }
+
+    //the engine holds a copy of the vectors, rebuild it after they change
+    private synchronized void resetSimilarityEngine() {
+        if(similarityEngine != null) {
+            similarityEngine.shutdown();
+            similarityEngine = null;
+        }
     }
 
     /**
@@ -722,6 +875,14 @@ public class Word2Vec implements Persistable {
         this.shouldReset = false;
     }
 
+    public int getNegative() {
+        return negative;
+    }
+
+    public boolean isUseHierarchicSoftmax() {
+        return useHierarchicSoftmax;
+    }
+
 
 
     public static class Builder {
@@ -733,10 +894,120 @@ public class Word2Vec implements Persistable {
         private TokenizerFactory tokenizerFactory;
         private VocabCache vocabCache;
         private DocumentIterator docIter;
-        private double lr = 2.5e-1;
+        private double lr = 2.5e-2;
         private int iterations = 5;
         private long seed = 123;
         private boolean saveVocab = false;
+        private int negative = 0;
+        private boolean useHierarchicSoftmax = true;
+        //whether negative and useHierarchicSoftmax were set rather than left to the cache
+        private boolean negativeSet = false;
+        private boolean useHierarchicSoftmaxSet = false;
+        private double sample = 0;
+        private double minLearningRate = 0.01;
+        private InvertedIndex index;
+        private File indexDir;
+        private boolean streaming = false;
+        private File tokenCacheFile;
+
+        /**
+         * Streaming training: after a pass over the sentences to build the vocab,
+         * each iteration tokenizes the sentences again with a pool of producer threads
+         * and trains on the batches while they are being produced. No index is
+         * built so the documents are never held in memory or on disk.
+         * Requires an {@link InMemoryLookupCache}
+         * @param streaming whether to stream the training data
+         * @return the builder
+         */
+        public Builder streaming(boolean streaming) {
+            this.streaming = streaming;
+            return this;
+        }
+
+        /**
+         * When streaming, the word indices of the first iteration are cached
+         * in this file and later iterations are read from it instead of tokenizing again
+         * @param tokenCacheFile the file to cache the word indices in
+         * @return the builder
+         */
+        public Builder tokenCacheFile(File tokenCacheFile) {
+            this.tokenCacheFile = tokenCacheFile;
+            return this;
+        }
+
+        /**
+         * The inverted index to store the tokenized documents in for training,
+         * the default is a {@link org.deeplearning4j.text.invertedindex.LuceneInvertedIndex}.
+         * A {@link org.deeplearning4j.text.invertedindex.CompactInvertedIndex} keeps
+         * large corpora in memory (or memory mapped) and is read without allocating
+         * @param index the index to use
+         * @return the builder
+         */
+        public Builder index(InvertedIndex index) {
+            this.index = index;
+            return this;
+        }
+
+        /**
+         * The directory to write the default lucene index to
+         * when no index is given, the default is word2vec-index
+         * in the working directory
+         * @param indexDir the index directory
+         * @return the builder
+         */
+        public Builder indexDir(File indexDir) {
+            this.indexDir = indexDir;
+            return this;
+        }
+
+        /**
+         * Threshold for sub sampling frequent words: words that occur
+         * more often than this fraction of the corpus are randomly dropped.
+         * Useful values are in the range 1e-5 to 1e-3, 0 (the default) disables sub sampling
+         * @param sample the sub sampling threshold
+         * @return the builder
+         */
+        public Builder sampling(double sample) {
+            this.sample = sample;
+            return this;
+        }
+
+        /**
+         * The learning rate is decayed linearly by the number of
+         * words processed down to this value
+         * @param minLearningRate the minimum learning rate
+         * @return the builder
+         */
+        public Builder minLearningRate(double minLearningRate) {
+            this.minLearningRate = minLearningRate;
+            return this;
+        }
+
+        /**
+         * Number of negative samples drawn per word pair.
+         * 0 (the default) disables negative sampling.
+         * When not set, a supplied {@link InMemoryLookupCache} keeps its own setting
+         * @param negative the number of negative samples
+         * @return the builder
+         */
+        public Builder negativeSample(int negative) {
+            this.negative = negative;
+            this.negativeSet = true;
+            return this;
+        }
+
+        /**
+         * Whether to train with hierarchical softmax over the huffman tree.
+         * This can be combined with or replaced by negative sampling.
+         * When not set, a supplied {@link InMemoryLookupCache} keeps its own setting
+         * @param useHierarchicSoftmax whether to use hierarchical softmax
+         * @return the builder
+         */
+        public Builder useHierarchicSoftmax(boolean useHierarchicSoftmax) {
+            this.useHierarchicSoftmax = useHierarchicSoftmax;
+            this.useHierarchicSoftmaxSet = true;
+            return this;
+        }
 
         public Builder saveVocab(boolean saveVocab){
             this.saveVocab = saveVocab;
@@ -806,6 +1077,28 @@ public class Word2Vec implements Persistable {
 
 
         public Word2Vec build() {
+            if(vocabCache == null) {
+                vocabCache = new InMemoryLookupCache(layerSize);
+                negativeSet = true;
+                useHierarchicSoftmaxSet = true;
+            }
+
+            //options that were not set are taken from a supplied cache rather than overwriting it
+            InMemoryLookupCache l = vocabCache instanceof InMemoryLookupCache ? (InMemoryLookupCache) vocabCache : null;
+            if(l != null) {
+                if(!negativeSet)
+                    negative = l.getNegative();
+                if(!useHierarchicSoftmaxSet)
+                    useHierarchicSoftmax = l.isUseHierarchicSoftmax();
+            }
+
+            if(!useHierarchicSoftmax && negative <= 0)
+                throw new IllegalStateException("Please use either hierarchical softmax or negative sampling (or both)");
+
+            if(l != null) {
+                l.setNegative(negative);
+                l.setUseHierarchicSoftmax(useHierarchicSoftmax);
+            }
 
             if(iter == null) {
                 Word2Vec ret = new Word2Vec();
@@ -818,6 +1111,14 @@ public class Word2Vec implements Persistable {
                 ret.minWordFrequency = minWordFrequency;
                 ret.seed = seed;
                 ret.saveVocab = saveVocab;
+                ret.negative = negative;
+                ret.useHierarchicSoftmax = useHierarchicSoftmax;
+                ret.sample = sample;
+                ret.minLearningRate = minLearningRate;
+                ret.index = index;
+                ret.indexDir = indexDir;
+                ret.streaming = streaming;
+                ret.tokenCacheFile = tokenCacheFile;
 
                 try {
                     if (tokenizerFactory == null)
@@ -826,9 +1127,6 @@ public class Word2Vec implements Persistable {
                     throw new RuntimeException(e);
                 }
 
-                if(vocabCache == null)
-                    vocabCache = new InMemoryLookupCache(layerSize);
-
                 ret.docIter = docIter;
                 ret.tokenizerFactory = tokenizerFactory;
 
@@ -850,6 +1148,14 @@ public class Word2Vec implements Persistable {
                 ret.seed = seed;
                 ret.numIterations = iterations;
                 ret.saveVocab = saveVocab;
+                ret.negative = negative;
+                ret.useHierarchicSoftmax = useHierarchicSoftmax;
+                ret.sample = sample;
+                ret.minLearningRate = minLearningRate;
+                ret.index = index;
+                ret.indexDir = indexDir;
+                ret.streaming = streaming;
+                ret.tokenCacheFile = tokenCacheFile;
 
                 try {
                     if (tokenizerFactory == null)
@@ -858,9 +1164,6 @@ public class Word2Vec implements Persistable {
                     throw new RuntimeException(e);
                 }
 
-                if(vocabCache == null)
-                    vocabCache = new InMemoryLookupCache(layerSize);
-
                 ret.tokenizerFactory = tokenizerFactory;
                 return ret;
             }
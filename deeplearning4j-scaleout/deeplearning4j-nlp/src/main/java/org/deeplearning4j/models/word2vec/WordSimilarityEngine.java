@@ -0,0 +1,530 @@
+package org.deeplearning4j.models.word2vec;
+
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
+import org.deeplearning4j.models.word2vec.wordstore.mmap.MemoryMappedLookupCache;
+import org.nd4j.linalg.api.buffer.DataBuffer;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Exact top k cosine similarity queries over word vectors.
+ *
+ * A row normalized copy of the word vectors is built once and
+ * split in to blocks of rows. A batch of queries is scored against each block
+ * with a single matrix multiply, the best results are kept in a bounded
+ * heap per query and the blocks are spread over a fixed pool of threads.
+ *
+ * A {@link MemoryMappedLookupCache} is not copied: its blocks are scored
+ * row by row straight from the mapped vectors, normalizing as they are read.
+ *
+ * The engine is a snapshot: build a new one after the vectors change.
+ *
+ * @author Adam Gibson
+ */
+public class WordSimilarityEngine {
+
+    private VocabCache cache;
+    private int numWords;
+    private int vectorLength;
+    private int blockSize;
+    private int numThreads;
+    private int numBlocks;
+    //the mapped cache, in which case no blocks are copied
+    private MemoryMappedLookupCache mapped;
+    //blocks of normalized rows, column major (blockRows x vectorLength)
+    private INDArray[] blocks;
+    private double[][] blockData;
+    private transient ExecutorService executor;
+
+    /**
+     * Builds an engine with blocks of 4096 rows and a thread per core
+     * @param cache the cache to read the word vectors from
+     */
+    public WordSimilarityEngine(VocabCache cache) {
+        this(cache,4096,Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param cache the cache to read the word vectors from
+     * @param blockSize the number of rows scored per matrix multiply
+     * @param numThreads the number of threads to score blocks with
+     */
+    public WordSimilarityEngine(VocabCache cache,int blockSize,int numThreads) {
+        if(blockSize < 1 || numThreads < 1)
+            throw new IllegalArgumentException("Block size and number of threads must be positive");
+        this.cache = cache;
+        this.blockSize = blockSize;
+        this.numThreads = numThreads;
+        this.numWords = cache.numWords();
+        init();
+    }
+
+    private void init() {
+        if(cache instanceof MemoryMappedLookupCache) {
+            mapped = (MemoryMappedLookupCache) cache;
+            numWords = Math.min(numWords,mapped.numWords());
+            vectorLength = mapped.vectorLength();
+            numBlocks = (int) Math.ceil(numWords / (double) blockSize);
+            return;
+        }
+
+        INDArray syn0 = cache instanceof InMemoryLookupCache ? ((InMemoryLookupCache) cache).getSyn0() : null;
+        if(syn0 != null)
+            numWords = Math.min(numWords,syn0.rows());
+        vectorLength = syn0 != null ? syn0.columns() : 0;
+        for(int i = 0; i < numWords && vectorLength == 0; i++) {
+            INDArray vector = cache.vector(cache.wordAtIndex(i));
+            if(vector != null)
+                vectorLength = vector.length();
+        }
+
+        numBlocks = (int) Math.ceil(numWords / (double) blockSize);
+        blocks = new INDArray[numBlocks];
+        blockData = new double[numBlocks][];
+        double[] syn0Data = syn0 != null && syn0.ordering() == 'f' && syn0.offset() == 0
+                && syn0.data().dataType().equals(DataBuffer.DOUBLE) ? syn0.data().asDouble() : null;
+        double[] row = new double[vectorLength];
+
+        for(int b = 0; b < numBlocks; b++) {
+            int start = b * blockSize;
+            int rows = Math.min(blockSize,numWords - start);
+            double[] data = new double[rows * vectorLength];
+            for(int i = 0; i < rows; i++) {
+                int wordIndex = start + i;
+                if(syn0Data != null) {
+                    for(int j = 0; j < vectorLength; j++)
+                        row[j] = syn0Data[j * syn0.rows() + wordIndex];
+                }
+                else if(syn0 != null) {
+                    for(int j = 0; j < vectorLength; j++)
+                        row[j] = syn0.getDouble(wordIndex,j);
+                }
+                else {
+                    INDArray vector = cache.vector(cache.wordAtIndex(wordIndex));
+                    for(int j = 0; j < vectorLength; j++)
+                        row[j] = vector == null ? 0.0 : vector.getDouble(j);
+                }
+
+                normalize(row);
+                for(int j = 0; j < vectorLength; j++)
+                    data[j * rows + i] = row[j];
+            }
+
+            blockData[b] = data;
+            blocks[b] = Nd4j.create(data,new int[]{rows,vectorLength});
+        }
+    }
+
+    private static void normalize(double[] vector) {
+        double norm = 0.0;
+        for(double d : vector)
+            norm += d * d;
+        norm = Math.sqrt(norm);
+        if(norm > 0)
+            for(int j = 0; j < vector.length; j++)
+                vector[j] /= norm;
+    }
+
+    /**
+     * The normalized vector of the word at the given index
+     * @param index the index of the word
+     * @return a copy of the normalized vector
+     */
+    public double[] normalizedVector(int index) {
+        if(mapped != null) {
+            FloatBuffer vector = mapped.vectorBuffer(index);
+            double[] ret = new double[vectorLength];
+            for(int j = 0; j < vectorLength; j++)
+                ret[j] = vector.get(j);
+            normalize(ret);
+            return ret;
+        }
+
+        int block = index / blockSize;
+        int i = index % blockSize;
+        int rows = blocks[block].rows();
+        double[] ret = new double[vectorLength];
+        for(int j = 0; j < vectorLength; j++)
+            ret[j] = blockData[block][j * rows + i];
+        return ret;
+    }
+
+    /**
+     * The n words closest to the given word, excluding the word itself
+     * @param word the word to query
+     * @param n the number of words to return
+     * @return the closest words in order of decreasing similarity,
+     * empty if the word is not in the vocab
+     */
+    public List<String> wordsNearest(String word,int n) {
+        return wordsNearest(Arrays.asList(word),n).get(0);
+    }
+
+    /**
+     * Batch version of {@link #wordsNearest(String, int)}: all of
+     * the words are scored together
+     * @param words the words to query
+     * @param n the number of words to return per query
+     * @return the closest words for each query word
+     */
+    public List<List<String>> wordsNearest(List<String> words,int n) {
+        List<double[]> queries = new ArrayList<>();
+        List<int[]> exclude = new ArrayList<>();
+        for(String word : words) {
+            int index = cache.indexOf(word);
+            if(index < 0 || index >= numWords) {
+                queries.add(null);
+                exclude.add(null);
+                continue;
+            }
+            queries.add(normalizedVector(index));
+            exclude.add(new int[]{index});
+        }
+
+        TopK[] results = topK(queries.toArray(new double[queries.size()][]),n,exclude.toArray(new int[exclude.size()][]));
+        List<List<String>> ret = new ArrayList<>();
+        for(TopK result : results)
+            ret.add(result.words());
+        return ret;
+    }
+
+    /**
+     * The n words closest to the given word, excluding the word itself
+     * @param word the word to query
+     * @param n the number of words to return
+     * @return the top k words and their similarities
+     */
+    public TopK nearest(String word,int n) {
+        int index = cache.indexOf(word);
+        if(index < 0 || index >= numWords)
+            return new TopK(0);
+        return topK(new double[][]{normalizedVector(index)},n,new int[][]{{index}})[0];
+    }
+
+    /**
+     * The n words closest to word1 - word0 + word2 (e.g. king - man + woman),
+     * excluding the query words
+     * @param word0 the word to subtract
+     * @param word1 the first word to add
+     * @param word2 the second word to add
+     * @param n the number of words to return
+     * @return the top k words and their similarities
+     */
+    public TopK analogy(String word0,String word1,String word2,int n) {
+        int i0 = cache.indexOf(word0);
+        int i1 = cache.indexOf(word1);
+        int i2 = cache.indexOf(word2);
+        if(i0 < 0 || i1 < 0 || i2 < 0 || i0 >= numWords || i1 >= numWords || i2 >= numWords)
+            return new TopK(0);
+
+        double[] v0 = normalizedVector(i0);
+        double[] v1 = normalizedVector(i1);
+        double[] v2 = normalizedVector(i2);
+        double[] query = new double[vectorLength];
+        for(int j = 0; j < vectorLength; j++)
+            query[j] = v1[j] - v0[j] + v2[j];
+        return topK(new double[][]{query},n,new int[][]{{i0,i1,i2}})[0];
+    }
+
+    /**
+     * The n words closest to the given vector
+     * @param vector the vector to query
+     * @param n the number of words to return
+     * @param exclude words to leave out of the results
+     * @return the top k words and their similarities
+     */
+    public TopK nearest(INDArray vector,int n,Collection<String> exclude) {
+        double[] query = new double[vectorLength];
+        for(int j = 0; j < vectorLength; j++)
+            query[j] = vector.getDouble(j);
+        List<Integer> excluded = new ArrayList<>();
+        for(String word : exclude) {
+            int index = cache.indexOf(word);
+            if(index >= 0)
+                excluded.add(index);
+        }
+        int[] ex = new int[excluded.size()];
+        for(int i = 0; i < ex.length; i++)
+            ex[i] = excluded.get(i);
+        return topK(new double[][]{query},n,new int[][]{ex})[0];
+    }
+
+    /**
+     * Scores the queries against every word
+     * @param queries the query vectors, null entries get empty results
+     * @param n the number of results per query
+     * @param exclude indices of words to leave out of the results per query, may be null
+     * @return the top k results per query
+     */
+    public TopK[] topK(double[][] queries,final int n,final int[][] exclude) {
+        final int numQueries = queries.length;
+        //the queries are the columns of a vectorLength x numQueries matrix
+        final double[] queryData = new double[vectorLength * numQueries];
+        final boolean[] valid = new boolean[numQueries];
+        for(int q = 0; q < numQueries; q++) {
+            if(queries[q] == null)
+                continue;
+            valid[q] = true;
+            double[] query = queries[q].clone();
+            normalize(query);
+            System.arraycopy(query,0,queryData,q * vectorLength,vectorLength);
+        }
+
+        final INDArray queryMatrix = Nd4j.create(queryData,new int[]{vectorLength,numQueries});
+        int workers = Math.max(1,Math.min(numThreads,numBlocks));
+        List<Callable<TopK[]>> tasks = new ArrayList<>();
+        for(int t = 0; t < workers; t++) {
+            final int worker = t;
+            final int numWorkers = workers;
+            tasks.add(new Callable<TopK[]>() {
+                @Override
+                public TopK[] call() {
+                    TopK[] ret = new TopK[numQueries];
+                    for(int q = 0; q < numQueries; q++)
+                        ret[q] = new TopK(n);
+                    for(int b = worker; b < numBlocks; b += numWorkers) {
+                        if(mapped != null)
+                            scoreMappedBlock(b,queryData,valid,exclude,ret);
+                        else
+                            scoreBlock(b,queryMatrix,valid,exclude,ret);
+                    }
+                    return ret;
+                }
+            });
+        }
+
+        TopK[] ret;
+        if(workers == 1) {
+            try {
+                ret = tasks.get(0).call();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+        else {
+            ret = new TopK[numQueries];
+            for(int q = 0; q < numQueries; q++)
+                ret[q] = new TopK(n);
+            try {
+                for(Future<TopK[]> future : executor().invokeAll(tasks)) {
+                    TopK[] partial = future.get();
+                    for(int q = 0; q < numQueries; q++)
+                        ret[q].merge(partial[q]);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        for(TopK result : ret)
+            result.sort();
+        return ret;
+    }
+
+    private void scoreBlock(int b,INDArray queryMatrix,boolean[] valid,int[][] exclude,TopK[] results) {
+        int start = b * blockSize;
+        int rows = blocks[b].rows();
+        double[] scores = blocks[b].mmul(queryMatrix).data().asDouble();
+        for(int q = 0; q < results.length; q++) {
+            if(!valid[q])
+                continue;
+            TopK result = results[q];
+            int[] ex = exclude != null ? exclude[q] : null;
+            int offset = q * rows;
+            for(int i = 0; i < rows; i++) {
+                double score = scores[offset + i];
+                if(!result.accepts(score))
+                    continue;
+                int index = start + i;
+                if(ex != null && contains(ex,index))
+                    continue;
+                result.add(index,score);
+            }
+        }
+    }
+
+    /* scores the rows of the block read from the mapped file against the normalized queries */
+    private void scoreMappedBlock(int b,double[] queryData,boolean[] valid,int[][] exclude,TopK[] results) {
+        int start = b * blockSize;
+        int rows = Math.min(blockSize,numWords - start);
+        float[] row = new float[vectorLength];
+        for(int i = 0; i < rows; i++) {
+            int index = start + i;
+            mapped.vector(index,row);
+            double norm = 0.0;
+            for(int j = 0; j < vectorLength; j++)
+                norm += row[j] * row[j];
+            norm = Math.sqrt(norm);
+
+            for(int q = 0; q < results.length; q++) {
+                if(!valid[q])
+                    continue;
+                int offset = q * vectorLength;
+                double dot = 0.0;
+                for(int j = 0; j < vectorLength; j++)
+                    dot += row[j] * queryData[offset + j];
+                double score = norm > 0 ? dot / norm : 0.0;
+                TopK result = results[q];
+                if(!result.accepts(score))
+                    continue;
+                int[] ex = exclude != null ? exclude[q] : null;
+                if(ex != null && contains(ex,index))
+                    continue;
+                result.add(index,score);
+            }
+        }
+    }
+
+    private static boolean contains(int[] arr,int i) {
+        for(int a : arr)
+            if(a == i)
+                return true;
+        return false;
+    }
+
+    private synchronized ExecutorService executor() {
+        if(executor == null)
+            executor = Executors.newFixedThreadPool(numThreads,new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r,"word-similarity");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        return executor;
+    }
+
+    /**
+     * Stops the query threads
+     */
+    public synchronized void shutdown() {
+        if(executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+
+    /**
+     * Bounded min heap of the k best (index,score) pairs.
+     * After a query the entries are sorted by decreasing score
+     */
+    public class TopK {
+        private int k;
+        private int size = 0;
+        private int[] indices;
+        private double[] scores;
+
+        private TopK(int k) {
+            this.k = Math.max(0,k);
+            this.indices = new int[this.k];
+            this.scores = new double[this.k];
+        }
+
+        private boolean accepts(double score) {
+            return size < k || (k > 0 && score > scores[0]);
+        }
+
+        private void add(int index,double score) {
+            if(size < k) {
+                int i = size++;
+                //sift up
+                while(i > 0) {
+                    int parent = (i - 1) / 2;
+                    if(scores[parent] <= score)
+                        break;
+                    scores[i] = scores[parent];
+                    indices[i] = indices[parent];
+                    i = parent;
+                }
+                scores[i] = score;
+                indices[i] = index;
+            }
+            else if(score > scores[0]) {
+                siftDown(index,score,size);
+            }
+        }
+
+        //replaces the root and restores the heap in the first n entries
+        private void siftDown(int index,double score,int n) {
+            int i = 0;
+            while(true) {
+                int child = 2 * i + 1;
+                if(child >= n)
+                    break;
+                if(child + 1 < n && scores[child + 1] < scores[child])
+                    child++;
+                if(scores[child] >= score)
+                    break;
+                scores[i] = scores[child];
+                indices[i] = indices[child];
+                i = child;
+            }
+            scores[i] = score;
+            indices[i] = index;
+        }
+
+        private void merge(TopK other) {
+            for(int i = 0; i < other.size; i++)
+                if(accepts(other.scores[i]))
+                    add(other.indices[i],other.scores[i]);
+        }
+
+        /* heap sort in place: repeatedly move the minimum to the end */
+        private void sort() {
+            for(int n = size - 1; n > 0; n--) {
+                int index = indices[0];
+                double score = scores[0];
+                siftDown(indices[n],scores[n],n);
+                indices[n] = index;
+                scores[n] = score;
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return the indices of the words in order of decreasing similarity
+         */
+        public int[] indices() {
+            return Arrays.copyOf(indices,size);
+        }
+
+        /**
+         * @return the cosine similarities in decreasing order
+         */
+        public double[] scores() {
+            return Arrays.copyOf(scores,size);
+        }
+
+        /**
+         * @return the words in order of decreasing similarity
+         */
+        public List<String> words() {
+            List<String> ret = new ArrayList<>(size);
+            for(int i = 0; i < size; i++)
+                ret.add(cache.wordAtIndex(indices[i]));
+            return ret;
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+package org.deeplearning4j.models.word2vec;
+
+import org.deeplearning4j.berkeley.Pair;
+import org.deeplearning4j.clustering.rptree.RPForest;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Approximate nearest words backed by a {@link RPForest}
+ * over the word vectors. Rows of the forest are word indices in the vocab.
+ *
+ * The index is saved separately from the model and
+ * must be loaded against the same vocab it was built from.
+ *
+ * @author Adam Gibson
+ */
+public class WordVectorIndex {
+
+    private VocabCache cache;
+    private RPForest forest;
+
+    /**
+     * @param cache the vocab the forest was built from
+     * @param forest the forest
+     */
+    public WordVectorIndex(VocabCache cache, RPForest forest) {
+        if(forest.numRows() != cache.numWords())
+            throw new IllegalArgumentException("Index has " + forest.numRows() + " rows but the vocab has " + cache.numWords() + " words");
+        this.cache = cache;
+        this.forest = forest;
+    }
+
+    /**
+     * Builds an index over the word vectors of the given model
+     * @param vec the model to index
+     * @param builder the forest configuration
+     * @return the index
+     */
+    public static WordVectorIndex build(Word2Vec vec,RPForest.Builder builder) {
+        return build(vec.getCache(),builder);
+    }
+
+    /**
+     * Builds an index over the word vectors in the given cache
+     * @param cache the cache to index
+     * @param builder the forest configuration
+     * @return the index
+     */
+    public static WordVectorIndex build(VocabCache cache,RPForest.Builder builder) {
+        if(cache instanceof InMemoryLookupCache && ((InMemoryLookupCache) cache).getSyn0() != null)
+            return new WordVectorIndex(cache,builder.build(((InMemoryLookupCache) cache).getSyn0()));
+
+        int numWords = cache.numWords();
+        int vectorLength = 0;
+        List<INDArray> vectors = new ArrayList<>(numWords);
+        for(int i = 0; i < numWords; i++) {
+            INDArray vector = cache.vector(cache.wordAtIndex(i));
+            if(vector != null)
+                vectorLength = vector.length();
+            vectors.add(vector);
+        }
+
+        float[] data = new float[numWords * vectorLength];
+        for(int i = 0; i < numWords; i++) {
+            INDArray vector = vectors.get(i);
+            if(vector == null)
+                continue;
+            for(int j = 0; j < vectorLength; j++)
+                data[i * vectorLength + j] = (float) vector.getDouble(j);
+        }
+
+        return new WordVectorIndex(cache,builder.build(data,numWords,vectorLength));
+    }
+
+    /**
+     * Loads an index saved with {@link #save(java.io.File)}
+     * @param cache the vocab the index was built from
+     * @param file the file to load
+     * @return the index
+     */
+    public static WordVectorIndex load(VocabCache cache,File file) {
+        return new WordVectorIndex(cache,RPForest.load(file));
+    }
+
+    /**
+     * Saves the forest to the given file
+     * @param file the file to save to
+     */
+    public void save(File file) {
+        forest.save(file);
+    }
+
+    /**
+     * The approximate n nearest words to the given word
+     * using the forest's default search k
+     * @param word the word to query
+     * @param n the number of words to return
+     * @return the words in order of decreasing similarity
+     */
+    public List<String> wordsNearest(String word,int n) {
+        int searchK = forest.getDefaultSearchK() > 0 ? forest.getDefaultSearchK() : forest.numTrees() * (n + 1);
+        return wordsNearest(word,n,searchK);
+    }
+
+    /**
+     * The approximate n nearest words to the given word
+     * @param word the word to query
+     * @param n the number of words to return
+     * @param searchK the number of candidates to examine: higher is slower with better recall
+     * @return the words in order of decreasing similarity, empty if the word is not in the vocab
+     */
+    public List<String> wordsNearest(String word,int n,int searchK) {
+        int index = cache.indexOf(word);
+        List<String> ret = new ArrayList<>();
+        if(index < 0 || index >= forest.numRows())
+            return ret;
+        INDArray vector = cache.vector(word);
+        double[] query = new double[vector.length()];
+        for(int j = 0; j < query.length; j++)
+            query[j] = vector.getDouble(j);
+
+        for(Pair<Integer,Double> result : forest.query(query,n + 1,searchK)) {
+            if(result.getFirst() == index)
+                continue;
+            if(ret.size() < n)
+                ret.add(cache.wordAtIndex(result.getFirst()));
+        }
+        return ret;
+    }
+
+    public RPForest getForest() {
+        return forest;
+    }
+}
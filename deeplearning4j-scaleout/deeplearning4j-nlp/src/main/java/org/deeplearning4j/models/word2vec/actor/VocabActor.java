@@ -2,60 +2,64 @@ package org.deeplearning4j.models.word2vec.actor;
 
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.compress.utils.IOUtils;
-import org.apache.commons.lang3.time.StopWatch;
 import org.deeplearning4j.models.word2vec.StreamWork;
 import org.deeplearning4j.models.word2vec.VocabWord;
 import org.deeplearning4j.models.word2vec.VocabWork;
 import org.deeplearning4j.text.invertedindex.InvertedIndex;
 import org.deeplearning4j.text.tokenization.tokenizer.Tokenizer;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
-import org.deeplearning4j.text.movingwindow.Util;
-import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCounter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import akka.actor.UntypedActor;
 
 /**
- * Individual actor for updating the vocab cache
+ * Individual actor for counting words: counts go in to an actor local
+ * {@link VocabCounter} that is merged in to the vocab cache once all of the work is done
  *
  * @author Adam Gibson
  */
 public class VocabActor extends UntypedActor {
 
     private transient TokenizerFactory tokenizer;
-    private List<String> stopWords;
-    private AtomicLong lastUpdate;
-    private VocabCache cache;
-    private int minWordFrequency;
+    private Set<String> stopWords;
+    private VocabCounter counter;
     private AtomicInteger numWordsEncountered;
     private InvertedIndex index;
 
 
 
+    /**
+     * @param tokenizer the tokenizer factory
+     * @param stopWords the stop words, counted as STOP
+     * @param sharedTokens the tokens shared by all actors
+     * @param counters each actor registers its counts here to be merged once all work is done
+     * @param numWordsEncountered the total number of words encountered
+     * @param index the index to add documents to, null to only count words
+     */
     public VocabActor(
             TokenizerFactory tokenizer,
-            VocabCache cache,
             List<String> stopWords,
-            AtomicLong lastUpdate,
-            int minWordFrequency,
+            ConcurrentMap<String,VocabWord> sharedTokens,
+            Collection<VocabCounter> counters,
             AtomicInteger numWordsEncountered,
             InvertedIndex index) {
         super();
         this.tokenizer = tokenizer;
-        this.stopWords = stopWords;
-        this.lastUpdate = lastUpdate;
-        this.cache = cache;
-        this.minWordFrequency = minWordFrequency;
+        this.stopWords = new HashSet<>(stopWords);
+        this.counter = new VocabCounter(sharedTokens);
         this.numWordsEncountered = numWordsEncountered;
         this.index = index;
+        counters.add(counter);
     }
 
 
@@ -63,71 +67,59 @@ public class VocabActor extends UntypedActor {
 
     @Override
     public void onReceive(Object message) throws Exception {
-        Set<String> encountered = new HashSet<>();
+        counter.nextDocument();
 
         if(message  instanceof VocabWork) {
-            List<VocabWord> document = new ArrayList<>();
             VocabWork work = (VocabWork) message;
-            if(work.getWork() == null || work.getWork().isEmpty())
-                return;
-            //work.getCount().incrementAndGet();
-            String sentence = work.getWork();
-            if(sentence.isEmpty() || sentence.length() <= 2) {
-                work.countDown();
-                return;
+            //always count down so the sender can track completion
+            try {
+                String sentence = work.getWork();
+                if(sentence == null || sentence.length() <= 2)
+                    return;
+                List<VocabWord> document = new ArrayList<>();
+                Tokenizer t = tokenizer.create(sentence);
+                while(t.hasMoreTokens())  {
+                    String token = t.nextToken();
+                    processToken(token,document);
+                }
+                if(index != null)
+                    index.addWordsToDoc(index.numDocuments(),document);
+                numWordsEncountered.addAndGet(document.size());
             }
-            Tokenizer t = tokenizer.create(sentence);
-            while(t.hasMoreTokens())  {
-                String token = t.nextToken();
-                processToken(token,encountered,document);
+            finally {
+                work.countDown();
             }
-            index.addWordsToDoc(index.numDocuments(),document);
-            numWordsEncountered.set(numWordsEncountered.get() + document.size());
-            work.countDown();
-
-            lastUpdate.getAndSet(System.currentTimeMillis());
 
         }
 
 
         else if(message instanceof StreamWork) {
             StreamWork work = (StreamWork) message;
-            List<VocabWord> document = new ArrayList<>();
-
-            InputStream is = work.getIs();
-            if(is == null)
-                return;
-            boolean tryRead = false;
+            InputStream is = null;
             try {
-                if(is.available() > 0) {
-                    tryRead = true;
-                }
-            }catch(Exception e) {
-                tryRead = false;
-            }
-
-            if(!tryRead)
-                return;
-
-            Tokenizer t = tokenizer.create(is);
+                is = work.getIs();
+                if(is == null || is.available() <= 0)
+                    return;
+
+                List<VocabWord> document = new ArrayList<>();
+                Tokenizer t = tokenizer.create(is);
+                while(t.hasMoreTokens())  {
+                    String token = t.nextToken();
+                    if(token == null || token.isEmpty())
+                        break;
+                    processToken(token,document);
 
-            while(t.hasMoreTokens())  {
-                String token = t.nextToken();
-                if(token == null || token.isEmpty())
-                    break;
-                processToken(token,encountered,document);
+                }
 
+                //adds the words to the document after all of them have bene processed
+                if(index != null)
+                    index.addWordsToDoc(index.numDocuments(),document);
+                numWordsEncountered.addAndGet(document.size());
+            }
+            finally {
+                IOUtils.closeQuietly(is);
+                work.countDown();
             }
-
-            //adds the words to the document after all of them have bene processed
-            index.addWordsToDoc(index.numDocuments(),document);
-            numWordsEncountered.set(numWordsEncountered.get() + document.size());
-
-            IOUtils.closeQuietly(is);
-            work.countDown();
-
-            lastUpdate.getAndSet(System.currentTimeMillis());
-
 
         }
 
@@ -139,56 +131,11 @@ public class VocabActor extends UntypedActor {
 
 
 
-    protected void processToken(String token,Set<String> encountered,List<VocabWord> words) {
+    protected void processToken(String token,List<VocabWord> words) {
         if(stopWords.contains(token))
             token = "STOP";
-        cache.incrementWordCount(token);
-
-
-        if(!encountered.contains(token)) {
-            cache.incrementDocCount(token,1);
-            encountered.add(token);
-        }
-
-
-        VocabWord token2 = null;
-        if(cache.hasToken(token))
-            token2 = cache.tokenFor(token);
-        else {
-            token2 = new VocabWord(1.0, token);
-            cache.addToken(token2);
-
-
-        }
-        words.add(token2);
-
-
-        //note that for purposes of word frequency, the
-        //internal vocab and the final vocab
-        //at the class level contain the same references
-        if(!Util.matchesAnyStopWord(stopWords,token) && token != null && !token.isEmpty()) {
-            if(!cache.containsWord(token) && cache.wordFrequency(token) >= minWordFrequency) {
-                int idx = cache.numWords();
-                token2.setIndex(idx);
-                cache.putVocabWord(token);
-            }
-
-            else  if(Util.matchesAnyStopWord(stopWords,token) && token != null && !token.isEmpty()) {
-                token = "STOP";
-                if(!cache.containsWord(token) && cache.wordFrequency(token) >= minWordFrequency) {
-                    int idx = cache.numWords();
-                    token2.setIndex(idx);
-                    cache.putVocabWord(token);
-                }
-
-
-            }
-
-
-
-        }
-
-
+        //counted locally, merged in to the cache when all of the work is done
+        words.add(counter.increment(token));
     }
 
 
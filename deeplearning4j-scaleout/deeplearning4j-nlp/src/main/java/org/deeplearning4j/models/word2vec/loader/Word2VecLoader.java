@@ -1,12 +1,16 @@
 package org.deeplearning4j.models.word2vec.loader;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.zip.GZIPInputStream;
 
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
+import org.deeplearning4j.models.word2vec.wordstore.mmap.MemoryMappedLookupCache;
+import org.deeplearning4j.models.word2vec.wordstore.mmap.MemoryMappedVocabWriter;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 import org.deeplearning4j.models.word2vec.VocabWord;
@@ -91,6 +95,101 @@ public class Word2VecLoader {
 
 
 
+    /**
+     * Loads a model written by {@link #writeMemoryMapped(Word2Vec, File)}
+     * or {@link #convertGoogleBinary(String, File)}.
+     * The vectors are memory mapped rather than read on to the heap
+     * @param file the file to load
+     * @return the loaded model
+     * @throws IOException
+     */
+    public static Word2Vec loadMemoryMapped(File file) throws IOException {
+        MemoryMappedLookupCache cache = new MemoryMappedLookupCache(file);
+        Word2Vec ret = new Word2Vec();
+        ret.setCache(cache);
+        ret.setLayerSize(cache.vectorLength());
+        return ret;
+    }
+
+    /**
+     * Writes the vocab and vectors of the given model
+     * in the memory mapped format
+     * @param vec the model to write
+     * @param file the file to write to
+     * @throws IOException
+     */
+    public static void writeMemoryMapped(Word2Vec vec,File file) throws IOException {
+        MemoryMappedVocabWriter.export(vec.getCache(),file);
+    }
+
+    /**
+     * Converts the google binary format to the memory mapped format
+     * one row at a time, without loading the model on to the heap.
+     * Vectors are normalized the same way as {@link #loadGoogleBinary(String)},
+     * and empty words are skipped
+     * @param path the path to the google model
+     * @param output the file to write to
+     * @throws IOException
+     */
+    public static void convertGoogleBinary(String path,File output) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(path)));
+        Throwable failure = null;
+        try {
+            int words = Integer.parseInt(readString(dis));
+            int size = Integer.parseInt(readString(dis));
+            MemoryMappedVocabWriter writer = new MemoryMappedVocabWriter(output,words,size);
+            Throwable writeFailure = null;
+            try {
+                byte[] bytes = new byte[size * 4];
+                ByteBuffer row = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+                float[] vector = new float[size];
+                for(int i = 0; i < words; i++) {
+                    String word = readString(dis);
+                    dis.readFully(bytes);
+                    row.clear();
+                    row.asFloatBuffer().get(vector);
+                    double len = 0;
+                    for(int j = 0; j < size; j++)
+                        len += vector[j] * vector[j];
+                    len = Math.sqrt(len);
+                    for(int j = 0; j < size; j++)
+                        vector[j] /= len;
+                    dis.read();
+                    if(word.isEmpty())
+                        continue;
+                    writer.add(word,vector,1);
+                }
+            }
+            catch(Throwable t) {
+                writeFailure = t;
+                throw t;
+            }
+            finally {
+                close(writer,writeFailure);
+            }
+        }
+        catch(Throwable t) {
+            failure = t;
+            throw t;
+        }
+        finally {
+            close(dis,failure);
+        }
+    }
+
+    /* closes the stream, a failure to close is suppressed by the failure already being thrown if any */
+    private static void close(Closeable closeable,Throwable failure) throws IOException {
+        try {
+            closeable.close();
+        }
+        catch(IOException | RuntimeException e) {
+            if(failure == null)
+                throw e;
+            failure.addSuppressed(e);
+        }
+    }
+
+
     /**
      * Read a string from a data input stream
      * Credit to: https://github.com/NLPchina/Word2VEC_java/blob/master/src/com/ansj/vec/Word2VEC.java
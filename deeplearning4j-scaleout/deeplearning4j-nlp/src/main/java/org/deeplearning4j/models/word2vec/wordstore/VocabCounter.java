@@ -0,0 +1,214 @@
+package org.deeplearning4j.models.word2vec.wordstore;
+
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.text.movingwindow.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Word and document counts gathered by a single worker.
+ *
+ * Counting is done in to open addressing arrays that are only touched by
+ * the owning thread, so tokens can be counted without any locking.
+ * Once all of the workers are done the partial counts are merged
+ * in to a {@link VocabCache} with {@link #merge(java.util.Collection, VocabCache, java.util.List, int)},
+ * which also applies the min word frequency and assigns indices.
+ *
+ * @author Adam Gibson
+ */
+public class VocabCounter {
+
+    private String[] words;
+    private VocabWord[] tokens;
+    private long[] wordCounts;
+    private int[] docCounts;
+    //the last document each word was counted in, for document frequencies
+    private int[] lastDoc;
+    private int size = 0;
+    private int currentDoc = 0;
+    private ConcurrentMap<String,VocabWord> sharedTokens;
+
+    /**
+     * @param sharedTokens the tokens shared by all workers:
+     *                     each word maps to a single {@link VocabWord} so documents
+     *                     built by different workers refer to the same tokens
+     */
+    public VocabCounter(ConcurrentMap<String,VocabWord> sharedTokens) {
+        this.sharedTokens = sharedTokens;
+        allocate(1024);
+    }
+
+    private void allocate(int capacity) {
+        words = new String[capacity];
+        tokens = new VocabWord[capacity];
+        wordCounts = new long[capacity];
+        docCounts = new int[capacity];
+        lastDoc = new int[capacity];
+        Arrays.fill(lastDoc,-1);
+    }
+
+    /**
+     * Marks the start of a new document: words are only
+     * counted once per document for document frequencies
+     */
+    public void nextDocument() {
+        currentDoc++;
+    }
+
+    /**
+     * Counts an occurrence of the given word in the current document
+     * @param word the word to count
+     * @return the shared token for the word
+     */
+    public VocabWord increment(String word) {
+        int slot = slot(word);
+        if(words[slot] == null) {
+            if((size + 1) * 2 > words.length) {
+                rehash();
+                slot = slot(word);
+            }
+            words[slot] = word;
+            tokens[slot] = tokenFor(word);
+            size++;
+        }
+
+        wordCounts[slot]++;
+        if(lastDoc[slot] != currentDoc) {
+            lastDoc[slot] = currentDoc;
+            docCounts[slot]++;
+        }
+        return tokens[slot];
+    }
+
+    private VocabWord tokenFor(String word) {
+        VocabWord token = sharedTokens.get(word);
+        if(token == null) {
+            VocabWord newToken = new VocabWord(0.0,word);
+            token = sharedTokens.putIfAbsent(word,newToken);
+            if(token == null)
+                token = newToken;
+        }
+        return token;
+    }
+
+    private int slot(String word) {
+        int mask = words.length - 1;
+        int h = word.hashCode();
+        int slot = (h ^ (h >>> 16)) & mask;
+        while(words[slot] != null && !words[slot].equals(word))
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void rehash() {
+        String[] oldWords = words;
+        VocabWord[] oldTokens = tokens;
+        long[] oldWordCounts = wordCounts;
+        int[] oldDocCounts = docCounts;
+        int[] oldLastDoc = lastDoc;
+        allocate(oldWords.length * 2);
+        for(int i = 0; i < oldWords.length; i++) {
+            if(oldWords[i] == null)
+                continue;
+            int slot = slot(oldWords[i]);
+            words[slot] = oldWords[i];
+            tokens[slot] = oldTokens[i];
+            wordCounts[slot] = oldWordCounts[i];
+            docCounts[slot] = oldDocCounts[i];
+            lastDoc[slot] = oldLastDoc[i];
+        }
+    }
+
+    /**
+     * The number of distinct words counted
+     * @return the number of distinct words
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The number of times the given word was counted
+     * @param word the word
+     * @return the count for the word
+     */
+    public long wordCount(String word) {
+        int slot = slot(word);
+        return words[slot] == null ? 0 : wordCounts[slot];
+    }
+
+    /**
+     * Merges the partial counts in to the cache: tokens are added, word and
+     * document frequencies are incremented and then the words occurring at least
+     * min word frequency times are added to the vocab.
+     * Indices are assigned in order of decreasing frequency so they do
+     * not depend on how the work was split between the workers
+     * @param counters the partial counts to merge
+     * @param cache the cache to merge in to
+     * @param stopWords the stop words, which are never added to the vocab
+     * @param minWordFrequency the minimum frequency for a word to be added to the vocab
+     */
+    public static void merge(Collection<VocabCounter> counters,VocabCache cache,List<String> stopWords,int minWordFrequency) {
+        VocabCounter total = null;
+        for(VocabCounter counter : counters) {
+            if(total == null)
+                total = new VocabCounter(counter.sharedTokens);
+            for(int i = 0; i < counter.words.length; i++) {
+                if(counter.words[i] == null)
+                    continue;
+                int slot = total.slot(counter.words[i]);
+                if(total.words[slot] == null) {
+                    if((total.size + 1) * 2 > total.words.length) {
+                        total.rehash();
+                        slot = total.slot(counter.words[i]);
+                    }
+                    total.words[slot] = counter.words[i];
+                    total.tokens[slot] = counter.tokens[i];
+                    total.size++;
+                }
+                total.wordCounts[slot] += counter.wordCounts[i];
+                total.docCounts[slot] += counter.docCounts[i];
+            }
+        }
+
+        if(total == null)
+            return;
+
+        final List<Integer> eligible = new ArrayList<>();
+        for(int i = 0; i < total.words.length; i++) {
+            String word = total.words[i];
+            if(word == null)
+                continue;
+            if(!cache.hasToken(word))
+                cache.addToken(total.tokens[i]);
+            cache.incrementWordCount(word,(int) Math.min(Integer.MAX_VALUE,total.wordCounts[i]));
+            cache.incrementDocCount(word,total.docCounts[i]);
+            if(!Util.matchesAnyStopWord(stopWords,word))
+                eligible.add(i);
+        }
+
+        final VocabCounter counts = total;
+        Collections.sort(eligible,new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                int ret = Long.compare(counts.wordCounts[o2],counts.wordCounts[o1]);
+                return ret != 0 ? ret : counts.words[o1].compareTo(counts.words[o2]);
+            }
+        });
+
+        for(int i : eligible) {
+            String word = total.words[i];
+            if(cache.containsWord(word) || cache.wordFrequency(word) < minWordFrequency)
+                continue;
+            cache.tokenFor(word).setIndex(cache.numWords());
+            cache.putVocabWord(word);
+        }
+    }
+
+}
@@ -23,6 +23,7 @@ import java.io.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * In memory lookup cache for smaller datasets
@@ -38,7 +39,7 @@ public class InMemoryLookupCache implements VocabCache,Serializable {
     private Map<String,VocabWord> vocabs = new ConcurrentHashMap<>();
     private Map<String,VocabWord> tokens = new ConcurrentHashMap<>();
     private Map<Integer,INDArray> codes = new ConcurrentHashMap<>();
-    private INDArray syn0,syn1;
+    private INDArray syn0,syn1,syn1Neg;
     private int vectorLength = 50;
     private transient RandomGenerator rng = new XorShift64StarRandomGenerator(123);
     private AtomicInteger totalWordOccurrences = new AtomicInteger(0);
@@ -47,6 +48,15 @@ public class InMemoryLookupCache implements VocabCache,Serializable {
     static double MAX_EXP = 6;
     private long seed = 123;
     private int numDocs = 0;
+    //number of negative samples drawn per word pair; 0 disables negative sampling
+    private int negative = 0;
+    private boolean useHierarchicSoftmax = true;
+    //unigram distribution raised to the 3/4 power, used for drawing negative samples;
+    //it is rebuilt from the word frequencies on deserialization rather than written out
+    private transient int[] table;
+    private int tableSize = (int) 1e7;
+    private double tablePower = 0.75;
+    private AtomicLong nextRandom = new AtomicLong(5);
 
     public InMemoryLookupCache(int vectorLength) {
         this(vectorLength,true);
@@ -119,46 +129,91 @@ public class InMemoryLookupCache implements VocabCache,Serializable {
 
 
 
+        if(useHierarchicSoftmax) {
+            if(this.syn1 == null)
+                throw new IllegalStateException("Hierarchical softmax is enabled but syn1 is not initialized, please call resetWeights()");
+            for(int i = 0; i < w1.getCodeLength(); i++) {
+                int code = w1.getCodes()[i];
+                int point = w1.getPoints()[i];
+                if(point >= syn0.rows())
+                    throw new IllegalStateException("Illegal point " + point);
+                //other word vector
+                INDArray syn1 = this.syn1.slice(point);
 
-        for(int i = 0; i < w1.getCodeLength(); i++) {
-            int code = w1.getCodes()[i];
-            int point = w1.getPoints()[i];
-            if(point >= syn0.rows())
-                throw new IllegalStateException("Illegal point " + point);
-            //other word vector
-            INDArray syn1 = this.syn1.slice(point);
 
+                double dot = Nd4j.getBlasWrapper().dot(l1,syn1);
 
-            double dot = Nd4j.getBlasWrapper().dot(l1,syn1);
-
-            if(dot < -MAX_EXP || dot >= MAX_EXP)
-                continue;
+                if(dot < -MAX_EXP || dot >= MAX_EXP)
+                    continue;
 
 
-            int idx = (int) ((dot + MAX_EXP) * ((double) expTable.length / MAX_EXP / 2.0));
-            if(idx >= expTable.length)
-                continue;
+                int idx = (int) ((dot + MAX_EXP) * ((double) expTable.length / MAX_EXP / 2.0));
+                if(idx >= expTable.length)
+                    continue;
 
-            //score
-            double f =  expTable[idx];
-            //gradient
-            double g = (1 - code - f) * this.lr;
+                //score
+                double f =  expTable[idx];
+                //gradient
+                double g = (1 - code - f) * this.lr;
 
-            avgChange += g;
-            if(syn0.data().dataType().equals(DataBuffer.DOUBLE)) {
-                Nd4j.getBlasWrapper().axpy(g, syn1, neu1e);
-                Nd4j.getBlasWrapper().axpy(g, l1, syn1);
+                avgChange += g;
+                if(syn0.data().dataType().equals(DataBuffer.DOUBLE)) {
+                    Nd4j.getBlasWrapper().axpy(g, syn1, neu1e);
+                    Nd4j.getBlasWrapper().axpy(g, l1, syn1);
+                }
+                else {
+                    Nd4j.getBlasWrapper().axpy((float) g, syn1, neu1e);
+                    Nd4j.getBlasWrapper().axpy((float) g, l1, syn1);
+                }
             }
-            else {
-                Nd4j.getBlasWrapper().axpy((float) g, syn1, neu1e);
-                Nd4j.getBlasWrapper().axpy((float) g, l1, syn1);
-            }
-        }
 
 
 
 
-        avgChange /=  w1.getCodes().length;
+            avgChange /=  w1.getCodes().length;
+        }
+
+        //negative sampling: the target word is the positive example, the rest are drawn from the unigram table
+        if(negative > 0) {
+            if(this.syn1Neg == null || table == null)
+                throw new IllegalStateException("Negative sampling is enabled but syn1Neg is not initialized, please call resetWeights()");
+            int target = w1.getIndex();
+            int label;
+            double negChange = 0.0;
+            for(int d = 0; d < negative + 1; d++) {
+                if(d == 0)
+                    label = 1;
+                else {
+                    long random = nextRandom();
+                    target = table[(int) Math.abs((random >> 16) % table.length)];
+                    if(target == w1.getIndex())
+                        continue;
+                    label = 0;
+                }
+
+                INDArray syn1Neg = this.syn1Neg.slice(target);
+                double dot = Nd4j.getBlasWrapper().dot(l1,syn1Neg);
+                double g;
+                if(dot >= MAX_EXP)
+                    g = (label - 1) * this.lr;
+                else if(dot < -MAX_EXP)
+                    g = label * this.lr;
+                else
+                    g = (label - expTable[(int) ((dot + MAX_EXP) * (expTable.length / MAX_EXP / 2.0))]) * this.lr;
+
+                negChange += g;
+                if(syn0.data().dataType().equals(DataBuffer.DOUBLE)) {
+                    Nd4j.getBlasWrapper().axpy(g, syn1Neg, neu1e);
+                    Nd4j.getBlasWrapper().axpy(g, l1, syn1Neg);
+                }
+                else {
+                    Nd4j.getBlasWrapper().axpy((float) g, syn1Neg, neu1e);
+                    Nd4j.getBlasWrapper().axpy((float) g, l1, syn1Neg);
+                }
+            }
+
+            avgChange += negChange / (negative + 1);
+        }
 
 
         if(useAdaGrad) {
@@ -182,6 +237,16 @@ public class InMemoryLookupCache implements VocabCache,Serializable {
 
 
 
+    /* steps the shared linear congruential generator, safe for concurrent callers */
+    private long nextRandom() {
+        while(true) {
+            long current = nextRandom.get();
+            long random = current * 25214903917L + 11;
+            if(nextRandom.compareAndSet(current,random))
+                return random;
+        }
+    }
+
     /**
      * Returns all of the words in the vocab
      *
@@ -200,7 +265,47 @@ public class InMemoryLookupCache implements VocabCache,Serializable {
         this.rng = new MersenneTwister(seed);
 
         syn0  = Nd4j.rand(new int[]{vocabs.size(),vectorLength},rng).subi(0.5).divi(vectorLength);
-        syn1 = Nd4j.create(syn0.shape());
+        //weights of a disabled objective are dropped rather than left stale
+        syn1 = useHierarchicSoftmax ? Nd4j.create(syn0.shape()) : null;
+        syn1Neg = null;
+        table = null;
+        if(negative > 0) {
+            syn1Neg = Nd4j.create(syn0.shape());
+            makeTable(tableSize,0.75);
+        }
+
+    }
+
+    /**
+     * Builds the table used for drawing negative samples.
+     * Each word occupies a number of slots proportional to
+     * its frequency raised to the given power
+     * @param tableSize the number of slots in the table
+     * @param power the power to raise the word frequencies to (0.75 in the original word2vec)
+     */
+    public void makeTable(int tableSize,double power) {
+        int vocabSize = syn0.rows();
+        double[] counts = new double[vocabSize];
+        for(VocabWord word : vocabs.values()) {
+            if(word.getIndex() >= 0 && word.getIndex() < vocabSize)
+                counts[word.getIndex()] = word.getWordFrequency();
+        }
+
+        double trainWordsPow = 0.0;
+        for(double count : counts)
+            trainWordsPow += Math.pow(count,power);
+
+        this.tablePower = power;
+        table = new int[tableSize];
+        int wordIdx = 0;
+        double d1 = Math.pow(counts[wordIdx],power) / trainWordsPow;
+        for(int i = 0; i < tableSize; i++) {
+            table[i] = wordIdx;
+            if(i / (double) tableSize > d1 && wordIdx < vocabSize - 1) {
+                wordIdx++;
+                d1 += Math.pow(counts[wordIdx],power) / trainWordsPow;
+            }
+        }
 
     }
 
@@ -223,7 +328,7 @@ public class InMemoryLookupCache implements VocabCache,Serializable {
      */
     @Override
     public  synchronized void incrementWordCount(String word, int increment) {
-        wordFrequencies.incrementCount(word,1);
+        wordFrequencies.incrementCount(word,increment);
 
         VocabWord token;
         if(hasToken(word))
@@ -301,6 +406,8 @@ public class InMemoryLookupCache implements VocabCache,Serializable {
      */
     @Override
     public INDArray loadCodes(int[] codes) {
+        if(syn1 == null)
+            throw new IllegalStateException("No syn1 weights: hierarchical softmax is disabled or the weights are not initialized");
         return syn1.getRows(codes);
     }
 
@@ -561,4 +668,54 @@ public class InMemoryLookupCache implements VocabCache,Serializable {
     public void setSyn1(INDArray syn1) {
         this.syn1 = syn1;
     }
+
+    public INDArray getSyn1Neg() {
+        return syn1Neg;
+    }
+
+    public void setSyn1Neg(INDArray syn1Neg) {
+        this.syn1Neg = syn1Neg;
+    }
+
+    public boolean isUseAdaGrad() {
+        return useAdaGrad;
+    }
+
+    public void setUseAdaGrad(boolean useAdaGrad) {
+        this.useAdaGrad = useAdaGrad;
+    }
+
+    public int getNegative() {
+        return negative;
+    }
+
+    public void setNegative(int negative) {
+        this.negative = negative;
+    }
+
+    public boolean isUseHierarchicSoftmax() {
+        return useHierarchicSoftmax;
+    }
+
+    public void setUseHierarchicSoftmax(boolean useHierarchicSoftmax) {
+        this.useHierarchicSoftmax = useHierarchicSoftmax;
+    }
+
+    public int getTableSize() {
+        return tableSize;
+    }
+
+    public void setTableSize(int tableSize) {
+        this.tableSize = tableSize;
+    }
+
+    public int[] getTable() {
+        return table;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if(negative > 0 && syn0 != null)
+            makeTable(tableSize,tablePower);
+    }
 }
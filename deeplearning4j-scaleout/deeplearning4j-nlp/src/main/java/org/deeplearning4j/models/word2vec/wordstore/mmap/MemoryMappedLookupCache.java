@@ -0,0 +1,439 @@
+package org.deeplearning4j.models.word2vec.wordstore.mmap;
+
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.plot.Tsne;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.Collection;
+
+/**
+ * Read only vocab cache backed by a memory mapped file
+ * written by {@link MemoryMappedVocabWriter}.
+ *
+ * Nothing is loaded on to the heap: words are looked up
+ * through the on disk hash table and vectors are read straight
+ * from the mapped float matrix, so multiple processes mapping
+ * the same file share it through the page cache.
+ *
+ * Training related operations are not supported.
+ *
+ * @author Adam Gibson
+ */
+public class MemoryMappedLookupCache implements VocabCache {
+
+    private int numWords;
+    private int vectorLength;
+    private int tableSize;
+    private long totalWordOccurrences;
+    private int rowsPerSegment;
+    private MappedByteBuffer[] vectorSegments;
+    private MappedByteBuffer table;
+    private MappedByteBuffer wordOffsets;
+    private MappedByteBuffer words;
+
+    /**
+     * Maps the given file
+     * @param file the file written by {@link MemoryMappedVocabWriter}
+     * @throws IOException
+     */
+    public MemoryMappedLookupCache(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file,"r");
+        try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(MemoryMappedVocabWriter.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while(header.hasRemaining())
+                if(channel.read(header,header.position()) < 0)
+                    throw new IOException("Unexpected end of file reading the header of " + file);
+            header.flip();
+            if(header.getInt() != MemoryMappedVocabWriter.MAGIC)
+                throw new IOException(file + " is not a memory mapped vocab file");
+            int version = header.getInt();
+            if(version != MemoryMappedVocabWriter.VERSION)
+                throw new IOException("Unsupported version " + version);
+            numWords = header.getInt();
+            vectorLength = header.getInt();
+            tableSize = header.getInt();
+            int wordsLength = header.getInt();
+            totalWordOccurrences = header.getLong();
+            long vectorsOffset = header.getLong();
+            long tableOffset = header.getLong();
+            long wordOffsetsOffset = header.getLong();
+            long wordsOffset = header.getLong();
+
+            //a single mapping is limited to 2gb, so the matrix is mapped in segments of whole rows
+            int rowBytes = vectorLength * 4;
+            rowsPerSegment = Math.max(1,Integer.MAX_VALUE / rowBytes);
+            int numSegments = Math.max(1,(int) Math.ceil(numWords / (double) rowsPerSegment));
+            vectorSegments = new MappedByteBuffer[numSegments];
+            for(int i = 0; i < numSegments; i++) {
+                long firstRow = (long) i * rowsPerSegment;
+                long rows = Math.min(rowsPerSegment,numWords - firstRow);
+                vectorSegments[i] = map(channel,vectorsOffset + firstRow * rowBytes,rows * rowBytes);
+            }
+
+            table = map(channel,tableOffset,(long) tableSize * 4);
+            wordOffsets = map(channel,wordOffsetsOffset,(long) numWords * 4);
+            words = map(channel,wordsOffset,wordsLength);
+        }
+        finally {
+            raf.close();
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel,long position,long size) throws IOException {
+        MappedByteBuffer ret = channel.map(FileChannel.MapMode.READ_ONLY,position,size);
+        ret.order(ByteOrder.LITTLE_ENDIAN);
+        return ret;
+    }
+
+    /**
+     * The number of slots in the hash table for the given number of words.
+     * Always a power of 2 with a load factor of at most 0.5
+     * @param numWords the number of words
+     * @return the table size
+     */
+    static int tableSize(int numWords) {
+        int ret = 2;
+        while(ret < numWords * 2L)
+            ret <<= 1;
+        return ret;
+    }
+
+    /**
+     * Hash of the utf-8 bytes of a word
+     * @param bytes the bytes to hash
+     * @return the hash
+     */
+    static int hash(byte[] bytes) {
+        int h = 0;
+        for(byte b : bytes)
+            h = 31 * h + b;
+        //murmur3 finalizer to spread the bits used for the slot
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Returns a zero copy view of the vector at the given row
+     * @param row the row to get
+     * @return a float buffer over the mapped vector
+     */
+    public FloatBuffer vectorBuffer(int row) {
+        if(row < 0 || row >= numWords)
+            throw new IllegalArgumentException("Illegal row " + row);
+        ByteBuffer segment = vectorSegments[row / rowsPerSegment].duplicate();
+        int position = (row % rowsPerSegment) * vectorLength * 4;
+        segment.position(position);
+        segment.limit(position + vectorLength * 4);
+        return segment.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    /**
+     * Returns a zero copy view of the vector for the given word
+     * @param word the word to get
+     * @return a float buffer over the mapped vector or null
+     * if the word is not in the vocab
+     */
+    public FloatBuffer vectorBuffer(String word) {
+        int row = indexOf(word);
+        if(row < 0)
+            return null;
+        return vectorBuffer(row);
+    }
+
+    /**
+     * Copies the vector at the given row in to the given array
+     * @param row the row to copy
+     * @param dest the array to copy to (of length vector length)
+     * @return the passed in array
+     */
+    public float[] vector(int row,float[] dest) {
+        vectorBuffer(row).get(dest,0,vectorLength);
+        return dest;
+    }
+
+    public int vectorLength() {
+        return vectorLength;
+    }
+
+
+    private int wordOffset(int row) {
+        return wordOffsets.getInt(row * 4);
+    }
+
+    private int frequencyAt(int row) {
+        return words.getInt(wordOffset(row));
+    }
+
+    private boolean wordEquals(int row,byte[] bytes) {
+        int offset = wordOffset(row);
+        int length = words.getInt(offset + 4);
+        if(length != bytes.length)
+            return false;
+        offset += 8;
+        for(int i = 0; i < length; i++)
+            if(words.get(offset + i) != bytes[i])
+                return false;
+        return true;
+    }
+
+    @Override
+    public void plotVocab(Tsne tsne) {
+        throw new UnsupportedOperationException("Plotting is not supported for memory mapped vocab");
+    }
+
+    @Override
+    public void plotVocab() {
+        throw new UnsupportedOperationException("Plotting is not supported for memory mapped vocab");
+    }
+
+    /**
+     * The vocab is always loaded from the mapped file
+     */
+    @Override
+    public void loadVocab() {
+
+    }
+
+    @Override
+    public boolean vocabExists() {
+        return true;
+    }
+
+    @Override
+    public void saveVocab() {
+        throw new UnsupportedOperationException("Please use MemoryMappedVocabWriter");
+    }
+
+    @Override
+    public void iterate(VocabWord w1, VocabWord w2) {
+        throw new UnsupportedOperationException("Memory mapped vocab is read only");
+    }
+
+    /**
+     * A view of the words in the vocab, decoded on access
+     * @return the words in the vocab
+     */
+    @Override
+    public Collection<String> words() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return wordAtIndex(index);
+            }
+
+            @Override
+            public int size() {
+                return numWords;
+            }
+        };
+    }
+
+    @Override
+    public void resetWeights() {
+        throw new UnsupportedOperationException("Memory mapped vocab is read only");
+    }
+
+    @Override
+    public void incrementWordCount(String word) {
+        throw new UnsupportedOperationException("Memory mapped vocab is read only");
+    }
+
+    @Override
+    public void incrementWordCount(String word, int increment) {
+        throw new UnsupportedOperationException("Memory mapped vocab is read only");
+    }
+
+    @Override
+    public int wordFrequency(String word) {
+        int row = indexOf(word);
+        if(row < 0)
+            return 0;
+        return frequencyAt(row);
+    }
+
+    @Override
+    public boolean containsWord(String word) {
+        return indexOf(word) >= 0;
+    }
+
+    @Override
+    public String wordAtIndex(int index) {
+        if(index < 0 || index >= numWords)
+            return null;
+        int offset = wordOffset(index);
+        byte[] bytes = new byte[words.getInt(offset + 4)];
+        for(int i = 0; i < bytes.length; i++)
+            bytes[i] = words.get(offset + 8 + i);
+        return new String(bytes,MemoryMappedVocabWriter.UTF_8);
+    }
+
+    @Override
+    public int indexOf(String word) {
+        if(word == null)
+            return -1;
+        byte[] bytes = word.getBytes(MemoryMappedVocabWriter.UTF_8);
+        int slot = hash(bytes) & (tableSize - 1);
+        while(true) {
+            int row = table.getInt(slot * 4) - 1;
+            if(row < 0)
+                return -1;
+            if(wordEquals(row,bytes))
+                return row;
+            slot = (slot + 1) & (tableSize - 1);
+        }
+    }
+
+    @Override
+    public void putCode(int codeIndex, INDArray code) {
+        throw new UnsupportedOperationException("Memory mapped vocab is read only");
+    }
+
+    @Override
+    public INDArray loadCodes(int[] codes) {
+        throw new UnsupportedOperationException("Memory mapped vocab does not store codes");
+    }
+
+    /**
+     * A view of the vocab words, created on access
+     * @return the vocab words
+     */
+    @Override
+    public Collection<VocabWord> vocabWords() {
+        return new AbstractList<VocabWord>() {
+            @Override
+            public VocabWord get(int index) {
+                VocabWord ret = new VocabWord(frequencyAt(index),wordAtIndex(index));
+                ret.setIndex(index);
+                return ret;
+            }
+
+            @Override
+            public int size() {
+                return numWords;
+            }
+        };
+    }
+
+    @Override
+    public int totalWordOccurrences() {
+        return (int) Math.min(Integer.MAX_VALUE,totalWordOccurrences);
+    }
+
+    @Override
+    public void putVector(String word, INDArray vector) {
+        throw new UnsupportedOperationException("Memory mapped vocab is read only");
+    }
+
+    /**
+     * Copies the vector for the given word in to a new row vector.
+     * Use {@link #vectorBuffer(String)} for zero copy access
+     * @param word the word to get the vector for
+     * @return the vector or null if the word is not in the vocab
+     */
+    @Override
+    public INDArray vector(String word) {
+        int row = indexOf(word);
+        if(row < 0)
+            return null;
+        return Nd4j.create(vector(row,new float[vectorLength]));
+    }
+
+    @Override
+    public VocabWord wordFor(String word) {
+        int row = indexOf(word);
+        if(row < 0)
+            return null;
+        VocabWord ret = new VocabWord(frequencyAt(row),word);
+        ret.setIndex(row);
+        return ret;
+    }
+
+    @Override
+    public void addWordToIndex(int index, String word) {
+        throw new UnsupportedOperationException("Memory mapped vocab is read only");
+    }
+
+    @Override
+    public void putVocabWord(String word) {
+        throw new UnsupportedOperationException("Memory mapped vocab is read only");
+    }
+
+    @Override
+    public int numWords() {
+        return numWords;
+    }
+
+    /**
+     * Document frequencies are not stored
+     * @return 0
+     */
+    @Override
+    public int docAppearedIn(String word) {
+        return 0;
+    }
+
+    @Override
+    public void incrementDocCount(String word, int howMuch) {
+        throw new UnsupportedOperationException("Memory mapped vocab is read only");
+    }
+
+    @Override
+    public void setCountForDoc(String word, int count) {
+        throw new UnsupportedOperationException("Memory mapped vocab is read only");
+    }
+
+    /**
+     * Document counts are not stored
+     * @return 0
+     */
+    @Override
+    public int totalNumberOfDocs() {
+        return 0;
+    }
+
+    @Override
+    public void incrementTotalDocCount() {
+        throw new UnsupportedOperationException("Memory mapped vocab is read only");
+    }
+
+    @Override
+    public void incrementTotalDocCount(int by) {
+        throw new UnsupportedOperationException("Memory mapped vocab is read only");
+    }
+
+    @Override
+    public Collection<VocabWord> tokens() {
+        return vocabWords();
+    }
+
+    @Override
+    public void addToken(VocabWord word) {
+        throw new UnsupportedOperationException("Memory mapped vocab is read only");
+    }
+
+    @Override
+    public VocabWord tokenFor(String word) {
+        return wordFor(word);
+    }
+
+    @Override
+    public boolean hasToken(String token) {
+        return containsWord(token);
+    }
+}
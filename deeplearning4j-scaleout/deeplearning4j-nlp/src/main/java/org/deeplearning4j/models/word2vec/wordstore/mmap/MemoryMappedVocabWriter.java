@@ -0,0 +1,197 @@
+package org.deeplearning4j.models.word2vec.wordstore.mmap;
+
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams word vectors in to the binary format read by {@link MemoryMappedLookupCache}.
+ *
+ * The layout (all values little endian) is:
+ * a fixed size header, the vectors as a contiguous row major float matrix,
+ * an open addressing hash table mapping words to rows,
+ * an offset per row in to the word section and finally the words
+ * themselves (frequency, utf-8 byte length, utf-8 bytes).
+ *
+ * Vectors are written as they are added; only the words and their hashes
+ * are kept in memory until {@link #close()} writes the index.
+ * Fewer words than declared up front may be added.
+ *
+ * @author Adam Gibson
+ */
+public class MemoryMappedVocabWriter implements Closeable {
+
+    public final static int MAGIC = 0x57325643;
+    public final static int VERSION = 1;
+    public final static int HEADER_SIZE = 64;
+    public final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private int numWords;
+    private int vectorLength;
+    private int rowsWritten = 0;
+    private long totalWordOccurrences = 0;
+    private ByteBuffer row;
+    private ByteArrayOutputStream words = new ByteArrayOutputStream();
+    private int[] wordOffsets;
+    private int[] hashes;
+
+    /**
+     * @param output the file to write to
+     * @param numWords the maximum number of words that will be added
+     * @param vectorLength the length of each word vector
+     * @throws IOException
+     */
+    public MemoryMappedVocabWriter(File output,int numWords,int vectorLength) throws IOException {
+        if(numWords < 0 || vectorLength < 1)
+            throw new IllegalArgumentException("Illegal number of words " + numWords + " or vector length " + vectorLength);
+        this.numWords = numWords;
+        this.vectorLength = vectorLength;
+        this.hashes = new int[numWords];
+        this.wordOffsets = new int[numWords];
+        this.file = new RandomAccessFile(output,"rw");
+        this.file.setLength(0);
+        this.channel = file.getChannel();
+        this.row = ByteBuffer.allocate(vectorLength * 4).order(ByteOrder.LITTLE_ENDIAN);
+        channel.position(HEADER_SIZE);
+    }
+
+    /**
+     * Exports the vocab and word vectors of the given cache.
+     * Rows are renumbered densely in the order of the cache's indices
+     * @param cache the cache to export
+     * @param output the file to write to
+     * @throws IOException
+     */
+    public static void export(VocabCache cache,File output) throws IOException {
+        List<String> words = new ArrayList<>();
+        for(int i = 0; i < cache.numWords(); i++) {
+            String word = cache.wordAtIndex(i);
+            if(word != null && cache.vector(word) != null)
+                words.add(word);
+        }
+
+        int vectorLength = words.isEmpty() ? 1 : cache.vector(words.get(0)).length();
+        MemoryMappedVocabWriter writer = new MemoryMappedVocabWriter(output,words.size(),vectorLength);
+        try {
+            float[] vector = new float[vectorLength];
+            for(String word : words) {
+                INDArray v = cache.vector(word);
+                for(int j = 0; j < vectorLength; j++)
+                    vector[j] = (float) v.getDouble(j);
+                VocabWord vocabWord = cache.wordFor(word);
+                int frequency = vocabWord != null ? (int) vocabWord.getWordFrequency() : cache.wordFrequency(word);
+                writer.add(word,vector,frequency);
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Adds the next row
+     * @param word the word
+     * @param vector the vector for the word
+     * @param frequency the number of times the word occurred in the corpus
+     * @throws IOException
+     */
+    public void add(String word,float[] vector,int frequency) throws IOException {
+        if(rowsWritten >= numWords)
+            throw new IllegalStateException("Already wrote " + numWords + " words");
+        if(vector.length != vectorLength)
+            throw new IllegalArgumentException("Vector length must be " + vectorLength);
+        row.clear();
+        row.asFloatBuffer().put(vector);
+        while(row.hasRemaining())
+            channel.write(row);
+
+        byte[] bytes = word.getBytes(UTF_8);
+        wordOffsets[rowsWritten] = words.size();
+        writeInt(words,frequency);
+        writeInt(words,bytes.length);
+        words.write(bytes);
+        hashes[rowsWritten] = MemoryMappedLookupCache.hash(bytes);
+        totalWordOccurrences += frequency;
+        rowsWritten++;
+    }
+
+    /**
+     * Writes the index and header for the words added so far and closes the file
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            int numWords = rowsWritten;
+            long vectorsOffset = HEADER_SIZE;
+            long tableOffset = vectorsOffset + (long) numWords * vectorLength * 4;
+            int tableSize = MemoryMappedLookupCache.tableSize(numWords);
+            int[] table = new int[tableSize];
+            for(int i = 0; i < numWords; i++) {
+                int slot = hashes[i] & (tableSize - 1);
+                while(table[slot] != 0)
+                    slot = (slot + 1) & (tableSize - 1);
+                //0 marks an empty slot
+                table[slot] = i + 1;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(tableSize * 4).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.asIntBuffer().put(table);
+            write(buffer,tableOffset);
+
+            long wordOffsetsOffset = tableOffset + (long) tableSize * 4;
+            buffer = ByteBuffer.allocate(numWords * 4).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.asIntBuffer().put(wordOffsets,0,numWords);
+            write(buffer,wordOffsetsOffset);
+
+            long wordsOffset = wordOffsetsOffset + (long) numWords * 4;
+            write(ByteBuffer.wrap(words.toByteArray()),wordsOffset);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(numWords);
+            header.putInt(vectorLength);
+            header.putInt(tableSize);
+            header.putInt(words.size());
+            header.putLong(totalWordOccurrences);
+            header.putLong(vectorsOffset);
+            header.putLong(tableOffset);
+            header.putLong(wordOffsetsOffset);
+            header.putLong(wordsOffset);
+            header.clear();
+            write(header,0);
+            channel.force(false);
+        }
+        finally {
+            file.close();
+        }
+    }
+
+    private void write(ByteBuffer buffer,long position) throws IOException {
+        while(buffer.hasRemaining())
+            position += channel.write(buffer,position);
+    }
+
+    private static void writeInt(ByteArrayOutputStream os,int i) {
+        os.write(i);
+        os.write(i >>> 8);
+        os.write(i >>> 16);
+        os.write(i >>> 24);
+    }
+
+}
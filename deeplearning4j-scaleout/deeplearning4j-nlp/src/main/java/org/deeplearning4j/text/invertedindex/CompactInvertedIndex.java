@@ -0,0 +1,462 @@
+package org.deeplearning4j.text.invertedindex;
+
+import org.deeplearning4j.models.word2vec.VocabWord;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index storing documents as varint encoded token ids
+ * in large chunked byte buffers.
+ *
+ * Each distinct token is given an id in the order it is first seen.
+ * A document is stored as its encoded length in bytes, its number of tokens and the token ids.
+ * Every 16th document's offset is kept, others are found by skipping forward.
+ * Postings (word to documents) are only needed for tfidf style lookups,
+ * so they are built on the first call to {@link #documents(VocabWord)}
+ * as delta + varint encoded document ids.
+ *
+ * Given a spill file, full chunks are written to disk and memory mapped
+ * so only the chunk being written to is on the heap. The spill file is
+ * closed by {@link #finish()} or {@link #close()}.
+ *
+ * Documents are appended: they are numbered in the order they are added
+ * which is what callers passing {@link #numDocuments()} as the document id expect.
+ *
+ * @author Adam Gibson
+ */
+public class CompactInvertedIndex implements InvertedIndex,Closeable {
+
+    private static final long serialVersionUID = -1364981727736474802L;
+    private static final int CHECKPOINT_SHIFT = 4;
+
+    private int chunkShift;
+    private int chunkSize;
+    //the last chunk is the one being written to
+    private transient volatile ByteBuffer[] chunks;
+    private transient byte[] current;
+    private long size = 0;
+    private long[] checkpoints = new long[1024];
+    private volatile int numDocs = 0;
+    private Map<String,Integer> tokenIds = new HashMap<>();
+    private List<VocabWord> tokens = new ArrayList<>();
+    private File spillFile;
+    private transient FileChannel spillChannel;
+    //lazily built postings per token id
+    private transient byte[][] postings;
+    private transient int[] postingCounts;
+    private transient int postingsBuiltFor = -1;
+    private transient byte[] encodeBuffer = new byte[64];
+
+    /**
+     * An in memory index with 64mb chunks
+     */
+    public CompactInvertedIndex() {
+        this(26,null);
+    }
+
+    /**
+     * @param chunkShift chunks are of size 2^chunkShift bytes
+     * @param spillFile if not null full chunks are written
+     *                  to this file and memory mapped
+     */
+    public CompactInvertedIndex(int chunkShift,File spillFile) {
+        if(chunkShift < 4 || chunkShift > 30)
+            throw new IllegalArgumentException("Chunk shift must be between 4 and 30");
+        this.chunkShift = chunkShift;
+        this.chunkSize = 1 << chunkShift;
+        this.current = new byte[chunkSize];
+        this.chunks = new ByteBuffer[]{ByteBuffer.wrap(current)};
+        this.spillFile = spillFile;
+        if(spillFile != null) {
+            try {
+                RandomAccessFile raf = new RandomAccessFile(spillFile,"rw");
+                raf.setLength(0);
+                spillChannel = raf.getChannel();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * The id for the given token, assigning one if it hasn't been seen before
+     * @param word the token
+     * @return the id of the token
+     */
+    private int idFor(VocabWord word) {
+        Integer id = tokenIds.get(word.getWord());
+        if(id == null) {
+            id = tokens.size();
+            tokenIds.put(word.getWord(),id);
+            tokens.add(word);
+        }
+        return id;
+    }
+
+    /**
+     * The token with the given id
+     * @param id the id of the token
+     * @return the token
+     */
+    public VocabWord token(int id) {
+        return tokens.get(id);
+    }
+
+    /**
+     * The number of distinct tokens
+     * @return the number of distinct tokens
+     */
+    public int numTokens() {
+        return tokens.size();
+    }
+
+    /**
+     * Decodes the given document in to the buffer without allocating
+     * @param index the document to read
+     * @param buffer the buffer to read the tokens in to
+     * @return the number of tokens in the document or
+     * minus the number of tokens if the buffer was too small
+     */
+    public int document(int index,VocabWord[] buffer) {
+        long pos = offset(index);
+        pos += varInt(pos) >>> 32;
+        long read = varInt(pos);
+        int length = (int) read;
+        if(length > buffer.length)
+            return -length;
+        pos += read >>> 32;
+        for(int i = 0; i < length; i++) {
+            read = varInt(pos);
+            buffer[i] = tokens.get((int) read);
+            pos += read >>> 32;
+        }
+        return length;
+    }
+
+    /**
+     * Decodes the token ids of the given document in to the buffer without allocating
+     * @param index the document to read
+     * @param buffer the buffer to read the ids in to
+     * @return the number of tokens in the document or
+     * minus the number of tokens if the buffer was too small
+     */
+    public int documentIds(int index,int[] buffer) {
+        long pos = offset(index);
+        pos += varInt(pos) >>> 32;
+        long read = varInt(pos);
+        int length = (int) read;
+        if(length > buffer.length)
+            return -length;
+        pos += read >>> 32;
+        for(int i = 0; i < length; i++) {
+            read = varInt(pos);
+            buffer[i] = (int) read;
+            pos += read >>> 32;
+        }
+        return length;
+    }
+
+    @Override
+    public List<VocabWord> document(int index) {
+        if(index < 0 || index >= numDocs)
+            return null;
+        VocabWord[] ret = new VocabWord[1024];
+        int length = document(index,ret);
+        if(length < 0) {
+            ret = new VocabWord[-length];
+            length = document(index,ret);
+        }
+        return Arrays.asList(Arrays.copyOf(ret,length));
+    }
+
+    private long offset(int index) {
+        if(index < 0 || index >= numDocs)
+            throw new IllegalArgumentException("No document " + index);
+        long pos = checkpoints[index >>> CHECKPOINT_SHIFT];
+        //skip the preceding documents by their length in bytes
+        for(int i = index & ~((1 << CHECKPOINT_SHIFT) - 1); i < index; i++) {
+            long read = varInt(pos);
+            pos += (read >>> 32) + (int) read;
+        }
+        return pos;
+    }
+
+    @Override
+    public synchronized List<Integer> documents(VocabWord vocabWord) {
+        Integer id = tokenIds.get(vocabWord.getWord());
+        if(id == null)
+            return new ArrayList<>();
+        buildPostings();
+        final byte[] encoded = postings[id];
+        final int count = postingCounts[id];
+        final int[] docs = new int[count];
+        int pos = 0;
+        int doc = 0;
+        for(int i = 0; i < count; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = encoded[pos++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while((b & 0x80) != 0);
+            doc += delta;
+            docs[i] = doc;
+        }
+
+        return new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return docs[index];
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+
+    /* builds the delta encoded postings by scanning the documents */
+    private void buildPostings() {
+        if(postingsBuiltFor == numDocs)
+            return;
+        int numTokens = tokens.size();
+        postings = new byte[numTokens][];
+        postingCounts = new int[numTokens];
+        int[] lastDoc = new int[numTokens];
+        int[] lengths = new int[numTokens];
+        Arrays.fill(lastDoc,-1);
+        int[] ids = new int[1024];
+        for(int doc = 0; doc < numDocs; doc++) {
+            int length = documentIds(doc,ids);
+            if(length < 0) {
+                ids = new int[-length];
+                length = documentIds(doc,ids);
+            }
+
+            for(int i = 0; i < length; i++) {
+                int id = ids[i];
+                if(lastDoc[id] == doc)
+                    continue;
+                int delta = doc - (lastDoc[id] < 0 ? 0 : lastDoc[id]);
+                lastDoc[id] = doc;
+                if(postings[id] == null)
+                    postings[id] = new byte[8];
+                else if(lengths[id] + 5 > postings[id].length)
+                    postings[id] = Arrays.copyOf(postings[id],postings[id].length * 2);
+                lengths[id] = writeVarInt(delta,postings[id],lengths[id]);
+                postingCounts[id]++;
+            }
+        }
+
+        for(int i = 0; i < numTokens; i++)
+            if(postings[i] != null)
+                postings[i] = Arrays.copyOf(postings[i],lengths[i]);
+        postingsBuiltFor = numDocs;
+    }
+
+    @Override
+    public int numDocuments() {
+        return numDocs;
+    }
+
+    @Override
+    public Collection<Integer> allDocs() {
+        final int n = numDocs;
+        return new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return index;
+            }
+
+            @Override
+            public int size() {
+                return n;
+            }
+        };
+    }
+
+    /**
+     * Documents are immutable once added
+     */
+    @Override
+    public void addWordToDoc(int doc, VocabWord word) {
+        throw new UnsupportedOperationException("Words can not be added to existing documents; please use addWordsToDoc");
+    }
+
+    /**
+     * Appends a document. The document is given the next id
+     * @param doc ignored: documents are numbered in the order they are added
+     * @param words the words in the document
+     */
+    @Override
+    public synchronized void addWordsToDoc(int doc, List<VocabWord> words) {
+        //byte length, number of tokens and at most 5 bytes per id
+        int maxBytes = 10 + 5 * words.size();
+        if(encodeBuffer.length < maxBytes)
+            encodeBuffer = new byte[Math.max(maxBytes,encodeBuffer.length * 2)];
+        int length = 0;
+        length = writeVarInt(words.size(),encodeBuffer,length);
+        for(VocabWord word : words)
+            length = writeVarInt(idFor(word),encodeBuffer,length);
+
+        if(numDocs >> CHECKPOINT_SHIFT >= checkpoints.length)
+            checkpoints = Arrays.copyOf(checkpoints,checkpoints.length * 2);
+        if((numDocs & ((1 << CHECKPOINT_SHIFT) - 1)) == 0)
+            checkpoints[numDocs >> CHECKPOINT_SHIFT] = size;
+
+        byte[] header = new byte[5];
+        int headerLength = writeVarInt(length,header,0);
+        append(header,headerLength);
+        append(encodeBuffer,length);
+        //publishes the document to readers
+        numDocs++;
+    }
+
+    private void append(byte[] bytes,int length) {
+        int written = 0;
+        while(written < length) {
+            int offset = (int) (size & (chunkSize - 1));
+            int toWrite = Math.min(length - written,chunkSize - offset);
+            System.arraycopy(bytes,written,current,offset,toWrite);
+            written += toWrite;
+            size += toWrite;
+            if((size & (chunkSize - 1)) == 0)
+                flushChunk();
+        }
+    }
+
+    /* starts a new chunk, spilling the full one to disk if configured */
+    private void flushChunk() {
+        ByteBuffer[] newChunks = Arrays.copyOf(chunks,chunks.length + 1);
+        if(spillChannel != null) {
+            try {
+                int full = chunks.length - 1;
+                long position = (long) full * chunkSize;
+                ByteBuffer buffer = ByteBuffer.wrap(current);
+                while(buffer.hasRemaining())
+                    position += spillChannel.write(buffer,position);
+                //same contents, readers may see either
+                newChunks[full] = spillChannel.map(FileChannel.MapMode.READ_ONLY,(long) full * chunkSize,chunkSize);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        current = new byte[chunkSize];
+        newChunks[newChunks.length - 1] = ByteBuffer.wrap(current);
+        chunks = newChunks;
+    }
+
+    private byte byteAt(long pos) {
+        return chunks[(int) (pos >>> chunkShift)].get((int) (pos & (chunkSize - 1)));
+    }
+
+    /* the varint at the given position in the low 32 bits and the number of bytes it took in the high bits */
+    private long varInt(long pos) {
+        int ret = 0;
+        int shift = 0;
+        long bytes = 0;
+        byte b;
+        do {
+            b = byteAt(pos + bytes++);
+            ret |= (b & 0x7F) << shift;
+            shift += 7;
+        } while((b & 0x80) != 0);
+        return (bytes << 32) | (ret & 0xFFFFFFFFL);
+    }
+
+    private static int writeVarInt(int value,byte[] bytes,int offset) {
+        while((value & ~0x7F) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * The number of bytes used by the documents
+     * @return the number of bytes used by the documents
+     */
+    public long sizeInBytes() {
+        return size;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        ByteBuffer[] chunks = this.chunks;
+        for(long written = 0; written < size;) {
+            ByteBuffer chunk = chunks[(int) (written >>> chunkShift)].duplicate();
+            chunk.clear();
+            int length = (int) Math.min(chunkSize,size - written);
+            byte[] bytes = new byte[length];
+            chunk.get(bytes);
+            out.write(bytes);
+            written += length;
+        }
+    }
+
+    /* documents are read back in to memory, even if they were spilled */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        spillFile = null;
+        postingsBuiltFor = -1;
+        encodeBuffer = new byte[64];
+        int numChunks = (int) (size >>> chunkShift) + 1;
+        chunks = new ByteBuffer[numChunks];
+        for(int i = 0; i < numChunks; i++) {
+            current = new byte[chunkSize];
+            in.readFully(current,0,(int) Math.min(chunkSize,size - (long) i * chunkSize));
+            chunks[i] = ByteBuffer.wrap(current);
+        }
+    }
+
+    /**
+     * Flushes the spill file to disk and closes it, see {@link #close()}
+     */
+    @Override
+    public void finish() {
+        try {
+            if(spillChannel != null)
+                spillChannel.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        close();
+    }
+
+    /**
+     * Closes the spill file. Chunks that were already spilled stay
+     * memory mapped and readable, documents added afterwards are kept on the heap
+     */
+    @Override
+    public void close() {
+        if(spillChannel == null)
+            return;
+        try {
+            spillChannel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        finally {
+            spillChannel = null;
+        }
+    }
+
+}
@@ -42,8 +42,17 @@ public class LuceneInvertedIndex implements InvertedIndex {
     private boolean cache = true;
 
     public LuceneInvertedIndex(VocabCache vocabCache,boolean cache) {
+        this(vocabCache,cache,new File("word2vec-index"));
+    }
+
+    /**
+     * @param vocabCache the vocab cache to look words up in
+     * @param cache whether to keep the documents in memory
+     * @param indexDir the directory to write the index to
+     */
+    public LuceneInvertedIndex(VocabCache vocabCache,boolean cache,File indexDir) {
         try {
-            index("word2vec-index",true);
+            index(indexDir,true);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -196,10 +205,9 @@ public class LuceneInvertedIndex implements InvertedIndex {
     }
 
 
-    private void index(String indexPath,boolean create) throws IOException {
-        File dir2 = new File(indexPath);
-        if(!dir2.exists())
-            dir2.mkdir();
+    private void index(File indexDir,boolean create) throws IOException {
+        if(!indexDir.exists())
+            indexDir.mkdir();
 
         analyzer  = new StandardAnalyzer(new InputStreamReader(new ByteArrayInputStream("".getBytes())));
 
@@ -218,7 +226,7 @@ public class LuceneInvertedIndex implements InvertedIndex {
         // size to the JVM (eg add -Xmx512m or -Xmx1g):
         //
         iwc.setRAMBufferSizeMB(5000);
-        dir = FSDirectory.open(dir2);
+        dir = FSDirectory.open(indexDir);
 
         writer = new IndexWriter(dir, iwc);
         //indexDocs(writer, docDir);
@@ -4,11 +4,17 @@ package org.deeplearning4j.bagofwords.vectorizer;
 import static org.junit.Assume.*;
 
 import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
+import org.deeplearning4j.text.invertedindex.DefaultInvertedIndex;
+import org.deeplearning4j.text.sentenceiterator.CollectionSentenceIterator;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.UimaTokenizerFactory;
 import org.deeplearning4j.text.sentenceiterator.labelaware.LabelAwareFileSentenceIterator;
 import org.deeplearning4j.text.sentenceiterator.labelaware.LabelAwareSentenceIterator;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.ClassPathResource;
@@ -19,6 +25,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  *@author Adam Gibson
@@ -27,6 +34,9 @@ public class BagOfWordsVectorizerTest {
 
     private static Logger log = LoggerFactory.getLogger(BagOfWordsVectorizerTest.class);
 
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
     @Test
     public void testBagOfWordsVectorizer() throws Exception {
         File rootDir = new ClassPathResource("rootdir").getFile();
@@ -35,7 +45,7 @@ public class BagOfWordsVectorizerTest {
         TokenizerFactory tokenizerFactory = new UimaTokenizerFactory();
         TextVectorizer vectorizer = new BagOfWordsVectorizer.Builder()
                 .minWords(1).stopWords(new ArrayList<String>())
-                .tokenize(tokenizerFactory).iterate(iter).labels(labels).build();
+                .tokenize(tokenizerFactory).iterate(iter).labels(labels).indexDir(testDir.newFolder()).build();
         vectorizer.fit();
         VocabWord word = vectorizer.vocab().wordFor("This");
         assumeNotNull(word);
@@ -45,5 +55,24 @@ public class BagOfWordsVectorizerTest {
 
     }
 
+    @Test
+    public void testFitWaitsForAllWork() {
+        List<String> sentences = new ArrayList<>();
+        for(int i = 0; i < 100; i++)
+            sentences.add("sentence number " + i);
+        BaseTextVectorizer vectorizer = (BaseTextVectorizer) new BagOfWordsVectorizer.Builder()
+                .minWords(1).stopWords(new ArrayList<String>()).cache(new InMemoryLookupCache(10))
+                .index(new DefaultInvertedIndex()).tokenize(new DefaultTokenizerFactory())
+                .iterate(new CollectionSentenceIterator(sentences)).build();
+        //forces the producer to wait on the actors
+        vectorizer.setMaxOutstanding(2);
+        long start = System.currentTimeMillis();
+        vectorizer.fit();
+        assertTrue(System.currentTimeMillis() - start < 10000);
+        assertEquals(100,vectorizer.index().numDocuments());
+        assertEquals(300,vectorizer.numWordsEncountered());
+        assertEquals(100,vectorizer.vocab().wordFrequency("sentence"));
+    }
+
 
 }
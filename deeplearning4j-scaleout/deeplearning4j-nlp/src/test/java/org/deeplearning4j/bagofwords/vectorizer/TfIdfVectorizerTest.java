@@ -9,7 +9,9 @@ import org.deeplearning4j.text.tokenization.tokenizerfactory.UimaTokenizerFactor
 import org.deeplearning4j.text.sentenceiterator.labelaware.LabelAwareFileSentenceIterator;
 import org.deeplearning4j.text.sentenceiterator.labelaware.LabelAwareSentenceIterator;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.ClassPathResource;
@@ -27,6 +29,9 @@ public class TfIdfVectorizerTest {
 
     private static Logger log = LoggerFactory.getLogger(TfIdfVectorizerTest.class);
 
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
     @Test
     public void testTfIdfVectorizer() throws Exception {
         File rootDir = new ClassPathResource("rootdir").getFile();
@@ -34,7 +39,7 @@ public class TfIdfVectorizerTest {
         List<String> labels = Arrays.asList("label1","label2");
         TokenizerFactory tokenizerFactory = new UimaTokenizerFactory();
         TextVectorizer vectorizer = new TfidfVectorizer.Builder().minWords(1).stopWords(new ArrayList<String>())
-                .tokenize(tokenizerFactory).labels(labels).iterate(iter).build();
+                .tokenize(tokenizerFactory).labels(labels).iterate(iter).indexDir(testDir.newFolder()).build();
         vectorizer.fit();
         VocabWord word = vectorizer.vocab().wordFor("This");
         assumeNotNull(word);
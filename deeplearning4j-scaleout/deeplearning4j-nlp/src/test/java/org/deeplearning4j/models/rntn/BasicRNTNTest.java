@@ -11,7 +11,9 @@ import org.deeplearning4j.text.sentenceiterator.CollectionSentenceIterator;
 import org.deeplearning4j.text.sentenceiterator.SentenceIterator;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.util.Arrays;
@@ -27,6 +29,8 @@ public class BasicRNTNTest {
     private SentenceIterator sentenceIter;
     private TokenizerFactory tokenizerFactory;
     private String sentence = "<LABEL> This is one sentence. </LABEL>";
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
    @Before
    public void init() throws Exception {
        new File("cache.ser").delete();
@@ -36,7 +40,7 @@ public class BasicRNTNTest {
        File vectors = new File("wordvectors.ser");
        if(!vectors.exists()) {
            vec = new Word2Vec.Builder().vocabCache(new InMemoryLookupCache(100))
-                   .iterate(sentenceIter).build();
+                   .iterate(sentenceIter).indexDir(testDir.newFolder()).build();
            vec.fit();
 
            SerializationUtils.saveObject(vec,new File("wordvectors.ser"));
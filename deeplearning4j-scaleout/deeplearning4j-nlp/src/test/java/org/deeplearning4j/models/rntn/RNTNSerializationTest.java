@@ -0,0 +1,86 @@
+package org.deeplearning4j.models.rntn;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.junit.Test;
+import org.nd4j.linalg.api.activation.Activations;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of an RNTN through the binary model format
+ */
+public class RNTNSerializationTest {
+
+    private int numHidden = 5;
+    private String[] words = {"this","is","one","sentence"};
+
+    @Test
+    public void testWriteLoad() {
+        RNTN rntn = rntn(123);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        rntn.write(bos);
+
+        //a model with different weights, which are all replaced on load
+        RNTN loaded = rntn(456);
+        assertNotEquals(rntn.getParameters(),loaded.getParameters());
+        loaded.load(new ByteArrayInputStream(bos.toByteArray()));
+
+        assertEquals(rntn.getNumParameters(),loaded.getNumParameters());
+        assertEquals(rntn.getParameters(),loaded.getParameters());
+        for(String word : words)
+            assertEquals(rntn.getFeatureVector(word),loaded.getFeatureVector(word));
+        assertEquals(rntn.getFeatureVector("unknown"),loaded.getFeatureVector("unknown"));
+
+        List<INDArray> expected = rntn.output(trees());
+        List<INDArray> actual = loaded.output(trees());
+        assertEquals(expected.size(),actual.size());
+        for(int i = 0; i < expected.size(); i++)
+            assertEquals(expected.get(i),actual.get(i));
+        assertEquals(rntn.predict(trees()),loaded.predict(trees()));
+    }
+
+    private RNTN rntn(long seed) {
+        Map<String,INDArray> featureVectors = new HashMap<>();
+        MersenneTwister rng = new MersenneTwister(seed);
+        for(String word : words)
+            featureVectors.put(word,Nd4j.rand(numHidden,1,rng));
+        return new RNTN.Builder().setActivationFunction(Activations.tanh())
+                .setNumHidden(numHidden).setFeatureVectors(featureVectors)
+                .setScalingForInit(1).setRng(rng)
+                .setUseTensors(true).build();
+    }
+
+    /* ((this is) (one (sentence unknown))) */
+    private List<Tree> trees() {
+        Tree thisIs = binary(preTerminal("this"),preTerminal("is"));
+        Tree rest = binary(preTerminal("one"),binary(preTerminal("sentence"),preTerminal("unknown")));
+        return new ArrayList<>(Arrays.asList(binary(thisIs,rest),binary(preTerminal("is"),preTerminal("one"))));
+    }
+
+    private Tree binary(Tree left,Tree right) {
+        Tree ret = new Tree(new ArrayList<String>());
+        ret.setLabel("S");
+        ret.connect(new ArrayList<>(Arrays.asList(left,right)));
+        return ret;
+    }
+
+    private Tree preTerminal(String word) {
+        Tree leaf = new Tree(Arrays.asList(word));
+        leaf.setValue(word);
+        Tree ret = new Tree(Arrays.asList(word));
+        ret.setLabel("NN");
+        ret.connect(new ArrayList<>(Arrays.asList(leaf)));
+        return ret;
+    }
+
+}
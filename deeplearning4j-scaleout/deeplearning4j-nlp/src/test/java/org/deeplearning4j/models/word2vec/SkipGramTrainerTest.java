@@ -0,0 +1,253 @@
+package org.deeplearning4j.models.word2vec;
+
+import com.google.common.util.concurrent.AtomicDouble;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
+import org.deeplearning4j.text.invertedindex.DefaultInvertedIndex;
+import org.deeplearning4j.text.invertedindex.InvertedIndex;
+import org.deeplearning4j.text.sentenceiterator.CollectionSentenceIterator;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by agibsonccc on 10/26/14.
+ */
+public class SkipGramTrainerTest {
+
+    private static Logger log = LoggerFactory.getLogger(SkipGramTrainerTest.class);
+
+    private String[] words = {"a","b","c","d"};
+
+    @Test
+    public void testTrain() {
+        InMemoryLookupCache cache = cache();
+        InvertedIndex index = index(cache,20);
+
+        INDArray before = cache.getSyn0().dup();
+        SkipGramTrainer trainer = new SkipGramTrainer.Builder()
+                .cache(cache).index(index).window(2).numThreads(3).iterations(2).build();
+        trainer.train();
+
+        assertEquals(20 * 2 * words.length,trainer.wordsTrained());
+        assertEquals(3,trainer.wordsPerSecPerThread().length);
+        double change = 0.0;
+        for(int i = 0; i < before.rows(); i++)
+            for(int j = 0; j < before.columns(); j++)
+                change += Math.abs(before.getDouble(i,j) - cache.getSyn0().getDouble(i,j));
+        log.info("Total change " + change);
+        assertTrue(change > 0);
+    }
+
+    @Test
+    public void testTrainsInPlace() {
+        InMemoryLookupCache cache = cache();
+        double[] data = cache.getSyn0().data().asDouble();
+        double[] before = data.clone();
+        new SkipGramTrainer.Builder().cache(cache).index(index(cache,20)).window(2).numThreads(2).build().train();
+
+        //the workers update the buffer backing the cache rather than a copy
+        assertSame(data,cache.getSyn0().data().asDouble());
+        assertFalse(Arrays.equals(before,data));
+    }
+
+    @Test
+    public void testAdaGrad() {
+        InMemoryLookupCache plain = cache();
+        InMemoryLookupCache adaGrad = cache();
+        adaGrad.setUseAdaGrad(true);
+        new SkipGramTrainer.Builder().cache(plain).index(index(plain,20)).window(2).numThreads(1).build().train();
+        new SkipGramTrainer.Builder().cache(adaGrad).index(index(adaGrad,20)).window(2).numThreads(1).build().train();
+
+        //the error of each context word is scaled by the average gradient rather than applied as is
+        double[] untrained = cache().getSyn0().data().asDouble();
+        double plainChange = 0.0,adaGradChange = 0.0;
+        for(int i = 0; i < untrained.length; i++) {
+            plainChange += Math.abs(plain.getSyn0().data().asDouble()[i] - untrained[i]);
+            adaGradChange += Math.abs(adaGrad.getSyn0().data().asDouble()[i] - untrained[i]);
+        }
+        assertTrue(adaGradChange > 0);
+        assertTrue(adaGradChange < plainChange);
+    }
+
+    @Test
+    public void testSubSampling() {
+        InMemoryLookupCache cache = cache();
+        InvertedIndex index = index(cache,20);
+        cache.wordFor("a").setSampleProbability(0.0);
+
+        AtomicDouble alpha = new AtomicDouble(0.025);
+        AtomicLong wordsSoFar = new AtomicLong(0);
+        SkipGramTrainer trainer = new SkipGramTrainer.Builder()
+                .cache(cache).index(index).window(2).numThreads(2)
+                .alpha(alpha).minAlpha(1e-4).wordsSoFar(wordsSoFar).build();
+        trainer.train();
+
+        //progress is counted before sub sampling, training after
+        assertEquals(20 * words.length,wordsSoFar.get());
+        assertEquals(20 * (words.length - 1),trainer.wordsTrained());
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+        InMemoryLookupCache cache = cache();
+        List<String> sentences = new ArrayList<>();
+        for(int i = 0; i < 20; i++)
+            sentences.add("a b c d unknown");
+
+        File cacheFile = File.createTempFile("tokens","bin");
+        cacheFile.deleteOnExit();
+        TokenIdBatchProducer producer = new TokenIdBatchProducer.Builder()
+                .cache(cache).tokenizerFactory(new DefaultTokenizerFactory())
+                .stopWords(new ArrayList<String>()).iterate(new CollectionSentenceIterator(sentences))
+                .numThreads(2).batchSize(3).queueSize(2).cacheFile(cacheFile).build();
+
+        INDArray before = cache.getSyn0().dup();
+        AtomicLong wordsSoFar = new AtomicLong(0);
+        SkipGramTrainer trainer = new SkipGramTrainer.Builder()
+                .cache(cache).producer(producer).window(2).numThreads(3)
+                .iterations(3).wordsSoFar(wordsSoFar).build();
+        trainer.train();
+
+        //the later iterations are read from the cache file
+        assertTrue(producer.isCached());
+        assertTrue(cacheFile.length() > 0);
+        assertEquals(20 * 3 * words.length,wordsSoFar.get());
+        assertEquals(20 * 3 * words.length,trainer.wordsTrained());
+        assertFalse(before.equals(cache.getSyn0()));
+    }
+
+    @Test(timeout = 60000)
+    public void testStreamingWorkerFailure() {
+        InMemoryLookupCache cache = failingCache();
+        List<String> sentences = new ArrayList<>();
+        for(int i = 0; i < 2000; i++)
+            sentences.add("a b c d");
+
+        TokenIdBatchProducer producer = new TokenIdBatchProducer.Builder()
+                .cache(cache).tokenizerFactory(new DefaultTokenizerFactory())
+                .stopWords(new ArrayList<String>()).iterate(new CollectionSentenceIterator(sentences))
+                .numThreads(2).batchSize(3).queueSize(2).build();
+        SkipGramTrainer trainer = new SkipGramTrainer.Builder()
+                .cache(cache).producer(producer).window(2).numThreads(3).iterations(2).build();
+        try {
+            trainer.train();
+            fail("The failure of the workers should be rethrown");
+        }catch(IllegalStateException e) {
+            assertEquals("Unable to train",e.getMessage());
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testIndexWorkerFailure() {
+        InMemoryLookupCache cache = failingCache();
+        SkipGramTrainer trainer = new SkipGramTrainer.Builder()
+                .cache(cache).index(index(cache,20)).window(2).numThreads(3).build();
+        try {
+            trainer.train();
+            fail("The failure of the workers should be rethrown");
+        }catch(IllegalStateException e) {
+            assertEquals("Unable to train",e.getMessage());
+        }
+    }
+
+    @Test
+    public void testBuilderKeepsCacheObjectives() {
+        InMemoryLookupCache cache = cache();
+        Word2Vec vec = new Word2Vec.Builder().vocabCache(cache)
+                .tokenizerFactory(new DefaultTokenizerFactory()).build();
+        assertEquals(3,cache.getNegative());
+        assertTrue(cache.isUseHierarchicSoftmax());
+        assertEquals(3,vec.getNegative());
+
+        vec = new Word2Vec.Builder().vocabCache(cache).negativeSample(5)
+                .useHierarchicSoftmax(false).tokenizerFactory(new DefaultTokenizerFactory()).build();
+        assertEquals(5,cache.getNegative());
+        assertFalse(cache.isUseHierarchicSoftmax());
+        assertFalse(vec.isUseHierarchicSoftmax());
+    }
+
+    @Test
+    public void testNegativeSamplingOnly() {
+        InMemoryLookupCache cache = cache();
+        cache.setUseHierarchicSoftmax(false);
+        cache.resetWeights();
+        assertNull(cache.getSyn1());
+        new SkipGramTrainer.Builder().cache(cache).index(index(cache,20)).window(2).numThreads(2).build().train();
+
+        //enabling hierarchical softmax without resetting the weights fails up front
+        cache.setUseHierarchicSoftmax(true);
+        try {
+            new SkipGramTrainer.Builder().cache(cache).index(index(cache,20)).window(2).numThreads(2).build().train();
+            fail("Training without syn1 should fail");
+        }catch(IllegalStateException e) {
+            assertTrue(e.getMessage().contains("syn1"));
+        }
+    }
+
+    @Test
+    public void testSampleProbabilities() {
+        InMemoryLookupCache cache = cache();
+        cache.wordFor("a").increment(1000);
+        Word2Vec vec = new Word2Vec.Builder().vocabCache(cache)
+                .tokenizerFactory(new DefaultTokenizerFactory()).sampling(1e-2).build();
+        vec.computeSampleProbabilities();
+        assertTrue(cache.wordFor("a").getSampleProbability() < 1.0);
+        assertEquals(1.0,cache.wordFor("d").getSampleProbability(),1e-6);
+    }
+
+
+    private InMemoryLookupCache cache() {
+        InMemoryLookupCache cache = new InMemoryLookupCache(10,false,0.025);
+        cache.setNegative(3);
+        cache.setTableSize(1000);
+        for(int i = 0; i < words.length; i++) {
+            VocabWord word = new VocabWord(words.length - i,words[i]);
+            word.setIndex(i);
+            cache.addToken(word);
+            cache.putVocabWord(words[i]);
+        }
+
+        new Huffman(cache.vocabWords()).build();
+        cache.resetWeights();
+        return cache;
+    }
+
+    /* a cache with a word that can't be trained on */
+    private InMemoryLookupCache failingCache() {
+        InMemoryLookupCache cache = cache();
+        VocabWord failing = new VocabWord(2,"c") {
+            @Override
+            public double getSampleProbability() {
+                throw new IllegalStateException("Unable to train");
+            }
+        };
+        failing.setIndex(cache.wordFor("c").getIndex());
+        cache.addToken(failing);
+        cache.putVocabWord("c");
+        return cache;
+    }
+
+    private InvertedIndex index(InMemoryLookupCache cache,int numDocs) {
+        InvertedIndex index = new DefaultInvertedIndex();
+        for(int i = 0; i < numDocs; i++) {
+            List<VocabWord> doc = new ArrayList<>();
+            for(String word : words)
+                doc.add(cache.wordFor(word));
+            //tokens that did not make it in to the vocab are skipped
+            doc.add(new VocabWord(1,"unknown"));
+            index.addWordsToDoc(i,doc);
+        }
+        return index;
+    }
+
+}
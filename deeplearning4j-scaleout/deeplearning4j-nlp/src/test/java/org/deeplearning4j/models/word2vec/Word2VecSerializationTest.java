@@ -0,0 +1,128 @@
+package org.deeplearning4j.models.word2vec;
+
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
+import org.deeplearning4j.text.invertedindex.DefaultInvertedIndex;
+import org.deeplearning4j.text.invertedindex.InvertedIndex;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.junit.Test;
+import org.nd4j.linalg.factory.Nd4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trips of word2vec models through the binary model format
+ */
+public class Word2VecSerializationTest {
+
+    private String[] words = {"a","b","c","d","e","f","g","h"};
+
+    @Test
+    public void testWriteLoad() {
+        Word2Vec vec = word2vec(new InMemoryLookupCache(10,false,0.025));
+        Word2Vec loaded = roundTrip(vec);
+
+        assertEquals(vec.getLayerSize(),loaded.getLayerSize());
+        assertEquals(vec.getWindow(),loaded.getWindow());
+        assertEquals(vec.getNegative(),loaded.getNegative());
+        assertEquals(vec.isUseHierarchicSoftmax(),loaded.isUseHierarchicSoftmax());
+        assertEquals(vec.getStopWords(),loaded.getStopWords());
+
+        InMemoryLookupCache cache = (InMemoryLookupCache) vec.getCache();
+        InMemoryLookupCache loadedCache = (InMemoryLookupCache) loaded.getCache();
+        assertEquals(cache.numWords(),loadedCache.numWords());
+        assertEquals(cache.getSyn0(),loadedCache.getSyn0());
+        assertEquals(cache.getSyn1(),loadedCache.getSyn1());
+        assertEquals(cache.getSyn1Neg(),loadedCache.getSyn1Neg());
+        assertEquals(3,loadedCache.getNegative(),0);
+        assertTrue(loadedCache.isUseHierarchicSoftmax());
+
+        for(String word : words) {
+            VocabWord expected = cache.wordFor(word);
+            VocabWord actual = loadedCache.wordFor(word);
+            assertEquals(expected.getIndex(),actual.getIndex());
+            assertEquals(expected.getWordFrequency(),actual.getWordFrequency(),0);
+            assertEquals(expected.getSampleProbability(),actual.getSampleProbability(),0);
+            assertEquals(expected.getCodeLength(),actual.getCodeLength());
+            for(int j = 0; j < expected.getCodeLength(); j++) {
+                assertEquals(expected.getCodes()[j],actual.getCodes()[j]);
+                assertEquals(expected.getPoints()[j],actual.getPoints()[j]);
+            }
+            assertEquals(vec.getWordVectorMatrix(word),loaded.getWordVectorMatrix(word));
+            assertEquals(new ArrayList<>(vec.wordsNearest(word,3)),new ArrayList<>(loaded.wordsNearest(word,3)));
+        }
+    }
+
+    @Test
+    public void testWriteLoadWithoutSyn1() {
+        InMemoryLookupCache cache = new InMemoryLookupCache(10,false,0.025);
+        Word2Vec vec = word2vec(cache);
+        //a negative sampling only model
+        cache.setSyn1(null);
+        Word2Vec loaded = roundTrip(vec);
+        InMemoryLookupCache loadedCache = (InMemoryLookupCache) loaded.getCache();
+        assertNull(loadedCache.getSyn1());
+        assertEquals(cache.getSyn0(),loadedCache.getSyn0());
+        assertEquals(cache.getSyn1Neg(),loadedCache.getSyn1Neg());
+    }
+
+    @Test
+    public void testLoadResetsSimilarityEngine() {
+        Word2Vec vec = word2vec(new InMemoryLookupCache(10,false,0.025));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        vec.write(bos);
+
+        //a model with an engine built over other vectors
+        Word2Vec loaded = word2vec(new InMemoryLookupCache(10,false,0.025));
+        InMemoryLookupCache other = (InMemoryLookupCache) loaded.getCache();
+        other.setSyn0(Nd4j.rand(other.getSyn0().rows(),other.getSyn0().columns()));
+        loaded.wordsNearest("a",3);
+        loaded.load(new ByteArrayInputStream(bos.toByteArray()));
+        for(String word : words)
+            assertEquals(new ArrayList<>(vec.wordsNearest(word,3)),new ArrayList<>(loaded.wordsNearest(word,3)));
+    }
+
+    private Word2Vec roundTrip(Word2Vec vec) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        vec.write(bos);
+        Word2Vec loaded = new Word2Vec();
+        loaded.load(new ByteArrayInputStream(bos.toByteArray()));
+        return loaded;
+    }
+
+    /* a small model trained with the skip gram trainer, so every weight matrix is non trivial */
+    private Word2Vec word2vec(InMemoryLookupCache cache) {
+        for(int i = 0; i < words.length; i++) {
+            VocabWord word = new VocabWord(i + 1,words[i]);
+            word.setIndex(i);
+            cache.incrementWordCount(words[i],i + 1);
+            cache.addToken(word);
+            cache.putVocabWord(words[i]);
+        }
+
+        Word2Vec vec = new Word2Vec.Builder()
+                .vocabCache(cache).layerSize(10).windowSize(2)
+                .negativeSample(3).useHierarchicSoftmax(true)
+                .stopWords(Arrays.asList("the"))
+                .tokenizerFactory(new DefaultTokenizerFactory()).build();
+        cache.setTableSize(1000);
+        new Huffman(cache.vocabWords()).build();
+        cache.resetWeights();
+
+        InvertedIndex index = new DefaultInvertedIndex();
+        for(int i = 0; i < 20; i++) {
+            List<VocabWord> doc = new ArrayList<>();
+            for(int j = 0; j < words.length; j++)
+                doc.add(cache.wordFor(words[(i + j) % words.length]));
+            index.addWordsToDoc(i,doc);
+        }
+        new SkipGramTrainer.Builder().cache(cache).index(index).window(2).numThreads(2).build().train();
+        return vec;
+    }
+
+}
@@ -10,7 +10,9 @@ import org.deeplearning4j.text.documentiterator.DocumentIterator;
 import org.deeplearning4j.text.documentiterator.FileDocumentIterator;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
 import org.deeplearning4j.text.tokenization.tokenizerfactory.UimaTokenizerFactory;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +30,9 @@ public class Word2VecTests {
 
     private static Logger log = LoggerFactory.getLogger(Word2VecTests.class);
 
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
 
     @Test
     public void testWord2VecRunThroughVectors() throws Exception {
@@ -46,7 +51,7 @@ public class Word2VecTests {
                 .layerSize(100)
                 .stopWords(new ArrayList<String>())
                 .vocabCache(cache)
-                .windowSize(5).iterate(iter).tokenizerFactory(t).build();
+                .windowSize(5).iterate(iter).tokenizerFactory(t).indexDir(testDir.newFolder()).build();
 
         assertEquals(new ArrayList<String>(), vec.getStopWords());
 
@@ -73,7 +78,7 @@ public class Word2VecTests {
         Word2Vec vec = new Word2Vec.Builder()
                 .minWordFrequency(1).layerSize(100).stopWords(new ArrayList<String>())
                 .vocabCache(cache)
-                .windowSize(5).iterate(iter).tokenizerFactory(t).build();
+                .windowSize(5).iterate(iter).tokenizerFactory(t).indexDir(testDir.newFolder()).build();
 
         assertEquals(new ArrayList<String>(),vec.getStopWords());
         vec.fit();
@@ -0,0 +1,130 @@
+package org.deeplearning4j.models.word2vec;
+
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
+import org.deeplearning4j.models.word2vec.wordstore.mmap.MemoryMappedLookupCache;
+import org.deeplearning4j.models.word2vec.wordstore.mmap.MemoryMappedVocabWriter;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by agibsonccc on 10/28/14.
+ */
+public class WordSimilarityEngineTest {
+
+    private int numWords = 103;
+
+    @Test
+    public void testMatchesBruteForce() {
+        InMemoryLookupCache cache = cache();
+        //small blocks so that results are merged across blocks and threads
+        WordSimilarityEngine engine = new WordSimilarityEngine(cache,10,3);
+        try {
+            for(int i = 0; i < numWords; i += 17) {
+                String word = cache.wordAtIndex(i);
+                assertEquals(bruteForce(cache,i,5),engine.wordsNearest(word,5));
+            }
+
+            List<String> query = Arrays.asList(cache.wordAtIndex(1),"missing",cache.wordAtIndex(2));
+            List<List<String>> batch = engine.wordsNearest(query,5);
+            assertEquals(3,batch.size());
+            assertEquals(bruteForce(cache,1,5),batch.get(0));
+            assertTrue(batch.get(1).isEmpty());
+            assertEquals(bruteForce(cache,2,5),batch.get(2));
+
+            WordSimilarityEngine.TopK topK = engine.nearest(cache.wordAtIndex(0),numWords);
+            assertEquals(numWords - 1,topK.size());
+            double[] scores = topK.scores();
+            for(int i = 1; i < scores.length; i++)
+                assertTrue(scores[i - 1] >= scores[i]);
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test
+    public void testAnalogy() {
+        InMemoryLookupCache cache = cache();
+        WordSimilarityEngine engine = new WordSimilarityEngine(cache,16,1);
+        List<Integer> result = new ArrayList<>();
+        for(int i : engine.analogy("w0","w1","w2",numWords).indices())
+            result.add(i);
+        assertEquals(numWords - 3,result.size());
+        assertFalse(result.contains(0) || result.contains(1) || result.contains(2));
+    }
+
+    @Test
+    public void testMemoryMapped() throws Exception {
+        InMemoryLookupCache cache = cache();
+        File file = File.createTempFile("vocab","mmap");
+        file.deleteOnExit();
+        MemoryMappedVocabWriter.export(cache,file);
+        MemoryMappedLookupCache mapped = new MemoryMappedLookupCache(file);
+
+        WordSimilarityEngine engine = new WordSimilarityEngine(mapped,10,3);
+        try {
+            for(int i = 0; i < numWords; i += 17) {
+                String word = cache.wordAtIndex(i);
+                assertEquals(bruteForce(cache,i,5),engine.wordsNearest(word,5));
+            }
+            assertEquals(numWords - 3,engine.analogy("w0","w1","w2",numWords).size());
+        }
+        finally {
+            engine.shutdown();
+        }
+    }
+
+
+    private List<String> bruteForce(InMemoryLookupCache cache,int index,int n) {
+        final INDArray syn0 = cache.getSyn0();
+        final double[] sims = new double[syn0.rows()];
+        INDArray query = syn0.getRow(index);
+        for(int i = 0; i < syn0.rows(); i++) {
+            INDArray row = syn0.getRow(i);
+            sims[i] = row.mul(query).sum(Integer.MAX_VALUE).getDouble(0) / (row.norm2(Integer.MAX_VALUE).getDouble(0) * query.norm2(Integer.MAX_VALUE).getDouble(0));
+        }
+
+        List<Integer> indices = new ArrayList<>();
+        for(int i = 0; i < sims.length; i++)
+            if(i != index)
+                indices.add(i);
+        Collections.sort(indices,new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(sims[o2],sims[o1]);
+            }
+        });
+
+        List<String> ret = new ArrayList<>();
+        for(int i = 0; i < n; i++)
+            ret.add(cache.wordAtIndex(indices.get(i)));
+        return ret;
+    }
+
+    private InMemoryLookupCache cache() {
+        InMemoryLookupCache cache = new InMemoryLookupCache(8,false,0.025);
+        for(int i = 0; i < numWords; i++) {
+            VocabWord word = new VocabWord(1,"w" + i);
+            word.setIndex(i);
+            cache.addToken(word);
+            cache.putVocabWord("w" + i);
+        }
+        cache.resetWeights();
+        Random r = new Random(123);
+        for(int i = 0; i < numWords; i++)
+            for(int j = 0; j < 8; j++)
+                cache.getSyn0().putScalar(new int[]{i,j},r.nextGaussian());
+        return cache;
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.deeplearning4j.models.word2vec;
+
+import org.deeplearning4j.clustering.rptree.RPForest;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Recall of the approximate index against the exact nearest words
+ *
+ * Created by agibsonccc on 10/29/14.
+ */
+public class WordVectorIndexTest {
+
+    private static Logger log = LoggerFactory.getLogger(WordVectorIndexTest.class);
+
+    private int numWords = 5000;
+    private int layerSize = 32;
+
+    @Test
+    public void testRecall() throws Exception {
+        InMemoryLookupCache cache = cache();
+        WordVectorIndex index = WordVectorIndex.build(cache,new RPForest.Builder().numTrees(10).leafSize(32));
+        File file = File.createTempFile("word2vec","index");
+        file.deleteOnExit();
+        index.save(file);
+        index = WordVectorIndex.load(cache,file);
+
+        WordSimilarityEngine exact = new WordSimilarityEngine(cache);
+        int k = 10, numQueries = 100;
+        double recall = 0.0;
+        for(int searchK : new int[]{100,1000,4000}) {
+            recall = 0.0;
+            long time = 0;
+            for(int q = 0; q < numQueries; q++) {
+                String word = cache.wordAtIndex(q);
+                List<String> truth = exact.wordsNearest(word,k);
+                long start = System.nanoTime();
+                List<String> approximate = index.wordsNearest(word,k,searchK);
+                time += System.nanoTime() - start;
+                assertFalse(approximate.contains(word));
+                int found = 0;
+                for(String w : truth)
+                    if(approximate.contains(w))
+                        found++;
+                recall += found / (double) k;
+            }
+            recall /= numQueries;
+            log.info("Search k " + searchK + " recall " + recall + " average query time " + (time / numQueries / 1000) + " us");
+        }
+
+        exact.shutdown();
+        assertTrue(recall > 0.9);
+    }
+
+
+    private InMemoryLookupCache cache() {
+        InMemoryLookupCache cache = new InMemoryLookupCache(layerSize,false,0.025);
+        for(int i = 0; i < numWords; i++) {
+            VocabWord word = new VocabWord(1,"w" + i);
+            word.setIndex(i);
+            cache.addToken(word);
+            cache.putVocabWord("w" + i);
+        }
+        cache.resetWeights();
+        Random r = new Random(123);
+        for(int i = 0; i < numWords; i++)
+            for(int j = 0; j < layerSize; j++)
+                cache.getSyn0().putScalar(new int[]{i,j},r.nextGaussian());
+        return cache;
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.deeplearning4j.text.invertedindex;
+
+import static org.junit.Assert.*;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Created by agibsonccc on 10/30/14.
+ */
+public class CompactInvertedIndexTest {
+
+    @Test
+    public void testDocuments() throws Exception {
+        File spill = File.createTempFile("index","bin");
+        spill.deleteOnExit();
+        //small chunks so documents span chunk boundaries
+        for(CompactInvertedIndex index : new CompactInvertedIndex[]{new CompactInvertedIndex(4,null),new CompactInvertedIndex(4,spill)}) {
+            List<VocabWord> words = new ArrayList<>();
+            for(int i = 0; i < 300; i++)
+                words.add(new VocabWord(1,"w" + i));
+
+            Random r = new Random(123);
+            List<List<VocabWord>> docs = new ArrayList<>();
+            for(int i = 0; i < 100; i++) {
+                List<VocabWord> doc = new ArrayList<>();
+                int length = r.nextInt(20);
+                for(int j = 0; j < length; j++)
+                    doc.add(words.get(r.nextInt(words.size())));
+                docs.add(doc);
+                index.addWordsToDoc(i,doc);
+            }
+            index.finish();
+
+            assertEquals(docs.size(),index.numDocuments());
+            assertEquals(docs.size(),index.allDocs().size());
+            VocabWord[] buffer = new VocabWord[1];
+            for(int i = 0; i < docs.size(); i++) {
+                assertEquals(docs.get(i),index.document(i));
+                int length = index.document(i,buffer);
+                if(length < 0)
+                    buffer = new VocabWord[-length];
+                length = index.document(i,buffer);
+                assertEquals(docs.get(i),Arrays.asList(buffer).subList(0,length));
+            }
+
+            VocabWord word = words.get(5);
+            List<Integer> expected = new ArrayList<>();
+            for(int i = 0; i < docs.size(); i++)
+                if(docs.get(i).contains(word))
+                    expected.add(i);
+            assertEquals(expected,index.documents(word));
+            assertTrue(index.documents(new VocabWord(1,"missing")).isEmpty());
+
+            CompactInvertedIndex copy = SerializationUtils.clone(index);
+            assertEquals(docs.size(),copy.numDocuments());
+            for(int i = 0; i < docs.size(); i++)
+                assertEquals(docs.get(i).size(),copy.document(i).size());
+            assertEquals(expected,copy.documents(word));
+        }
+    }
+
+    @Test
+    public void testAddAfterClose() throws Exception {
+        File spill = File.createTempFile("index","bin");
+        spill.deleteOnExit();
+        CompactInvertedIndex index = new CompactInvertedIndex(4,spill);
+        for(int i = 0; i < 40; i++) {
+            index.addWordsToDoc(i,Arrays.asList(new VocabWord(1,"a" + i),new VocabWord(1,"b"),new VocabWord(1,"c" + i)));
+            //spilled chunks stay readable, later chunks are kept on the heap
+            if(i == 19)
+                index.close();
+        }
+        index.close();
+        assertEquals(40,index.numDocuments());
+        for(int i = 0; i < 40; i++) {
+            List<VocabWord> doc = index.document(i);
+            assertEquals(3,doc.size());
+            assertEquals("a" + i,doc.get(0).getWord());
+            assertEquals("b",doc.get(1).getWord());
+            assertEquals("c" + i,doc.get(2).getWord());
+        }
+    }
+
+}
@@ -5,7 +5,9 @@ import static org.junit.Assert.*;
 import org.deeplearning4j.models.word2vec.VocabWord;
 import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.util.Arrays;
 
@@ -14,8 +16,11 @@ import java.util.Arrays;
  */
 public class LuceneInvertedIndexTest {
 
+    @Rule
+    public TemporaryFolder testDir = new TemporaryFolder();
+
     @Test
-    public void testLuceneInvertedIndex() {
+    public void testLuceneInvertedIndex() throws Exception {
         VocabCache cache = new InMemoryLookupCache(100);
         cache.addToken(new VocabWord(1,"hello"));
         cache.addToken(new VocabWord(2,"hello2"));
@@ -23,7 +28,7 @@ public class LuceneInvertedIndexTest {
         cache.addWordToIndex(1,"hello2");
         cache.putVocabWord("hello");
         cache.putVocabWord("hello2");
-        InvertedIndex index = new LuceneInvertedIndex(cache,true);
+        InvertedIndex index = new LuceneInvertedIndex(cache,true,testDir.newFolder());
         index.addWordsToDoc(0, Arrays.asList(cache.wordFor("hello"),cache.wordFor("hello2")));
         index.addWordsToDoc(1, Arrays.asList(cache.wordFor("hello"),cache.wordFor("hello2")));
         index.finish();
@@ -1,11 +1,19 @@
 package org.deeplearning4j.wordstore;
 
+import org.deeplearning4j.models.word2vec.VocabWord;
 import org.deeplearning4j.models.word2vec.wordstore.VocabCache;
+import org.deeplearning4j.models.word2vec.wordstore.VocabCounter;
 import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
+import org.deeplearning4j.util.SerializationUtils;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import static org.junit.Assert.*;
 
 /**
@@ -24,6 +32,82 @@ public class InMemoryVocabStoreTests {
         assertEquals("hello",cache.wordAtIndex(0));
     }
 
+    @Test
+    public void testNegativeSampling() {
+        InMemoryLookupCache cache = new InMemoryLookupCache(10,false,0.025);
+        cache.setNegative(5);
+        cache.setUseHierarchicSoftmax(false);
+        cache.setTableSize(1000);
+        String[] words = {"a","b","c"};
+        double[] counts = {100,10,1};
+        for(int i = 0; i < words.length; i++) {
+            VocabWord word = new VocabWord(counts[i],words[i]);
+            word.setIndex(i);
+            cache.addToken(word);
+            cache.putVocabWord(words[i]);
+        }
+
+        cache.resetWeights();
+        assertNull(cache.getSyn1());
+        assertEquals(cache.getSyn0().rows(),cache.getSyn1Neg().rows());
+
+        int[] table = cache.getTable();
+        int[] slots = new int[words.length];
+        for(int i : table)
+            slots[i]++;
+        assertTrue(slots[0] > slots[1]);
+        assertTrue(slots[1] > slots[2]);
+
+        cache.iterate(cache.wordFor("a"),cache.wordFor("b"));
+        //the positive example always pulls the output vector of the target word towards the context
+        assertTrue(Math.abs(cache.getSyn1Neg().getDouble(0,0)) > 0);
+    }
+
+    @Test
+    public void testTableRebuiltOnDeserialization() {
+        InMemoryLookupCache cache = new InMemoryLookupCache(10,false,0.025);
+        cache.setNegative(5);
+        cache.setTableSize(1000);
+        String[] words = {"a","b","c"};
+        for(int i = 0; i < words.length; i++) {
+            VocabWord word = new VocabWord(words.length - i,words[i]);
+            word.setIndex(i);
+            cache.addToken(word);
+            cache.putVocabWord(words[i]);
+        }
+        cache.resetWeights();
 
+        InMemoryLookupCache read = SerializationUtils.readObject(new ByteArrayInputStream(SerializationUtils.toByteArray(cache)));
+        assertArrayEquals(cache.getTable(),read.getTable());
+    }
+
+
+
+    @Test
+    public void testMergeVocabCounters() {
+        ConcurrentMap<String,VocabWord> tokens = new ConcurrentHashMap<>();
+        VocabCounter first = new VocabCounter(tokens);
+        VocabCounter second = new VocabCounter(tokens);
+        for(String word : new String[]{"b","a","b","rare"})
+            first.increment(word);
+        first.nextDocument();
+        first.increment("a");
+        for(String word : new String[]{"a","b","the"})
+            assertTrue(second.increment(word) == tokens.get(word));
+
+        InMemoryLookupCache cache = new InMemoryLookupCache(10);
+        VocabCounter.merge(Arrays.asList(first,second),cache,Arrays.asList("the"),2);
+        assertEquals(3,cache.wordFrequency("a"));
+        assertEquals(3,cache.wordFrequency("b"));
+        assertEquals(3,cache.docAppearedIn("a"));
+        assertEquals(2,cache.docAppearedIn("b"));
+        //ties are broken by the word, rare words and stop words are left out
+        assertEquals(2,cache.numWords());
+        assertEquals(0,cache.indexOf("a"));
+        assertEquals(1,cache.indexOf("b"));
+        assertFalse(cache.containsWord("rare"));
+        assertFalse(cache.containsWord("the"));
+        assertTrue(cache.hasToken("rare"));
+    }
 
 }
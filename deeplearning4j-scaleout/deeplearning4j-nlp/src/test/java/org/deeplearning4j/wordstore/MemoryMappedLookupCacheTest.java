@@ -0,0 +1,100 @@
+package org.deeplearning4j.wordstore;
+
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.Word2Vec;
+import org.deeplearning4j.models.word2vec.loader.Word2VecLoader;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.InMemoryLookupCache;
+import org.deeplearning4j.models.word2vec.wordstore.mmap.MemoryMappedLookupCache;
+import org.deeplearning4j.models.word2vec.wordstore.mmap.MemoryMappedVocabWriter;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Created by agibsonccc on 10/27/14.
+ */
+public class MemoryMappedLookupCacheTest {
+    private static Logger log = LoggerFactory.getLogger(MemoryMappedLookupCacheTest.class);
+
+    @Test
+    public void testExportAndLoad() throws Exception {
+        InMemoryLookupCache cache = new InMemoryLookupCache(5,false,0.025);
+        String[] words = {"hello","world","über","deeplearning4j"};
+        for(int i = 0; i < words.length; i++) {
+            VocabWord word = new VocabWord(i + 1,words[i]);
+            word.setIndex(i);
+            cache.addToken(word);
+            cache.putVocabWord(words[i]);
+        }
+        cache.resetWeights();
+
+        File file = File.createTempFile("vocab","mmap");
+        file.deleteOnExit();
+        MemoryMappedVocabWriter.export(cache,file);
+
+        MemoryMappedLookupCache mapped = new MemoryMappedLookupCache(file);
+        assertEquals(words.length,mapped.numWords());
+        assertEquals(5,mapped.vectorLength());
+        assertEquals(-1,mapped.indexOf("missing"));
+        assertNull(mapped.vector("missing"));
+        assertEquals(words.length,mapped.words().size());
+
+        for(int i = 0; i < words.length; i++) {
+            int row = mapped.indexOf(words[i]);
+            assertEquals(words[i],mapped.wordAtIndex(row));
+            assertEquals(i + 1,mapped.wordFrequency(words[i]));
+            INDArray expected = cache.vector(words[i]);
+            INDArray actual = mapped.vector(words[i]);
+            FloatBuffer buffer = mapped.vectorBuffer(words[i]);
+            for(int j = 0; j < 5; j++) {
+                assertEquals(expected.getDouble(j),actual.getDouble(j),1e-6);
+                assertEquals(expected.getDouble(j),buffer.get(j),1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void testConvertGoogleBinary() throws Exception {
+        File google = File.createTempFile("google","bin");
+        google.deleteOnExit();
+        DataOutputStream dos = new DataOutputStream(new FileOutputStream(google));
+        dos.writeBytes("3 2\n");
+        dos.writeBytes("ab ");
+        writeFloats(dos,3,4);
+        //an empty word, which is skipped
+        dos.writeBytes("\n ");
+        writeFloats(dos,1,1);
+        dos.writeBytes("\ncd ");
+        writeFloats(dos,0,2);
+        dos.writeBytes("\n");
+        dos.close();
+
+        File file = File.createTempFile("vocab","mmap");
+        file.deleteOnExit();
+        Word2VecLoader.convertGoogleBinary(google.getAbsolutePath(),file);
+        Word2Vec vec = Word2VecLoader.loadMemoryMapped(file);
+        assertEquals(2,vec.getLayerSize());
+        assertEquals(2,vec.getCache().numWords());
+        assertTrue(vec.hasWord("cd"));
+        //vectors are normalized
+        assertEquals(0.6,vec.getWordVectorMatrix("ab").getDouble(0),1e-6);
+        assertEquals(1.0,vec.getWordVectorMatrix("cd").getDouble(1),1e-6);
+    }
+
+    private void writeFloats(DataOutputStream dos,float...floats) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(floats.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(floats);
+        dos.write(buffer.array());
+    }
+
+}
@@ -4,14 +4,19 @@ import com.hazelcast.core.EntryEvent;
 import com.hazelcast.core.EntryListener;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
+import org.deeplearning4j.datasets.binary.BinaryDataSetFile;
+import org.deeplearning4j.datasets.binary.BinaryDataSetWriter;
 import org.deeplearning4j.iterativereduce.tracker.statetracker.DataSetCache;
 import org.nd4j.linalg.dataset.DataSet;
 import org.deeplearning4j.util.SerializationUtils;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * Stores the data  on local disk
+ * in the binary data set format (see {@link BinaryDataSetWriter}),
+ * data without labels is stored with java serialization
  * @author Adam Gibson
  */
 public class LocalDataSetCache implements DataSetCache {
@@ -27,7 +32,7 @@ public class LocalDataSetCache implements DataSetCache {
         distributedMap.addEntryListener(new EntryListener<String, DataSet>() {
             @Override
             public void entryAdded(EntryEvent<String, DataSet> event) {
-                SerializationUtils.saveObject(event.getValue(),new File(event.getKey()));
+                save(event.getValue(),new File(event.getKey()));
             }
 
             @Override
@@ -39,7 +44,7 @@ public class LocalDataSetCache implements DataSetCache {
 
             @Override
             public void entryUpdated(EntryEvent<String, DataSet> event) {
-                SerializationUtils.saveObject(event.getValue(),new File(event.getKey()));
+                save(event.getValue(),new File(event.getKey()));
 
             }
 
@@ -63,13 +68,37 @@ public class LocalDataSetCache implements DataSetCache {
     public DataSet get() {
         File f = new File(dataSetPath);
         if(f.exists())
-            return SerializationUtils.readObject(f);
+            return load(f);
         return null;
     }
 
     @Override
     public void set(DataSet d) {
-        SerializationUtils.saveObject(d,new File(dataSetPath));
+        save(d,new File(dataSetPath));
 
     }
+
+    private static void save(DataSet d,File f) {
+        //the binary format needs labels
+        if(d.getLabels() == null) {
+            SerializationUtils.saveObject(d,f);
+            return;
+        }
+        try {
+            BinaryDataSetWriter.save(d,f);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    //also reads data sets cached with java serialization
+    private static DataSet load(File f) {
+        try {
+            if(!BinaryDataSetFile.isDataSet(f))
+                return SerializationUtils.readObject(f);
+            return BinaryDataSetFile.load(f);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
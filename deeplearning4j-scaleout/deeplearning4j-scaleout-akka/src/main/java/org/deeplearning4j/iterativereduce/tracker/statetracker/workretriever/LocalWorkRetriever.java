@@ -4,18 +4,23 @@ import com.hazelcast.core.EntryEvent;
 import com.hazelcast.core.EntryListener;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.IMap;
+import org.deeplearning4j.datasets.binary.BinaryDataSetFile;
+import org.deeplearning4j.datasets.binary.BinaryDataSetWriter;
 import org.deeplearning4j.iterativereduce.tracker.statetracker.WorkRetriever;
-import org.nd4j.linalg.dataset.DataSet;
 import org.deeplearning4j.util.SerializationUtils;
+import org.nd4j.linalg.dataset.DataSet;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Local worker retriever
+ * Local worker retriever, saving the work of each worker
+ * in the binary data set format (see {@link BinaryDataSetWriter}),
+ * work without labels is saved with java serialization
  * @author Adam Gibson
  */
 public class LocalWorkRetriever implements WorkRetriever {
@@ -32,7 +37,7 @@ public class LocalWorkRetriever implements WorkRetriever {
             public void entryAdded(EntryEvent<String, DataSet> event) {
                 String worker = event.getKey();
                 File f = new File(worker + "-work");
-                SerializationUtils.saveObject(event.getValue(),f);
+                save(event.getValue(),f);
                 workerData.put(worker,f.getAbsolutePath());
                 //only needed for the save event
                 distributedData.remove(worker);
@@ -88,7 +93,12 @@ public class LocalWorkRetriever implements WorkRetriever {
         File f = workerData.get(worker) != null ? new File(workerData.get(worker)) : null;
         if(f == null || !f.exists())
             return null;
-        DataSet d = SerializationUtils.readObject(f);
+        DataSet d;
+        try {
+            d = BinaryDataSetFile.isDataSet(f) ? BinaryDataSetFile.load(f) : SerializationUtils.<DataSet>readObject(f);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
         workerData.remove(f);
         f.delete();
         return d;
@@ -107,11 +117,24 @@ public class LocalWorkRetriever implements WorkRetriever {
 
         else {
             File f = new File(worker + "-work");
-            SerializationUtils.saveObject(data,f);
+            save(data,f);
             workerData.put(worker,f.getAbsolutePath());
         }
 
 
 
     }
+
+    private void save(DataSet data,File f) {
+        //the binary format needs labels
+        if(data.getLabels() == null) {
+            SerializationUtils.saveObject(data,f);
+            return;
+        }
+        try {
+            BinaryDataSetWriter.save(data,f);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
@@ -5,8 +5,6 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.nio.ByteBuffer;
 
 import org.deeplearning4j.nn.BaseMultiLayerNetwork;
@@ -39,12 +37,7 @@ public class UpdateableImpl implements Updateable<BaseMultiLayerNetwork> {
 	@Override
 	public ByteBuffer toBytes() {
 		ByteArrayOutputStream os = new ByteArrayOutputStream();
-		try {
-			ObjectOutputStream os2 = new ObjectOutputStream(os);
-			os2.writeObject(wrapped);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		wrapped.write(os);
 		return ByteBuffer.wrap(os.toByteArray());
 
 	}